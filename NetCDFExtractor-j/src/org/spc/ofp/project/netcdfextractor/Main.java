@@ -30,7 +30,7 @@ import javafx.stage.Stage;
  */
 public final class Main extends Application {
 
-    public static final ResourceBundle I18N = ResourceBundle.getBundle("org/spc/ofp/project/netcdfextractor/strings"); // NOI18N.
+    public static final ResourceBundle I18N = NetCDFExtractorConstants.I18N;
     private final Preferences prefs = Preferences.userNodeForPackage(getClass());
 
     @Override
@@ -6,6 +6,7 @@
 package org.spc.ofp.project.netcdfextractor;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,9 +27,11 @@ import javafx.beans.value.ChangeListener;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
 import javafx.concurrent.Worker;
+import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.MenuItem;
@@ -45,6 +48,7 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.web.WebView;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.StageStyle;
 import org.spc.ofp.project.netcdfextractor.scene.control.cell.NetCDFTreeCell;
@@ -57,6 +61,7 @@ import org.spc.ofp.project.netcdfextractor.scene.control.extract.ExtractConfigPa
 import org.spc.ofp.project.netcdfextractor.scene.control.task.TaskProgressMonitor;
 import org.spc.ofp.project.netcdfextractor.task.BatchExtractToTxtParameters;
 import org.spc.ofp.project.netcdfextractor.task.BatchExtractToTxtTask;
+import org.spc.ofp.project.netcdfextractor.task.ExtractionJob;
 import org.spc.ofp.project.netcdfextractor.task.VariableImageGenerationTask;
 import org.spc.ofp.project.netcdfextractor.task.NavigationTreeConstructionTask;
 import org.spc.ofp.project.netcdfextractor.task.VariableHTMLReportTask;
@@ -207,6 +212,11 @@ public final class MainUIController extends ControllerBase {
         doExportFiles();
     }
 
+    @FXML
+    private void handleRunJobItem() {
+        doRunJob();
+    }
+
     @FXML
     private void handleRefreshViewItem() {
         doRefreshView();
@@ -563,10 +573,17 @@ public final class MainUIController extends ControllerBase {
                                 .forEach(variable -> extractConfigPane.addVariable(file, variable));
                     }
                 });
+        final ButtonType saveJobButtonType = new ButtonType(Main.I18N.getString("extract.save-job.label"), ButtonBar.ButtonData.LEFT); // NOI18N.
         final Dialog dialog = DialogUtils.INSTANCE.create(rootPane.getScene().getWindow(),
                 Main.I18N.getString("extract.title"), // NOI18N.
                 extractConfigPane,
-                ButtonType.OK, ButtonType.CANCEL);
+                saveJobButtonType, ButtonType.OK, ButtonType.CANCEL);
+        // Saving the job does not close the dialog.
+        final Button saveJobButton = (Button) dialog.getDialogPane().lookupButton(saveJobButtonType);
+        saveJobButton.addEventFilter(ActionEvent.ACTION, actionEvent -> {
+            actionEvent.consume();
+            doSaveJob(extractConfigPane.createParameters());
+        });
         final Optional<ButtonType> result = dialog.showAndWait();
         result.ifPresent(buttonType -> {
             if (buttonType == ButtonType.OK) {
@@ -579,6 +596,67 @@ public final class MainUIController extends ControllerBase {
         extractConfigPane.dispose();
     }
 
+    /**
+     * Creates a file chooser for job files.
+     * @return A {@code FileChooser} instance, never {@code null}.
+     */
+    private FileChooser createJobFileChooser() {
+        final String homePath = System.getProperty("user.home"); // NOI18N.
+        File dir = new File(prefs.get("last.job.directory", homePath)); // NOI18N.
+        if (!dir.isDirectory()) {
+            dir = new File(homePath);
+        }
+        final FileChooser dialog = new FileChooser();
+        dialog.setInitialDirectory(dir);
+        final FileChooser.ExtensionFilter jobFilter = new FileChooser.ExtensionFilter(Main.I18N.getString("job.filter.label"), "*" + ExtractionJob.FILE_EXTENSION); // NOI18N.
+        dialog.getExtensionFilters().add(jobFilter);
+        dialog.setSelectedExtensionFilter(jobFilter);
+        return dialog;
+    }
+
+    /**
+     * Saves export parameters to a job file.
+     * @param parameters The parameters.
+     */
+    private void doSaveJob(final BatchExtractToTxtParameters parameters) {
+        if (parameters.isEmpty()) {
+            return;
+        }
+        final FileChooser dialog = createJobFileChooser();
+        final File file = dialog.showSaveDialog(rootPane.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        prefs.put("last.job.directory", file.getParent()); // NOI18N.
+        final Path jobFile = file.getName().contains(".") ? file.toPath() : file.toPath().resolveSibling(file.getName() + ExtractionJob.FILE_EXTENSION); // NOI18N.
+        try {
+            ExtractionJob.save(ExtractionJob.toOptions(parameters), jobFile);
+        } catch (IOException ex) {
+            Logger.getLogger(getClass().getName()).log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Loads a job file and runs its export.
+     */
+    private void doRunJob() {
+        final FileChooser dialog = createJobFileChooser();
+        final File file = dialog.showOpenDialog(rootPane.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        prefs.put("last.job.directory", file.getParent()); // NOI18N.
+        try {
+            final BatchExtractToTxtParameters parameters = ExtractionJob.toParameters(ExtractionJob.load(file.toPath())).build();
+            if (parameters.getDestinationDir() != null) {
+                Files.createDirectories(parameters.getDestinationDir());
+            }
+            doExportFilesAsync(parameters);
+        } catch (IllegalArgumentException | IOException ex) {
+            Logger.getLogger(getClass().getName()).log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Do the export asynchronously.
      * @param files Files to export.
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Properties;
+import java.util.ResourceBundle;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +20,12 @@ import java.util.logging.Logger;
 public enum NetCDFExtractorConstants {
     INSTANCE;
 
+    /**
+     * The string resources of the application.
+     * <br>Unlike {@code Main}, this class does not depend on JavaFX and may be used by headless code.
+     */
+    public static final ResourceBundle I18N = ResourceBundle.getBundle("org/spc/ofp/project/netcdfextractor/strings"); // NOI18N.
+
     private Properties properties = new Properties();
 
     private NetCDFExtractorConstants() {
@@ -0,0 +1,200 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.spc.ofp.project.netcdfextractor.task.BatchExtractToTxtEngine;
+import org.spc.ofp.project.netcdfextractor.task.BatchExtractToTxtParameters;
+import org.spc.ofp.project.netcdfextractor.task.ExtractionJob;
+
+/**
+ * Runs a batch extraction without a display.
+ * <br>Usage: {@code java -cp NetCDFExtractor-j.jar org.spc.ofp.project.netcdfextractor.cli.ExtractCommand [--job=<file>] [--<option>=<value>...] <file or directory>...}
+ * <br>Options are those of {@link ExtractionJob}; options given on the command line override those of the job file and files given on the command line are added to those of the job file.
+ * <br>The JavaFX toolkit is never initialized. Statistics are printed on the standard output once the extraction is done.
+ * <br>Exit codes:
+ * <ul>
+ * <li>{@value #EXIT_SUCCESS}: the extraction succeeded;</li>
+ * <li>{@value #EXIT_FAILURE}: the extraction failed;</li>
+ * <li>{@value #EXIT_USAGE}: the command line or the job file is invalid.</li>
+ * </ul>
+ * When the process is interrupted or terminated, the extraction stops cleanly before the JVM exits with the usual status of the signal; it may then be resumed with {@code --resume}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ExtractCommand {
+
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_FAILURE = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final String JOB = "job"; // NOI18N.
+    private static final String HELP = "help"; // NOI18N.
+    private static final String VERBOSE = "verbose"; // NOI18N.
+    private static final String OPTION_PREFIX = "--"; // NOI18N.
+
+    /**
+     * How long the shutdown of the JVM waits for the extraction to stop, in seconds.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    private ExtractCommand() {
+    }
+
+    public static void main(final String... args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command.
+     * @param args The arguments.
+     * @param out Receives the statistics.
+     * @param err Receives the errors and, in verbose mode, the progress.
+     * @return The exit code.
+     */
+    public static int run(final String[] args, final PrintStream out, final PrintStream err) {
+        // Parse the command line.
+        final Map<String, String> options = new LinkedHashMap<>();
+        final List<String> files = new ArrayList<>();
+        for (int index = 0; index < args.length; index++) {
+            final String arg = args[index];
+            if (!arg.startsWith(OPTION_PREFIX)) {
+                files.add(arg);
+                continue;
+            }
+            final int equalIndex = arg.indexOf('=');
+            final String key = (equalIndex < 0) ? arg.substring(OPTION_PREFIX.length()) : arg.substring(OPTION_PREFIX.length(), equalIndex);
+            // Options without value are flags.
+            final String value = (equalIndex < 0) ? "true" : arg.substring(equalIndex + 1); // NOI18N.
+            options.put(key, value);
+        }
+        if (options.containsKey(HELP) || (args.length == 0)) {
+            printUsage(out);
+            return (args.length == 0) ? EXIT_USAGE : EXIT_SUCCESS;
+        }
+        final boolean verbose = Boolean.parseBoolean(options.remove(VERBOSE));
+        final BatchExtractToTxtParameters parameters;
+        try {
+            final Map<String, String> jobOptions = new LinkedHashMap<>();
+            final String job = options.remove(JOB);
+            if (job != null) {
+                jobOptions.putAll(ExtractionJob.load(Paths.get(job)));
+            }
+            jobOptions.putAll(options);
+            if (!files.isEmpty()) {
+                final String jobFiles = jobOptions.get(ExtractionJob.FILES);
+                final String commandFiles = String.join(File.pathSeparator, files);
+                jobOptions.put(ExtractionJob.FILES, (jobFiles == null) ? commandFiles : jobFiles + File.pathSeparator + commandFiles);
+            }
+            parameters = ExtractionJob.toParameters(jobOptions).build();
+            if (parameters.getDestinationDir() != null) {
+                Files.createDirectories(parameters.getDestinationDir());
+            }
+        } catch (IllegalArgumentException | IOException ex) {
+            err.println(ex.getMessage());
+            err.printf("Use %s%s for help.%n", OPTION_PREFIX, HELP); // NOI18N.
+            return EXIT_USAGE;
+        }
+        return extract(parameters, verbose, out, err);
+    }
+
+    /**
+     * Runs the extraction.
+     * <br>If the JVM is asked to shut down, the extraction is cancelled and the shutdown waits for it to stop, so that outputs and the checkpoint journal are left consistent.
+     * @param parameters The parameters.
+     * @param verbose If {@code true}, the file being extracted is printed out.
+     * @param out Receives the statistics.
+     * @param err Receives the errors and the progress.
+     * @return The exit code.
+     */
+    private static int extract(final BatchExtractToTxtParameters parameters, final boolean verbose, final PrintStream out, final PrintStream err) {
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Thread shutdownHook = new Thread(() -> {
+            cancelled.set(true);
+            try {
+                stopped.await(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                // Nothing to do, the JVM stops anyway.
+            }
+        }, "extract-shutdown"); // NOI18N.
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        final BatchExtractToTxtEngine.Listener listener = new BatchExtractToTxtEngine.Listener() {
+            @Override
+            public void titleChanged(final String title) {
+                if (verbose) {
+                    err.println(title);
+                }
+            }
+        };
+        final BatchExtractToTxtEngine engine = new BatchExtractToTxtEngine(parameters, listener, cancelled::get);
+        final long startTime = System.nanoTime();
+        int result = EXIT_SUCCESS;
+        try {
+            engine.call();
+        } catch (Exception ex) {
+            Logger.getLogger(ExtractCommand.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
+            result = EXIT_FAILURE;
+        } finally {
+            stopped.countDown();
+        }
+        if (cancelled.get()) {
+            err.println("Extraction cancelled."); // NOI18N.
+            return EXIT_FAILURE;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ex) {
+            // The JVM is shutting down.
+        }
+        printStatistics(out, parameters, engine, System.nanoTime() - startTime);
+        return result;
+    }
+
+    /**
+     * Prints the throughput of the extraction.
+     * @param out The output.
+     * @param parameters The parameters.
+     * @param engine The engine.
+     * @param elapsed The elapsed time, in nanoseconds.
+     */
+    private static void printStatistics(final PrintStream out, final BatchExtractToTxtParameters parameters, final BatchExtractToTxtEngine engine, final long elapsed) {
+        long bytes = 0;
+        for (final Path file : parameters.getFiles()) {
+            try {
+                bytes += Files.size(file);
+            } catch (IOException ex) {
+                // Not counted.
+            }
+        }
+        final double seconds = Math.max(elapsed, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        final long rows = engine.getRowCount();
+        out.printf("files=%d/%d rows=%d time=%.3fs rate=%.0frows/s input=%.1fMB/s%n", // NOI18N.
+                engine.getCompletedFileCount(), parameters.getFiles().size(), rows, seconds, rows / seconds, bytes / (1024d * 1024d) / seconds);
+    }
+
+    private static void printUsage(final PrintStream out) {
+        out.printf("Usage: %s [%s%s=<file>] [%s%s] [%s<option>=<value>...] <file or directory>...%n", // NOI18N.
+                ExtractCommand.class.getName(), OPTION_PREFIX, JOB, OPTION_PREFIX, VERBOSE, OPTION_PREFIX);
+        out.println("Options:"); // NOI18N.
+        ExtractionJob.OPTIONS.forEach(option -> out.printf("  %s%s%n", OPTION_PREFIX, option)); // NOI18N.
+        out.printf("Exit codes: %d success, %d failure, %d invalid arguments.%n", // NOI18N.
+                EXIT_SUCCESS, EXIT_FAILURE, EXIT_USAGE);
+    }
+}
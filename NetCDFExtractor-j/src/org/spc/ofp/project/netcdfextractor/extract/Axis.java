@@ -0,0 +1,297 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntToDoubleFunction;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+
+/**
+ * A dimension of the exported variables, along with its coordinates.
+ * <br>Each axis becomes a column of the output: time axes hold dates, other axes hold numeric coordinates (latitude, longitude, depth...) exported as {@code float}.
+ * <br>Instances are immutable.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class Axis {
+
+    /**
+     * The name of the axis, also the name of its column.
+     */
+    private final String name;
+    /**
+     * The coordinates, as read from the coordinate variable.
+     */
+    private final Array values;
+    /**
+     * The dates of a time axis, {@code null} for other axes.
+     */
+    private final Instant[] instants;
+
+    private Axis(final String name, final Array values, final Instant[] instants) {
+        this.name = name;
+        this.values = values;
+        this.instants = instants;
+    }
+
+    /**
+     * Creates a time axis.
+     * @param name The name of the axis.
+     * @param times The time coordinates, in periods since the start date.
+     * @param startDate The start date.
+     * @param periodSize The size of a time period.
+     * @param periodUnit The unit of a time period.
+     * @return An {@code Axis} instance, never {@code null}.
+     * @throws NullPointerException If any parameter is {@code null}.
+     */
+    public static Axis ofTimes(final String name, final Array times, final ZonedDateTime startDate, final int periodSize, final ChronoUnit periodUnit) throws NullPointerException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(times);
+        Objects.requireNonNull(startDate);
+        Objects.requireNonNull(periodUnit);
+        final Instant[] instants = new Instant[(int) times.getSize()];
+        for (int index = 0; index < instants.length; index++) {
+            final long time = times.getLong(index);
+            instants[index] = startDate.plus(time * periodSize, periodUnit).toInstant();
+        }
+        return new Axis(name, times, instants);
+    }
+
+    /**
+     * Creates a coordinate axis.
+     * @param name The name of the axis.
+     * @param coordinates The coordinates.
+     * @return An {@code Axis} instance, never {@code null}.
+     * @throws NullPointerException If any parameter is {@code null}.
+     */
+    public static Axis ofCoordinates(final String name, final Array coordinates) throws NullPointerException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(coordinates);
+        return new Axis(name, coordinates, null);
+    }
+
+    /**
+     * Creates a coordinate axis for a dimension that has no coordinate variable; coordinates are the indices along the dimension.
+     * @param name The name of the axis.
+     * @param length The length of the dimension.
+     * @return An {@code Axis} instance, never {@code null}.
+     * @throws NullPointerException If {@code name} is {@code null}.
+     */
+    public static Axis ofIndices(final String name, final int length) throws NullPointerException {
+        final int[] indices = new int[length];
+        for (int index = 0; index < length; index++) {
+            indices[index] = index;
+        }
+        return ofCoordinates(name, Array.factory(DataType.INT, new int[]{length}, indices));
+    }
+
+    /**
+     * Gets the name of this axis.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tests whether this axis is a time axis.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isTime() {
+        return instants != null;
+    }
+
+    /**
+     * Gets the number of coordinates.
+     * @return An {@code int} &ge; 0.
+     */
+    public int getLength() {
+        return (int) values.getSize();
+    }
+
+    /**
+     * Gets the coordinates, as read from the coordinate variable.
+     * @return An {@code Array} instance, never {@code null}.
+     */
+    public Array getValues() {
+        return values;
+    }
+
+    /**
+     * Gets the date at given index of a time axis.
+     * @param index The index.
+     * @return An {@code Instant} instance, never {@code null}.
+     * @throws IllegalStateException If this axis is not a time axis.
+     */
+    public Instant getInstant(final int index) throws IllegalStateException {
+        if (instants == null) {
+            throw new IllegalStateException(String.format("Axis %s is not a time axis.", name)); // NOI18N.
+        }
+        return instants[index];
+    }
+
+    /**
+     * Gets the coordinate at given index.
+     * @param index The index.
+     * @return A {@code float}.
+     */
+    public float getCoordinate(final int index) {
+        return values.getFloat(index);
+    }
+
+    /**
+     * Finds the indices whose coordinates are within given bounds.
+     * <br>Coordinates must be monotonic, either increasing or decreasing; indices are found by binary search.
+     * @param min The lower bound (inclusive).
+     * @param max The upper bound (inclusive).
+     * @return A {@code Range} instance, {@code null} if no coordinate is within the bounds.
+     */
+    public Range findRange(final double min, final double max) {
+        return findRange(values::getDouble, getLength(), min, max);
+    }
+
+    /**
+     * Finds the indices whose dates are within given bounds.
+     * <br>Dates must be monotonic, either increasing or decreasing; indices are found by binary search.
+     * @param min The lower bound (inclusive), {@code null} if there is none.
+     * @param max The upper bound (inclusive), {@code null} if there is none.
+     * @return A {@code Range} instance, {@code null} if no date is within the bounds.
+     * @throws IllegalStateException If this axis is not a time axis.
+     */
+    public Range findRange(final Instant min, final Instant max) throws IllegalStateException {
+        if (instants == null) {
+            throw new IllegalStateException(String.format("Axis %s is not a time axis.", name)); // NOI18N.
+        }
+        final double minMillis = (min == null) ? Double.NEGATIVE_INFINITY : min.toEpochMilli();
+        final double maxMillis = (max == null) ? Double.POSITIVE_INFINITY : max.toEpochMilli();
+        return findRange(index -> instants[index].toEpochMilli(), instants.length, minMillis, maxMillis);
+    }
+
+    /**
+     * Finds the indices whose longitudes are within given bounds, going east from the western bound to the eastern bound.
+     * <br>Bounds and coordinates may use either the [-180, 180] or the [0, 360] convention; if the western bound is greater than the eastern bound, the interval crosses the antimeridian.
+     * <br>When the interval crosses the seam of the grid, two ranges are returned: the western part first, then the eastern part.
+     * @param west The western bound (inclusive), in degrees.
+     * @param east The eastern bound (inclusive), in degrees.
+     * @return A {@code List<Range>} instance, never {@code null}; empty if no longitude is within the bounds.
+     */
+    public List<Range> findLongitudeRanges(final double west, final double east) {
+        final int length = getLength();
+        double width = east - west;
+        if (width < 0) {
+            width += 360;
+        }
+        if (length == 0) {
+            return Collections.emptyList();
+        }
+        if (width >= 360) {
+            return Collections.singletonList(toRange(new int[]{0, length}, length, false));
+        }
+        // Work on increasing coordinates, the interval starts within the 360 degrees that follow the first coordinate.
+        final boolean decreasing = isDecreasing(values::getDouble, length);
+        final IntToDoubleFunction coordinates = decreasing ? index -> values.getDouble(length - 1 - index) : values::getDouble;
+        final double base = coordinates.applyAsDouble(0);
+        final double lower = base + floorMod(west - base, 360);
+        final double upper = lower + width;
+        final List<Range> result = new ArrayList<>(2);
+        final int[] westPart = search(coordinates, length, lower, upper);
+        if (westPart != null) {
+            result.add(toRange(westPart, length, decreasing));
+        }
+        // The interval wraps past the end of the grid.
+        if (upper >= base + 360) {
+            final int[] eastPart = search(coordinates, length, Double.NEGATIVE_INFINITY, upper - 360);
+            if (eastPart != null) {
+                result.add(toRange(eastPart, length, decreasing));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the indices whose keys are within given bounds.
+     * @param keys The keys, monotonic.
+     * @param length The number of keys.
+     * @param min The lower bound (inclusive).
+     * @param max The upper bound (inclusive).
+     * @return A {@code Range} instance, {@code null} if no key is within the bounds.
+     */
+    private static Range findRange(final IntToDoubleFunction keys, final int length, final double min, final double max) {
+        final boolean decreasing = isDecreasing(keys, length);
+        final IntToDoubleFunction increasingKeys = decreasing ? index -> keys.applyAsDouble(length - 1 - index) : keys;
+        final int[] bounds = search(increasingKeys, length, min, max);
+        return (bounds == null) ? null : toRange(bounds, length, decreasing);
+    }
+
+    private static boolean isDecreasing(final IntToDoubleFunction keys, final int length) {
+        return length > 1 && keys.applyAsDouble(0) > keys.applyAsDouble(length - 1);
+    }
+
+    /**
+     * Finds by binary search the indices of increasing keys that are within given bounds.
+     * @param keys The keys, increasing.
+     * @param length The number of keys.
+     * @param min The lower bound (inclusive).
+     * @param max The upper bound (inclusive).
+     * @return An {@code int[]} holding the first (inclusive) and last (exclusive) indices, {@code null} if no key is within the bounds.
+     */
+    private static int[] search(final IntToDoubleFunction keys, final int length, final double min, final double max) {
+        final int from = lowerBound(keys, length, min, false);
+        final int to = lowerBound(keys, length, max, true);
+        return (from < to) ? new int[]{from, to} : null;
+    }
+
+    /**
+     * Gets the index of the first key that is greater than (or equal to, if not {@code strict}) given value.
+     * @param keys The keys, increasing.
+     * @param length The number of keys.
+     * @param value The value.
+     * @param strict If {@code true}, keys equal to the value are skipped.
+     * @return An {@code int} in [0, length].
+     */
+    private static int lowerBound(final IntToDoubleFunction keys, final int length, final double value, final boolean strict) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final double key = keys.applyAsDouble(middle);
+            if (key < value || (strict && key == value)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Converts indices found on increasing keys to a range of this axis.
+     * @param bounds The first (inclusive) and last (exclusive) indices.
+     * @param length The number of keys.
+     * @param decreasing {@code True} if the keys of this axis are decreasing.
+     * @return A {@code Range} instance, never {@code null}.
+     */
+    private static Range toRange(final int[] bounds, final int length, final boolean decreasing) {
+        try {
+            return decreasing ? new Range(length - bounds[1], length - 1 - bounds[0]) : new Range(bounds[0], bounds[1] - 1);
+        } catch (InvalidRangeException ex) {
+            // Should never happen, bounds are ordered.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static double floorMod(final double value, final double modulus) {
+        return value - modulus * Math.floor(value / modulus);
+    }
+}
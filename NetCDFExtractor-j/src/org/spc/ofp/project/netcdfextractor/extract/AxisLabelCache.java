@@ -0,0 +1,173 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import ucar.ma2.Array;
+
+/**
+ * Keeps the most recently used axis labels so that files sharing the same grid do not encode them again.
+ * <br>Axes are identified by their coordinate values and by the settings used to encode them.
+ * <br>This class is thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class AxisLabelCache {
+
+    /**
+     * The default number of axes kept in the cache, is equal to {@value}.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The cache, in access order.
+     */
+    private final Map<Key, AxisLabels> cache;
+
+    /**
+     * Creates a new instance with the default capacity.
+     */
+    public AxisLabelCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param capacity The number of axes kept in the cache.
+     */
+    public AxisLabelCache(final int capacity) {
+        final int maxSize = Math.max(1, capacity);
+        cache = new LinkedHashMap<Key, AxisLabels>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, AxisLabels> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the labels of a time axis.
+     * @param times The time coordinates, in periods since the start date.
+     * @param startDate The start date.
+     * @param periodSize The size of a time period.
+     * @param periodUnit The unit of a time period.
+     * @param dateTimeFormatter The date time formatter.
+     * @return An {@code AxisLabels} instance, never {@code null}.
+     * @throws NullPointerException If any parameter is {@code null}.
+     * @see AxisLabels#ofTimes(ucar.ma2.Array, java.time.ZonedDateTime, int, java.time.temporal.ChronoUnit, java.time.format.DateTimeFormatter)
+     */
+    public AxisLabels getTimeLabels(final Array times, final ZonedDateTime startDate, final int periodSize, final ChronoUnit periodUnit, final DateTimeFormatter dateTimeFormatter) throws NullPointerException {
+        Objects.requireNonNull(times);
+        final long[] values = new long[(int) times.getSize()];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = times.getLong(index);
+        }
+        // DateTimeFormatter does not override equals(), formatters are compared by identity.
+        final Key key = new Key(values, startDate, periodSize, periodUnit, new Identity(dateTimeFormatter));
+        return get(key, () -> AxisLabels.ofTimes(times, startDate, periodSize, periodUnit, dateTimeFormatter));
+    }
+
+    /**
+     * Gets the labels of a coordinate axis.
+     * @param coordinates The coordinates.
+     * @return An {@code AxisLabels} instance, never {@code null}.
+     * @throws NullPointerException If {@code coordinates} is {@code null}.
+     * @see AxisLabels#ofCoordinates(ucar.ma2.Array)
+     */
+    public AxisLabels getCoordinateLabels(final Array coordinates) throws NullPointerException {
+        Objects.requireNonNull(coordinates);
+        final long[] values = new long[(int) coordinates.getSize()];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = Float.floatToIntBits(coordinates.getFloat(index));
+        }
+        final Key key = new Key(values, Float.TYPE);
+        return get(key, () -> AxisLabels.ofCoordinates(coordinates));
+    }
+
+    /**
+     * Gets labels from the cache or encodes them.
+     * <br>Labels are encoded outside of the lock; if two threads encode the same axis, the first one to finish wins.
+     * @param key The key.
+     * @param encoder Encodes the labels.
+     * @return An {@code AxisLabels} instance, never {@code null}.
+     */
+    private AxisLabels get(final Key key, final Supplier<AxisLabels> encoder) {
+        synchronized (cache) {
+            final AxisLabels result = cache.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
+        final AxisLabels labels = encoder.get();
+        synchronized (cache) {
+            final AxisLabels result = cache.putIfAbsent(key, labels);
+            return (result == null) ? labels : result;
+        }
+    }
+
+    /**
+     * Identifies an axis.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class Key {
+
+        private final long[] values;
+        private final Object[] settings;
+        private final int hash;
+
+        Key(final long[] values, final Object... settings) {
+            this.values = values;
+            this.settings = settings;
+            this.hash = 31 * Arrays.hashCode(values) + Arrays.hashCode(settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(values, other.values) && Arrays.equals(settings, other.settings);
+        }
+    }
+
+    /**
+     * Compares an object by identity.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class Identity {
+
+        private final Object value;
+
+        Identity(final Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return (obj instanceof Identity) && ((Identity) obj).value == value;
+        }
+    }
+}
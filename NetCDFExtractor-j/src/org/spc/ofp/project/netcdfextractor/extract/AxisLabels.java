@@ -0,0 +1,95 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import ucar.ma2.Array;
+
+/**
+ * The encoded labels of an axis, one per coordinate.
+ * <br>Labels are encoded once per axis and are then copied into rows by index.
+ * <br>Instances are immutable.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class AxisLabels {
+
+    /**
+     * The labels.
+     */
+    private final byte[][] labels;
+
+    /**
+     * Creates a new instance.
+     * @param labels The labels.
+     */
+    private AxisLabels(final byte[][] labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Encodes time labels.
+     * @param times The time coordinates, in periods since the start date.
+     * @param startDate The start date.
+     * @param periodSize The size of a time period.
+     * @param periodUnit The unit of a time period.
+     * @param dateTimeFormatter The date time formatter.
+     * @return An {@code AxisLabels} instance, never {@code null}.
+     * @throws NullPointerException If any parameter is {@code null}.
+     */
+    public static AxisLabels ofTimes(final Array times, final ZonedDateTime startDate, final int periodSize, final ChronoUnit periodUnit, final DateTimeFormatter dateTimeFormatter) throws NullPointerException {
+        Objects.requireNonNull(times);
+        Objects.requireNonNull(startDate);
+        Objects.requireNonNull(periodUnit);
+        Objects.requireNonNull(dateTimeFormatter);
+        final byte[][] labels = new byte[(int) times.getSize()][];
+        for (int index = 0; index < labels.length; index++) {
+            final long time = times.getLong(index);
+            final ZonedDateTime utc = startDate.plus(time * periodSize, periodUnit);
+            labels[index] = utc.format(dateTimeFormatter).getBytes(StandardCharsets.UTF_8);
+        }
+        return new AxisLabels(labels);
+    }
+
+    /**
+     * Encodes coordinate labels, coordinates are printed out as {@code float}.
+     * @param coordinates The coordinates.
+     * @return An {@code AxisLabels} instance, never {@code null}.
+     * @throws NullPointerException If {@code coordinates} is {@code null}.
+     */
+    public static AxisLabels ofCoordinates(final Array coordinates) throws NullPointerException {
+        Objects.requireNonNull(coordinates);
+        final byte[][] labels = new byte[(int) coordinates.getSize()][];
+        final RowBuffer buffer = new RowBuffer(32);
+        for (int index = 0; index < labels.length; index++) {
+            buffer.clear();
+            buffer.append(coordinates.getFloat(index));
+            labels[index] = buffer.toByteArray();
+        }
+        return new AxisLabels(labels);
+    }
+
+    /**
+     * Gets the number of labels.
+     * @return An {@code int} &ge; 0.
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Gets the label at given index.
+     * <br>The returned array must not be modified.
+     * @param index The index.
+     * @return A {@code byte[]} instance, never {@code null}.
+     */
+    byte[] get(final int index) {
+        return labels[index];
+    }
+}
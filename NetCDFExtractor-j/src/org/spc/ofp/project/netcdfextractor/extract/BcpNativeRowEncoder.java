@@ -0,0 +1,166 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import ucar.ma2.DataType;
+
+/**
+ * Encodes rows of slabs in the SQL Server {@code bcp} native data format.
+ * <br>Columns are: time axes as {@code datetime2(7)} in UTC, other axes as {@code real} and each variable as {@code float}; invalid values are {@code NULL}.
+ * <br>Each field has a 1-byte length prefix ({@code 0xFF} for {@code NULL}) followed by the value in little-endian order.
+ * <br>The data file is described by a format file, see {@link #writeFormatFile(java.nio.file.Path, org.spc.ofp.project.netcdfextractor.extract.Axis[], java.lang.String[])}; it can then be loaded with {@code bcp table in file -f format} or {@code BULK INSERT}.
+ * <br>Instances are immutable and may be shared by all threads extracting a given file.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class BcpNativeRowEncoder extends RowEncoder {
+
+    /**
+     * Version of the generated format files.
+     */
+    private static final String FORMAT_FILE_VERSION = "11.0"; // NOI18N.
+
+    /**
+     * Line separator of the generated format files.
+     */
+    private static final String FORMAT_FILE_LINE_SEPARATOR = "\r\n"; // NOI18N.
+
+    /**
+     * Origin of {@code datetime2} dates.
+     */
+    private static final LocalDate DATETIME2_EPOCH = LocalDate.of(1, 1, 1);
+
+    /**
+     * Prefix of a {@code NULL} field.
+     */
+    private static final int NULL_PREFIX = 0xFF;
+
+    /**
+     * Whether each axis is a time axis.
+     */
+    private final boolean[] timeAxes;
+    /**
+     * Values of each axis: for time axes, the 5 low-order bytes are the time of the day in 100 ns units and the 3 high-order bytes are the days since 0001-01-01; {@code float} bits otherwise.
+     */
+    private final long[][] axisValues;
+
+    /**
+     * Creates a new instance.
+     * @param axes The axes.
+     * @param dataTypes The data type of each variable.
+     * @param fillValues The fill value of each variable.
+     * @param missingValues The missing value of each variable.
+     * @param scaleFactors The scale factor of each variable.
+     * @param addOffsets The add offset of each variable.
+     * @param validMins The minimum valid value of each variable.
+     * @param validMaxs The maximum valid value of each variable.
+     * @throws NullPointerException If any parameter is {@code null}.
+     */
+    public BcpNativeRowEncoder(final Axis[] axes,
+            final DataType[] dataTypes, final Number[] fillValues, final Number[] missingValues, final Number[] scaleFactors, final Number[] addOffsets,
+            final Number[] validMins, final Number[] validMaxs) throws NullPointerException {
+        super(dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+        Objects.requireNonNull(axes);
+        timeAxes = new boolean[axes.length];
+        axisValues = new long[axes.length][];
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            final Axis axis = axes[axisIndex];
+            timeAxes[axisIndex] = axis.isTime();
+            axisValues[axisIndex] = new long[axis.getLength()];
+            for (int index = 0; index < axisValues[axisIndex].length; index++) {
+                if (axis.isTime()) {
+                    final OffsetDateTime utc = axis.getInstant(index).atOffset(ZoneOffset.UTC);
+                    final long ticks = utc.toLocalTime().toNanoOfDay() / 100;
+                    final long days = utc.toLocalDate().toEpochDay() - DATETIME2_EPOCH.toEpochDay();
+                    axisValues[axisIndex][index] = (days << 40) | ticks;
+                } else {
+                    axisValues[axisIndex][index] = Float.floatToIntBits(axis.getCoordinate(index));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the non-XML format file that describes data files produced by this encoder.
+     * <br>Server columns are expected in the same order as the fields of the data file.
+     * @param file The format file.
+     * @param axes The axes.
+     * @param variableNames The names of the variable columns.
+     * @throws IOException In case of IO error.
+     */
+    public static void writeFormatFile(final Path file, final Axis[] axes, final String[] variableNames) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(FORMAT_FILE_VERSION).append(FORMAT_FILE_LINE_SEPARATOR);
+        builder.append(axes.length + variableNames.length).append(FORMAT_FILE_LINE_SEPARATOR);
+        int column = 0;
+        for (final Axis axis : axes) {
+            if (axis.isTime()) {
+                appendFormatField(builder, ++column, "SQLDATETIME2", 8, axis.getName()); // NOI18N.
+            } else {
+                appendFormatField(builder, ++column, "SQLFLT4", Float.BYTES, axis.getName()); // NOI18N.
+            }
+        }
+        for (final String variableName : variableNames) {
+            appendFormatField(builder, ++column, "SQLFLT8", Double.BYTES, variableName); // NOI18N.
+        }
+        Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the description of a field to a format file.
+     * @param builder The format file content.
+     * @param column The field order, also the server column order.
+     * @param type The host file data type.
+     * @param length The host file data length.
+     * @param name The server column name.
+     */
+    private static void appendFormatField(final StringBuilder builder, final int column, final String type, final int length, final String name) {
+        final String line = String.format("%d\t%s\t1\t%d\t\"\"\t%d\t%s\t\"\"", column, type, length, column, name); // NOI18N.
+        builder.append(line).append(FORMAT_FILE_LINE_SEPARATOR);
+    }
+
+    @Override
+    protected void encodeRow(final DecodedColumn[] values, final int row, final Odometer position, final RowBuffer buffer) {
+        // Axes.
+        for (int axis = 0; axis < axisValues.length; axis++) {
+            final long value = axisValues[axis][position.get(axis)];
+            final int length = timeAxes[axis] ? 8 : Float.BYTES;
+            buffer.appendLittleEndian(length, 1);
+            buffer.appendLittleEndian(value, length);
+        }
+        // Variables.
+        for (final DecodedColumn column : values) {
+            if (column.isValid(row)) {
+                appendFloat8(column.getDouble(row), buffer);
+            } else {
+                buffer.appendLittleEndian(NULL_PREFIX, 1);
+            }
+        }
+    }
+
+    /**
+     * Appends a {@code float} field.
+     * <br>SQL Server does not store infinities nor {@code NaN}, such values are {@code NULL}.
+     * @param value The value.
+     * @param buffer The target buffer.
+     */
+    private static void appendFloat8(final double value, final RowBuffer buffer) {
+        if (Double.isFinite(value)) {
+            buffer.appendLittleEndian(Double.BYTES, 1);
+            buffer.appendLittleEndian(Double.doubleToLongBits(value), Double.BYTES);
+        } else {
+            buffer.appendLittleEndian(NULL_PREFIX, 1);
+        }
+    }
+}
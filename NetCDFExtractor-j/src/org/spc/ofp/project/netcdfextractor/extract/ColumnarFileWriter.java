@@ -0,0 +1,48 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.IOException;
+
+/**
+ * Writes rows of slabs into a columnar file.
+ * <br>Rows of one or more source files are written between {@link #begin(org.spc.ofp.project.netcdfextractor.extract.Axis[], java.lang.String[], org.spc.ofp.project.netcdfextractor.extract.ValueDecoder) begin()} and {@link #end()}; the file is completed by {@link #finish()}.
+ * <br>Columns are: the coordinate along each axis and then the value of each variable.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public interface ColumnarFileWriter {
+
+    /**
+     * Starts the rows of a source file.
+     * @param axes The axes.
+     * @param variableNames The names of the variables.
+     * @param decoder Decodes the values of the variables.
+     * @throws NullPointerException If any parameter is {@code null}.
+     * @throws IOException If the columns differ from the columns of the previous source files.
+     */
+    void begin(final Axis[] axes, final String[] variableNames, final ValueDecoder decoder) throws NullPointerException, IOException;
+
+    /**
+     * Writes a range of rows from a slab.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @throws IOException In case of IO error.
+     */
+    void write(final Slab slab, final int from, final int to) throws IOException;
+
+    /**
+     * Ends the rows of a source file.
+     * @throws IOException In case of IO error.
+     */
+    void end() throws IOException;
+
+    /**
+     * Completes the file; the output stream is not closed.
+     * @throws IOException In case of IO error.
+     */
+    void finish() throws IOException;
+}
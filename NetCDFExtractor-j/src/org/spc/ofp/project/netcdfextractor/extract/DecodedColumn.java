@@ -0,0 +1,109 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+/**
+ * The decoded values of a variable over a range of rows, along with whether each value is valid.
+ * <br>Values of integer variables whose scale factor and add offset are integers are decoded as {@code long}, other values as {@code double}.
+ * <br>Buffers are reused from one range to the next, they only grow.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ * @see ValueDecoder
+ */
+public final class DecodedColumn {
+
+    private long[] longs = new long[0];
+    private double[] doubles = new double[0];
+    private boolean[] validity = new boolean[0];
+    private boolean integral;
+    private int size;
+
+    /**
+     * Prepares this column to receive {@code long} values.
+     * @param size The number of rows.
+     * @return The values, at least {@code size} long.
+     */
+    long[] prepareLongs(final int size) {
+        prepare(size, true);
+        if (longs.length < size) {
+            longs = new long[size];
+        }
+        return longs;
+    }
+
+    /**
+     * Prepares this column to receive {@code double} values.
+     * @param size The number of rows.
+     * @return The values, at least {@code size} long.
+     */
+    double[] prepareDoubles(final int size) {
+        prepare(size, false);
+        if (doubles.length < size) {
+            doubles = new double[size];
+        }
+        return doubles;
+    }
+
+    private void prepare(final int size, final boolean integral) {
+        this.size = size;
+        this.integral = integral;
+        if (validity.length < size) {
+            validity = new boolean[size];
+        }
+    }
+
+    /**
+     * Gets the validity of each row, set by the decoder after a call to {@code prepareLongs()} or {@code prepareDoubles()}.
+     * @return The validity, at least {@code size()} long.
+     */
+    boolean[] getValidity() {
+        return validity;
+    }
+
+    /**
+     * Gets the number of rows.
+     * @return An {@code int} &ge; 0.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tests whether values are decoded as {@code long}.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * Tests whether the value of a row is valid.
+     * @param row The index of the row in the range.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isValid(final int row) {
+        return validity[row];
+    }
+
+    /**
+     * Gets the value of a row of a column whose values are decoded as {@code long}.
+     * @param row The index of the row in the range.
+     * @return A {@code long}.
+     * @see #isIntegral()
+     */
+    public long getLong(final int row) {
+        return longs[row];
+    }
+
+    /**
+     * Gets the value of a row.
+     * @param row The index of the row in the range.
+     * @return A {@code double}.
+     */
+    public double getDouble(final int row) {
+        return integral ? longs[row] : doubles[row];
+    }
+}
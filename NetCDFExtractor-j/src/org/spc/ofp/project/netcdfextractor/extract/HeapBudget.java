@@ -0,0 +1,147 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The share of the heap that an extraction may use.
+ * <br>Slab sizes are derived from this budget, so that the slabs held in memory at any time by all workers fit in it.
+ * <br>The budget also watches the tenured pools of the heap: once the memory still in use after a collection exceeds {@link #PRESSURE_THRESHOLD} of a pool, the heap is considered under pressure and reads ahead should pause until the slabs already read are consumed.
+ * <br>Instances are thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class HeapBudget {
+
+    /**
+     * Fraction of the maximum heap size used by default, is equal to {@value}.
+     */
+    public static final double DEFAULT_HEAP_FRACTION = 0.5;
+
+    /**
+     * Fraction of a tenured pool above which the heap is under pressure, is equal to {@value}.
+     */
+    public static final double PRESSURE_THRESHOLD = 0.75;
+
+    /**
+     * Gets the default budget, computed from the maximum heap size.
+     * @return A {@code long} &gt; 0.
+     */
+    public static long defaultSize() {
+        return Math.max(SlabReader.MIN_SLAB_SIZE, (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION));
+    }
+
+    /**
+     * The budget in bytes.
+     */
+    private final long size;
+    /**
+     * The tenured pools of the heap, those that support usage thresholds.
+     */
+    private final List<PoolThreshold> pools;
+
+    /**
+     * Creates a new instance.
+     * <br>The pressure threshold of each tenured pool is {@link #PRESSURE_THRESHOLD} of its maximum size.
+     * It becomes the usage threshold of the pool only if the pool has none, since thresholds are shared by the whole JVM and may have been set by others.
+     * @param size The budget, in bytes.
+     * <br>If {@code size} &le; 0, the default budget is used instead; the budget never exceeds the maximum heap size.
+     */
+    public HeapBudget(final long size) {
+        this.size = Math.min(Runtime.getRuntime().maxMemory(), (size <= 0) ? defaultSize() : size);
+        pools = ManagementFactory.getMemoryPoolMXBeans()
+                .stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported())
+                .filter(pool -> pool.getUsage().getMax() > 0)
+                .map(PoolThreshold::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the budget.
+     * @return A {@code long} &gt; 0, in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the maximum size of a slab.
+     * <br>The budget is first shared between workers, then the reserved memory of each worker is taken off and the remainder is split between the slabs held at once.
+     * <br>A slab is never larger than the data to read, nor smaller than {@link SlabReader#MIN_SLAB_SIZE}.
+     * <br>The slab reader further caps the number of cells in a slab to {@link SlabReader#MAX_SLAB_CELLS}.
+     * @param workerCount The number of files extracted concurrently.
+     * @param slabCount The number of slabs, or of their encoded copies, that a worker holds at once.
+     * @param reserved Memory used by each worker for other purposes (output buffers, row groups...), in bytes.
+     * @param dataSize The size of the data to read, in bytes.
+     * @return A {@code long} &ge; {@link SlabReader#MIN_SLAB_SIZE}, in bytes.
+     */
+    public long getSlabSize(final int workerCount, final int slabCount, final long reserved, final long dataSize) {
+        final long workerSize = size / Math.max(1, workerCount) - Math.max(0, reserved);
+        final long slabSize = Math.min(workerSize / Math.max(1, slabCount), dataSize);
+        return Math.max(SlabReader.MIN_SLAB_SIZE, slabSize);
+    }
+
+    /**
+     * Tests whether the heap is under pressure.
+     * <br>For pools that support it, the usage after the last collection is tested, so that garbage waiting to be collected does not count; the current usage is tested as well, since some collectors do not update the usage after a collection on every cycle.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isUnderPressure() {
+        return pools.stream()
+                .anyMatch(PoolThreshold::isUnderPressure);
+    }
+
+    /**
+     * The pressure threshold of a tenured pool.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class PoolThreshold {
+
+        private final MemoryPoolMXBean pool;
+        /**
+         * The threshold, in bytes.
+         */
+        private final long threshold;
+        /**
+         * {@code True} if the threshold is also the usage threshold of the pool, in which case the pool tracks when it is exceeded.
+         */
+        private final boolean shared;
+
+        PoolThreshold(final MemoryPoolMXBean pool) {
+            this.pool = pool;
+            threshold = (long) (pool.getUsage().getMax() * PRESSURE_THRESHOLD);
+            final boolean collection = pool.isCollectionUsageThresholdSupported();
+            final long current = collection ? pool.getCollectionUsageThreshold() : pool.getUsageThreshold();
+            shared = (current == 0);
+            if (shared && collection) {
+                pool.setCollectionUsageThreshold(threshold);
+            } else if (shared) {
+                pool.setUsageThreshold(threshold);
+            }
+        }
+
+        boolean isUnderPressure() {
+            final long used = pool.getUsage().getUsed();
+            if (pool.isCollectionUsageThresholdSupported()) {
+                final boolean exceeded;
+                if (shared) {
+                    exceeded = pool.isCollectionUsageThresholdExceeded();
+                } else {
+                    final MemoryUsage collectionUsage = pool.getCollectionUsage();
+                    exceeded = collectionUsage != null && collectionUsage.getUsed() >= threshold;
+                }
+                return exceeded && used >= threshold;
+            }
+            return shared ? pool.isUsageThresholdExceeded() : used >= threshold;
+        }
+    }
+}
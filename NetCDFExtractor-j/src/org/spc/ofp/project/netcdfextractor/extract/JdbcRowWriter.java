@@ -0,0 +1,388 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import ucar.ma2.Section;
+
+/**
+ * Inserts rows of slabs into a database table using batched JDBC statements.
+ * <br>Rows are inserted through several connections; each range of rows is split in contiguous partitions, one per connection, that are inserted concurrently.
+ * <br>Each connection runs a single transaction that is committed by {@link #commit()}; if the writer is closed before being committed, all transactions are rolled back.
+ * <br>Transactions are committed one after the other, so a failure while committing may leave some partitions of the rows in the table; loading the same rows again after {@link #deleteRows(java.util.List) deleting them} does not duplicate them.
+ * <br>The names of the table and of the columns are quoted, they are case-sensitive.
+ * <br>Columns are: time axes as UTC timestamps, other axes as {@code REAL} and each variable as {@code DOUBLE}; invalid values are {@code NULL}.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class JdbcRowWriter implements AutoCloseable {
+
+    /**
+     * The connections.
+     */
+    private final List<Connection> connections = new ArrayList<>();
+    /**
+     * The insert statement of each connection.
+     */
+    private final List<PreparedStatement> statements = new ArrayList<>();
+    /**
+     * The decoded values of each variable, for each connection.
+     */
+    private final List<DecodedColumn[]> columns = new ArrayList<>();
+    /**
+     * Runs the inserts of each connection, {@code null} if there is a single connection.
+     */
+    private final ExecutorService executor;
+    /**
+     * Number of rows sent to the database at once.
+     */
+    private final int batchSize;
+    /**
+     * Decodes the values of the variables.
+     */
+    private final ValueDecoder decoder;
+    /**
+     * Values of each time axis, {@code null} for other axes.
+     */
+    private final Timestamp[][] timestamps;
+    /**
+     * Values of each axis other than time axes, {@code null} for time axes.
+     */
+    private final float[][] coordinates;
+    /**
+     * The quoted name of the table.
+     */
+    private final String quotedTable;
+    /**
+     * The quoted name of each column, axes first.
+     */
+    private final String[] quotedColumns;
+    private boolean committed = false;
+
+    /**
+     * Creates a new instance and opens its connections.
+     * @param url The JDBC URL of the database.
+     * @param user The user, may be {@code null}.
+     * @param password The password, may be {@code null}.
+     * @param table The name of the table, which may be qualified by a schema, each part being separated by a dot.
+     * @param columnNames The names of the columns, axes first.
+     * @param connectionCount The number of connections.
+     * @param batchSize The number of rows sent to the database at once.
+     * @param axes The axes.
+     * @param decoder Decodes the values of the variables.
+     * @throws NullPointerException If any parameter other than {@code user} and {@code password} is {@code null}.
+     * @throws SQLException If a connection cannot be opened or if the insert statement cannot be prepared.
+     */
+    public JdbcRowWriter(final String url, final String user, final String password, final String table, final String[] columnNames,
+            final int connectionCount, final int batchSize,
+            final Axis[] axes, final ValueDecoder decoder) throws NullPointerException, SQLException {
+        Objects.requireNonNull(url);
+        Objects.requireNonNull(table);
+        Objects.requireNonNull(columnNames);
+        Objects.requireNonNull(axes);
+        Objects.requireNonNull(decoder);
+        this.batchSize = Math.max(1, batchSize);
+        this.decoder = decoder;
+        timestamps = new Timestamp[axes.length][];
+        coordinates = new float[axes.length][];
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            final Axis axis = axes[axisIndex];
+            if (axis.isTime()) {
+                timestamps[axisIndex] = new Timestamp[axis.getLength()];
+                for (int index = 0; index < axis.getLength(); index++) {
+                    timestamps[axisIndex][index] = Timestamp.from(axis.getInstant(index));
+                }
+            } else {
+                coordinates[axisIndex] = new float[axis.getLength()];
+                for (int index = 0; index < axis.getLength(); index++) {
+                    coordinates[axisIndex][index] = axis.getCoordinate(index);
+                }
+            }
+        }
+        final int count = Math.max(1, connectionCount);
+        try {
+            for (int index = 0; index < count; index++) {
+                final Connection connection = DriverManager.getConnection(url, user, password);
+                connections.add(connection);
+                connection.setAutoCommit(false);
+            }
+            final String quote = getIdentifierQuote(connections.get(0).getMetaData());
+            quotedTable = Arrays.stream(table.split("\\.")) // NOI18N.
+                    .map(name -> quote(name, quote))
+                    .collect(Collectors.joining(".")); // NOI18N.
+            quotedColumns = Arrays.stream(columnNames)
+                    .map(name -> quote(name, quote))
+                    .toArray(String[]::new);
+            final String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", quotedTable, // NOI18N.
+                    String.join(", ", quotedColumns), // NOI18N.
+                    String.join(", ", Collections.nCopies(columnNames.length, "?"))); // NOI18N.
+            for (final Connection connection : connections) {
+                statements.add(connection.prepareStatement(sql));
+                columns.add(decoder.createColumns());
+            }
+        } catch (SQLException ex) {
+            try {
+                closeAll();
+            } catch (SQLException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+        if (count > 1) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(count, runnable -> {
+                final Thread thread = new Thread(runnable, String.format("jdbc-writer-%d", threadCount.incrementAndGet())); // NOI18N.
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Gets the string used to quote identifiers.
+     * @param metaData The meta data of the database.
+     * @return A {@code String} instance, never {@code null}; empty if the database does not quote identifiers.
+     * @throws SQLException In case of database error.
+     */
+    private static String getIdentifierQuote(final DatabaseMetaData metaData) throws SQLException {
+        final String result = metaData.getIdentifierQuoteString();
+        return (result == null) ? "" : result.trim(); // NOI18N.
+    }
+
+    /**
+     * Quotes an identifier, quotes within the identifier are doubled.
+     * @param name The identifier.
+     * @param quote The string used to quote identifiers, may be empty.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    private static String quote(final String name, final String quote) {
+        if (quote.isEmpty()) {
+            return name;
+        }
+        return quote + name.replace(quote, quote + quote) + quote;
+    }
+
+    /**
+     * Deletes the rows within sections of the axes and commits at once, so that loading these rows again does not duplicate them.
+     * <br>Rows are deleted if the value of each of their axes is within the values of the section along this axis.
+     * <br>The deletion is not part of the transactions that insert rows, so that these never wait for it; if the rows are not inserted again, they are missing until the next load.
+     * @param sections The sections.
+     * @throws NullPointerException If {@code sections} is {@code null}.
+     * @throws SQLException In case of database error.
+     */
+    public void deleteRows(final List<Section> sections) throws NullPointerException, SQLException {
+        Objects.requireNonNull(sections);
+        final String condition = Arrays.stream(quotedColumns, 0, timestamps.length)
+                .map(column -> String.format("%1$s >= ? AND %1$s <= ?", column)) // NOI18N.
+                .collect(Collectors.joining(" AND ")); // NOI18N.
+        final String sql = condition.isEmpty() ? String.format("DELETE FROM %s", quotedTable) : String.format("DELETE FROM %s WHERE %s", quotedTable, condition); // NOI18N.
+        final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC")); // NOI18N.
+        final Connection connection = connections.get(0);
+        try (final PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (final Section section : sections) {
+                for (int axis = 0; axis < timestamps.length; axis++) {
+                    final int first = section.getOrigin(axis);
+                    final int last = first + section.getShape(axis) - 1;
+                    if (timestamps[axis] != null) {
+                        Timestamp min = timestamps[axis][first];
+                        Timestamp max = timestamps[axis][first];
+                        for (int index = first + 1; index <= last; index++) {
+                            final Timestamp value = timestamps[axis][index];
+                            min = value.before(min) ? value : min;
+                            max = value.after(max) ? value : max;
+                        }
+                        statement.setTimestamp(2 * axis + 1, min, utc);
+                        statement.setTimestamp(2 * axis + 2, max, utc);
+                    } else {
+                        float min = Float.POSITIVE_INFINITY;
+                        float max = Float.NEGATIVE_INFINITY;
+                        for (int index = first; index <= last; index++) {
+                            min = Math.min(min, coordinates[axis][index]);
+                            max = Math.max(max, coordinates[axis][index]);
+                        }
+                        statement.setFloat(2 * axis + 1, min);
+                        statement.setFloat(2 * axis + 2, max);
+                    }
+                }
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                ex.addSuppressed(rollbackEx);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Inserts a range of rows from a slab; the range is split between all connections.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @throws SQLException In case of database error.
+     * @throws InterruptedException If the current thread was interrupted while waiting for the inserts.
+     */
+    public void write(final Slab slab, final int from, final int to) throws SQLException, InterruptedException {
+        if (executor == null) {
+            insertRows(statements.get(0), columns.get(0), slab, from, to);
+            return;
+        }
+        final int count = statements.size();
+        final int partitionSize = (to - from + count - 1) / count;
+        final List<Future<?>> futures = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            final PreparedStatement statement = statements.get(index);
+            final DecodedColumn[] values = columns.get(index);
+            final int start = Math.min(to, from + index * partitionSize);
+            final int end = Math.min(to, start + partitionSize);
+            if (start < end) {
+                futures.add(executor.submit(() -> {
+                    insertRows(statement, values, slab, start, end);
+                    return null;
+                }));
+            }
+        }
+        try {
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            throw (cause instanceof SQLException) ? (SQLException) cause : new SQLException(cause);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Inserts a range of rows from a slab through a single statement.
+     * @param statement The statement.
+     * @param values Receives the decoded values of each variable.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @throws SQLException In case of database error.
+     */
+    private void insertRows(final PreparedStatement statement, final DecodedColumn[] values, final Slab slab, final int from, final int to) throws SQLException {
+        final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC")); // NOI18N.
+        decoder.decode(slab, from, to, values);
+        final Odometer position = new Odometer(slab, from);
+        int pending = 0;
+        for (int cell = from; cell < to; cell++) {
+            for (int axis = 0; axis < timestamps.length; axis++) {
+                if (timestamps[axis] != null) {
+                    statement.setTimestamp(axis + 1, timestamps[axis][position.get(axis)], utc);
+                } else {
+                    statement.setFloat(axis + 1, coordinates[axis][position.get(axis)]);
+                }
+            }
+            for (int variableIndex = 0; variableIndex < values.length; variableIndex++) {
+                final int parameterIndex = timestamps.length + 1 + variableIndex;
+                final DecodedColumn column = values[variableIndex];
+                if (column.isValid(cell - from)) {
+                    statement.setDouble(parameterIndex, column.getDouble(cell - from));
+                } else {
+                    statement.setNull(parameterIndex, Types.DOUBLE);
+                }
+            }
+            statement.addBatch();
+            if (++pending == batchSize) {
+                statement.executeBatch();
+                pending = 0;
+            }
+            position.next();
+        }
+        if (pending > 0) {
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Commits the transaction of each connection.
+     * <br>Transactions are committed one after the other: if a commit fails, the partitions committed before it remain in the table.
+     * @throws SQLException In case of database error.
+     */
+    public void commit() throws SQLException {
+        for (final Connection connection : connections) {
+            connection.commit();
+        }
+        committed = true;
+    }
+
+    /**
+     * Closes all connections, transactions that have not been committed are rolled back.
+     * @throws SQLException If a connection could not be closed.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (!committed) {
+            for (final Connection connection : connections) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    Logger.getLogger(JdbcRowWriter.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+                }
+            }
+        }
+        closeAll();
+    }
+
+    /**
+     * Closes all statements and connections.
+     * @throws SQLException If a connection could not be closed.
+     */
+    private void closeAll() throws SQLException {
+        SQLException exception = null;
+        for (final PreparedStatement statement : statements) {
+            try {
+                statement.close();
+            } catch (SQLException ex) {
+                exception = (exception == null) ? ex : exception;
+            }
+        }
+        for (final Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                exception = (exception == null) ? ex : exception;
+            }
+        }
+        statements.clear();
+        connections.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
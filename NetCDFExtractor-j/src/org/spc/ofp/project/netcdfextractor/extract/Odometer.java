@@ -0,0 +1,93 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.util.Objects;
+
+/**
+ * Walks the cells of a slab in canonical (row-major) order, whatever its rank, and keeps the index of the current cell along each dimension.
+ * <br>Indices are in the variable index space, not relative to the slab origin.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class Odometer {
+
+    /**
+     * The slab.
+     */
+    private final Slab slab;
+    /**
+     * Length of the slab along each dimension.
+     */
+    private final int[] shape;
+    /**
+     * Position of the current cell in the slab along each dimension.
+     */
+    private final int[] position;
+    /**
+     * Index of the current cell along each dimension.
+     */
+    private final int[] index;
+
+    /**
+     * Creates a new instance positioned on given cell of a slab.
+     * @param slab The slab.
+     * @param cell The index of the cell in the slab.
+     * @throws NullPointerException If {@code slab} is {@code null}.
+     */
+    public Odometer(final Slab slab, final long cell) throws NullPointerException {
+        Objects.requireNonNull(slab);
+        this.slab = slab;
+        final int rank = slab.getRank();
+        shape = new int[rank];
+        position = new int[rank];
+        index = new int[rank];
+        long remainder = cell;
+        for (int dimension = rank - 1; dimension >= 0; dimension--) {
+            shape[dimension] = slab.getShape(dimension);
+            position[dimension] = (int) (remainder % shape[dimension]);
+            index[dimension] = slab.getIndex(dimension, position[dimension]);
+            remainder /= shape[dimension];
+        }
+    }
+
+    /**
+     * Gets the index of the current cell along given dimension.
+     * @param dimension The dimension.
+     * @return An {@code int} &ge; 0.
+     */
+    public int get(final int dimension) {
+        return index[dimension];
+    }
+
+    /**
+     * Moves to the next cell.
+     */
+    public void next() {
+        for (int dimension = index.length - 1; dimension >= 0; dimension--) {
+            if (++position[dimension] < shape[dimension]) {
+                index[dimension] = slab.getIndex(dimension, position[dimension]);
+                return;
+            }
+            position[dimension] = 0;
+            index[dimension] = slab.getIndex(dimension, 0);
+        }
+    }
+
+    /**
+     * Gets the number of cells of a grid.
+     * @param sizes The dimension sizes.
+     * @return A {@code long} &ge; 0.
+     * @throws ArithmeticException If the number of cells overflows a {@code long}.
+     */
+    public static long count(final int[] sizes) throws ArithmeticException {
+        long result = 1;
+        for (final int size : sizes) {
+            result = Math.multiplyExact(result, size);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+/**
+ * Formats of the output files.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public enum OutputFormat {
+    /**
+     * Delimited text, one row per line.
+     */
+    TEXT(".txt"), // NOI18N.
+    /**
+     * PostgreSQL binary {@code COPY} format.
+     * @see PostgresBinaryRowEncoder
+     */
+    POSTGRESQL_BINARY(".bin"), // NOI18N.
+    /**
+     * SQL Server {@code bcp} native format, along with a format file.
+     * @see BcpNativeRowEncoder
+     */
+    BCP_NATIVE(".dat"), // NOI18N.
+    /**
+     * Apache Parquet columnar format.
+     * @see org.spc.ofp.project.netcdfextractor.extract.parquet.ParquetFileWriter
+     */
+    PARQUET(".parquet"), // NOI18N.
+    /**
+     * Apache Arrow IPC file format (Feather V2).
+     * @see org.spc.ofp.project.netcdfextractor.extract.arrow.ArrowFileWriter
+     */
+    ARROW(".arrow"); // NOI18N.
+
+    private final String extension;
+
+    OutputFormat(final String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the extension of files in this format.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
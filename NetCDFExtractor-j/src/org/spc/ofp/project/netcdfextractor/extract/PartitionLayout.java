@@ -0,0 +1,60 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Layouts of partitioned outputs.
+ * <br>Rows are routed into a hierarchy of {@code key=value} directories, such as {@code year=2016/month=03/sst.txt}, so that query engines only read the directories a query touches.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ * @see PartitionRouter
+ */
+public enum PartitionLayout {
+    /**
+     * Rows are not partitioned.
+     */
+    NONE(null),
+    /**
+     * Rows are partitioned by year of their date, in UTC.
+     */
+    YEAR("'year='yyyy"), // NOI18N.
+    /**
+     * Rows are partitioned by year and month of their date, in UTC.
+     */
+    MONTH("'year='yyyy'/month='MM"), // NOI18N.
+    /**
+     * Rows are partitioned by year, month and day of their date, in UTC.
+     */
+    DAY("'year='yyyy'/month='MM'/day='dd"), // NOI18N.
+    /**
+     * Rows are partitioned by spatial tile of their latitude and longitude, each tile being named after its south-west corner.
+     */
+    TILE(null);
+
+    private final DateTimeFormatter periodFormatter;
+
+    PartitionLayout(final String periodPattern) {
+        this.periodFormatter = (periodPattern == null) ? null : DateTimeFormatter.ofPattern(periodPattern).withZone(ZoneOffset.UTC);
+    }
+
+    /**
+     * Tests whether this layout partitions rows by period.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isPeriod() {
+        return periodFormatter != null;
+    }
+
+    /**
+     * Gets the formatter of the directories of periods.
+     * @return A {@code DateTimeFormatter} instance, {@code null} if this layout does not partition rows by period.
+     */
+    public DateTimeFormatter getPeriodFormatter() {
+        return periodFormatter;
+    }
+}
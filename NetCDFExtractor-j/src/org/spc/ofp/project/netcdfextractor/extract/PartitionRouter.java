@@ -0,0 +1,264 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.math.BigDecimal;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * Routes the rows of a file to the directories of a partitioned output.
+ * <br>Each partitioning axis maps its indices to buckets, computed once from its coordinates; the key of a row combines the buckets of its position along these axes.
+ * <br>Keys may be computed by any thread; directories are only resolved by the thread that writes the rows.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ * @see PartitionLayout
+ */
+public final class PartitionRouter {
+
+    /**
+     * The dimension index of each partitioning axis.
+     */
+    private final int[] dimensions;
+    /**
+     * The bucket of each index, for each partitioning axis.
+     */
+    private final int[][] buckets;
+    /**
+     * The directory of each bucket, for each partitioning axis.
+     */
+    private final String[][] labels;
+    /**
+     * Resolved directories, by key.
+     */
+    private final Map<Long, String> directories = new HashMap<>();
+
+    private PartitionRouter(final int[] dimensions, final int[][] buckets, final String[][] labels) {
+        this.dimensions = dimensions;
+        this.buckets = buckets;
+        this.labels = labels;
+    }
+
+    /**
+     * Creates a router that partitions rows by period.
+     * @param layout The layout.
+     * @param axes The axes of the file.
+     * @param timeDimension The dimension index of the time axis, -1 if the file has none.
+     * @return A {@code PartitionRouter} instance, never {@code null}.
+     * @throws NullPointerException If {@code layout} or {@code axes} is {@code null}.
+     * @throws IllegalArgumentException If {@code layout} does not partition rows by period.
+     */
+    public static PartitionRouter ofPeriods(final PartitionLayout layout, final Axis[] axes, final int timeDimension) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(layout);
+        Objects.requireNonNull(axes);
+        if (!layout.isPeriod()) {
+            throw new IllegalArgumentException(String.format("Layout %s does not partition rows by period.", layout)); // NOI18N.
+        }
+        final Builder builder = new Builder();
+        if (timeDimension >= 0) {
+            final Axis axis = axes[timeDimension];
+            final DateTimeFormatter formatter = layout.getPeriodFormatter();
+            builder.add(timeDimension, axis.getLength(), index -> formatter.format(axis.getInstant(index)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a router that partitions rows by spatial tile.
+     * <br>Tiles are aligned on multiples of their size; a coordinate that is not finite gets a tile of its own.
+     * @param axes The axes of the file.
+     * @param latitudeDimension The dimension index of the latitude axis, -1 if the file has none.
+     * @param longitudeDimension The dimension index of the longitude axis, -1 if the file has none.
+     * @param tileSize The size of a tile, in degrees.
+     * @return A {@code PartitionRouter} instance, never {@code null}.
+     * @throws NullPointerException If {@code axes} is {@code null}.
+     * @throws IllegalArgumentException If {@code tileSize} is not &gt; 0.
+     */
+    public static PartitionRouter ofTiles(final Axis[] axes, final int latitudeDimension, final int longitudeDimension, final double tileSize) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(axes);
+        if (!(tileSize > 0) || Double.isInfinite(tileSize)) {
+            throw new IllegalArgumentException(String.format("Invalid tile size %s.", tileSize)); // NOI18N.
+        }
+        final Builder builder = new Builder();
+        for (final int dimension : new int[]{latitudeDimension, longitudeDimension}) {
+            if (dimension >= 0) {
+                final Axis axis = axes[dimension];
+                builder.add(dimension, axis.getLength(), index -> axis.getName() + '=' + toTile(axis.getCoordinate(index), tileSize));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the south-west corner of the tile of a coordinate.
+     * @param coordinate The coordinate.
+     * @param tileSize The size of a tile.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    private static String toTile(final double coordinate, final double tileSize) {
+        if (!Double.isFinite(coordinate)) {
+            return "NaN"; // NOI18N.
+        }
+        final BigDecimal corner = BigDecimal.valueOf(Math.floor(coordinate / tileSize)).multiply(BigDecimal.valueOf(tileSize));
+        return (corner.signum() == 0) ? "0" : corner.stripTrailingZeros().toPlainString(); // NOI18N.
+    }
+
+    /**
+     * Tests whether this router sends all rows to the same directory, which happens when the file has no axis to partition by.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isFlat() {
+        return dimensions.length == 0;
+    }
+
+    /**
+     * Gets the key of the row at given position.
+     * @param position The position of the row.
+     * @return A {@code long} &ge; 0.
+     */
+    public long getKey(final Odometer position) {
+        long result = 0;
+        for (int axisIndex = 0; axisIndex < dimensions.length; axisIndex++) {
+            result = result * labels[axisIndex].length + buckets[axisIndex][position.get(dimensions[axisIndex])];
+        }
+        return result;
+    }
+
+    /**
+     * Gets the directory of the rows of given key, relative to the output directory.
+     * <br>Levels are separated by {@code '/'}.
+     * @param key The key.
+     * @return A {@code String} instance, never {@code null}; empty if this router is flat.
+     */
+    public String getDirectory(final long key) {
+        return directories.computeIfAbsent(key, value -> {
+            final String[] levels = new String[dimensions.length];
+            long remainder = value;
+            for (int axisIndex = dimensions.length - 1; axisIndex >= 0; axisIndex--) {
+                final int bucketCount = labels[axisIndex].length;
+                levels[axisIndex] = labels[axisIndex][(int) (remainder % bucketCount)];
+                remainder /= bucketCount;
+            }
+            return String.join("/", levels); // NOI18N.
+        });
+    }
+
+    /**
+     * Collects the buckets of the partitioning axes.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class Builder {
+
+        private final List<Integer> dimensions = new ArrayList<>();
+        private final List<int[]> buckets = new ArrayList<>();
+        private final List<String[]> labels = new ArrayList<>();
+
+        /**
+         * Adds a partitioning axis.
+         * @param dimension The dimension index of the axis.
+         * @param length The length of the axis.
+         * @param labeler Gives the directory of each index; indices that share a directory share a bucket.
+         */
+        void add(final int dimension, final int length, final IntFunction<String> labeler) {
+            final Map<String, Integer> bucketIds = new LinkedHashMap<>();
+            final int[] indexBuckets = new int[length];
+            for (int index = 0; index < length; index++) {
+                indexBuckets[index] = bucketIds.computeIfAbsent(labeler.apply(index), label -> bucketIds.size());
+            }
+            dimensions.add(dimension);
+            buckets.add(indexBuckets);
+            labels.add(bucketIds.keySet().toArray(new String[0]));
+        }
+
+        PartitionRouter build() {
+            return new PartitionRouter(dimensions.stream().mapToInt(Integer::intValue).toArray(),
+                    buckets.toArray(new int[0][]),
+                    labels.toArray(new String[0][]));
+        }
+    }
+
+    /**
+     * The runs of consecutive rows that share a key within an encoded buffer.
+     * <br>Instances are not thread-safe.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    public static final class Runs {
+
+        private long[] keys = new long[16];
+        private int[] offsets = new int[16];
+        private int[] rowCounts = new int[16];
+        private int size;
+
+        /**
+         * Records a row.
+         * @param key The key of the row.
+         * @param offset The offset of the row in the buffer.
+         */
+        void add(final long key, final int offset) {
+            if (size > 0 && keys[size - 1] == key) {
+                rowCounts[size - 1]++;
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                offsets = Arrays.copyOf(offsets, 2 * size);
+                rowCounts = Arrays.copyOf(rowCounts, 2 * size);
+            }
+            keys[size] = key;
+            offsets[size] = offset;
+            rowCounts[size] = 1;
+            size++;
+        }
+
+        /**
+         * Gets the number of runs.
+         * @return An {@code int} &ge; 0.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Gets the key of a run.
+         * @param run The index of the run.
+         * @return A {@code long} &ge; 0.
+         */
+        public long getKey(final int run) {
+            return keys[run];
+        }
+
+        /**
+         * Gets the offset of the first row of a run in the buffer.
+         * @param run The index of the run.
+         * @return An {@code int} &ge; 0.
+         */
+        public int getOffset(final int run) {
+            return offsets[run];
+        }
+
+        /**
+         * Gets the number of rows of a run.
+         * @param run The index of the run.
+         * @return An {@code int} &gt; 0.
+         */
+        public int getRowCount(final int run) {
+            return rowCounts[run];
+        }
+
+        /**
+         * Removes all runs.
+         */
+        public void clear() {
+            size = 0;
+        }
+    }
+}
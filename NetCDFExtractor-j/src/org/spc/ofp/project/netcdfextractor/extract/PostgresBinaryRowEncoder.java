@@ -0,0 +1,134 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import ucar.ma2.DataType;
+
+/**
+ * Encodes rows of slabs as tuples of the PostgreSQL binary {@code COPY} format.
+ * <br>Columns are: time axes as {@code timestamptz}, other axes as {@code float4} and each variable as {@code float8}; invalid values are {@code NULL}.
+ * <br>A file must start with {@link #writeFileHeader(java.io.OutputStream)} and end with {@link #writeFileTrailer(java.io.OutputStream)}; it can then be loaded with {@code COPY table FROM 'file' (FORMAT binary)}.
+ * <br>Instances are immutable and may be shared by all threads extracting a given file.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class PostgresBinaryRowEncoder extends RowEncoder {
+
+    /**
+     * The signature that starts the file header.
+     */
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    /**
+     * Origin of PostgreSQL timestamps.
+     */
+    private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z"); // NOI18N.
+
+    /**
+     * Length of a {@code NULL} field.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * Whether each axis is a time axis.
+     */
+    private final boolean[] timeAxes;
+    /**
+     * Values of each axis: in microseconds since the PostgreSQL epoch for time axes, as {@code float} bits otherwise.
+     */
+    private final long[][] axisValues;
+    /**
+     * Number of fields in a tuple.
+     */
+    private final int fieldCount;
+
+    /**
+     * Creates a new instance.
+     * @param axes The axes.
+     * @param dataTypes The data type of each variable.
+     * @param fillValues The fill value of each variable.
+     * @param missingValues The missing value of each variable.
+     * @param scaleFactors The scale factor of each variable.
+     * @param addOffsets The add offset of each variable.
+     * @param validMins The minimum valid value of each variable.
+     * @param validMaxs The maximum valid value of each variable.
+     * @throws NullPointerException If any parameter is {@code null}.
+     */
+    public PostgresBinaryRowEncoder(final Axis[] axes,
+            final DataType[] dataTypes, final Number[] fillValues, final Number[] missingValues, final Number[] scaleFactors, final Number[] addOffsets,
+            final Number[] validMins, final Number[] validMaxs) throws NullPointerException {
+        super(dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+        Objects.requireNonNull(axes);
+        timeAxes = new boolean[axes.length];
+        axisValues = new long[axes.length][];
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            final Axis axis = axes[axisIndex];
+            timeAxes[axisIndex] = axis.isTime();
+            axisValues[axisIndex] = new long[axis.getLength()];
+            for (int index = 0; index < axisValues[axisIndex].length; index++) {
+                axisValues[axisIndex][index] = axis.isTime()
+                        ? POSTGRES_EPOCH.until(axis.getInstant(index), ChronoUnit.MICROS)
+                        : Float.floatToIntBits(axis.getCoordinate(index));
+            }
+        }
+        fieldCount = axes.length + dataTypes.length;
+    }
+
+    /**
+     * Writes the file header: signature, flags and an empty header extension.
+     * @param out The output stream.
+     * @throws IOException In case of IO error.
+     */
+    public static void writeFileHeader(final OutputStream out) throws IOException {
+        final RowBuffer buffer = new RowBuffer(32);
+        buffer.append(SIGNATURE);
+        // Flags: no OIDs.
+        buffer.appendInt32(0);
+        // Header extension length.
+        buffer.appendInt32(0);
+        buffer.writeTo(out);
+    }
+
+    /**
+     * Writes the file trailer.
+     * @param out The output stream.
+     * @throws IOException In case of IO error.
+     */
+    public static void writeFileTrailer(final OutputStream out) throws IOException {
+        final RowBuffer buffer = new RowBuffer(16);
+        buffer.appendInt16(-1);
+        buffer.writeTo(out);
+    }
+
+    @Override
+    protected void encodeRow(final DecodedColumn[] values, final int row, final Odometer position, final RowBuffer buffer) {
+        buffer.appendInt16(fieldCount);
+        // Axes.
+        for (int axis = 0; axis < axisValues.length; axis++) {
+            final long value = axisValues[axis][position.get(axis)];
+            if (timeAxes[axis]) {
+                buffer.appendInt32(Long.BYTES);
+                buffer.appendInt64(value);
+            } else {
+                buffer.appendInt32(Float.BYTES);
+                buffer.appendInt32((int) value);
+            }
+        }
+        // Variables.
+        for (final DecodedColumn column : values) {
+            if (column.isValid(row)) {
+                buffer.appendInt32(Double.BYTES);
+                buffer.appendInt64(Double.doubleToLongBits(column.getDouble(row)));
+            } else {
+                buffer.appendInt32(NULL_LENGTH);
+            }
+        }
+    }
+}
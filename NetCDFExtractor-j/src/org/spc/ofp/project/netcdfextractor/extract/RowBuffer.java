@@ -0,0 +1,462 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer into which rows are encoded as UTF-8 text.
+ * <br>Numbers are written directly as ASCII digits without creating intermediate strings; instances are meant to be cleared and reused.
+ * <br>Floating point values are written using the shortest decimal that rounds to the value, with the same layout as {@code Double.toString()} and {@code Float.toString()}.
+ * <br>Binary values are written in big-endian order unless stated otherwise.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class RowBuffer {
+
+    /**
+     * Default initial capacity in bytes, is equal to {@value}.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final byte[] NAN = "NaN".getBytes(StandardCharsets.US_ASCII); // NOI18N.
+    private static final byte[] POSITIVE_INFINITY = "Infinity".getBytes(StandardCharsets.US_ASCII); // NOI18N.
+    private static final byte[] NEGATIVE_INFINITY = "-Infinity".getBytes(StandardCharsets.US_ASCII); // NOI18N.
+
+    /**
+     * The content.
+     */
+    private byte[] bytes;
+    /**
+     * Number of bytes used in the content.
+     */
+    private int size;
+    /**
+     * Reusable decimal conversion.
+     */
+    private final ShortestDecimal decimal = new ShortestDecimal();
+    /**
+     * Scratch space for decimal digits.
+     */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Creates a new instance with the default capacity.
+     */
+    public RowBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param capacity The initial capacity in bytes.
+     */
+    public RowBuffer(final int capacity) {
+        bytes = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Gets the number of bytes in this buffer.
+     * @return An {@code int} &ge; 0.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties this buffer, keeping its capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Writes the content of this buffer.
+     * @param out The destination stream.
+     * @throws IOException In case of IO error.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    /**
+     * Writes a range of the content of this buffer.
+     * @param out The destination stream.
+     * @param offset The offset of the range.
+     * @param length The length of the range.
+     * @throws IOException In case of IO error.
+     */
+    public void writeTo(final OutputStream out, final int offset, final int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        out.write(bytes, offset, length);
+    }
+
+    /**
+     * Copies the content of this buffer.
+     * @return A new {@code byte[]} instance, never {@code null}.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * Appends raw bytes.
+     * @param value The bytes.
+     * @return This buffer.
+     */
+    public RowBuffer append(final byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+        return this;
+    }
+
+    /**
+     * Appends text encoded as UTF-8.
+     * <br>Unpaired surrogates are replaced by {@code '?'}.
+     * @param value The text.
+     * @return This buffer.
+     */
+    public RowBuffer append(final CharSequence value) {
+        final int length = value.length();
+        ensureCapacity(3 * length);
+        for (int index = 0; index < length; index++) {
+            final char c = value.charAt(index);
+            if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[size++] = (byte) (0xC0 | (c >> 6));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && index + 1 < length && Character.isLowSurrogate(value.charAt(index + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++index));
+                bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[size++] = '?';
+            } else {
+                bytes[size++] = (byte) (0xE0 | (c >> 12));
+                bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends a {@code long}, same text as {@code Long.toString()}.
+     * @param value The value.
+     * @return This buffer.
+     */
+    public RowBuffer append(final long value) {
+        ensureCapacity(20);
+        // Work on negative values so that Long.MIN_VALUE does not overflow.
+        long remainder = (value < 0) ? value : -value;
+        int position = digits.length;
+        do {
+            final long quotient = remainder / 10;
+            digits[--position] = (byte) ('0' + (quotient * 10 - remainder));
+            remainder = quotient;
+        } while (remainder != 0);
+        if (value < 0) {
+            bytes[size++] = '-';
+        }
+        final int length = digits.length - position;
+        System.arraycopy(digits, position, bytes, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Appends the 2 low-order bytes of an {@code int} in big-endian order, like {@code DataOutput.writeShort()}.
+     * @param value The value.
+     * @return This buffer.
+     */
+    public RowBuffer appendInt16(final int value) {
+        ensureCapacity(2);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Appends an {@code int} in big-endian order, like {@code DataOutput.writeInt()}.
+     * @param value The value.
+     * @return This buffer.
+     */
+    public RowBuffer appendInt32(final int value) {
+        ensureCapacity(4);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Appends a {@code long} in big-endian order, like {@code DataOutput.writeLong()}.
+     * @param value The value.
+     * @return This buffer.
+     */
+    public RowBuffer appendInt64(final long value) {
+        ensureCapacity(8);
+        bytes[size++] = (byte) (value >>> 56);
+        bytes[size++] = (byte) (value >>> 48);
+        bytes[size++] = (byte) (value >>> 40);
+        bytes[size++] = (byte) (value >>> 32);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Appends an unsigned variable-length integer (LEB128), 7 bits per byte, low-order groups first.
+     * @param value The value, treated as unsigned.
+     * @return This buffer.
+     */
+    public RowBuffer appendVarint(final long value) {
+        ensureCapacity(10);
+        long remainder = value;
+        while ((remainder & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((remainder & 0x7F) | 0x80);
+            remainder >>>= 7;
+        }
+        bytes[size++] = (byte) remainder;
+        return this;
+    }
+
+    /**
+     * Appends the low-order bytes of a {@code long} in little-endian order.
+     * @param value The value.
+     * @param byteCount The number of bytes to append, between 1 and 8.
+     * @return This buffer.
+     */
+    public RowBuffer appendLittleEndian(final long value, final int byteCount) {
+        ensureCapacity(byteCount);
+        for (int index = 0; index < byteCount; index++) {
+            bytes[size++] = (byte) (value >>> (8 * index));
+        }
+        return this;
+    }
+
+    /**
+     * Appends a {@code double}, same layout as {@code Double.toString()} using the shortest decimal that rounds to the value.
+     * @param value The value.
+     * @return This buffer.
+     */
+    public RowBuffer append(final double value) {
+        if (!appendSpecial(value)) {
+            decimal.set(value);
+            appendDecimal();
+        }
+        return this;
+    }
+
+    /**
+     * Appends a {@code float}, same layout as {@code Float.toString()} using the shortest decimal that rounds to the value.
+     * @param value The value.
+     * @return This buffer.
+     */
+    public RowBuffer append(final float value) {
+        if (!appendSpecial(value)) {
+            decimal.set(value);
+            appendDecimal();
+        }
+        return this;
+    }
+
+    /**
+     * Appends a {@code double} with a fixed number of decimals, without exponent.
+     * <br>The shortest decimal that rounds to the value is rounded half-up, like {@code java.util.Formatter} does.
+     * @param value The value.
+     * @param precision The number of decimals; if negative, same as {@link #append(double)}.
+     * @return This buffer.
+     */
+    public RowBuffer append(final double value, final int precision) {
+        if (precision < 0) {
+            return append(value);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            appendSpecial(value);
+            return this;
+        }
+        final boolean negative = (Double.doubleToRawLongBits(value) < 0);
+        int length = 0;
+        int e = 0;
+        if (value != 0) {
+            decimal.set(value);
+            length = extractDigits();
+            e = length + decimal.exponent;
+            // Round half-up to the number of decimals.
+            final int keep = e + precision;
+            if (keep < length) {
+                final boolean roundUp = keep >= 0 && digits[keep] >= '5';
+                length = Math.max(0, keep);
+                if (roundUp) {
+                    int index = length - 1;
+                    while (index >= 0 && digits[index] == '9') {
+                        index--;
+                    }
+                    if (index >= 0) {
+                        digits[index]++;
+                        length = index + 1;
+                    } else {
+                        // All nines (or nothing kept): becomes a power of 10.
+                        digits[0] = '1';
+                        length = 1;
+                        e++;
+                    }
+                }
+            }
+        }
+        ensureCapacity(Math.max(e, 1) + precision + 2);
+        if (negative) {
+            bytes[size++] = '-';
+        }
+        // Integer part.
+        if (length == 0 || e <= 0) {
+            bytes[size++] = '0';
+        } else {
+            for (int index = 0; index < e; index++) {
+                bytes[size++] = (index < length) ? digits[index] : (byte) '0';
+            }
+        }
+        // Decimals.
+        if (precision > 0) {
+            bytes[size++] = '.';
+            for (int index = e; index < e + precision; index++) {
+                bytes[size++] = (length > 0 && 0 <= index && index < length) ? digits[index] : (byte) '0';
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends NaN, infinities and zeroes.
+     * @param value The value.
+     * @return {@code True} if the value was special and has been appended, {@code false} otherwise (only the sign has been appended).
+     */
+    private boolean appendSpecial(final double value) {
+        if (Double.isNaN(value)) {
+            append(NAN);
+            return true;
+        }
+        if (Double.isInfinite(value)) {
+            append((value > 0) ? POSITIVE_INFINITY : NEGATIVE_INFINITY);
+            return true;
+        }
+        ensureCapacity(32);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            bytes[size++] = '-';
+        }
+        if (value == 0) {
+            bytes[size++] = '0';
+            bytes[size++] = '.';
+            bytes[size++] = '0';
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the digits of the current decimal into the scratch space, without trailing zeroes.
+     * <br>The exponent of the decimal is updated accordingly.
+     * @return The number of digits.
+     */
+    private int extractDigits() {
+        long value = decimal.significand;
+        while (value % 10 == 0) {
+            value /= 10;
+            decimal.exponent++;
+        }
+        int length = 0;
+        for (long remainder = value; remainder != 0; remainder /= 10) {
+            length++;
+        }
+        for (int index = length - 1; index >= 0; index--) {
+            final long quotient = value / 10;
+            digits[index] = (byte) ('0' + (value - quotient * 10));
+            value = quotient;
+        }
+        return length;
+    }
+
+    /**
+     * Appends the current decimal using the layout of {@code Double.toString()}.
+     */
+    private void appendDecimal() {
+        final int length = extractDigits();
+        // The value is 0.d1d2...dn × 10^e.
+        final int e = length + decimal.exponent;
+        if (0 < e && e <= 7) {
+            // Plain notation, no leading zero.
+            for (int index = 0; index < e; index++) {
+                bytes[size++] = (index < length) ? digits[index] : (byte) '0';
+            }
+            bytes[size++] = '.';
+            if (length > e) {
+                System.arraycopy(digits, e, bytes, size, length - e);
+                size += length - e;
+            } else {
+                bytes[size++] = '0';
+            }
+        } else if (-3 < e && e <= 0) {
+            // Plain notation, leading zeroes.
+            bytes[size++] = '0';
+            bytes[size++] = '.';
+            for (int index = e; index < 0; index++) {
+                bytes[size++] = '0';
+            }
+            System.arraycopy(digits, 0, bytes, size, length);
+            size += length;
+        } else {
+            // Computerized scientific notation.
+            bytes[size++] = digits[0];
+            bytes[size++] = '.';
+            if (length > 1) {
+                System.arraycopy(digits, 1, bytes, size, length - 1);
+                size += length - 1;
+            } else {
+                bytes[size++] = '0';
+            }
+            bytes[size++] = 'E';
+            int exponent = e - 1;
+            if (exponent < 0) {
+                bytes[size++] = '-';
+                exponent = -exponent;
+            }
+            if (exponent >= 100) {
+                bytes[size++] = (byte) ('0' + exponent / 100);
+                exponent %= 100;
+                bytes[size++] = (byte) ('0' + exponent / 10);
+            } else if (exponent >= 10) {
+                bytes[size++] = (byte) ('0' + exponent / 10);
+            }
+            bytes[size++] = (byte) ('0' + exponent % 10);
+        }
+    }
+
+    /**
+     * Ensures that at least {@code extra} bytes may be appended.
+     * @param extra The number of bytes to append.
+     */
+    private void ensureCapacity(final int extra) {
+        final int required = size + extra;
+        if (required > bytes.length) {
+            final byte[] newBytes = new byte[Math.max(required, 2 * bytes.length)];
+            System.arraycopy(bytes, 0, newBytes, 0, size);
+            bytes = newBytes;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import ucar.ma2.DataType;
+
+/**
+ * Base class for encoders that write rows of slabs into a {@code RowBuffer}.
+ * <br>Each row is: the coordinate along each axis and then the value of each variable; subclasses define how a row is laid out.
+ * <br>Values are decoded by a {@code ValueDecoder} a range of rows at a time, before the rows are encoded; each thread decodes into columns of its own.
+ * <br>Instances are immutable and may be shared by all threads extracting a given file.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public abstract class RowEncoder {
+
+    /**
+     * Decodes the values of the variables.
+     */
+    private final ValueDecoder decoder;
+    /**
+     * The decoded values of each variable, per thread.
+     */
+    private final ThreadLocal<DecodedColumn[]> columns;
+
+    /**
+     * Creates a new instance.
+     * @param dataTypes The data type of each variable.
+     * @param fillValues The fill value of each variable.
+     * @param missingValues The missing value of each variable.
+     * @param scaleFactors The scale factor of each variable.
+     * @param addOffsets The add offset of each variable.
+     * @param validMins The minimum valid value of each variable.
+     * @param validMaxs The maximum valid value of each variable.
+     * @throws NullPointerException If any parameter is {@code null}.
+     */
+    protected RowEncoder(final DataType[] dataTypes, final Number[] fillValues, final Number[] missingValues, final Number[] scaleFactors, final Number[] addOffsets,
+            final Number[] validMins, final Number[] validMaxs) throws NullPointerException {
+        decoder = new ValueDecoder(dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+        columns = ThreadLocal.withInitial(decoder::createColumns);
+    }
+
+    /**
+     * Encodes a range of rows from a slab.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @param buffer The target buffer.
+     */
+    public final void encodeRows(final Slab slab, final int from, final int to, final RowBuffer buffer) {
+        final DecodedColumn[] values = decode(slab, from, to);
+        final Odometer position = new Odometer(slab, from);
+        for (int row = 0; row < to - from; row++) {
+            encodeRow(values, row, position, buffer);
+            position.next();
+        }
+    }
+
+    /**
+     * Encodes a range of rows from a slab and records the runs of rows that go to the same directory of a partitioned output.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @param buffer The target buffer.
+     * @param router Gives the key of each row.
+     * @param runs Receives the runs of rows.
+     */
+    public final void encodeRows(final Slab slab, final int from, final int to, final RowBuffer buffer, final PartitionRouter router, final PartitionRouter.Runs runs) {
+        final DecodedColumn[] values = decode(slab, from, to);
+        final Odometer position = new Odometer(slab, from);
+        for (int row = 0; row < to - from; row++) {
+            runs.add(router.getKey(position), buffer.size());
+            encodeRow(values, row, position, buffer);
+            position.next();
+        }
+    }
+
+    /**
+     * Decodes a range of rows from a slab into the columns of the current thread.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @return The decoded values of each variable.
+     */
+    private DecodedColumn[] decode(final Slab slab, final int from, final int to) {
+        final DecodedColumn[] result = columns.get();
+        decoder.decode(slab, from, to, result);
+        return result;
+    }
+
+    /**
+     * Encodes a single row.
+     * @param values The decoded values of each variable over the range being encoded.
+     * @param row The index of the row in the range.
+     * @param position The index of the row along each axis.
+     * @param buffer The target buffer.
+     */
+    protected abstract void encodeRow(final DecodedColumn[] values, final int row, final Odometer position, final RowBuffer buffer);
+
+    /**
+     * Gets the number of variables.
+     * @return An {@code int} &ge; 0.
+     */
+    protected final int getVariableCount() {
+        return decoder.getVariableCount();
+    }
+
+    /**
+     * Gets the data type of a variable.
+     * @param variableIndex The index of the variable.
+     * @return A {@code DataType} instance, never {@code null}.
+     */
+    protected final DataType getDataType(final int variableIndex) {
+        return decoder.getDataType(variableIndex);
+    }
+}
@@ -0,0 +1,293 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.math.BigInteger;
+
+/**
+ * Computes the shortest decimal that rounds to a given {@code double} or {@code float} (Schubfach algorithm).
+ * <br>After a call to {@link #set(double)} or {@link #set(float)}, the absolute value of the argument is {@code significand × 10^exponent}.
+ * <br>Instances are mutable and are not thread-safe; they are meant to be reused to avoid allocations.
+ * <br>See: Raffaello Giulietti, "The Schubfach way to render doubles", 2020.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class ShortestDecimal {
+
+    // Double constants.
+    private static final int DOUBLE_P = 53;
+    private static final int DOUBLE_Q_MIN = -1074;
+    private static final long DOUBLE_C_MIN = 1L << (DOUBLE_P - 1);
+    private static final long DOUBLE_C_TINY = 3;
+    private static final int DOUBLE_BQ_MASK = (1 << 11) - 1;
+    private static final long DOUBLE_T_MASK = (1L << (DOUBLE_P - 1)) - 1;
+    // Float constants.
+    private static final int FLOAT_P = 24;
+    private static final int FLOAT_Q_MIN = -149;
+    private static final int FLOAT_C_MIN = 1 << (FLOAT_P - 1);
+    private static final int FLOAT_C_TINY = 8;
+    private static final int FLOAT_BQ_MASK = (1 << 8) - 1;
+    private static final int FLOAT_T_MASK = (1 << (FLOAT_P - 1)) - 1;
+    //
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+    /**
+     * Smallest decimal exponent in the table.
+     */
+    private static final int K_MIN = -324;
+    /**
+     * Largest decimal exponent in the table.
+     */
+    private static final int K_MAX = 292;
+    /**
+     * For each {@code k} in [{@link #K_MIN}, {@link #K_MAX}], the upper and lower 63 bits of {@code floor(10^-k × 2^-r) + 1} where {@code r = flog2pow10(-k) - 125}.
+     */
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            final int r = flog2pow10(-k) - 125;
+            BigInteger value = (k <= 0) ? BigInteger.TEN.pow(-k) : BigInteger.ONE;
+            final BigInteger divisor = (k > 0) ? BigInteger.TEN.pow(k) : BigInteger.ONE;
+            if (r < 0) {
+                value = value.shiftLeft(-r);
+            }
+            BigInteger g = value.divide((r > 0) ? divisor.shiftLeft(r) : divisor);
+            g = g.add(BigInteger.ONE);
+            final int index = (k - K_MIN) << 1;
+            G[index] = g.shiftRight(63).longValue();
+            G[index + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+    /**
+     * The decimal significand, has no more than 17 digits.
+     */
+    long significand;
+    /**
+     * The decimal exponent.
+     */
+    int exponent;
+
+    /**
+     * Sets this decimal to the shortest decimal that rounds to the absolute value of {@code value}.
+     * @param value The value, must be finite and non zero.
+     */
+    void set(final double value) {
+        final long bits = Double.doubleToRawLongBits(value);
+        final long t = bits & DOUBLE_T_MASK;
+        final int bq = (int) (bits >>> (DOUBLE_P - 1)) & DOUBLE_BQ_MASK;
+        if (bq != 0) {
+            // Normal value.
+            final int mq = -DOUBLE_Q_MIN + 1 - bq;
+            final long c = DOUBLE_C_MIN | t;
+            // Fast path for integers.
+            if (0 < mq && mq < DOUBLE_P) {
+                final long f = c >> mq;
+                if (f << mq == c) {
+                    significand = f;
+                    exponent = 0;
+                    return;
+                }
+            }
+            toDecimal(-mq, c, 0);
+        } else if (t < DOUBLE_C_TINY) {
+            // Subnormal value.
+            toDecimal(DOUBLE_Q_MIN, 10 * t, -1);
+        } else {
+            toDecimal(DOUBLE_Q_MIN, t, 0);
+        }
+    }
+
+    /**
+     * Sets this decimal to the shortest decimal that rounds to the absolute value of {@code value}.
+     * @param value The value, must be finite and non zero.
+     */
+    void set(final float value) {
+        final int bits = Float.floatToRawIntBits(value);
+        final int t = bits & FLOAT_T_MASK;
+        final int bq = (bits >>> (FLOAT_P - 1)) & FLOAT_BQ_MASK;
+        if (bq != 0) {
+            // Normal value.
+            final int mq = -FLOAT_Q_MIN + 1 - bq;
+            final int c = FLOAT_C_MIN | t;
+            // Fast path for integers.
+            if (0 < mq && mq < FLOAT_P) {
+                final int f = c >> mq;
+                if (f << mq == c) {
+                    significand = f;
+                    exponent = 0;
+                    return;
+                }
+            }
+            toDecimal(-mq, c, 0);
+        } else if (t < FLOAT_C_TINY) {
+            // Subnormal value.
+            toDecimal(FLOAT_Q_MIN, 10 * t, -1);
+        } else {
+            toDecimal(FLOAT_Q_MIN, t, 0);
+        }
+    }
+
+    /**
+     * Computes the shortest decimal of {@code c × 2^q} for a {@code double}.
+     * @param q The binary exponent.
+     * @param c The binary significand.
+     * @param dk The correction of the decimal exponent for tiny subnormal values.
+     */
+    private void toDecimal(final int q, final long c, final int dk) {
+        final int out = (int) c & 0x1;
+        final long cb = c << 2;
+        final long cbr = cb + 2;
+        final long cbl;
+        final int k;
+        if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        final int h = q + flog2pow10(-k) + 2;
+        final int index = (k - K_MIN) << 1;
+        final long g1 = G[index];
+        final long g0 = G[index + 1];
+        final long vb = rop(g1, g0, cb << h);
+        final long vbl = rop(g1, g0, cbl << h);
+        final long vbr = rop(g1, g0, cbr << h);
+        final long s = vb >> 2;
+        if (s >= 100) {
+            // s / 10 * 10.
+            final long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            final long tp10 = sp10 + 10;
+            final boolean upin = vbl + out <= sp10 << 2;
+            final boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                significand = upin ? sp10 : tp10;
+                exponent = k;
+                return;
+            }
+        }
+        final long t = s + 1;
+        final boolean uin = vbl + out <= s << 2;
+        final boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            significand = uin ? s : t;
+            exponent = k + dk;
+            return;
+        }
+        final long cmp = vb - ((s + t) << 1);
+        significand = (cmp < 0 || cmp == 0 && (s & 0x1) == 0) ? s : t;
+        exponent = k + dk;
+    }
+
+    /**
+     * Computes the shortest decimal of {@code c × 2^q} for a {@code float}.
+     * @param q The binary exponent.
+     * @param c The binary significand.
+     * @param dk The correction of the decimal exponent for tiny subnormal values.
+     */
+    private void toDecimal(final int q, final int c, final int dk) {
+        final int out = c & 0x1;
+        final long cb = ((long) c) << 2;
+        final long cbr = cb + 2;
+        final long cbl;
+        final int k;
+        if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        final int h = q + flog2pow10(-k) + 33;
+        final long g = G[(k - K_MIN) << 1] + 1;
+        final int vb = rop(g, cb << h);
+        final int vbl = rop(g, cbl << h);
+        final int vbr = rop(g, cbr << h);
+        final int s = vb >> 2;
+        if (s >= 100) {
+            // s / 10 * 10.
+            final int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+            final int tp10 = sp10 + 10;
+            final boolean upin = vbl + out <= sp10 << 2;
+            final boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                significand = upin ? sp10 : tp10;
+                exponent = k;
+                return;
+            }
+        }
+        final int t = s + 1;
+        final boolean uin = vbl + out <= s << 2;
+        final boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            significand = uin ? s : t;
+            exponent = k + dk;
+            return;
+        }
+        final int cmp = vb - ((s + t) << 1);
+        significand = (cmp < 0 || cmp == 0 && (s & 0x1) == 0) ? s : t;
+        exponent = k + dk;
+    }
+
+    /**
+     * Rounds to odd the product of {@code g1 × 2^63 + g0} by {@code cp}, keeping the upper bits.
+     */
+    private static long rop(final long g1, final long g0, final long cp) {
+        final long x1 = multiplyHigh(g0, cp);
+        final long y0 = g1 * cp;
+        final long y1 = multiplyHigh(g1, cp);
+        final long z = (y0 >>> 1) + x1;
+        final long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    /**
+     * Rounds to odd the product of {@code g} by {@code cp}, keeping the upper bits.
+     */
+    private static int rop(final long g, final long cp) {
+        final long x1 = multiplyHigh(g, cp);
+        final long vbp = x1 >>> 31;
+        return (int) (vbp | ((x1 & MASK_32) + MASK_32) >>> 32);
+    }
+
+    /**
+     * Gets the upper 64 bits of the 128-bit product of two signed {@code long}.
+     */
+    static long multiplyHigh(final long x, final long y) {
+        final long x1 = x >> 32;
+        final long x2 = x & 0xFFFFFFFFL;
+        final long y1 = y >> 32;
+        final long y2 = y & 0xFFFFFFFFL;
+        final long z2 = x2 * y2;
+        final long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        final long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Computes {@code floor(log10(2^e))}.
+     */
+    private static int flog10pow2(final int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * Computes {@code floor(log10(3/4 × 2^e))}.
+     */
+    private static int flog10threeQuartersPow2(final int e) {
+        return (int) ((e * 661_971_961_083L + -274_743_187_321L) >> 41);
+    }
+
+    /**
+     * Computes {@code floor(log2(10^e))}.
+     */
+    private static int flog2pow10(final int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+}
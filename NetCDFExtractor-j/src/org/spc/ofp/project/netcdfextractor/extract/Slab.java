@@ -0,0 +1,140 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.util.Objects;
+import ucar.ma2.Array;
+
+/**
+ * A hyperslab read in a single pass from all exported variables.
+ * <br>All variables share the same origin and shape; values are stored in canonical (row-major) order.
+ * <br>Along one dimension, a slab may join several blocks of the grid, such as both sides of the longitude seam; positions along that dimension are then mapped to grid indices.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class Slab {
+
+    /**
+     * The origin of the slab in the variable index space.
+     */
+    private final int[] origin;
+    /**
+     * The shape of the slab.
+     */
+    private final int[] shape;
+    /**
+     * The grid index of each position along each dimension, {@code null} along dimensions where the slab is a single block.
+     */
+    private final int[][] indices;
+    /**
+     * The data, one array per variable.
+     */
+    private final Array[] data;
+    /**
+     * The primitive storage of each variable, such as {@code float[]}.
+     */
+    private final Object[] storages;
+
+    /**
+     * Creates a new instance.
+     * @param origin The origin of the slab.
+     * @param shape The shape of the slab.
+     * @param data The data, one array per variable.
+     * @throws NullPointerException If {@code origin}, {@code shape} or {@code data} is {@code null}.
+     */
+    Slab(final int[] origin, final int[] shape, final Array[] data) throws NullPointerException {
+        this(origin, shape, new int[shape.length][], data);
+    }
+
+    /**
+     * Creates a new instance that joins several blocks of the grid.
+     * @param origin The origin of the slab.
+     * @param shape The shape of the slab.
+     * @param indices The grid index of each position along each dimension, {@code null} along dimensions where the slab is a single block.
+     * @param data The data, one array per variable.
+     * @throws NullPointerException If {@code origin}, {@code shape}, {@code indices} or {@code data} is {@code null}.
+     */
+    Slab(final int[] origin, final int[] shape, final int[][] indices, final Array[] data) throws NullPointerException {
+        Objects.requireNonNull(origin);
+        Objects.requireNonNull(shape);
+        Objects.requireNonNull(indices);
+        Objects.requireNonNull(data);
+        this.origin = origin;
+        this.shape = shape;
+        this.indices = indices;
+        this.data = data;
+        // Done once by the reader so that decoders go straight to the primitive values; read arrays are canonical so no copy is made.
+        storages = new Object[data.length];
+        for (int variableIndex = 0; variableIndex < data.length; variableIndex++) {
+            storages[variableIndex] = data[variableIndex].get1DJavaArray(data[variableIndex].getElementType());
+        }
+    }
+
+    /**
+     * Gets the number of dimensions of this slab.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getRank() {
+        return shape.length;
+    }
+
+    /**
+     * Gets the origin of this slab on given dimension, that is the grid index of its first position.
+     * @param dimension The dimension index.
+     * @return An {@code int} &ge; 0.
+     */
+    public int getOrigin(final int dimension) {
+        return origin[dimension];
+    }
+
+    /**
+     * Gets the grid index of a position of this slab on given dimension.
+     * @param dimension The dimension index.
+     * @param position The position in the slab, from 0 (inclusive) to {@code getShape(dimension)} (exclusive).
+     * @return An {@code int} &ge; 0.
+     */
+    public int getIndex(final int dimension, final int position) {
+        return (indices[dimension] == null) ? origin[dimension] + position : indices[dimension][position];
+    }
+
+    /**
+     * Gets the length of this slab on given dimension.
+     * @param dimension The dimension index.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getShape(final int dimension) {
+        return shape[dimension];
+    }
+
+    /**
+     * Gets the number of cells in this slab.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getSize() {
+        int result = 1;
+        for (final int length : shape) {
+            result *= length;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the data read for given variable.
+     * @param variableIndex The variable index.
+     * @return An {@code Array} instance, never {@code null}.
+     */
+    public Array getData(final int variableIndex) {
+        return data[variableIndex];
+    }
+
+    /**
+     * Gets the primitive storage of given variable, in canonical order.
+     * @param variableIndex The variable index.
+     * @return An {@code Object} instance, never {@code null}; an array of the primitive type of the variable.
+     */
+    Object getStorage(final int variableIndex) {
+        return storages[variableIndex];
+    }
+}
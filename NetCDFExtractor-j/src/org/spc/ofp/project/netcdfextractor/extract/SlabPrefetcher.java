@@ -0,0 +1,205 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+
+/**
+ * Reads slabs ahead on a background thread, so that disk reads overlap with the processing of the previous slabs.
+ * <br>Slabs are handed over through a bounded queue: the background thread blocks when the queue is full, so that no more than the slabs in the queue, the slab being read and the slab being processed are held in memory.
+ * <br>When a heap budget is given and the heap is under pressure, reading ahead pauses until the queue is empty, so that only the slab being read and the slab being processed are held in memory.
+ * <br>The background thread is never interrupted, it checks whether the prefetcher is closed instead; {@link #close()} waits for it to end, so that the source file may be safely closed afterwards.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class SlabPrefetcher implements AutoCloseable {
+
+    /**
+     * Marks the end of the slabs.
+     */
+    private static final Slab END = new Slab(new int[0], new int[0], new Array[0]);
+    /**
+     * Delay between two checks of the closed flag while the queue is full or the heap is under pressure, in milliseconds.
+     */
+    private static final long POLL_DELAY = 100;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /**
+     * The slabs read ahead.
+     */
+    private final BlockingQueue<Slab> queue;
+    /**
+     * The background thread.
+     */
+    private final Thread thread;
+    /**
+     * The heap budget, {@code null} if the heap is not watched.
+     */
+    private final HeapBudget heapBudget;
+    /**
+     * The error that stopped the background thread, if any.
+     */
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+    private boolean ended = false;
+
+    /**
+     * Creates a new instance and starts reading.
+     * @param reader The slab reader.
+     * @param capacity The number of slabs that may wait in the queue.
+     * <br>If {@code capacity} &le; 0, a single slab may wait.
+     * @throws NullPointerException If {@code reader} is {@code null}.
+     */
+    public SlabPrefetcher(final SlabReader reader, final int capacity) throws NullPointerException {
+        this(reader, capacity, null);
+    }
+
+    /**
+     * Creates a new instance and starts reading.
+     * @param reader The slab reader.
+     * @param capacity The number of slabs that may wait in the queue.
+     * <br>If {@code capacity} &le; 0, a single slab may wait.
+     * @param heapBudget The heap budget, may be {@code null}.
+     * @throws NullPointerException If {@code reader} is {@code null}.
+     */
+    public SlabPrefetcher(final SlabReader reader, final int capacity, final HeapBudget heapBudget) throws NullPointerException {
+        Objects.requireNonNull(reader);
+        this.heapBudget = heapBudget;
+        queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        thread = new Thread(() -> read(reader), String.format("slab-reader-%d", THREAD_COUNT.incrementAndGet())); // NOI18N.
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reads all slabs, runs on the background thread.
+     * @param reader The slab reader.
+     */
+    private void read(final SlabReader reader) {
+        try {
+            while (!closed && reader.hasNext()) {
+                if (!awaitMemory() || !put(reader.next())) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Nothing to do, the thread ends anyway.
+        } catch (Throwable ex) {
+            // Errors too, such as an OutOfMemoryError while reading a slab, are handed over to the consumer.
+            failure = ex;
+        } finally {
+            putEnd();
+        }
+    }
+
+    /**
+     * Adds the end marker, unless this prefetcher was closed meanwhile, so that {@link #take()} never waits forever.
+     */
+    private void putEnd() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                put(END);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the queue to be empty while the heap is under pressure.
+     * @return {@code True} if reading may go on, {@code false} if this prefetcher was closed meanwhile.
+     * @throws InterruptedException If the background thread was interrupted.
+     */
+    private boolean awaitMemory() throws InterruptedException {
+        if (heapBudget == null) {
+            return !closed;
+        }
+        while (!closed && !queue.isEmpty() && heapBudget.isUnderPressure()) {
+            Thread.sleep(POLL_DELAY);
+        }
+        return !closed;
+    }
+
+    /**
+     * Waits for room in the queue and adds a slab.
+     * @param slab The slab.
+     * @return {@code True} if the slab was added, {@code false} if this prefetcher was closed meanwhile.
+     * @throws InterruptedException If the background thread was interrupted.
+     */
+    private boolean put(final Slab slab) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(slab, POLL_DELAY, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the next slab.
+     * @return A {@code Slab} instance, {@code null} if there is no more slab.
+     * @throws IOException If the slab could not be read.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     * @throws InterruptedException If the current thread was interrupted while waiting.
+     * @throws Error If an error, such as an {@code OutOfMemoryError}, stopped the background thread.
+     */
+    public Slab take() throws IOException, InvalidRangeException, InterruptedException, Error {
+        if (ended) {
+            return null;
+        }
+        final Slab slab = queue.take();
+        if (slab != END) {
+            return slab;
+        }
+        ended = true;
+        final Throwable exception = failure;
+        if (exception instanceof IOException) {
+            throw (IOException) exception;
+        } else if (exception instanceof InvalidRangeException) {
+            throw (InvalidRangeException) exception;
+        } else if (exception instanceof RuntimeException) {
+            throw (RuntimeException) exception;
+        } else if (exception instanceof Error) {
+            throw (Error) exception;
+        } else if (exception != null) {
+            throw new IOException(exception);
+        }
+        return null;
+    }
+
+    /**
+     * Stops reading, discards the slabs read ahead and waits for the background thread to end.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        queue.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,556 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.Attribute;
+import ucar.nc2.Variable;
+
+/**
+ * Reads variables sharing the same dimensions by hyperslabs instead of cell by cell.
+ * <br>Only the given sections are read, one after the other; within a section, slabs are produced in canonical order: the innermost dimensions are always read in full, the outermost dimensions are split so that a slab fits in the given byte budget.
+ * <br>Consecutive sections that differ along a single dimension, such as both sides of the longitude seam, are read together: each slab joins them along that dimension, so that rows come out in the order of the other dimensions instead of section after section.
+ * <br>A single slab always contains at least one full row along the last dimension.
+ * <br>When variables are chunked (NetCDF-4/HDF5), slab boundaries follow chunk boundaries, so that each chunk is inflated once; the slab then holds whole layers of chunks and rows come out in canonical order without any further reordering.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class SlabReader {
+
+    /**
+     * The minimum slab size in bytes, is equal to {@value}.
+     */
+    public static final long MIN_SLAB_SIZE = 1 << 20;
+
+    /**
+     * The maximum number of cells in a slab, is equal to {@value}.
+     * <br>Each variable of a slab is held in a single Java array, whatever the budget.
+     */
+    public static final int MAX_SLAB_CELLS = Integer.MAX_VALUE - 8;
+
+    /**
+     * How many times a slab may exceed the budget to hold a whole layer of chunks, is equal to {@value}.
+     * <br>Beyond that, slabs follow the budget and some chunks are inflated several times.
+     */
+    public static final int MAX_CHUNK_OVERSHOOT = 4;
+
+    /**
+     * The variables to read.
+     */
+    private final Variable[] variables;
+    /**
+     * The sections to read, grouped; the sections of a group are read together.
+     */
+    private final List<List<Section>> groups;
+    /**
+     * Maximum number of cells in a slab, no more than {@link #MAX_SLAB_CELLS}.
+     */
+    private final long budget;
+    /**
+     * Chunk shape common to all variables, {@code null} if variables are not chunked.
+     */
+    private final int[] chunkShape;
+    /**
+     * Index of the group being read.
+     */
+    private int groupIndex = -1;
+    /**
+     * The sections of the group being read.
+     */
+    private List<Section> blocks;
+    /**
+     * Dimension along which the sections of the group being read are joined, -1 if the group holds a single section.
+     */
+    private int seamDimension;
+    /**
+     * Origin of the group being read.
+     */
+    private int[] start;
+    /**
+     * Shape of the group being read; along the seam dimension, the length of all its sections.
+     */
+    private int[] sizes;
+    /**
+     * Index of the dimension along which the slab is split; dimensions before it have a length of 1 in the slab, dimensions after it are read in full.
+     */
+    private int splitDimension;
+    /**
+     * Number of elements to read along the split dimension.
+     */
+    private int splitLength;
+    /**
+     * Slabs end on multiples of this value along the split dimension.
+     */
+    private int alignment;
+    /**
+     * Origin of the next slab, relative to the origin of the group.
+     */
+    private int[] origin;
+    /**
+     * {@code True} while there are slabs to read.
+     */
+    private boolean hasNext;
+
+    /**
+     * Creates a new instance.
+     * @param variables The variables to read, all must have the same shape.
+     * @param sizes The dimension sizes.
+     * @param maxSlabSize The maximum size of a slab in bytes.
+     * @throws NullPointerException If {@code variables} or {@code sizes} is {@code null}.
+     * @throws IllegalArgumentException If {@code sizes} is empty.
+     */
+    public SlabReader(final Variable[] variables, final int[] sizes, final long maxSlabSize) throws NullPointerException, IllegalArgumentException {
+        this(variables, Collections.singletonList(new Section(Objects.requireNonNull(sizes))), maxSlabSize);
+    }
+
+    /**
+     * Creates a new instance that reads only parts of the variables.
+     * @param variables The variables to read, all must have the same shape.
+     * @param sections The sections to read, in order; strides are ignored. Consecutive sections that differ along a single dimension are read together.
+     * @param maxSlabSize The maximum size of a slab in bytes.
+     * @throws NullPointerException If {@code variables} or {@code sections} is {@code null}.
+     * @throws IllegalArgumentException If a section is empty.
+     */
+    public SlabReader(final Variable[] variables, final List<Section> sections, final long maxSlabSize) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(variables);
+        Objects.requireNonNull(sections);
+        if (sections.stream().anyMatch(section -> section.getRank() == 0)) {
+            throw new IllegalArgumentException("Cannot read scalar variables by slabs."); // NOI18N.
+        }
+        this.variables = variables;
+        groups = group(sections);
+        final long cellSize = Math.max(1, Arrays.stream(variables)
+                .mapToLong(variable -> variable.getDataType().getSize())
+                .sum());
+        budget = Math.min(MAX_SLAB_CELLS, Math.max(1, Math.max(MIN_SLAB_SIZE, maxSlabSize) / cellSize));
+        chunkShape = getChunkShape(variables);
+        nextGroup();
+    }
+
+    /**
+     * Groups consecutive sections that differ along a single dimension.
+     * @param sections The sections.
+     * @return A {@code List<List<Section>>} instance, never {@code null}.
+     */
+    private static List<List<Section>> group(final List<Section> sections) {
+        final List<List<Section>> result = new ArrayList<>();
+        List<Section> group = null;
+        for (final Section section : sections) {
+            if (group != null) {
+                final int dimension = getSeamDimension(group.get(0), section);
+                if (dimension >= 0 && (group.size() == 1 || dimension == getSeamDimension(group))) {
+                    group.add(section);
+                    continue;
+                }
+            }
+            group = new ArrayList<>();
+            group.add(section);
+            result.add(group);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the single dimension along which two sections differ.
+     * @param first The first section.
+     * @param second The second section.
+     * @return An {@code int}, -1 if the sections are the same or differ along several dimensions.
+     */
+    private static int getSeamDimension(final Section first, final Section second) {
+        if (first.getRank() != second.getRank()) {
+            return -1;
+        }
+        int result = -1;
+        for (int dimension = 0; dimension < first.getRank(); dimension++) {
+            if (first.getOrigin(dimension) != second.getOrigin(dimension) || first.getShape(dimension) != second.getShape(dimension)) {
+                if (result >= 0) {
+                    return -1;
+                }
+                result = dimension;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the dimension along which the sections of a group are joined.
+     * @param group The group.
+     * @return An {@code int}, -1 if the group holds a single section.
+     */
+    private static int getSeamDimension(final List<Section> group) {
+        return (group.size() < 2) ? -1 : getSeamDimension(group.get(0), group.get(1));
+    }
+
+    /**
+     * Gets the shape of a group.
+     * @param group The group.
+     * @param seamDimension The dimension along which its sections are joined, -1 if it holds a single section.
+     * @return An {@code int[]} instance, never {@code null}.
+     */
+    private static int[] getShape(final List<Section> group, final int seamDimension) {
+        final int[] result = group.get(0).getShape();
+        if (seamDimension >= 0) {
+            result[seamDimension] = group.stream()
+                    .mapToInt(section -> section.getShape(seamDimension))
+                    .sum();
+        }
+        return result;
+    }
+
+    /**
+     * Splits a part of a group into sections of the variables.
+     * @param group The group.
+     * @param seamDimension The dimension along which its sections are joined, -1 if it holds a single section.
+     * @param origin The origin of the part; along the seam dimension, relative to the start of the group.
+     * @param shape The shape of the part.
+     * @param result Receives the sections, in order.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private static void addSections(final List<Section> group, final int seamDimension, final int[] origin, final int[] shape, final List<Section> result) throws InvalidRangeException {
+        if (seamDimension < 0) {
+            result.add(new Section(origin, shape));
+            return;
+        }
+        final int from = origin[seamDimension];
+        final int to = from + shape[seamDimension];
+        int blockStart = 0;
+        for (final Section block : group) {
+            final int blockLength = block.getShape(seamDimension);
+            final int partFrom = Math.max(from, blockStart);
+            final int partTo = Math.min(to, blockStart + blockLength);
+            if (partFrom < partTo) {
+                final int[] partOrigin = origin.clone();
+                final int[] partShape = shape.clone();
+                partOrigin[seamDimension] = block.getOrigin(seamDimension) + partFrom - blockStart;
+                partShape[seamDimension] = partTo - partFrom;
+                result.add(new Section(partOrigin, partShape));
+            }
+            blockStart += blockLength;
+        }
+    }
+
+    /**
+     * Gets the sections that remain once given number of cells has been read.
+     * <br>Cells are counted in the order they are read, section after section or group after group; the part of a section or group that remains is split into at most one section or group per dimension.
+     * @param sections The sections.
+     * @param count The number of cells already read.
+     * @return A {@code List<Section>} instance, never {@code null}; empty if all cells have been read.
+     * @throws NullPointerException If {@code sections} is {@code null}.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    public static List<Section> skip(final List<Section> sections, final long count) throws NullPointerException, InvalidRangeException {
+        Objects.requireNonNull(sections);
+        final List<Section> result = new ArrayList<>();
+        long remainder = Math.max(0, count);
+        for (final List<Section> group : group(sections)) {
+            final int seamDimension = getSeamDimension(group);
+            final int[] shape = getShape(group, seamDimension);
+            final long size = Odometer.count(shape);
+            if (remainder >= size) {
+                remainder -= size;
+                continue;
+            }
+            if (remainder == 0) {
+                result.addAll(group);
+                continue;
+            }
+            // Index of the first cell to read.
+            final int[] origin = group.get(0).getOrigin();
+            if (seamDimension >= 0) {
+                origin[seamDimension] = 0;
+            }
+            final int[] index = new int[shape.length];
+            for (int dimension = shape.length - 1; dimension >= 0; dimension--) {
+                index[dimension] = (int) (remainder % shape[dimension]);
+                remainder /= shape[dimension];
+            }
+            // Innermost dimension whose index is not 0: the first part starts there.
+            int first = shape.length - 1;
+            while (index[first] == 0) {
+                first--;
+            }
+            for (int dimension = first; dimension >= 0; dimension--) {
+                final int from = (dimension == first) ? index[dimension] : index[dimension] + 1;
+                if (from >= shape[dimension]) {
+                    continue;
+                }
+                final int[] partOrigin = new int[shape.length];
+                final int[] partShape = new int[shape.length];
+                for (int other = 0; other < shape.length; other++) {
+                    if (other < dimension) {
+                        partOrigin[other] = origin[other] + index[other];
+                        partShape[other] = 1;
+                    } else if (other == dimension) {
+                        partOrigin[other] = origin[other] + from;
+                        partShape[other] = shape[other] - from;
+                    } else {
+                        partOrigin[other] = origin[other];
+                        partShape[other] = shape[other];
+                    }
+                }
+                addSections(group, seamDimension, partOrigin, partShape, result);
+            }
+            remainder = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Moves to the next non-empty group, if any.
+     */
+    private void nextGroup() {
+        hasNext = false;
+        while (!hasNext && ++groupIndex < groups.size()) {
+            blocks = groups.get(groupIndex);
+            seamDimension = getSeamDimension(blocks);
+            start = blocks.get(0).getOrigin();
+            sizes = getShape(blocks, seamDimension);
+            hasNext = Arrays.stream(sizes).allMatch(size -> size > 0);
+        }
+        if (!hasNext) {
+            return;
+        }
+        // Find the outermost dimension from which all inner dimensions fit in the budget.
+        int dimension = sizes.length - 1;
+        long innerLength = sizes[dimension];
+        while (dimension > 0 && innerLength * sizes[dimension - 1] <= budget) {
+            dimension--;
+            innerLength *= sizes[dimension];
+        }
+        if (dimension > 0) {
+            // Split along the dimension before the one fully read.
+            splitDimension = dimension - 1;
+            splitLength = (int) Math.max(1, Math.min(sizes[splitDimension], budget / Math.max(1, innerLength)));
+        } else {
+            // Everything fits.
+            splitDimension = 0;
+            splitLength = sizes[0];
+        }
+        alignment = 1;
+        if (chunkShape != null) {
+            alignChunks();
+        }
+        // Chunk boundaries do not line up across the sections of a group.
+        if (splitDimension == seamDimension) {
+            alignment = 1;
+        }
+        origin = new int[sizes.length];
+    }
+
+    /**
+     * Moves the split dimension and adjusts the split length so that slabs hold whole layers of chunks.
+     * <br>Dimensions before the split dimension are read one index at a time: if one of them is chunked, the split moves to it.
+     */
+    private void alignChunks() {
+        int dimension = splitDimension;
+        for (int index = 0; index < splitDimension; index++) {
+            if (chunkShape[index] > 1 && sizes[index] > 1) {
+                dimension = index;
+                break;
+            }
+        }
+        final int chunk = chunkShape[dimension];
+        if (chunk <= 1) {
+            return;
+        }
+        long innerLength = 1;
+        for (int index = dimension + 1; index < sizes.length; index++) {
+            innerLength *= sizes[index];
+        }
+        // Do not trade memory for speed beyond reason, nor beyond the size of an array.
+        final long layerLength = Math.min(chunk, sizes[dimension]) * innerLength;
+        if (layerLength > MAX_CHUNK_OVERSHOOT * budget || layerLength > MAX_SLAB_CELLS) {
+            return;
+        }
+        final long fit = budget / innerLength;
+        splitDimension = dimension;
+        splitLength = (fit >= sizes[dimension]) ? sizes[dimension] : (int) Math.max(chunk, fit / chunk * chunk);
+        alignment = chunk;
+    }
+
+    /**
+     * Gets the chunk shape common to all variables.
+     * <br>The chunk shape is read from the {@code _ChunkSizes} attribute (or {@code _ChunkSize} in older libraries) that NetCDF-Java adds to chunked variables; when variables are chunked differently, the least common multiple is used along each dimension.
+     * @param variables The variables.
+     * @return An {@code int[]} instance, {@code null} if no variable is chunked.
+     */
+    private static int[] getChunkShape(final Variable[] variables) {
+        int[] result = null;
+        for (final Variable variable : variables) {
+            Attribute attribute = variable.findAttribute("_ChunkSizes"); // NOI18N.
+            if (attribute == null) {
+                attribute = variable.findAttribute("_ChunkSize"); // NOI18N.
+            }
+            final int rank = variable.getRank();
+            if (attribute == null || attribute.getLength() < rank) {
+                continue;
+            }
+            if (result == null) {
+                result = new int[rank];
+                Arrays.fill(result, 1);
+            }
+            for (int dimension = 0; dimension < rank; dimension++) {
+                final Number value = attribute.getNumericValue(dimension);
+                final int chunk = (value == null) ? 1 : Math.max(1, value.intValue());
+                // A chunk larger than the dimension is the same as a chunk covering the dimension.
+                result[dimension] = (int) Math.min(variable.getShape(dimension), lcm(result[dimension], chunk));
+            }
+        }
+        return result;
+    }
+
+    private static long lcm(final long a, final long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            final long remainder = x % y;
+            x = y;
+            y = remainder;
+        }
+        return a / x * b;
+    }
+
+    /**
+     * Test whether there are more slabs to read.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * Reads the next slab.
+     * @return A {@code Slab} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     * @throws NoSuchElementException If there is no more slabs to read.
+     */
+    public Slab next() throws IOException, InvalidRangeException, NoSuchElementException {
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+        final int[] slabOrigin = new int[sizes.length];
+        final int[] slabShape = new int[sizes.length];
+        for (int dimension = 0; dimension < sizes.length; dimension++) {
+            slabOrigin[dimension] = start[dimension] + origin[dimension];
+            if (dimension < splitDimension) {
+                slabShape[dimension] = 1;
+            } else if (dimension == splitDimension) {
+                slabShape[dimension] = Math.min(getSplitLength(slabOrigin[dimension]), sizes[dimension] - origin[dimension]);
+            } else {
+                slabShape[dimension] = sizes[dimension];
+            }
+        }
+        final Slab result = (seamDimension < 0) ? read(slabOrigin, slabShape) : readJoined(slabOrigin, slabShape);
+        advance(slabShape[splitDimension]);
+        return result;
+    }
+
+    /**
+     * Reads a single block.
+     * @param slabOrigin The origin of the slab.
+     * @param slabShape The shape of the slab.
+     * @return A {@code Slab} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private Slab read(final int[] slabOrigin, final int[] slabShape) throws IOException, InvalidRangeException {
+        final Array[] data = new Array[variables.length];
+        for (int variableIndex = 0; variableIndex < variables.length; variableIndex++) {
+            data[variableIndex] = variables[variableIndex].read(slabOrigin, slabShape);
+        }
+        return new Slab(slabOrigin, slabShape, data);
+    }
+
+    /**
+     * Reads the part of each section of the group that falls within a slab and joins them along the seam dimension.
+     * @param slabOrigin The origin of the slab; along the seam dimension, relative to the start of the group.
+     * @param slabShape The shape of the slab.
+     * @return A {@code Slab} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private Slab readJoined(final int[] slabOrigin, final int[] slabShape) throws IOException, InvalidRangeException {
+        slabOrigin[seamDimension] = origin[seamDimension];
+        final List<Section> parts = new ArrayList<>();
+        addSections(blocks, seamDimension, slabOrigin, slabShape, parts);
+        if (parts.size() == 1) {
+            return read(parts.get(0).getOrigin(), parts.get(0).getShape());
+        }
+        final Slab[] slabs = new Slab[parts.size()];
+        final int[] seamIndices = new int[slabShape[seamDimension]];
+        int position = 0;
+        for (int partIndex = 0; partIndex < slabs.length; partIndex++) {
+            final Section part = parts.get(partIndex);
+            slabs[partIndex] = read(part.getOrigin(), part.getShape());
+            for (int index = 0; index < part.getShape(seamDimension); index++) {
+                seamIndices[position++] = part.getOrigin(seamDimension) + index;
+            }
+        }
+        // Rows of each part, one part after the other, for each index of the outer dimensions.
+        int outerLength = 1;
+        for (int dimension = 0; dimension < seamDimension; dimension++) {
+            outerLength *= slabShape[dimension];
+        }
+        int innerLength = 1;
+        for (int dimension = seamDimension + 1; dimension < slabShape.length; dimension++) {
+            innerLength *= slabShape[dimension];
+        }
+        final Array[] data = new Array[variables.length];
+        for (int variableIndex = 0; variableIndex < variables.length; variableIndex++) {
+            data[variableIndex] = Array.factory(slabs[0].getData(variableIndex).getElementType(), slabShape);
+            final Object storage = data[variableIndex].getStorage();
+            int offset = 0;
+            for (int outer = 0; outer < outerLength; outer++) {
+                for (final Slab slab : slabs) {
+                    final int length = slab.getShape(seamDimension) * innerLength;
+                    System.arraycopy(slab.getStorage(variableIndex), outer * length, storage, offset, length);
+                    offset += length;
+                }
+            }
+        }
+        final int[][] indices = new int[slabShape.length][];
+        indices[seamDimension] = seamIndices;
+        slabOrigin[seamDimension] = seamIndices[0];
+        return new Slab(slabOrigin, slabShape, indices, data);
+    }
+
+    /**
+     * Gets the length of the next slab along the split dimension, so that it ends on a chunk boundary.
+     * @param from The origin of the slab along the split dimension.
+     * @return An {@code int} &gt; 0.
+     */
+    private int getSplitLength(final int from) {
+        if (alignment <= 1 || splitLength >= sizes[splitDimension]) {
+            return splitLength;
+        }
+        final int to = (from + splitLength) / alignment * alignment;
+        return (to > from) ? to - from : splitLength;
+    }
+
+    /**
+     * Moves the origin to the next slab.
+     * @param step The length of the slab that was just read along the split dimension.
+     */
+    private void advance(final int step) {
+        origin[splitDimension] += step;
+        for (int dimension = splitDimension; dimension > 0 && origin[dimension] >= sizes[dimension]; dimension--) {
+            origin[dimension] = 0;
+            origin[dimension - 1]++;
+        }
+        if (origin[0] >= sizes[0]) {
+            nextGroup();
+        }
+    }
+}
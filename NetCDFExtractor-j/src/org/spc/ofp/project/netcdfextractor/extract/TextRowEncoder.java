@@ -0,0 +1,78 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import ucar.ma2.DataType;
+
+/**
+ * Encodes rows of slabs as UTF-8 text.
+ * <br>Columns are separated by the separator and each row is followed by the line separator.
+ * <br>Instances are immutable and may be shared by all threads extracting a given file.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class TextRowEncoder extends RowEncoder {
+
+    private final byte[] separator;
+    private final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private final byte[] outputMissingValue;
+    private final int precision;
+    private final AxisLabels[] labels;
+
+    /**
+     * Creates a new instance.
+     * @param separator The column separator.
+     * @param outputMissingValue The value printed out for missing, fill or out of bounds values; if {@code null}, nothing is printed out.
+     * @param precision The number of decimals of floating point values; if negative, the shortest decimal that rounds to the value is printed out.
+     * @param labels The labels of each axis.
+     * @param dataTypes The data type of each variable.
+     * @param fillValues The fill value of each variable.
+     * @param missingValues The missing value of each variable.
+     * @param scaleFactors The scale factor of each variable.
+     * @param addOffsets The add offset of each variable.
+     * @param validMins The minimum valid value of each variable.
+     * @param validMaxs The maximum valid value of each variable.
+     * @throws NullPointerException If any parameter other than {@code outputMissingValue} is {@code null}.
+     */
+    public TextRowEncoder(final String separator, final Object outputMissingValue, final int precision,
+            final AxisLabels[] labels,
+            final DataType[] dataTypes, final Number[] fillValues, final Number[] missingValues, final Number[] scaleFactors, final Number[] addOffsets,
+            final Number[] validMins, final Number[] validMaxs) throws NullPointerException {
+        super(dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+        Objects.requireNonNull(separator);
+        Objects.requireNonNull(labels);
+        this.separator = separator.getBytes(StandardCharsets.UTF_8);
+        this.outputMissingValue = (outputMissingValue == null) ? null : String.valueOf(outputMissingValue).getBytes(StandardCharsets.UTF_8);
+        this.precision = precision;
+        this.labels = labels.clone();
+    }
+
+    @Override
+    protected void encodeRow(final DecodedColumn[] values, final int row, final Odometer position, final RowBuffer buffer) {
+        // Axes.
+        for (int axis = 0; axis < labels.length; axis++) {
+            if (axis > 0) {
+                buffer.append(separator);
+            }
+            buffer.append(labels[axis].get(position.get(axis)));
+        }
+        // Variables.
+        for (final DecodedColumn column : values) {
+            buffer.append(separator);
+            if (!column.isValid(row)) {
+                if (outputMissingValue != null) {
+                    buffer.append(outputMissingValue);
+                }
+            } else if (column.isIntegral()) {
+                buffer.append(column.getLong(row));
+            } else {
+                buffer.append(column.getDouble(row), precision);
+            }
+        }
+        buffer.append(lineSeparator);
+    }
+}
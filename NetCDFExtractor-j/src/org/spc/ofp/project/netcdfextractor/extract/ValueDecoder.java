@@ -0,0 +1,86 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.util.Objects;
+import ucar.ma2.DataType;
+
+/**
+ * Decodes the raw values of the variables of a file.
+ * <br>A value is valid if it is not {@code NaN}, not the fill value, not the missing value and within the valid range; valid values are unpacked using the scale factor and the add offset.
+ * <br>Each variable gets a decoder specialized for its data type once per file; values are then decoded a range of rows at a time into {@link DecodedColumn columns}.
+ * <br>Instances are immutable and may be shared by all threads extracting a given file.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ValueDecoder {
+
+    private final VariableDecoder[] decoders;
+
+    /**
+     * Creates a new instance.
+     * @param dataTypes The data type of each variable.
+     * @param fillValues The fill value of each variable.
+     * @param missingValues The missing value of each variable.
+     * @param scaleFactors The scale factor of each variable.
+     * @param addOffsets The add offset of each variable.
+     * @param validMins The minimum valid value of each variable.
+     * @param validMaxs The maximum valid value of each variable.
+     * @throws NullPointerException If any parameter is {@code null}.
+     * @throws IllegalArgumentException If a data type is not supported.
+     */
+    public ValueDecoder(final DataType[] dataTypes, final Number[] fillValues, final Number[] missingValues, final Number[] scaleFactors, final Number[] addOffsets,
+            final Number[] validMins, final Number[] validMaxs) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(dataTypes);
+        decoders = new VariableDecoder[dataTypes.length];
+        for (int variableIndex = 0; variableIndex < dataTypes.length; variableIndex++) {
+            decoders[variableIndex] = VariableDecoder.create(dataTypes[variableIndex],
+                    fillValues[variableIndex], missingValues[variableIndex], scaleFactors[variableIndex], addOffsets[variableIndex],
+                    validMins[variableIndex], validMaxs[variableIndex]);
+        }
+    }
+
+    /**
+     * Gets the number of variables.
+     * @return An {@code int} &ge; 0.
+     */
+    public int getVariableCount() {
+        return decoders.length;
+    }
+
+    /**
+     * Gets the data type of a variable.
+     * @param variableIndex The index of the variable.
+     * @return A {@code DataType} instance, never {@code null}.
+     */
+    public DataType getDataType(final int variableIndex) {
+        return decoders[variableIndex].getDataType();
+    }
+
+    /**
+     * Creates the columns that receive decoded values, one per variable.
+     * @return A {@code DecodedColumn[]} instance, never {@code null}.
+     */
+    public DecodedColumn[] createColumns() {
+        final DecodedColumn[] result = new DecodedColumn[decoders.length];
+        for (int variableIndex = 0; variableIndex < result.length; variableIndex++) {
+            result[variableIndex] = new DecodedColumn();
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a range of rows from a slab; row {@code i} of each column is the cell {@code from + i} of the slab.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @param columns Receives the values of each variable, see {@link #createColumns()}.
+     */
+    public void decode(final Slab slab, final int from, final int to, final DecodedColumn[] columns) {
+        for (int variableIndex = 0; variableIndex < decoders.length; variableIndex++) {
+            decoders[variableIndex].decode(slab, variableIndex, from, to, columns[variableIndex]);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.util.Objects;
+import ucar.ma2.DataType;
+
+/**
+ * Decodes the raw values of a single variable.
+ * <br>There is one subclass per data type: each decodes a range of rows in a single loop over the primitive storage of the slab, with its decoding values held in primitive fields.
+ * <br>Instances are immutable and may be shared by all threads extracting a given file.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+abstract class VariableDecoder {
+
+    private final DataType dataType;
+
+    private VariableDecoder(final DataType dataType) {
+        this.dataType = dataType;
+    }
+
+    /**
+     * Creates a decoder.
+     * @param dataType The data type of the variable.
+     * @param fillValue The fill value of the variable, {@code NaN} if it has none.
+     * @param missingValue The missing value of the variable, {@code NaN} if it has none.
+     * @param scaleFactor The scale factor of the variable.
+     * @param addOffset The add offset of the variable.
+     * @param validMin The minimum valid value of the variable.
+     * @param validMax The maximum valid value of the variable.
+     * @return A {@code VariableDecoder} instance, never {@code null}.
+     * @throws NullPointerException If any parameter is {@code null}.
+     * @throws IllegalArgumentException If {@code dataType} is not supported.
+     */
+    static VariableDecoder create(final DataType dataType, final Number fillValue, final Number missingValue, final Number scaleFactor, final Number addOffset,
+            final Number validMin, final Number validMax) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(dataType);
+        Objects.requireNonNull(fillValue);
+        Objects.requireNonNull(missingValue);
+        Objects.requireNonNull(scaleFactor);
+        Objects.requireNonNull(addOffset);
+        Objects.requireNonNull(validMin);
+        Objects.requireNonNull(validMax);
+        switch (dataType) {
+            case SHORT:
+                return new ShortDecoder(fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+            case INT:
+                return new IntDecoder(fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+            case LONG:
+                return new LongDecoder(fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+            case FLOAT:
+                return new FloatDecoder(fillValue.doubleValue(), missingValue.doubleValue(), scaleFactor.doubleValue(), addOffset.doubleValue(),
+                        validMin.doubleValue(), validMax.doubleValue());
+            case DOUBLE:
+                return new DoubleDecoder(fillValue.doubleValue(), missingValue.doubleValue(), scaleFactor.doubleValue(), addOffset.doubleValue(),
+                        validMin.doubleValue(), validMax.doubleValue());
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported data type %s.", dataType)); // NOI18N.
+        }
+    }
+
+    /**
+     * Gets the data type of the variable.
+     * @return A {@code DataType} instance, never {@code null}.
+     */
+    final DataType getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Decodes a range of rows from a slab.
+     * @param slab The slab.
+     * @param variableIndex The index of the variable in the slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @param column Receives the decoded values.
+     */
+    abstract void decode(final Slab slab, final int variableIndex, final int from, final int to, final DecodedColumn column);
+
+    /**
+     * Tests whether a value is of an integer type.
+     * @param value The value.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private static boolean isIntegral(final Number value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * Tests whether a value is an integer that a {@code long} holds exactly.
+     * @param value The value.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private static boolean isExactLong(final Number value) {
+        if (isIntegral(value)) {
+            return true;
+        }
+        final double doubleValue = value.doubleValue();
+        return Math.rint(doubleValue) == doubleValue && Math.abs(doubleValue) <= (1L << 53);
+    }
+
+    /**
+     * Base class for integer variables.
+     * <br>The fill value, the missing value and the valid range keep the exact value of integer attributes; the fill value and the missing value only apply if they are integers. Values are decoded as {@code long} if the scale factor and the add offset are integers.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private abstract static class IntegerDecoder extends VariableDecoder {
+
+        final boolean hasFillValue;
+        final long fillValue;
+        final boolean hasMissingValue;
+        final long missingValue;
+        final long validMin;
+        final long validMax;
+        final boolean integral;
+        final long longScaleFactor;
+        final long longAddOffset;
+        final double scaleFactor;
+        final double addOffset;
+
+        IntegerDecoder(final DataType dataType, final Number fillValue, final Number missingValue, final Number scaleFactor, final Number addOffset,
+                final Number validMin, final Number validMax) {
+            super(dataType);
+            // Integer attributes are compared as exact longs, a double does not hold every long.
+            hasFillValue = isExactLong(fillValue);
+            this.fillValue = fillValue.longValue();
+            hasMissingValue = isExactLong(missingValue);
+            this.missingValue = missingValue.longValue();
+            // Casts saturate, a bound beyond the range of long does not exclude any value.
+            this.validMin = isIntegral(validMin) ? validMin.longValue() : Double.isNaN(validMin.doubleValue()) ? Long.MIN_VALUE : (long) Math.ceil(validMin.doubleValue());
+            this.validMax = isIntegral(validMax) ? validMax.longValue() : Double.isNaN(validMax.doubleValue()) ? Long.MAX_VALUE : (long) Math.floor(validMax.doubleValue());
+            integral = isExactLong(scaleFactor) && isExactLong(addOffset);
+            longScaleFactor = scaleFactor.longValue();
+            longAddOffset = addOffset.longValue();
+            this.scaleFactor = scaleFactor.doubleValue();
+            this.addOffset = addOffset.doubleValue();
+        }
+
+        final boolean isValid(final long value) {
+            return (!hasFillValue || value != fillValue) && (!hasMissingValue || value != missingValue)
+                    && validMin <= value && value <= validMax;
+        }
+    }
+
+    private static final class ShortDecoder extends IntegerDecoder {
+
+        ShortDecoder(final Number fillValue, final Number missingValue, final Number scaleFactor, final Number addOffset, final Number validMin, final Number validMax) {
+            super(DataType.SHORT, fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+        }
+
+        @Override
+        void decode(final Slab slab, final int variableIndex, final int from, final int to, final DecodedColumn column) {
+            final short[] raw = (short[]) slab.getStorage(variableIndex);
+            final int size = to - from;
+            if (integral) {
+                final long[] values = column.prepareLongs(size);
+                final boolean[] validity = column.getValidity();
+                for (int row = 0; row < size; row++) {
+                    final long value = raw[from + row];
+                    validity[row] = isValid(value);
+                    values[row] = value * longScaleFactor + longAddOffset;
+                }
+            } else {
+                final double[] values = column.prepareDoubles(size);
+                final boolean[] validity = column.getValidity();
+                for (int row = 0; row < size; row++) {
+                    final long value = raw[from + row];
+                    validity[row] = isValid(value);
+                    values[row] = value * scaleFactor + addOffset;
+                }
+            }
+        }
+    }
+
+    private static final class IntDecoder extends IntegerDecoder {
+
+        IntDecoder(final Number fillValue, final Number missingValue, final Number scaleFactor, final Number addOffset, final Number validMin, final Number validMax) {
+            super(DataType.INT, fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+        }
+
+        @Override
+        void decode(final Slab slab, final int variableIndex, final int from, final int to, final DecodedColumn column) {
+            final int[] raw = (int[]) slab.getStorage(variableIndex);
+            final int size = to - from;
+            if (integral) {
+                final long[] values = column.prepareLongs(size);
+                final boolean[] validity = column.getValidity();
+                for (int row = 0; row < size; row++) {
+                    final long value = raw[from + row];
+                    validity[row] = isValid(value);
+                    values[row] = value * longScaleFactor + longAddOffset;
+                }
+            } else {
+                final double[] values = column.prepareDoubles(size);
+                final boolean[] validity = column.getValidity();
+                for (int row = 0; row < size; row++) {
+                    final long value = raw[from + row];
+                    validity[row] = isValid(value);
+                    values[row] = value * scaleFactor + addOffset;
+                }
+            }
+        }
+    }
+
+    private static final class LongDecoder extends IntegerDecoder {
+
+        LongDecoder(final Number fillValue, final Number missingValue, final Number scaleFactor, final Number addOffset, final Number validMin, final Number validMax) {
+            super(DataType.LONG, fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+        }
+
+        @Override
+        void decode(final Slab slab, final int variableIndex, final int from, final int to, final DecodedColumn column) {
+            final long[] raw = (long[]) slab.getStorage(variableIndex);
+            final int size = to - from;
+            if (integral) {
+                final long[] values = column.prepareLongs(size);
+                final boolean[] validity = column.getValidity();
+                for (int row = 0; row < size; row++) {
+                    final long value = raw[from + row];
+                    validity[row] = isValid(value);
+                    values[row] = value * longScaleFactor + longAddOffset;
+                }
+            } else {
+                final double[] values = column.prepareDoubles(size);
+                final boolean[] validity = column.getValidity();
+                for (int row = 0; row < size; row++) {
+                    final long value = raw[from + row];
+                    validity[row] = isValid(value);
+                    values[row] = value * scaleFactor + addOffset;
+                }
+            }
+        }
+    }
+
+    /**
+     * Base class for floating point variables.
+     * <br>{@code NaN} values are never valid.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private abstract static class FloatingPointDecoder extends VariableDecoder {
+
+        final double fillValue;
+        final double missingValue;
+        final double validMin;
+        final double validMax;
+        final double scaleFactor;
+        final double addOffset;
+
+        FloatingPointDecoder(final DataType dataType, final double fillValue, final double missingValue, final double scaleFactor, final double addOffset,
+                final double validMin, final double validMax) {
+            super(dataType);
+            this.fillValue = fillValue;
+            this.missingValue = missingValue;
+            this.validMin = Double.isNaN(validMin) ? Double.NEGATIVE_INFINITY : validMin;
+            this.validMax = Double.isNaN(validMax) ? Double.POSITIVE_INFINITY : validMax;
+            this.scaleFactor = scaleFactor;
+            this.addOffset = addOffset;
+        }
+
+        final boolean isValid(final double value) {
+            return !Double.isNaN(value) && value != fillValue && value != missingValue
+                    && validMin <= value && value <= validMax;
+        }
+    }
+
+    private static final class FloatDecoder extends FloatingPointDecoder {
+
+        FloatDecoder(final double fillValue, final double missingValue, final double scaleFactor, final double addOffset, final double validMin, final double validMax) {
+            super(DataType.FLOAT, fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+        }
+
+        @Override
+        void decode(final Slab slab, final int variableIndex, final int from, final int to, final DecodedColumn column) {
+            final float[] raw = (float[]) slab.getStorage(variableIndex);
+            final int size = to - from;
+            final double[] values = column.prepareDoubles(size);
+            final boolean[] validity = column.getValidity();
+            for (int row = 0; row < size; row++) {
+                final double value = raw[from + row];
+                validity[row] = isValid(value);
+                values[row] = value * scaleFactor + addOffset;
+            }
+        }
+    }
+
+    private static final class DoubleDecoder extends FloatingPointDecoder {
+
+        DoubleDecoder(final double fillValue, final double missingValue, final double scaleFactor, final double addOffset, final double validMin, final double validMax) {
+            super(DataType.DOUBLE, fillValue, missingValue, scaleFactor, addOffset, validMin, validMax);
+        }
+
+        @Override
+        void decode(final Slab slab, final int variableIndex, final int from, final int to, final DecodedColumn column) {
+            final double[] raw = (double[]) slab.getStorage(variableIndex);
+            final int size = to - from;
+            final double[] values = column.prepareDoubles(size);
+            final boolean[] validity = column.getValidity();
+            for (int row = 0; row < size; row++) {
+                final double value = raw[from + row];
+                validity[row] = isValid(value);
+                values[row] = value * scaleFactor + addOffset;
+            }
+        }
+    }
+}
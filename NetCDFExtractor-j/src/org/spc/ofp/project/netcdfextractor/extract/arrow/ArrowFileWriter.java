@@ -0,0 +1,441 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.arrow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.spc.ofp.project.netcdfextractor.extract.Axis;
+import org.spc.ofp.project.netcdfextractor.extract.ColumnarFileWriter;
+import org.spc.ofp.project.netcdfextractor.extract.DecodedColumn;
+import org.spc.ofp.project.netcdfextractor.extract.Odometer;
+import org.spc.ofp.project.netcdfextractor.extract.RowBuffer;
+import org.spc.ofp.project.netcdfextractor.extract.Slab;
+import org.spc.ofp.project.netcdfextractor.extract.ValueDecoder;
+
+/**
+ * Writes rows of slabs in the Apache Arrow IPC file format (also known as Feather V2).
+ * <br>Columns are: time axes as non-nullable {@code timestamp[us, tz=UTC]}, other axes as non-nullable {@code float32} and each variable as a nullable {@code float64}; invalid values are null.
+ * <br>A record batch is written for each index of the first axis (usually the time step); steps larger than the batch budget are split in several batches.
+ * <br>Values are appended to the column buffers as rows are read, the buffers are then written as the body of the record batch without further copy.
+ * <br>The file is laid out as: magic number, schema message, record batch messages, then the footer written by {@link #finish()}; the output stream is not closed by this writer.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ArrowFileWriter implements ColumnarFileWriter {
+
+    /**
+     * The default memory budget of a record batch, in bytes.
+     */
+    public static final long DEFAULT_BATCH_SIZE = 64L << 20;
+
+    private static final byte[] MAGIC = {'A', 'R', 'R', 'O', 'W', '1'};
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final String TIMEZONE = "UTC"; // NOI18N.
+
+    // Metadata version V5.
+    private static final int METADATA_VERSION = 4;
+    // Message header types.
+    private static final int HEADER_SCHEMA = 1;
+    private static final int HEADER_RECORD_BATCH = 3;
+    // Field types.
+    private static final int TYPE_FLOATING_POINT = 3;
+    private static final int TYPE_TIMESTAMP = 10;
+    // Floating point precisions.
+    private static final int PRECISION_SINGLE = 1;
+    private static final int PRECISION_DOUBLE = 2;
+    // Time units.
+    private static final int UNIT_MICROSECOND = 2;
+
+    /**
+     * The output stream.
+     */
+    private final OutputStream out;
+    /**
+     * Memory budget of a record batch, in bytes.
+     */
+    private final long batchSize;
+    /**
+     * Number of bytes written so far.
+     */
+    private long position;
+    /**
+     * Names of the columns, set by the first source file.
+     */
+    private String[] columnNames;
+    /**
+     * Whether each axis is a time axis, set by the first source file.
+     */
+    private boolean[] timeAxes;
+    /**
+     * Location of the record batches written so far, as footer blocks.
+     */
+    private final RowBuffer blocks = new RowBuffer(1024);
+    /**
+     * Number of record batches written so far.
+     */
+    private int batchCount;
+    /**
+     * Values of each axis of the current source file: in microseconds since the Unix epoch for time axes, as {@code float} bits otherwise.
+     */
+    private long[][] axisValues;
+    /**
+     * Decodes the values of the variables of the current source file.
+     */
+    private ValueDecoder decoder;
+    /**
+     * The decoded values of each variable over the range being written.
+     */
+    private DecodedColumn[] decoded;
+    /**
+     * Maximum number of rows in a record batch.
+     */
+    private int capacity;
+    /**
+     * Index along the first axis of the buffered rows.
+     */
+    private int batchStep;
+    /**
+     * Number of buffered rows.
+     */
+    private int bufferedRows;
+    /**
+     * Value buffer of each column.
+     */
+    private RowBuffer[] columns;
+    /**
+     * Validity bitmap of each variable.
+     */
+    private byte[][] validities;
+    /**
+     * Number of null values of each variable.
+     */
+    private int[] nullCounts;
+
+    /**
+     * Creates a new instance and writes the magic number.
+     * @param out The output stream.
+     * @param batchSize The memory budget of a record batch, in bytes; if &le; 0, the default value is used.
+     * @throws NullPointerException If {@code out} is {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public ArrowFileWriter(final OutputStream out, final long batchSize) throws NullPointerException, IOException {
+        Objects.requireNonNull(out);
+        this.out = out;
+        this.batchSize = (batchSize <= 0) ? DEFAULT_BATCH_SIZE : batchSize;
+        // The magic number is padded to 8 bytes at the start of the file.
+        out.write(Arrays.copyOf(MAGIC, 8));
+        position = 8;
+    }
+
+    /**
+     * Starts the rows of a source file; the schema message is written by the first source file.
+     * @param axes The axes.
+     * @param variableNames The names of the variables.
+     * @param decoder Decodes the values of the variables.
+     * @throws NullPointerException If any parameter is {@code null}.
+     * @throws IOException If the columns differ from the columns of the previous source files.
+     */
+    @Override
+    public void begin(final Axis[] axes, final String[] variableNames, final ValueDecoder decoder) throws NullPointerException, IOException {
+        Objects.requireNonNull(axes);
+        Objects.requireNonNull(variableNames);
+        Objects.requireNonNull(decoder);
+        final String[] names = new String[axes.length + variableNames.length];
+        final boolean[] times = new boolean[axes.length];
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            names[axisIndex] = axes[axisIndex].getName();
+            times[axisIndex] = axes[axisIndex].isTime();
+        }
+        System.arraycopy(variableNames, 0, names, axes.length, variableNames.length);
+        if (columnNames == null) {
+            columnNames = names;
+            timeAxes = times;
+            final FlatBufferBuilder.Table message = createMessage(HEADER_SCHEMA, createSchema(), 0);
+            writeMessage(message, new RowBuffer[0]);
+        } else if (!Arrays.equals(columnNames, names) || !Arrays.equals(timeAxes, times)) {
+            final String message = String.format("Columns %s do not match columns %s of the Arrow file.", Arrays.toString(names), Arrays.toString(columnNames)); // NOI18N.
+            throw new IOException(message);
+        }
+        axisValues = new long[axes.length][];
+        long rowSize = (long) decoder.getVariableCount() * Double.BYTES;
+        long stepRows = 1;
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            final Axis axis = axes[axisIndex];
+            axisValues[axisIndex] = new long[axis.getLength()];
+            for (int index = 0; index < axisValues[axisIndex].length; index++) {
+                axisValues[axisIndex][index] = axis.isTime()
+                        ? Instant.EPOCH.until(axis.getInstant(index), ChronoUnit.MICROS)
+                        : Float.floatToIntBits(axis.getCoordinate(index));
+            }
+            rowSize += getValueSize(axisIndex);
+            // A step spans all axes but the first one, unless there is a single axis.
+            if (axisIndex > 0 || axes.length == 1) {
+                stepRows = Math.multiplyExact(stepRows, axis.getLength());
+            }
+        }
+        this.decoder = decoder;
+        decoded = decoder.createColumns();
+        // Batch capacity: a step, within the budget.
+        final int variableCount = decoder.getVariableCount();
+        capacity = (int) Math.max(8, Math.min(Math.min(batchSize / rowSize, stepRows), Integer.MAX_VALUE / Double.BYTES));
+        columns = new RowBuffer[axes.length + variableCount];
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            columns[axisIndex] = new RowBuffer(capacity * getValueSize(axisIndex));
+        }
+        validities = new byte[variableCount][(capacity + 7) / 8];
+        nullCounts = new int[variableCount];
+        for (int variableIndex = 0; variableIndex < variableCount; variableIndex++) {
+            columns[axes.length + variableIndex] = new RowBuffer(capacity * Double.BYTES);
+        }
+        bufferedRows = 0;
+    }
+
+    /**
+     * Gets the size of the values of an axis column.
+     * @param axis The index of the axis.
+     * @return An {@code int} &gt; 0.
+     */
+    private int getValueSize(final int axis) {
+        return timeAxes[axis] ? Long.BYTES : Float.BYTES;
+    }
+
+    /**
+     * Writes a range of rows from a slab; a record batch is written whenever the index along the first axis changes or the budget is reached.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void write(final Slab slab, final int from, final int to) throws IOException {
+        decoder.decode(slab, from, to, decoded);
+        final int axisCount = axisValues.length;
+        final Odometer position = new Odometer(slab, from);
+        for (int cell = from; cell < to; cell++) {
+            final int step = (axisCount > 1) ? position.get(0) : 0;
+            if (bufferedRows > 0 && step != batchStep) {
+                writeRecordBatch();
+            }
+            batchStep = step;
+            final int row = bufferedRows;
+            for (int axis = 0; axis < axisCount; axis++) {
+                columns[axis].appendLittleEndian(axisValues[axis][position.get(axis)], getValueSize(axis));
+            }
+            for (int variableIndex = 0; variableIndex < validities.length; variableIndex++) {
+                final DecodedColumn column = decoded[variableIndex];
+                final boolean valid = column.isValid(cell - from);
+                final double value = valid ? column.getDouble(cell - from) : 0;
+                columns[axisCount + variableIndex].appendLittleEndian(Double.doubleToRawLongBits(value), Double.BYTES);
+                if (valid) {
+                    validities[variableIndex][row >>> 3] |= 1 << (row & 7);
+                } else {
+                    nullCounts[variableIndex]++;
+                }
+            }
+            if (++bufferedRows == capacity) {
+                writeRecordBatch();
+            }
+            position.next();
+        }
+    }
+
+    /**
+     * Ends the rows of a source file and writes its last record batch.
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void end() throws IOException {
+        if (bufferedRows > 0) {
+            writeRecordBatch();
+        }
+        axisValues = null;
+        decoder = null;
+        decoded = null;
+        columns = null;
+        validities = null;
+        nullCounts = null;
+    }
+
+    /**
+     * Writes the end-of-stream marker, the footer and the trailing magic number.
+     * <br>If no source file was started, the schema has no field.
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (columnNames == null) {
+            columnNames = new String[0];
+            timeAxes = new boolean[0];
+            writeMessage(createMessage(HEADER_SCHEMA, createSchema(), 0), new RowBuffer[0]);
+        }
+        final RowBuffer buffer = new RowBuffer(1024);
+        // End-of-stream marker.
+        buffer.appendLittleEndian(CONTINUATION, Integer.BYTES);
+        buffer.appendLittleEndian(0, Integer.BYTES);
+        final FlatBufferBuilder.Table footer = new FlatBufferBuilder.Table(5)
+                .addShort(0, METADATA_VERSION)
+                .addOffset(1, createSchema())
+                .addOffset(3, new FlatBufferBuilder.StructVector(batchCount, blocks.toByteArray()));
+        final byte[] footerBytes = FlatBufferBuilder.finish(footer);
+        buffer.append(footerBytes);
+        buffer.appendLittleEndian(footerBytes.length, Integer.BYTES);
+        buffer.append(MAGIC);
+        buffer.writeTo(out);
+        position += buffer.size();
+    }
+
+    /**
+     * Creates the schema.
+     * @return A {@code Table} instance, never {@code null}.
+     */
+    private FlatBufferBuilder.Table createSchema() {
+        final List<FlatBufferBuilder.Table> fields = new ArrayList<>(columnNames.length);
+        for (int column = 0; column < columnNames.length; column++) {
+            final FlatBufferBuilder.Table field = new FlatBufferBuilder.Table(7)
+                    .addOffset(0, new FlatBufferBuilder.StringNode(columnNames[column]))
+                    .addBoolean(1, column >= timeAxes.length);
+            if (column < timeAxes.length && timeAxes[column]) {
+                field.addByte(2, TYPE_TIMESTAMP);
+                field.addOffset(3, new FlatBufferBuilder.Table(2)
+                        .addShort(0, UNIT_MICROSECOND)
+                        .addOffset(1, new FlatBufferBuilder.StringNode(TIMEZONE)));
+            } else {
+                field.addByte(2, TYPE_FLOATING_POINT);
+                field.addOffset(3, new FlatBufferBuilder.Table(1)
+                        .addShort(0, (column < timeAxes.length) ? PRECISION_SINGLE : PRECISION_DOUBLE));
+            }
+            // Readers expect the children vector even for primitive types.
+            field.addOffset(5, new FlatBufferBuilder.TableVector(new ArrayList<>()));
+            fields.add(field);
+        }
+        return new FlatBufferBuilder.Table(4)
+                .addShort(0, 0)
+                .addOffset(1, new FlatBufferBuilder.TableVector(fields));
+    }
+
+    /**
+     * Creates a message.
+     * @param headerType The type of the message header.
+     * @param header The message header.
+     * @param bodyLength The length of the message body.
+     * @return A {@code Table} instance, never {@code null}.
+     */
+    private static FlatBufferBuilder.Table createMessage(final int headerType, final FlatBufferBuilder.Table header, final long bodyLength) {
+        return new FlatBufferBuilder.Table(5)
+                .addShort(0, METADATA_VERSION)
+                .addByte(1, headerType)
+                .addOffset(2, header)
+                .addLong(3, bodyLength);
+    }
+
+    /**
+     * Writes the buffered rows as a record batch.
+     * <br>The body holds, for each column, its validity bitmap (empty if the column has no null value) and its values, each padded to 8 bytes.
+     * @throws IOException In case of IO error.
+     */
+    private void writeRecordBatch() throws IOException {
+        final int rowCount = bufferedRows;
+        final int validityLength = (rowCount + 7) / 8;
+        final RowBuffer nodes = new RowBuffer(16 * columns.length);
+        final RowBuffer buffers = new RowBuffer(32 * columns.length);
+        final List<RowBuffer> body = new ArrayList<>(2 * columns.length);
+        long bodyLength = 0;
+        for (int column = 0; column < columns.length; column++) {
+            final int axisCount = timeAxes.length;
+            final int nullCount = (column < axisCount) ? 0 : nullCounts[column - axisCount];
+            nodes.appendLittleEndian(rowCount, Long.BYTES);
+            nodes.appendLittleEndian(nullCount, Long.BYTES);
+            // Validity.
+            if (nullCount > 0) {
+                final RowBuffer validity = new RowBuffer(validityLength);
+                validity.append(Arrays.copyOf(validities[column - axisCount], validityLength));
+                bodyLength = appendBuffer(buffers, body, validity, bodyLength);
+            } else {
+                bodyLength = appendBuffer(buffers, body, null, bodyLength);
+            }
+            // Values.
+            bodyLength = appendBuffer(buffers, body, columns[column], bodyLength);
+        }
+        final FlatBufferBuilder.Table recordBatch = new FlatBufferBuilder.Table(4)
+                .addLong(0, rowCount)
+                .addOffset(1, new FlatBufferBuilder.StructVector(columns.length, nodes.toByteArray()))
+                .addOffset(2, new FlatBufferBuilder.StructVector(2 * columns.length, buffers.toByteArray()));
+        final long offset = position;
+        final int metadataLength = writeMessage(createMessage(HEADER_RECORD_BATCH, recordBatch, bodyLength), body.toArray(new RowBuffer[0]));
+        blocks.appendLittleEndian(offset, Long.BYTES);
+        blocks.appendLittleEndian(metadataLength, Integer.BYTES);
+        blocks.appendLittleEndian(0, Integer.BYTES);
+        blocks.appendLittleEndian(bodyLength, Long.BYTES);
+        batchCount++;
+        // Reset the buffers.
+        for (final RowBuffer column : columns) {
+            column.clear();
+        }
+        for (final byte[] validity : validities) {
+            Arrays.fill(validity, 0, validityLength, (byte) 0);
+        }
+        Arrays.fill(nullCounts, 0);
+        bufferedRows = 0;
+    }
+
+    /**
+     * Appends a buffer to the body of a record batch.
+     * @param buffers The buffer descriptions of the record batch.
+     * @param body The body of the record batch.
+     * @param buffer The buffer, {@code null} for an empty buffer.
+     * @param bodyLength The current length of the body.
+     * @return The new length of the body.
+     */
+    private static long appendBuffer(final RowBuffer buffers, final List<RowBuffer> body, final RowBuffer buffer, final long bodyLength) {
+        final int length = (buffer == null) ? 0 : buffer.size();
+        buffers.appendLittleEndian(bodyLength, Long.BYTES);
+        buffers.appendLittleEndian(length, Long.BYTES);
+        if (buffer != null) {
+            body.add(buffer);
+        }
+        return bodyLength + padding(length) + length;
+    }
+
+    /**
+     * Gets the padding needed to reach the next 8-byte boundary.
+     * @param length The length.
+     * @return An {@code int} in [0, 7].
+     */
+    private static int padding(final long length) {
+        return (int) (-length & 7);
+    }
+
+    /**
+     * Writes an encapsulated message: continuation marker, metadata length, metadata and body, each padded to 8 bytes.
+     * @param message The message.
+     * @param body The buffers of the body.
+     * @return The length of the prefix and metadata, in bytes.
+     * @throws IOException In case of IO error.
+     */
+    private int writeMessage(final FlatBufferBuilder.Table message, final RowBuffer[] body) throws IOException {
+        final byte[] metadata = FlatBufferBuilder.finish(message);
+        final RowBuffer prefix = new RowBuffer(8);
+        prefix.appendLittleEndian(CONTINUATION, Integer.BYTES);
+        prefix.appendLittleEndian(metadata.length, Integer.BYTES);
+        prefix.writeTo(out);
+        out.write(metadata);
+        position += prefix.size() + metadata.length;
+        final byte[] zeros = new byte[8];
+        for (final RowBuffer buffer : body) {
+            buffer.writeTo(out);
+            final int padding = padding(buffer.size());
+            out.write(zeros, 0, padding);
+            position += buffer.size() + padding;
+        }
+        return prefix.size() + metadata.length;
+    }
+}
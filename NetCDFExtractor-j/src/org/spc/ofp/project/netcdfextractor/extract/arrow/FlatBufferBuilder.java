@@ -0,0 +1,285 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.arrow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serializes trees of tables, vectors and strings as a FlatBuffers buffer, as used by Arrow IPC metadata.
+ * <br>Unlike the reference builder, the buffer is written front to back: each table is preceded by its vtable and followed by the objects it refers to, so that all offsets point forward.
+ * <br>Tables start on 8-byte boundaries and scalars are aligned on their size.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class FlatBufferBuilder {
+
+    private byte[] bytes = new byte[256];
+    private int size;
+
+    private FlatBufferBuilder() {
+    }
+
+    /**
+     * Serializes a buffer.
+     * @param root The root table.
+     * @return A {@code byte[]} instance whose length is a multiple of 8, never {@code null}.
+     */
+    public static byte[] finish(final Table root) {
+        final FlatBufferBuilder builder = new FlatBufferBuilder();
+        builder.putInt(0);
+        final int rootPosition = root.write(builder);
+        builder.setInt(0, rootPosition);
+        builder.align(8);
+        return Arrays.copyOf(builder.bytes, builder.size);
+    }
+
+    /**
+     * Base class of serializable objects.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    abstract static class Node {
+
+        /**
+         * Writes this object.
+         * @param builder The builder.
+         * @return The position offsets to this object point to.
+         */
+        abstract int write(final FlatBufferBuilder builder);
+    }
+
+    /**
+     * A table.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    static final class Table extends Node {
+
+        /**
+         * Size in bytes of each field, 0 if the field is absent.
+         */
+        private final int[] sizes;
+        /**
+         * Value of each scalar field.
+         */
+        private final long[] values;
+        /**
+         * Target of each offset field.
+         */
+        private final Node[] nodes;
+
+        /**
+         * Creates a new instance.
+         * @param fieldCount The number of fields in the schema of the table.
+         */
+        Table(final int fieldCount) {
+            sizes = new int[fieldCount];
+            values = new long[fieldCount];
+            nodes = new Node[fieldCount];
+        }
+
+        Table addByte(final int field, final int value) {
+            return addScalar(field, Byte.BYTES, value);
+        }
+
+        Table addBoolean(final int field, final boolean value) {
+            return addScalar(field, Byte.BYTES, value ? 1 : 0);
+        }
+
+        Table addShort(final int field, final int value) {
+            return addScalar(field, Short.BYTES, value);
+        }
+
+        Table addLong(final int field, final long value) {
+            return addScalar(field, Long.BYTES, value);
+        }
+
+        Table addOffset(final int field, final Node node) {
+            sizes[field] = Integer.BYTES;
+            nodes[field] = node;
+            return this;
+        }
+
+        private Table addScalar(final int field, final int size, final long value) {
+            sizes[field] = size;
+            values[field] = value;
+            return this;
+        }
+
+        @Override
+        int write(final FlatBufferBuilder builder) {
+            // Inline layout: the vtable offset, then each field aligned on its size.
+            final int[] fieldOffsets = new int[sizes.length];
+            int inlineSize = Integer.BYTES;
+            for (int field = 0; field < sizes.length; field++) {
+                if (sizes[field] > 0) {
+                    inlineSize = align(inlineSize, sizes[field]);
+                    fieldOffsets[field] = inlineSize;
+                    inlineSize += sizes[field];
+                }
+            }
+            inlineSize = align(inlineSize, Integer.BYTES);
+            // The vtable ends where the table starts.
+            final int vtableSize = Short.BYTES * (2 + sizes.length);
+            final int tablePosition = align(builder.size + vtableSize, Long.BYTES);
+            builder.pad(tablePosition - vtableSize - builder.size);
+            final int vtablePosition = builder.size;
+            builder.putShort(vtableSize);
+            builder.putShort(inlineSize);
+            for (final int fieldOffset : fieldOffsets) {
+                builder.putShort(fieldOffset);
+            }
+            builder.putInt(tablePosition - vtablePosition);
+            for (int field = 0; field < sizes.length; field++) {
+                if (sizes[field] > 0) {
+                    builder.pad(tablePosition + fieldOffsets[field] - builder.size);
+                    builder.putScalar(values[field], sizes[field]);
+                }
+            }
+            builder.pad(tablePosition + inlineSize - builder.size);
+            // Referred objects.
+            for (int field = 0; field < sizes.length; field++) {
+                if (nodes[field] != null) {
+                    builder.putOffset(tablePosition + fieldOffsets[field], nodes[field]);
+                }
+            }
+            return tablePosition;
+        }
+    }
+
+    /**
+     * A string.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    static final class StringNode extends Node {
+
+        private final byte[] value;
+
+        StringNode(final String value) {
+            this.value = value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        int write(final FlatBufferBuilder builder) {
+            builder.align(Integer.BYTES);
+            final int position = builder.size;
+            builder.putInt(value.length);
+            builder.putBytes(value);
+            builder.pad(1);
+            return position;
+        }
+    }
+
+    /**
+     * A vector of tables.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    static final class TableVector extends Node {
+
+        private final List<Table> tables;
+
+        TableVector(final List<Table> tables) {
+            this.tables = tables;
+        }
+
+        @Override
+        int write(final FlatBufferBuilder builder) {
+            builder.align(Integer.BYTES);
+            final int position = builder.size;
+            builder.putInt(tables.size());
+            builder.pad(Integer.BYTES * tables.size());
+            for (int index = 0; index < tables.size(); index++) {
+                builder.putOffset(position + Integer.BYTES * (index + 1), tables.get(index));
+            }
+            return position;
+        }
+    }
+
+    /**
+     * A vector of structures whose fields are 8-byte aligned.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    static final class StructVector extends Node {
+
+        private final int count;
+        private final byte[] content;
+
+        /**
+         * Creates a new instance.
+         * @param count The number of structures.
+         * @param content The structures, in little-endian order.
+         */
+        StructVector(final int count, final byte[] content) {
+            this.count = count;
+            this.content = content;
+        }
+
+        @Override
+        int write(final FlatBufferBuilder builder) {
+            // Elements start on an 8-byte boundary, right after the length.
+            builder.pad(align(builder.size + Integer.BYTES, Long.BYTES) - Integer.BYTES - builder.size);
+            final int position = builder.size;
+            builder.putInt(count);
+            builder.putBytes(content);
+            return position;
+        }
+    }
+
+    private static int align(final int position, final int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + extra));
+        }
+    }
+
+    private void align(final int alignment) {
+        pad(align(size, alignment) - size);
+    }
+
+    private void pad(final int count) {
+        ensureCapacity(count);
+        size += count;
+    }
+
+    private void putScalar(final long value, final int byteCount) {
+        ensureCapacity(byteCount);
+        for (int index = 0; index < byteCount; index++) {
+            bytes[size++] = (byte) (value >>> (8 * index));
+        }
+    }
+
+    private void putShort(final int value) {
+        putScalar(value, Short.BYTES);
+    }
+
+    private void putInt(final int value) {
+        putScalar(value, Integer.BYTES);
+    }
+
+    private void putBytes(final byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+    }
+
+    private void setInt(final int position, final int value) {
+        for (int index = 0; index < Integer.BYTES; index++) {
+            bytes[position + index] = (byte) (value >>> (8 * index));
+        }
+    }
+
+    /**
+     * Writes an object and sets the offset that refers to it.
+     * @param offsetPosition The position of the offset.
+     * @param node The object.
+     */
+    private void putOffset(final int offsetPosition, final Node node) {
+        final int position = node.write(this);
+        setInt(offsetPosition, position - offsetPosition);
+    }
+}
@@ -0,0 +1,236 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An output stream that writes to a {@code FileChannel} using two large direct buffers.
+ * <br>While one buffer is being written to the channel by a background thread, the caller fills the other one, so that encoding and disk writes overlap.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ChannelOutputStream extends OutputStream {
+
+    /**
+     * The default buffer size in bytes, is equal to {@value}.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 21;
+
+    /**
+     * The minimum buffer size in bytes, is equal to {@value}.
+     */
+    public static final int MIN_BUFFER_SIZE = 1 << 13;
+
+    /**
+     * The target channel.
+     */
+    private final FileChannel channel;
+    /**
+     * Writes buffers to the channel.
+     */
+    private final ExecutorService writer;
+    /**
+     * The buffer being filled.
+     */
+    private ByteBuffer current;
+    /**
+     * The buffer being written or waiting to be filled.
+     */
+    private ByteBuffer spare;
+    /**
+     * The write in progress, may be {@code null}.
+     */
+    private Future<?> pendingWrite;
+    private boolean closed = false;
+
+    /**
+     * Creates a new instance.
+     * @param channel The target channel.
+     * @param bufferSize The size of each buffer in bytes.
+     * @throws NullPointerException If {@code channel} is {@code null}.
+     */
+    public ChannelOutputStream(final FileChannel channel, final int bufferSize) throws NullPointerException {
+        Objects.requireNonNull(channel);
+        this.channel = channel;
+        final int size = Math.max(MIN_BUFFER_SIZE, bufferSize);
+        current = ByteBuffer.allocateDirect(size);
+        spare = ByteBuffer.allocateDirect(size);
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "output-writer"); // NOI18N.
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a file for writing, the file is created or truncated.
+     * @param file The file.
+     * @param bufferSize The size of each buffer in bytes.
+     * @return A {@code ChannelOutputStream} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public static ChannelOutputStream open(final Path file, final int bufferSize) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new ChannelOutputStream(channel, bufferSize);
+    }
+
+    /**
+     * Opens an existing file to continue writing it from given position, what follows the position is discarded.
+     * @param file The file.
+     * @param position The position, in bytes.
+     * @param bufferSize The size of each buffer in bytes.
+     * @return A {@code ChannelOutputStream} instance, never {@code null}.
+     * @throws IOException In case of IO error, or if the file is shorter than {@code position}.
+     */
+    public static ChannelOutputStream openAt(final Path file, final long position, final int bufferSize) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < position) {
+                final String message = String.format("File \"%s\" is shorter than %d bytes.", file.toString(), position); // NOI18N.
+                throw new IOException(message);
+            }
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return new ChannelOutputStream(channel, bufferSize);
+    }
+
+    @Override
+    public void write(final int value) throws IOException {
+        ensureOpen();
+        if (!current.hasRemaining()) {
+            swapBuffers();
+        }
+        current.put((byte) value);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        Objects.requireNonNull(bytes);
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            if (!current.hasRemaining()) {
+                swapBuffers();
+            }
+            final int count = Math.min(remaining, current.remaining());
+            current.put(bytes, position, count);
+            position += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Writes all buffered bytes to the channel and waits for the write to complete.
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        swapBuffers();
+        awaitPendingWrite();
+    }
+
+    /**
+     * Writes all buffered bytes to the channel and forces them to the storage device.
+     * @return The size of the file, in bytes.
+     * @throws IOException In case of IO error.
+     */
+    public long sync() throws IOException {
+        flush();
+        channel.force(false);
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            writer.shutdown();
+            channel.close();
+        }
+    }
+
+    /**
+     * Hands the current buffer to the background thread and continues with the spare buffer.
+     * @throws IOException If the previous write failed.
+     */
+    private void swapBuffers() throws IOException {
+        awaitPendingWrite();
+        if (current.position() == 0) {
+            return;
+        }
+        final ByteBuffer toWrite = current;
+        current = spare;
+        spare = toWrite;
+        toWrite.flip();
+        pendingWrite = writer.submit(() -> {
+            while (toWrite.hasRemaining()) {
+                channel.write(toWrite);
+            }
+            toWrite.clear();
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the write in progress.
+     * @throws IOException If the write failed.
+     */
+    private void awaitPendingWrite() throws IOException {
+        if (pendingWrite == null) {
+            return;
+        }
+        try {
+            pendingWrite.get();
+            pendingWrite = null;
+        } catch (InterruptedException ex) {
+            // The write is still in progress.
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException();
+            exception.initCause(ex);
+            throw exception;
+        } catch (ExecutionException ex) {
+            pendingWrite = null;
+            final Throwable cause = ex.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Checks that this stream is still open.
+     * @throws IOException If this stream has been closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed."); // NOI18N.
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An output stream that compresses blocks in parallel, each block being an independent gzip member.
+ * <br>Members are written in order; a sequence of gzip members is a valid gzip file that any gunzip can read.
+ * <br>Compression is done on a provided executor, which may be shared by several streams.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * The default block size in bytes, is equal to {@value}.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /**
+     * The target stream.
+     */
+    private final OutputStream out;
+    /**
+     * Runs the compression.
+     */
+    private final ExecutorService executor;
+    /**
+     * Maximum number of blocks being compressed at the same time.
+     */
+    private final int window;
+    /**
+     * The block size.
+     */
+    private final int blockSize;
+    /**
+     * The block being filled.
+     */
+    private byte[] block;
+    /**
+     * Number of bytes in the block being filled.
+     */
+    private int blockLength;
+    /**
+     * The members being compressed, in output order.
+     */
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private boolean closed = false;
+
+    /**
+     * Creates a new instance.
+     * @param out The target stream.
+     * @param executor The executor that runs the compression.
+     * @param window The maximum number of blocks being compressed at the same time.
+     * @param blockSize The size of a block in bytes.
+     * @throws NullPointerException If {@code out} or {@code executor} is {@code null}.
+     */
+    public ParallelGzipOutputStream(final OutputStream out, final ExecutorService executor, final int window, final int blockSize) throws NullPointerException {
+        Objects.requireNonNull(out);
+        Objects.requireNonNull(executor);
+        this.out = out;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+        this.blockSize = Math.max(1 << 12, blockSize);
+        block = new byte[this.blockSize];
+    }
+
+    @Override
+    public void write(final int value) throws IOException {
+        ensureOpen();
+        if (blockLength == blockSize) {
+            submitBlock();
+        }
+        block[blockLength++] = (byte) value;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        Objects.requireNonNull(bytes);
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+            final int count = Math.min(remaining, blockSize - blockLength);
+            System.arraycopy(bytes, position, block, blockLength, count);
+            blockLength += count;
+            position += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Compresses and writes all buffered bytes, then flushes the target stream.
+     * <br>Each flush ends the current gzip member; avoid flushing too often.
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        submitBlock();
+        while (!pending.isEmpty()) {
+            writeMember();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            pending.forEach(member -> member.cancel(true));
+            pending.clear();
+            out.close();
+        }
+    }
+
+    /**
+     * Submits the current block for compression, waiting for the oldest member to be written if the window is full.
+     * @throws IOException In case of IO error.
+     */
+    private void submitBlock() throws IOException {
+        if (blockLength == 0) {
+            return;
+        }
+        while (pending.size() >= window) {
+            writeMember();
+        }
+        final byte[] data = block;
+        final int length = blockLength;
+        pending.add(executor.submit(() -> compress(data, length)));
+        block = new byte[blockSize];
+        blockLength = 0;
+    }
+
+    /**
+     * Waits for the oldest member and writes it.
+     * @throws IOException In case of IO error.
+     */
+    private void writeMember() throws IOException {
+        final Future<byte[]> member = pending.peek();
+        try {
+            out.write(member.get());
+            pending.poll();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException();
+            exception.initCause(ex);
+            throw exception;
+        } catch (ExecutionException ex) {
+            pending.poll();
+            final Throwable cause = ex.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Compresses a block as a complete gzip member.
+     * @param data The data.
+     * @param length The number of bytes to compress.
+     * @return A {@code byte[]} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private static byte[] compress(final byte[] data, final int length) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream(length / 4);
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(result, 1 << 16)) {
+            gzip.write(data, 0, length);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Checks that this stream is still open.
+     * @throws IOException If this stream has been closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed."); // NOI18N.
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * An output stream that writes an output as one file per directory of a partitioned layout, such as {@code year=2016/month=03/sst.txt}, {@code year=2016/month=04/sst.txt}...
+ * <br>The caller {@link #select(String) selects} the directory of the rows it is about to write; each file keeps the file name of the output.
+ * <br>At most a given number of files are open at the same time: when a file must be opened beyond this limit, the least recently used one is closed and reopened in append mode when rows come back to it.
+ * Each file is opened and started by a {@link FileHandler} when it is created, and ended once the whole output has been written; the column header, if any, is written at the start of each file.
+ * <br>Once finished, an index next to the output, such as {@code sst.txt.partitions}, lists the files along with their number of rows, one per line, with fields separated by tabulations.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class PartitionedOutputStream extends OutputStream {
+
+    /**
+     * Opens, starts and ends the files of an output.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    public interface FileHandler {
+
+        /**
+         * Opens a file.
+         * @param file The file.
+         * @param append If {@code true}, the file exists and is written from its end; otherwise it is created or truncated.
+         * @return An {@code OutputStream} instance, never {@code null}.
+         * @throws IOException In case of IO error.
+         */
+        OutputStream open(final Path file, final boolean append) throws IOException;
+
+        /**
+         * Writes the start of a file, if its format requires one.
+         * @param out The output stream of the file.
+         * @throws IOException In case of IO error.
+         */
+        default void start(final OutputStream out) throws IOException {
+        }
+
+        /**
+         * Writes the end of a file, if its format requires one.
+         * @param out The output stream of the file.
+         * @throws IOException In case of IO error.
+         */
+        default void end(final OutputStream out) throws IOException {
+        }
+    }
+
+    /**
+     * The extension of index files, is equal to {@value}.
+     */
+    public static final String FILE_EXTENSION = ".partitions"; // NOI18N.
+
+    private static final String SEPARATOR = "\t"; // NOI18N.
+
+    /**
+     * The output.
+     */
+    private final Path output;
+    private final int maxOpenFiles;
+    private final FileHandler handler;
+    /**
+     * The files written so far, by directory, in creation order.
+     */
+    private final Map<String, PartitionFile> files = new LinkedHashMap<>();
+    /**
+     * The open files, by directory, least recently used first.
+     */
+    private final Map<String, PartitionFile> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The selected file, {@code null} until a directory is selected.
+     */
+    private PartitionFile current;
+    /**
+     * The column header, {@code null} until given.
+     */
+    private byte[] header;
+    private boolean closed;
+
+    private PartitionedOutputStream(final Path output, final int maxOpenFiles, final FileHandler handler) {
+        this.output = output;
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
+        this.handler = handler;
+    }
+
+    /**
+     * Opens a partitioned output.
+     * <br>The files listed in the index of a previous run are deleted; directories are left as they are since other outputs may share them.
+     * @param output The output; files are written in directories below its parent and named after it.
+     * @param maxOpenFiles The maximum number of files open at the same time.
+     * @param handler Opens, starts and ends the files.
+     * @return A {@code PartitionedOutputStream} instance, never {@code null}.
+     * @throws NullPointerException If {@code output} or {@code handler} is {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public static PartitionedOutputStream open(final Path output, final int maxOpenFiles, final FileHandler handler) throws NullPointerException, IOException {
+        Objects.requireNonNull(output);
+        Objects.requireNonNull(handler);
+        final Path index = getIndex(output);
+        if (Files.isRegularFile(index)) {
+            final List<String> lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+            for (final String line : lines) {
+                final String[] fields = line.split(SEPARATOR, -1);
+                if (fields.length == 2 && !fields[0].isEmpty()) {
+                    Files.deleteIfExists(output.resolveSibling(fields[0]));
+                }
+            }
+            Files.delete(index);
+        }
+        return new PartitionedOutputStream(output, maxOpenFiles, handler);
+    }
+
+    /**
+     * Gets the index of an output.
+     * @param output The output.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    public static Path getIndex(final Path output) {
+        return output.resolveSibling(output.getFileName() + FILE_EXTENSION);
+    }
+
+    /**
+     * Gets the file of given directory.
+     * @param directory The directory, relative to the parent of the output, levels separated by {@code '/'}; empty for the parent of the output itself.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    public Path getFile(final String directory) {
+        return output.resolveSibling(getRelativeName(directory));
+    }
+
+    private String getRelativeName(final String directory) {
+        final String name = output.getFileName().toString();
+        return directory.isEmpty() ? name : directory + '/' + name;
+    }
+
+    /**
+     * Sets the column header, written at the start of each file.
+     * <br>Only the first header given is kept.
+     * @param bytes The column header.
+     */
+    public void setHeader(final byte[] bytes) {
+        if (header == null) {
+            header = bytes.clone();
+        }
+    }
+
+    /**
+     * Selects the file into which the following bytes are written; the file is created or reopened if needed.
+     * @param directory The directory of the file, relative to the parent of the output, levels separated by {@code '/'}; empty for the parent of the output itself.
+     * @throws IOException In case of IO error.
+     */
+    public void select(final String directory) throws IOException {
+        ensureOpen();
+        if (current != null && current.directory.equals(directory)) {
+            return;
+        }
+        PartitionFile file = openFiles.get(directory);
+        if (file == null) {
+            file = files.get(directory);
+            final boolean created = file == null;
+            if (created) {
+                file = new PartitionFile(directory, getFile(directory));
+                Files.createDirectories(file.path.getParent());
+            }
+            evict(maxOpenFiles - 1);
+            file.out = handler.open(file.path, !created);
+            openFiles.put(directory, file);
+            if (created) {
+                files.put(directory, file);
+                handler.start(file.out);
+                if (header != null) {
+                    file.out.write(header);
+                }
+            }
+        }
+        current = file;
+    }
+
+    /**
+     * Closes the least recently used files until at most given number of files are open.
+     * @param count The number of files.
+     * @throws IOException In case of IO error.
+     */
+    private void evict(final int count) throws IOException {
+        final Iterator<PartitionFile> iterator = openFiles.values().iterator();
+        while (openFiles.size() > count && iterator.hasNext()) {
+            final PartitionFile file = iterator.next();
+            iterator.remove();
+            final OutputStream out = file.out;
+            file.out = null;
+            out.close();
+        }
+    }
+
+    /**
+     * Records that rows have been written into the selected file.
+     * @param rowCount The number of rows.
+     * @throws IOException If no file is selected.
+     */
+    public void rowsWritten(final long rowCount) throws IOException {
+        ensureSelected();
+        current.rowCount += rowCount;
+    }
+
+    /**
+     * Gets the number of files written so far.
+     * @return An {@code int} &ge; 0.
+     */
+    public int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * Ends all files and writes the index.
+     * <br>The stream is closed afterwards; if it is closed without being finished, files are left as they are and no index is written.
+     * @throws IOException In case of IO error.
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        current = null;
+        // Open files are ended first so that none of them is closed only to be reopened.
+        final List<PartitionFile> pending = new ArrayList<>(openFiles.values());
+        files.values().stream()
+                .filter(file -> file.out == null)
+                .forEach(pending::add);
+        for (final PartitionFile file : pending) {
+            if (file.out == null) {
+                evict(maxOpenFiles - 1);
+                file.out = handler.open(file.path, true);
+            }
+            try (final OutputStream out = file.out) {
+                handler.end(out);
+            } finally {
+                file.out = null;
+                openFiles.remove(file.directory);
+            }
+        }
+        final StringBuilder index = new StringBuilder();
+        for (final PartitionFile file : files.values()) {
+            index.append(getRelativeName(file.directory)).append(SEPARATOR).append(file.rowCount).append('\n');
+        }
+        closed = true;
+        Files.write(getIndex(output), index.toString().getBytes(StandardCharsets.UTF_8));
+        final String message = String.format("Wrote %d partition files for \"%s\".", files.size(), output.toString()); // NOI18N.
+        Logger.getLogger(getClass().getName()).fine(message);
+    }
+
+    @Override
+    public void write(final int value) throws IOException {
+        ensureSelected();
+        current.out.write(value);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        ensureSelected();
+        current.out.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        for (final PartitionFile file : openFiles.values()) {
+            file.out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current = null;
+        IOException error = null;
+        for (final PartitionFile file : openFiles.values()) {
+            try {
+                file.out.close();
+            } catch (IOException ex) {
+                if (error == null) {
+                    error = ex;
+                } else {
+                    error.addSuppressed(ex);
+                }
+            }
+            file.out = null;
+        }
+        openFiles.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Checks that this stream is still open.
+     * @throws IOException If this stream has been finished or closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed."); // NOI18N.
+        }
+    }
+
+    /**
+     * Checks that this stream is still open and that a file is selected.
+     * @throws IOException If this stream has been finished or closed, or if no file is selected.
+     */
+    private void ensureSelected() throws IOException {
+        ensureOpen();
+        if (current == null) {
+            throw new IOException("No partition selected."); // NOI18N.
+        }
+    }
+
+    /**
+     * A file of the output.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class PartitionFile {
+
+        final String directory;
+        final Path path;
+        /**
+         * The output stream, {@code null} while the file is closed.
+         */
+        OutputStream out;
+        long rowCount;
+
+        PartitionFile(final String directory, final Path path) {
+            this.directory = directory;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * An output stream that writes an output as numbered parts, such as {@code sst.part-00001.txt}, {@code sst.part-00002.txt}...
+ * <br>The stream does not know where rows end: the caller writes whole rows and calls {@link #roll()} between two rows when {@link #isFull(long, long) the current part is full}.
+ * Each part is a complete file, opened, started and ended by a {@link PartHandler}; the column header, if any, is repeated at the start of each part.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class RollingOutputStream extends OutputStream {
+
+    /**
+     * Opens, starts and ends the parts of an output.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    public interface PartHandler {
+
+        /**
+         * Opens a part.
+         * @param part The part file.
+         * @return An {@code OutputStream} instance, never {@code null}.
+         * @throws IOException In case of IO error.
+         */
+        OutputStream open(final Path part) throws IOException;
+
+        /**
+         * Writes the start of a part, if its format requires one.
+         * @param out The output stream of the part.
+         * @throws IOException In case of IO error.
+         */
+        default void start(final OutputStream out) throws IOException {
+        }
+
+        /**
+         * Writes the end of a part, if its format requires one.
+         * @param out The output stream of the part.
+         * @throws IOException In case of IO error.
+         */
+        default void end(final OutputStream out) throws IOException {
+        }
+
+        /**
+         * Called once a part has been ended and closed.
+         * @param part The part file.
+         * @param rowCount The number of rows in the part.
+         * @throws IOException In case of IO error.
+         */
+        default void completed(final Path part, final long rowCount) throws IOException {
+        }
+    }
+
+    private final Path output;
+    private final String extension;
+    private final long maxRows;
+    private final long maxBytes;
+    private final PartHandler handler;
+    /**
+     * The output stream of the current part.
+     */
+    private OutputStream current;
+    /**
+     * The index of the current part, starting from 1.
+     */
+    private int partIndex;
+    private long partRows;
+    private long partBytes;
+    /**
+     * The column header, {@code null} until given.
+     */
+    private byte[] header;
+    private boolean headerWritten;
+
+    /**
+     * Creates a new instance and opens its first part.
+     * @param output The output, the parts are named after it.
+     * @param extension The extension of the output, including the leading dot; part numbers are inserted before it.
+     * @param firstPart The index of the first part, parts before it are left as they are.
+     * @param maxRows The maximum number of rows in a part, 0 if there is no limit.
+     * @param maxBytes The maximum number of bytes in a part, 0 if there is no limit.
+     * @param handler Opens, starts and ends the parts.
+     * @throws NullPointerException If {@code output}, {@code extension} or {@code handler} is {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public RollingOutputStream(final Path output, final String extension, final int firstPart, final long maxRows, final long maxBytes, final PartHandler handler) throws NullPointerException, IOException {
+        this.output = Objects.requireNonNull(output);
+        this.extension = Objects.requireNonNull(extension);
+        this.handler = Objects.requireNonNull(handler);
+        this.maxRows = Math.max(0, maxRows);
+        this.maxBytes = Math.max(0, maxBytes);
+        openPart(Math.max(1, firstPart));
+    }
+
+    /**
+     * Gets a part of an output.
+     * @param output The output.
+     * @param extension The extension of the output, including the leading dot.
+     * @param index The index of the part, starting from 1.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    public static Path getPart(final Path output, final String extension, final int index) {
+        final String name = output.getFileName().toString();
+        final String stem = name.endsWith(extension) ? name.substring(0, name.length() - extension.length()) : name;
+        return output.resolveSibling(String.format("%s.part-%05d%s", stem, index, extension)); // NOI18N.
+    }
+
+    /**
+     * Gets the current part.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    public Path getCurrentPart() {
+        return getPart(output, extension, partIndex);
+    }
+
+    /**
+     * Gets the number of rows that may still be written into the current part.
+     * @return A {@code long} &ge; 0, {@code Long.MAX_VALUE} if the number of rows in a part is not limited.
+     */
+    public long getRemainingRows() {
+        return (maxRows == 0) ? Long.MAX_VALUE : Math.max(0, maxRows - partRows);
+    }
+
+    /**
+     * Gets the maximum number of rows in a part.
+     * @return A {@code long} &ge; 0, 0 if there is no limit.
+     */
+    public long getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Tests whether given rows would overflow the current part.
+     * <br>A part that holds no row is never full, so that rows larger than the maximum size still get written.
+     * @param rowCount The number of rows about to be written.
+     * @param byteCount The size of the rows about to be written, in bytes.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isFull(final long rowCount, final long byteCount) {
+        if (partRows == 0) {
+            return false;
+        }
+        return (maxRows > 0 && partRows + rowCount > maxRows)
+                || (maxBytes > 0 && partBytes + byteCount > maxBytes);
+    }
+
+    /**
+     * Records that rows have been written into the current part.
+     * @param rowCount The number of rows.
+     */
+    public void rowsWritten(final long rowCount) {
+        partRows += rowCount;
+    }
+
+    /**
+     * Writes the column header at the start of the current part, unless it already has one, and at the start of each following part.
+     * <br>Only the first header given is kept.
+     * @param bytes The column header.
+     * @throws IOException In case of IO error.
+     */
+    public void writeHeader(final byte[] bytes) throws IOException {
+        if (header == null) {
+            header = bytes.clone();
+        }
+        if (!headerWritten) {
+            write(header);
+            headerWritten = true;
+        }
+    }
+
+    /**
+     * Ends the current part and starts the next one.
+     * @throws IOException In case of IO error.
+     */
+    public void roll() throws IOException {
+        ensureOpen();
+        endPart();
+        openPart(partIndex + 1);
+        if (header != null) {
+            write(header);
+            headerWritten = true;
+        }
+    }
+
+    /**
+     * Ends the last part.
+     * <br>The stream is closed afterwards; if it is closed without being finished, the last part is left as it is and is not reported as completed.
+     * <br>A last part without rows is deleted, unless it is the only part of the output.
+     * @throws IOException In case of IO error.
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        if (partRows == 0 && partIndex > 1) {
+            close();
+            Files.deleteIfExists(getCurrentPart());
+            return;
+        }
+        endPart();
+    }
+
+    private void openPart(final int index) throws IOException {
+        partIndex = index;
+        partRows = 0;
+        partBytes = 0;
+        headerWritten = false;
+        current = handler.open(getCurrentPart());
+        handler.start(current);
+    }
+
+    private void endPart() throws IOException {
+        final OutputStream out = current;
+        current = null;
+        try (final OutputStream closing = out) {
+            handler.end(closing);
+        }
+        handler.completed(getCurrentPart(), partRows);
+    }
+
+    @Override
+    public void write(final int value) throws IOException {
+        ensureOpen();
+        current.write(value);
+        partBytes++;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        ensureOpen();
+        current.write(bytes, offset, length);
+        partBytes += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        current.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            final OutputStream out = current;
+            current = null;
+            out.close();
+        }
+    }
+
+    /**
+     * Checks that this stream is still open.
+     * @throws IOException If this stream has been finished or closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (current == null) {
+            throw new IOException("Stream closed."); // NOI18N.
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.spc.ofp.project.netcdfextractor.extract.RowBuffer;
+
+/**
+ * Writes Thrift structures in the compact protocol, as used by Parquet page headers and file metadata.
+ * <br>Only the field types needed by Parquet are supported.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class CompactProtocolWriter {
+
+    static final int TYPE_BOOLEAN_TRUE = 1;
+    static final int TYPE_BOOLEAN_FALSE = 2;
+    static final int TYPE_I32 = 5;
+    static final int TYPE_I64 = 6;
+    static final int TYPE_BINARY = 8;
+    static final int TYPE_LIST = 9;
+    static final int TYPE_STRUCT = 12;
+
+    /**
+     * The target buffer.
+     */
+    private final RowBuffer buffer;
+    /**
+     * Identifier of the last field written in each enclosing structure.
+     */
+    private final Deque<Integer> lastFieldIds = new ArrayDeque<>();
+    /**
+     * Identifier of the last field written in the current structure.
+     */
+    private int lastFieldId = 0;
+
+    /**
+     * Creates a new instance.
+     * @param buffer The target buffer.
+     */
+    public CompactProtocolWriter(final RowBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Starts a structure, either the top-level structure or a list element.
+     */
+    public void structBegin() {
+        lastFieldIds.push(lastFieldId);
+        lastFieldId = 0;
+    }
+
+    /**
+     * Ends the current structure.
+     */
+    public void structEnd() {
+        buffer.appendLittleEndian(0, 1);
+        lastFieldId = lastFieldIds.pop();
+    }
+
+    /**
+     * Starts a structure field.
+     * @param fieldId The field identifier.
+     */
+    public void fieldStructBegin(final int fieldId) {
+        fieldHeader(fieldId, TYPE_STRUCT);
+        structBegin();
+    }
+
+    /**
+     * Writes a {@code bool} field.
+     * @param fieldId The field identifier.
+     * @param value The value.
+     */
+    public void fieldBoolean(final int fieldId, final boolean value) {
+        fieldHeader(fieldId, value ? TYPE_BOOLEAN_TRUE : TYPE_BOOLEAN_FALSE);
+    }
+
+    /**
+     * Writes an {@code i32} field, also used for enumerations.
+     * @param fieldId The field identifier.
+     * @param value The value.
+     */
+    public void fieldI32(final int fieldId, final int value) {
+        fieldHeader(fieldId, TYPE_I32);
+        i32(value);
+    }
+
+    /**
+     * Writes an {@code i64} field.
+     * @param fieldId The field identifier.
+     * @param value The value.
+     */
+    public void fieldI64(final int fieldId, final long value) {
+        fieldHeader(fieldId, TYPE_I64);
+        i64(value);
+    }
+
+    /**
+     * Writes a {@code string} field.
+     * @param fieldId The field identifier.
+     * @param value The value.
+     */
+    public void fieldString(final int fieldId, final String value) {
+        fieldHeader(fieldId, TYPE_BINARY);
+        string(value);
+    }
+
+    /**
+     * Starts a {@code list} field; elements are written right after.
+     * @param fieldId The field identifier.
+     * @param elementType The type of the elements.
+     * @param size The number of elements.
+     */
+    public void fieldListBegin(final int fieldId, final int elementType, final int size) {
+        fieldHeader(fieldId, TYPE_LIST);
+        if (size < 15) {
+            buffer.appendLittleEndian((size << 4) | elementType, 1);
+        } else {
+            buffer.appendLittleEndian(0xF0 | elementType, 1);
+            buffer.appendVarint(size);
+        }
+    }
+
+    /**
+     * Writes an {@code i32} value, as a list element.
+     * @param value The value.
+     */
+    public void i32(final int value) {
+        buffer.appendVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes an {@code i64} value, as a list element.
+     * @param value The value.
+     */
+    public void i64(final long value) {
+        buffer.appendVarint((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a {@code string} value, as a list element.
+     * @param value The value.
+     */
+    public void string(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.appendVarint(bytes.length);
+        buffer.append(bytes);
+    }
+
+    /**
+     * Writes a field header, using the short form whenever the identifier delta allows it.
+     * @param fieldId The field identifier.
+     * @param type The field type.
+     */
+    private void fieldHeader(final int fieldId, final int type) {
+        final int delta = fieldId - lastFieldId;
+        if (delta > 0 && delta <= 15) {
+            buffer.appendLittleEndian((delta << 4) | type, 1);
+        } else {
+            buffer.appendLittleEndian(type, 1);
+            i32(fieldId);
+        }
+        lastFieldId = fieldId;
+    }
+}
@@ -0,0 +1,96 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import org.spc.ofp.project.netcdfextractor.extract.RowBuffer;
+
+/**
+ * Encodes small unsigned integers in the Parquet RLE / bit-packing hybrid encoding.
+ * <br>Runs of 8 or more identical values are run-length encoded, other values are bit-packed by groups of 8.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class HybridEncoder {
+
+    /**
+     * Minimum length of a run-length encoded run.
+     */
+    private static final int MIN_RUN_LENGTH = 8;
+    /**
+     * Maximum number of groups of 8 values in a bit-packed run, keeps the run header on a single byte.
+     */
+    private static final int MAX_GROUP_COUNT = 63;
+
+    private HybridEncoder() {
+    }
+
+    /**
+     * Gets the number of bits needed to encode values in a range.
+     * @param maxValue The maximum value.
+     * @return An {@code int} in [1, 32].
+     */
+    public static int bitWidth(final int maxValue) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+    }
+
+    /**
+     * Encodes values.
+     * @param values The values.
+     * @param from The index of the first value (inclusive).
+     * @param to The index of the last value (exclusive).
+     * @param bitWidth The number of bits of each value.
+     * @param buffer The target buffer.
+     */
+    public static void encode(final int[] values, final int from, final int to, final int bitWidth, final RowBuffer buffer) {
+        final int valueBytes = (bitWidth + 7) / 8;
+        int index = from;
+        while (index < to) {
+            final int runLength = runLength(values, index, to, Integer.MAX_VALUE);
+            if (runLength >= MIN_RUN_LENGTH) {
+                buffer.appendVarint(((long) runLength) << 1);
+                buffer.appendLittleEndian(values[index], valueBytes);
+                index += runLength;
+                continue;
+            }
+            // Bit-pack groups until a long enough run starts; the last group is padded with zeros.
+            final int start = index;
+            int groupCount = 0;
+            do {
+                groupCount++;
+                index += 8;
+            } while (index < to && groupCount < MAX_GROUP_COUNT && runLength(values, index, to, MIN_RUN_LENGTH) < MIN_RUN_LENGTH);
+            buffer.appendVarint((groupCount << 1) | 1);
+            long bits = 0;
+            int bitCount = 0;
+            for (int position = start; position < start + groupCount * 8; position++) {
+                final long value = (position < to) ? values[position] : 0;
+                bits |= value << bitCount;
+                bitCount += bitWidth;
+                while (bitCount >= 8) {
+                    buffer.appendLittleEndian(bits, 1);
+                    bits >>>= 8;
+                    bitCount -= 8;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts identical values.
+     * @param values The values.
+     * @param from The index of the first value (inclusive).
+     * @param to The index of the last value (exclusive).
+     * @param limit Stop counting at this length.
+     * @return An {@code int} &ge; 1.
+     */
+    private static int runLength(final int[] values, final int from, final int to, final int limit) {
+        final int value = values[from];
+        int end = from + 1;
+        while (end < to && end - from < limit && values[end] == value) {
+            end++;
+        }
+        return end - from;
+    }
+}
@@ -0,0 +1,514 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+import org.spc.ofp.project.netcdfextractor.extract.Axis;
+import org.spc.ofp.project.netcdfextractor.extract.ColumnarFileWriter;
+import org.spc.ofp.project.netcdfextractor.extract.DecodedColumn;
+import org.spc.ofp.project.netcdfextractor.extract.Odometer;
+import org.spc.ofp.project.netcdfextractor.extract.RowBuffer;
+import org.spc.ofp.project.netcdfextractor.extract.Slab;
+import org.spc.ofp.project.netcdfextractor.extract.ValueDecoder;
+
+/**
+ * Writes rows of slabs in the Apache Parquet columnar format.
+ * <br>Columns are: time axes as {@code INT64} timestamp in microseconds (UTC), other axes as {@code FLOAT} and each variable as an optional {@code DOUBLE}; invalid values are null.
+ * <br>Axes are dictionary encoded, their dictionary being the coordinates of the source file, and their indices are run-length encoded.
+ * <br>Rows are buffered in memory until the row group budget is reached; a row group never spans two source files so that the rows of several files may be written in the same Parquet file, provided they have the same columns.
+ * <br>The file is laid out as: magic number, row groups, then the file metadata written by {@link #finish()}; the output stream is not closed by this writer.
+ * <br>Instances are not thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ParquetFileWriter implements ColumnarFileWriter {
+
+    /**
+     * The default memory budget of a row group, in bytes.
+     */
+    public static final long DEFAULT_ROW_GROUP_SIZE = 64L << 20;
+
+    private static final byte[] MAGIC = {'P', 'A', 'R', '1'};
+    private static final String CREATED_BY = "NetCDFExtractor"; // NOI18N.
+
+    /**
+     * Maximum number of values in a data page.
+     */
+    private static final int PAGE_SIZE = 1 << 17;
+
+    // Physical types.
+    private static final int TYPE_INT64 = 2;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_DOUBLE = 5;
+    // Repetitions.
+    private static final int REPETITION_REQUIRED = 0;
+    private static final int REPETITION_OPTIONAL = 1;
+    // Converted types.
+    private static final int CONVERTED_TIMESTAMP_MICROS = 10;
+    // Encodings.
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_RLE = 3;
+    private static final int ENCODING_RLE_DICTIONARY = 8;
+    // Compression codecs.
+    private static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CODEC_GZIP = 2;
+    // Page types.
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+
+    /**
+     * The output stream.
+     */
+    private final OutputStream out;
+    /**
+     * Whether pages are gzip compressed.
+     */
+    private final boolean compressed;
+    /**
+     * Memory budget of a row group, in bytes.
+     */
+    private final long rowGroupSize;
+    /**
+     * Number of bytes written so far.
+     */
+    private long position;
+    /**
+     * Names of the columns, set by the first source file.
+     */
+    private String[] columnNames;
+    /**
+     * Whether each axis is a time axis, set by the first source file.
+     */
+    private boolean[] timeAxes;
+    /**
+     * Metadata of the row groups written so far.
+     */
+    private final List<RowGroup> rowGroups = new ArrayList<>();
+    /**
+     * Number of rows written so far.
+     */
+    private long rowCount;
+    /**
+     * Values of each axis of the current source file: in microseconds since the Unix epoch for time axes, as {@code float} bits otherwise.
+     */
+    private long[][] axisValues;
+    /**
+     * Decodes the values of the variables of the current source file.
+     */
+    private ValueDecoder decoder;
+    /**
+     * The decoded values of each variable over the range being written.
+     */
+    private DecodedColumn[] columns;
+    /**
+     * Buffered indices along each axis.
+     */
+    private int[][] axisIndices;
+    /**
+     * Buffered values of each variable, {@code NaN} for invalid values.
+     */
+    private double[][] values;
+    /**
+     * Number of buffered rows.
+     */
+    private int bufferedRows;
+
+    /**
+     * Creates a new instance and writes the magic number.
+     * @param out The output stream.
+     * @param compressed If {@code true}, pages are gzip compressed.
+     * @param rowGroupSize The memory budget of a row group, in bytes; if &le; 0, the default value is used.
+     * @throws NullPointerException If {@code out} is {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public ParquetFileWriter(final OutputStream out, final boolean compressed, final long rowGroupSize) throws NullPointerException, IOException {
+        Objects.requireNonNull(out);
+        this.out = out;
+        this.compressed = compressed;
+        this.rowGroupSize = (rowGroupSize <= 0) ? DEFAULT_ROW_GROUP_SIZE : rowGroupSize;
+        out.write(MAGIC);
+        position = MAGIC.length;
+    }
+
+    /**
+     * Starts the rows of a source file.
+     * @param axes The axes.
+     * @param variableNames The names of the variables.
+     * @param decoder Decodes the values of the variables.
+     * @throws NullPointerException If any parameter is {@code null}.
+     * @throws IOException If the columns differ from the columns of the previous source files.
+     */
+    @Override
+    public void begin(final Axis[] axes, final String[] variableNames, final ValueDecoder decoder) throws NullPointerException, IOException {
+        Objects.requireNonNull(axes);
+        Objects.requireNonNull(variableNames);
+        Objects.requireNonNull(decoder);
+        final String[] names = new String[axes.length + variableNames.length];
+        final boolean[] times = new boolean[axes.length];
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            names[axisIndex] = axes[axisIndex].getName();
+            times[axisIndex] = axes[axisIndex].isTime();
+        }
+        System.arraycopy(variableNames, 0, names, axes.length, variableNames.length);
+        if (columnNames == null) {
+            columnNames = names;
+            timeAxes = times;
+        } else if (!Arrays.equals(columnNames, names) || !Arrays.equals(timeAxes, times)) {
+            final String message = String.format("Columns %s do not match columns %s of the Parquet file.", Arrays.toString(names), Arrays.toString(columnNames)); // NOI18N.
+            throw new IOException(message);
+        }
+        axisValues = new long[axes.length][];
+        long fileRows = 1;
+        for (int axisIndex = 0; axisIndex < axes.length; axisIndex++) {
+            final Axis axis = axes[axisIndex];
+            axisValues[axisIndex] = new long[axis.getLength()];
+            for (int index = 0; index < axisValues[axisIndex].length; index++) {
+                axisValues[axisIndex][index] = axis.isTime()
+                        ? Instant.EPOCH.until(axis.getInstant(index), ChronoUnit.MICROS)
+                        : Float.floatToIntBits(axis.getCoordinate(index));
+            }
+            fileRows = Math.multiplyExact(fileRows, axis.getLength());
+        }
+        this.decoder = decoder;
+        columns = decoder.createColumns();
+        // Row group capacity: an index per axis and a value per variable for each row, no more than the rows of the file.
+        final int variableCount = decoder.getVariableCount();
+        final long rowSize = (long) axes.length * Integer.BYTES + variableCount * Double.BYTES;
+        final int capacity = (int) Math.max(1, Math.min(Math.min(rowGroupSize / rowSize, fileRows), Integer.MAX_VALUE - 8));
+        if (axisIndices == null || axisIndices.length != axes.length || axisIndices[0].length != capacity || values.length != variableCount) {
+            axisIndices = new int[axes.length][capacity];
+            values = new double[variableCount][capacity];
+        }
+        bufferedRows = 0;
+    }
+
+    /**
+     * Writes a range of rows from a slab; row groups are written whenever the budget is reached.
+     * @param slab The slab.
+     * @param from The index of the first row in the slab (inclusive).
+     * @param to The index of the last row in the slab (exclusive).
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void write(final Slab slab, final int from, final int to) throws IOException {
+        decoder.decode(slab, from, to, columns);
+        final Odometer position = new Odometer(slab, from);
+        for (int cell = from; cell < to; cell++) {
+            final int row = bufferedRows;
+            for (int axis = 0; axis < axisIndices.length; axis++) {
+                axisIndices[axis][row] = position.get(axis);
+            }
+            for (int variableIndex = 0; variableIndex < values.length; variableIndex++) {
+                final DecodedColumn column = columns[variableIndex];
+                values[variableIndex][row] = column.isValid(cell - from) ? column.getDouble(cell - from) : Double.NaN;
+            }
+            if (++bufferedRows == axisIndices[0].length) {
+                writeRowGroup();
+            }
+            position.next();
+        }
+    }
+
+    /**
+     * Ends the rows of a source file and writes its last row group.
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void end() throws IOException {
+        if (bufferedRows > 0) {
+            writeRowGroup();
+        }
+        axisValues = null;
+        decoder = null;
+        columns = null;
+    }
+
+    /**
+     * Writes the file metadata and the trailing magic number.
+     * <br>If no source file was started, the file has no column.
+     * @throws IOException In case of IO error.
+     */
+    @Override
+    public void finish() throws IOException {
+        final String[] names = (columnNames == null) ? new String[0] : columnNames;
+        final RowBuffer buffer = new RowBuffer(1024);
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(buffer);
+        protocol.structBegin();
+        protocol.fieldI32(1, 1);
+        // Schema: the root followed by a flat list of columns.
+        protocol.fieldListBegin(2, CompactProtocolWriter.TYPE_STRUCT, 1 + names.length);
+        protocol.structBegin();
+        protocol.fieldString(4, "schema"); // NOI18N.
+        protocol.fieldI32(5, names.length);
+        protocol.structEnd();
+        for (int column = 0; column < names.length; column++) {
+            protocol.structBegin();
+            protocol.fieldI32(1, getColumnType(column));
+            protocol.fieldI32(3, (column < timeAxes.length) ? REPETITION_REQUIRED : REPETITION_OPTIONAL);
+            protocol.fieldString(4, names[column]);
+            if (column < timeAxes.length && timeAxes[column]) {
+                protocol.fieldI32(6, CONVERTED_TIMESTAMP_MICROS);
+                // Logical type: TIMESTAMP(isAdjustedToUTC = true, unit = MICROS).
+                protocol.fieldStructBegin(10);
+                protocol.fieldStructBegin(8);
+                protocol.fieldBoolean(1, true);
+                protocol.fieldStructBegin(2);
+                protocol.fieldStructBegin(2);
+                protocol.structEnd();
+                protocol.structEnd();
+                protocol.structEnd();
+                protocol.structEnd();
+            }
+            protocol.structEnd();
+        }
+        protocol.fieldI64(3, rowCount);
+        protocol.fieldListBegin(4, CompactProtocolWriter.TYPE_STRUCT, rowGroups.size());
+        for (final RowGroup rowGroup : rowGroups) {
+            rowGroup.write(protocol);
+        }
+        protocol.fieldString(6, CREATED_BY);
+        protocol.structEnd();
+        final int metadataLength = buffer.size();
+        buffer.appendLittleEndian(metadataLength, Integer.BYTES);
+        buffer.append(MAGIC);
+        buffer.writeTo(out);
+        position += buffer.size();
+    }
+
+    /**
+     * Gets the physical type of a column.
+     * @param column The index of the column.
+     * @return An {@code int}.
+     */
+    private int getColumnType(final int column) {
+        if (column >= timeAxes.length) {
+            return TYPE_DOUBLE;
+        }
+        return timeAxes[column] ? TYPE_INT64 : TYPE_FLOAT;
+    }
+
+    /**
+     * Writes the buffered rows as a row group.
+     * @throws IOException In case of IO error.
+     */
+    private void writeRowGroup() throws IOException {
+        final RowGroup rowGroup = new RowGroup(bufferedRows);
+        // Axes.
+        final RowBuffer dictionary = new RowBuffer();
+        for (int axis = 0; axis < axisValues.length; axis++) {
+            final int valueSize = timeAxes[axis] ? Long.BYTES : Float.BYTES;
+            dictionary.clear();
+            for (final long value : axisValues[axis]) {
+                dictionary.appendLittleEndian(value, valueSize);
+            }
+            rowGroup.columns.add(writeDictionaryColumn(axis, dictionary, axisValues[axis].length, axisIndices[axis]));
+        }
+        // Variables.
+        for (int variableIndex = 0; variableIndex < values.length; variableIndex++) {
+            rowGroup.columns.add(writeOptionalColumn(axisValues.length + variableIndex, values[variableIndex]));
+        }
+        rowGroups.add(rowGroup);
+        rowCount += bufferedRows;
+        bufferedRows = 0;
+    }
+
+    /**
+     * Writes a required dictionary encoded column chunk: a dictionary page followed by data pages of indices.
+     * @param column The index of the column.
+     * @param dictionary The dictionary values, {@code PLAIN} encoded.
+     * @param dictionarySize The number of values in the dictionary.
+     * @param indices The buffered indices.
+     * @return A {@code ColumnChunk} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private ColumnChunk writeDictionaryColumn(final int column, final RowBuffer dictionary, final int dictionarySize, final int[] indices) throws IOException {
+        final ColumnChunk chunk = new ColumnChunk(column, new int[]{ENCODING_PLAIN, ENCODING_RLE_DICTIONARY});
+        chunk.dictionaryPageOffset = position;
+        writePage(chunk, PAGE_DICTIONARY, dictionarySize, ENCODING_PLAIN, dictionary);
+        final int bitWidth = HybridEncoder.bitWidth(dictionarySize - 1);
+        final RowBuffer page = new RowBuffer();
+        for (int from = 0; from < bufferedRows; from += PAGE_SIZE) {
+            final int to = Math.min(bufferedRows, from + PAGE_SIZE);
+            page.clear();
+            page.appendLittleEndian(bitWidth, 1);
+            HybridEncoder.encode(indices, from, to, bitWidth, page);
+            if (from == 0) {
+                chunk.dataPageOffset = position;
+            }
+            writePage(chunk, PAGE_DATA, to - from, ENCODING_RLE_DICTIONARY, page);
+        }
+        return chunk;
+    }
+
+    /**
+     * Writes an optional {@code DOUBLE} column chunk: data pages of definition levels followed by the {@code PLAIN} encoded valid values.
+     * @param column The index of the column.
+     * @param columnValues The buffered values, {@code NaN} for invalid values.
+     * @return A {@code ColumnChunk} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private ColumnChunk writeOptionalColumn(final int column, final double[] columnValues) throws IOException {
+        final ColumnChunk chunk = new ColumnChunk(column, new int[]{ENCODING_PLAIN, ENCODING_RLE});
+        final int[] levels = new int[Math.min(bufferedRows, PAGE_SIZE)];
+        final RowBuffer definitionLevels = new RowBuffer();
+        final RowBuffer page = new RowBuffer();
+        for (int from = 0; from < bufferedRows; from += PAGE_SIZE) {
+            final int to = Math.min(bufferedRows, from + PAGE_SIZE);
+            for (int row = from; row < to; row++) {
+                levels[row - from] = Double.isNaN(columnValues[row]) ? 0 : 1;
+            }
+            definitionLevels.clear();
+            HybridEncoder.encode(levels, 0, to - from, 1, definitionLevels);
+            page.clear();
+            page.appendLittleEndian(definitionLevels.size(), Integer.BYTES);
+            page.append(definitionLevels.toByteArray());
+            for (int row = from; row < to; row++) {
+                final double value = columnValues[row];
+                if (!Double.isNaN(value)) {
+                    page.appendLittleEndian(Double.doubleToLongBits(value), Double.BYTES);
+                }
+            }
+            if (from == 0) {
+                chunk.dataPageOffset = position;
+            }
+            writePage(chunk, PAGE_DATA, to - from, ENCODING_PLAIN, page);
+        }
+        return chunk;
+    }
+
+    /**
+     * Writes a page: its header followed by its content, compressed if needed.
+     * @param chunk The column chunk that receives the page.
+     * @param pageType The page type.
+     * @param valueCount The number of values in the page.
+     * @param encoding The encoding of the values.
+     * @param content The page content.
+     * @throws IOException In case of IO error.
+     */
+    private void writePage(final ColumnChunk chunk, final int pageType, final int valueCount, final int encoding, final RowBuffer content) throws IOException {
+        final byte[] uncompressed = content.toByteArray();
+        byte[] payload = uncompressed;
+        if (compressed) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(uncompressed.length / 2 + 64);
+            try (final GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                gzip.write(uncompressed);
+            }
+            payload = bytes.toByteArray();
+        }
+        final RowBuffer header = new RowBuffer(64);
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(header);
+        protocol.structBegin();
+        protocol.fieldI32(1, pageType);
+        protocol.fieldI32(2, uncompressed.length);
+        protocol.fieldI32(3, payload.length);
+        if (pageType == PAGE_DICTIONARY) {
+            protocol.fieldStructBegin(7);
+            protocol.fieldI32(1, valueCount);
+            protocol.fieldI32(2, encoding);
+            protocol.structEnd();
+        } else {
+            protocol.fieldStructBegin(5);
+            protocol.fieldI32(1, valueCount);
+            protocol.fieldI32(2, encoding);
+            protocol.fieldI32(3, ENCODING_RLE);
+            protocol.fieldI32(4, ENCODING_RLE);
+            protocol.structEnd();
+        }
+        protocol.structEnd();
+        header.writeTo(out);
+        out.write(payload);
+        position += header.size() + payload.length;
+        chunk.uncompressedSize += header.size() + uncompressed.length;
+        chunk.compressedSize += header.size() + payload.length;
+    }
+
+    /**
+     * Metadata of a row group.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class RowGroup {
+
+        final List<ColumnChunk> columns = new ArrayList<>();
+        final int rowCount;
+
+        RowGroup(final int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        /**
+         * Writes this row group as an element of the row group list.
+         * @param protocol The protocol writer.
+         */
+        void write(final CompactProtocolWriter protocol) {
+            protocol.structBegin();
+            protocol.fieldListBegin(1, CompactProtocolWriter.TYPE_STRUCT, columns.size());
+            long totalSize = 0;
+            for (final ColumnChunk column : columns) {
+                column.write(protocol, rowCount);
+                totalSize += column.uncompressedSize;
+            }
+            protocol.fieldI64(2, totalSize);
+            protocol.fieldI64(3, rowCount);
+            protocol.structEnd();
+        }
+    }
+
+    /**
+     * Metadata of a column chunk.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private final class ColumnChunk {
+
+        final int column;
+        final int[] encodings;
+        long dictionaryPageOffset = -1;
+        long dataPageOffset;
+        long uncompressedSize;
+        long compressedSize;
+
+        ColumnChunk(final int column, final int[] encodings) {
+            this.column = column;
+            this.encodings = encodings;
+        }
+
+        /**
+         * Writes this column chunk as an element of the column list.
+         * @param protocol The protocol writer.
+         * @param rowCount The number of values in the chunk.
+         */
+        void write(final CompactProtocolWriter protocol, final int rowCount) {
+            final long fileOffset = (dictionaryPageOffset < 0) ? dataPageOffset : dictionaryPageOffset;
+            protocol.structBegin();
+            protocol.fieldI64(2, fileOffset);
+            protocol.fieldStructBegin(3);
+            protocol.fieldI32(1, getColumnType(column));
+            protocol.fieldListBegin(2, CompactProtocolWriter.TYPE_I32, encodings.length);
+            for (final int encoding : encodings) {
+                protocol.i32(encoding);
+            }
+            protocol.fieldListBegin(3, CompactProtocolWriter.TYPE_BINARY, 1);
+            protocol.string(columnNames[column]);
+            protocol.fieldI32(4, compressed ? CODEC_GZIP : CODEC_UNCOMPRESSED);
+            protocol.fieldI64(5, rowCount);
+            protocol.fieldI64(6, uncompressedSize);
+            protocol.fieldI64(7, compressedSize);
+            protocol.fieldI64(9, dataPageOffset);
+            if (dictionaryPageOffset >= 0) {
+                protocol.fieldI64(11, dictionaryPageOffset);
+            }
+            protocol.structEnd();
+            protocol.structEnd();
+        }
+    }
+}
@@ -39,6 +39,7 @@ import javafx.scene.control.Tooltip;
 import javafx.scene.text.Text;
 import javafx.stage.DirectoryChooser;
 import javafx.util.StringConverter;
+import org.spc.ofp.project.netcdfextractor.extract.OutputFormat;
 import org.spc.ofp.project.netcdfextractor.scene.ControllerBase;
 import org.spc.ofp.project.netcdfextractor.task.BatchExtractToTxtParameters;
 import org.spc.ofp.project.netcdfextractor.task.BatchExtractToTxtParametersBuilder;
@@ -80,6 +81,14 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
     @FXML
     private CheckBox singleOutputCheck;
     @FXML
+    private Spinner<Integer> workerCountSpinner;
+    @FXML
+    private Spinner<Integer> threadsPerFileSpinner;
+    @FXML
+    private CheckBox compressedOutputCheck;
+    @FXML
+    private ComboBox<OutputFormat> outputFormatCombo;
+    @FXML
     private CheckBox includeColumnHeaderCheck;
     @FXML
     private Text timeDescriptionText;
@@ -134,6 +143,28 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
                 singleOutputCheck.selectedProperty().removeListener(singleOuputChangeListener);
                 singleOutputCheck = null;
             }
+            if (workerCountSpinner != null) {
+                workerCountSpinner.valueProperty().removeListener(workerCountChangeListener);
+                workerCountSpinner.disableProperty().unbind();
+                workerCountSpinner.setValueFactory(null);
+                workerCountSpinner = null;
+            }
+            if (threadsPerFileSpinner != null) {
+                threadsPerFileSpinner.valueProperty().removeListener(threadsPerFileChangeListener);
+                threadsPerFileSpinner.setValueFactory(null);
+                threadsPerFileSpinner = null;
+            }
+            if (compressedOutputCheck != null) {
+                compressedOutputCheck.selectedProperty().removeListener(compressedOutputChangeListener);
+                compressedOutputCheck = null;
+            }
+            if (outputFormatCombo != null) {
+                outputFormatCombo.valueProperty().removeListener(outputFormatChangeListener);
+                outputFormatCombo.getItems().clear();
+                outputFormatCombo.setCellFactory(null);
+                outputFormatCombo.setButtonCell(null);
+                outputFormatCombo = null;
+            }
             if (includeColumnHeaderCheck != null) {
                 includeColumnHeaderCheck.selectedProperty().removeListener(includeColumnHeaderChangeListener);
                 includeColumnHeaderCheck = null;
@@ -188,6 +219,11 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
 
     private final Preferences prefs = Preferences.userNodeForPackage(getClass());
 
+    /**
+     * The pattern of the custom date time formatter.
+     */
+    private String customPattern;
+
     @Override
     public void initialize(final URL url, final ResourceBundle bundle) {
         dirField.textProperty().addListener(dirChangeListener);
@@ -230,6 +266,33 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
         singleOutputCheck.setSelected(singleDocument);
         singleOutputCheck.selectedProperty().addListener(singleOuputChangeListener);
         //
+        final int maxWorkerCount = Math.max(BatchExtractToTxtParameters.DEFAULT_WORKER_COUNT, Runtime.getRuntime().availableProcessors());
+        final int workerCount = prefs.getInt("worker.count", BatchExtractToTxtParameters.DEFAULT_WORKER_COUNT); // NOI18N.
+        workerCountSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, maxWorkerCount, Math.min(workerCount, maxWorkerCount)));
+        workerCountSpinner.disableProperty().bind(singleOutputCheck.selectedProperty());
+        workerCountSpinner.valueProperty().addListener(workerCountChangeListener);
+        //
+        final int maxThreadsPerFile = Math.max(BatchExtractToTxtParameters.DEFAULT_THREADS_PER_FILE, Runtime.getRuntime().availableProcessors());
+        final int threadsPerFile = prefs.getInt("threads.per.file", BatchExtractToTxtParameters.DEFAULT_THREADS_PER_FILE); // NOI18N.
+        threadsPerFileSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, maxThreadsPerFile, Math.min(threadsPerFile, maxThreadsPerFile)));
+        threadsPerFileSpinner.valueProperty().addListener(threadsPerFileChangeListener);
+        //
+        final boolean compressed = prefs.getBoolean("compressed", BatchExtractToTxtParameters.DEFAULT_COMPRESSED); // NOI18N.
+        compressedOutputCheck.setSelected(compressed);
+        compressedOutputCheck.selectedProperty().addListener(compressedOutputChangeListener);
+        //
+        OutputFormat outputFormat = BatchExtractToTxtParameters.DEFAULT_OUTPUT_FORMAT;
+        try {
+            outputFormat = OutputFormat.valueOf(prefs.get("output.format", outputFormat.name())); // NOI18N.
+        } catch (IllegalArgumentException ex) {
+            Logger.getLogger(ExtractConfigPaneController.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+        }
+        outputFormatCombo.setButtonCell(new OutputFormatListCell());
+        outputFormatCombo.setCellFactory(listView -> new OutputFormatListCell());
+        outputFormatCombo.getItems().setAll(OutputFormat.values());
+        outputFormatCombo.getSelectionModel().select(outputFormat);
+        outputFormatCombo.valueProperty().addListener(outputFormatChangeListener);
+        //
         final boolean includeColumnHeader = prefs.getBoolean("include.column.header", BatchExtractToTxtParameters.DEFAULT_INCLUDE_COLUMN_HEADER); // NOI18N.
         includeColumnHeaderCheck.setSelected(includeColumnHeader);
         includeColumnHeaderCheck.selectedProperty().addListener(includeColumnHeaderChangeListener);
@@ -290,6 +353,7 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
         //
         final int timeFormatterIndex = prefs.getInt("time.formatter.index", 0); // NOI18N.
         final String customPattern = bundle.getString("extract.time.output-format.custom1.label"); // NOI18N.
+        this.customPattern = customPattern;
         timeOutputCombo.setButtonCell(new DateTimeFormatterListCell());
         timeOutputCombo.setCellFactory(listView -> new DateTimeFormatterListCell());
         timeOutputCombo.getItems().setAll(BatchExtractToTxtParameters.DEFAULT_DATE_TIME_FORMATTER,
@@ -470,6 +534,46 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
         updateBaseParameters();
     };
 
+    /**
+     * Called whenever the number of parallel extractions changes.
+     */
+    private final ChangeListener<Integer> workerCountChangeListener = (observable, oldValue, newValue) -> {
+        if (baseEditing) {
+            return;
+        }
+        updateBaseParameters();
+    };
+
+    /**
+     * Called whenever the number of formatting threads per file changes.
+     */
+    private final ChangeListener<Integer> threadsPerFileChangeListener = (observable, oldValue, newValue) -> {
+        if (baseEditing) {
+            return;
+        }
+        updateBaseParameters();
+    };
+
+    /**
+     * Called whenever the compressed output checkbox changes state.
+     */
+    private final ChangeListener<Boolean> compressedOutputChangeListener = (observable, oldValue, newValue) -> {
+        if (baseEditing) {
+            return;
+        }
+        updateBaseParameters();
+    };
+
+    /**
+     * Called whenever the output format changes.
+     */
+    private final ChangeListener<OutputFormat> outputFormatChangeListener = (observable, oldValue, newValue) -> {
+        if (baseEditing) {
+            return;
+        }
+        updateBaseParameters();
+    };
+
     /**
      * Called whenever the include column header checkbox changes state.
      */
@@ -567,6 +671,10 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
         final BatchExtractToTxtParametersBuilder builder = parentNode().get().getParametersBuilder();
         final Path dir = Paths.get(dirField.getText());
         final boolean singleDocument = singleOutputCheck.isSelected();
+        final int workerCount = workerCountSpinner.getValue();
+        final int threadsPerFile = threadsPerFileSpinner.getValue();
+        final boolean compressed = compressedOutputCheck.isSelected();
+        final OutputFormat outputFormat = outputFormatCombo.getValue();
         final boolean includeColumnHeader = includeColumnHeaderCheck.isSelected();
         final String comboSeparator = separatorCombo.getValue();
         final String fieldSeparator = separatorField.getText();
@@ -574,10 +682,18 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
         final String missingValue = missingValueField.getText();
         builder.destinationDir(dir)
                 .singleDocument(singleDocument)
+                .workerCount(workerCount)
+                .threadsPerFile(threadsPerFile)
+                .compressed(compressed)
+                .outputFormat(outputFormat)
                 .includeColumnHeader(includeColumnHeader)
                 .separator(separator)
                 .missingValue(missingValue);
         prefs.putBoolean("single.document", singleDocument); // NOI18N.
+        prefs.putInt("worker.count", workerCount); // NOI18N.
+        prefs.putInt("threads.per.file", threadsPerFile); // NOI18N.
+        prefs.putBoolean("compressed", compressed); // NOI18N.
+        prefs.put("output.format", outputFormat.name()); // NOI18N.
         prefs.putBoolean("include.column.header", includeColumnHeader); // NOI18N.
         prefs.put("separator", separator); // NOI18N.
         prefs.put("missing.value", missingValue); // NOI18N.
@@ -612,8 +728,13 @@ public final class ExtractConfigPaneController extends ControllerBase<ExtractCon
     private void updateTimeFormatterInParameters() {
         final BatchExtractToTxtParametersBuilder builder = parentNode().get().getParametersBuilder();
         final DateTimeFormatter dateTimeFormatter = timeOutputCombo.getValue();
-        builder.dateTimeFormatter(dateTimeFormatter);
         final int timeFormatterIndex = timeOutputCombo.getItems().indexOf(dateTimeFormatter);
+        // Keep the pattern of custom formatters so that it may be saved in job files.
+        if (dateTimeFormatter != BatchExtractToTxtParameters.DEFAULT_DATE_TIME_FORMATTER) {
+            builder.dateTimePattern(customPattern);
+        } else {
+            builder.dateTimeFormatter(dateTimeFormatter);
+        }
         prefs.putInt("time.formatter.index", timeFormatterIndex); // NOI18N.
     }
 
@@ -0,0 +1,28 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.scene.control.extract;
+
+import javafx.scene.control.ListCell;
+import org.spc.ofp.project.netcdfextractor.Main;
+import org.spc.ofp.project.netcdfextractor.extract.OutputFormat;
+
+/**
+ * List cell for output formats.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class OutputFormatListCell extends ListCell<OutputFormat> {
+
+    @Override
+    protected void updateItem(final OutputFormat item, final boolean empty) {
+        super.updateItem(item, empty);
+        String text = null;
+        if (!empty && item != null) {
+            final String key = String.format("extract.output-format.%s.label", item.name().toLowerCase().replace('_', '-')); // NOI18N.
+            text = Main.I18N.getString(key);
+        }
+        setText(text);
+    }
+}
@@ -42,6 +42,11 @@ public final class BatchConvertToImageTask extends Task<Void> {
 
     private final boolean invertLat = true;
 
+    /**
+     * Publishes the progress of the task at a limited rate.
+     */
+    private final ProgressReporter reporter = new ProgressReporter(ProgressReporter.DEFAULT_INTERVAL, source -> updateProgress(source.getDone(), source.getTotal()));
+
     /**
      * Creates a new instance.
      * @param sourceDir The source directory.
@@ -60,15 +65,19 @@ public final class BatchConvertToImageTask extends Task<Void> {
     protected Void call() throws Exception {
         generatePaletteImage();
         final List<Path> files = walkFolder(sourceDir.toFile());
+        // One unit of work per file and per variable.
+        reporter.setTotal(files.size());
         for (final Path file : files) {
             final String absoluteFilename = file.toAbsolutePath().toString();
             final String filename = file.getFileName().toString();
             try (final NetcdfFile netcdf = NetcdfFile.open(absoluteFilename)) {
                 final List<Variable> variables = netcdf.getVariables();
+                reporter.addTotal(variables.size());
                 for (final Variable variable : variables) {
                     final int rank = variable.getRank();
                     if (rank == 1) {
                         System.out.printf("Skipping %s %n", variable.getFullName());
+                        reporter.advance(1);
                         continue;
                     }
                     System.out.printf("Keeping %s %d %n", variable.getFullName(), rank);
@@ -172,9 +181,12 @@ public final class BatchConvertToImageTask extends Task<Void> {
                         writer.printf("%f\t%f%n", lat0, lon0);
                         writer.printf("%f\t%f%n", lat1, lon1);
                     }
+                    reporter.advance(1);
                 }
             }
+            reporter.advance(1);
         }
+        reporter.publish();
         return null;
     }
 
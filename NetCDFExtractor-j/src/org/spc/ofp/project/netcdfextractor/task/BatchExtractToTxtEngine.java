@@ -0,0 +1,2015 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.spc.ofp.project.netcdfextractor.NetCDFExtractorConstants;
+import org.spc.ofp.project.netcdfextractor.extract.Axis;
+import org.spc.ofp.project.netcdfextractor.extract.AxisLabelCache;
+import org.spc.ofp.project.netcdfextractor.extract.AxisLabels;
+import org.spc.ofp.project.netcdfextractor.extract.BcpNativeRowEncoder;
+import org.spc.ofp.project.netcdfextractor.extract.ColumnarFileWriter;
+import org.spc.ofp.project.netcdfextractor.extract.HeapBudget;
+import org.spc.ofp.project.netcdfextractor.extract.JdbcRowWriter;
+import org.spc.ofp.project.netcdfextractor.extract.Odometer;
+import org.spc.ofp.project.netcdfextractor.extract.OutputFormat;
+import org.spc.ofp.project.netcdfextractor.extract.PartitionLayout;
+import org.spc.ofp.project.netcdfextractor.extract.PartitionRouter;
+import org.spc.ofp.project.netcdfextractor.extract.PostgresBinaryRowEncoder;
+import org.spc.ofp.project.netcdfextractor.extract.RowBuffer;
+import org.spc.ofp.project.netcdfextractor.extract.RowEncoder;
+import org.spc.ofp.project.netcdfextractor.extract.Slab;
+import org.spc.ofp.project.netcdfextractor.extract.SlabPrefetcher;
+import org.spc.ofp.project.netcdfextractor.extract.SlabReader;
+import org.spc.ofp.project.netcdfextractor.extract.TextRowEncoder;
+import org.spc.ofp.project.netcdfextractor.extract.ValueDecoder;
+import org.spc.ofp.project.netcdfextractor.extract.arrow.ArrowFileWriter;
+import org.spc.ofp.project.netcdfextractor.extract.io.ChannelOutputStream;
+import org.spc.ofp.project.netcdfextractor.extract.io.ParallelGzipOutputStream;
+import org.spc.ofp.project.netcdfextractor.extract.io.PartitionedOutputStream;
+import org.spc.ofp.project.netcdfextractor.extract.io.RollingOutputStream;
+import org.spc.ofp.project.netcdfextractor.extract.parquet.ParquetFileWriter;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+/**
+ * Batch extract to text files.
+ * <br>This class does not depend on JavaFX: progress is pushed to a listener and cancellation is polled from a supplier, so that extractions may run without a display.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ * @see BatchExtractToTxtTask
+ */
+public final class BatchExtractToTxtEngine implements Callable<Void> {
+
+    /**
+     * Receives the progress of the extraction.
+     * <br>Methods are invoked from the extraction threads.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    public interface Listener {
+
+        /**
+         * Called when the extraction of a file starts.
+         * @param title The title of the extraction.
+         */
+        default void titleChanged(final String title) {
+        }
+
+        /**
+         * Called when the current step or rate of the extraction changes.
+         * @param message The message.
+         */
+        default void messageChanged(final String message) {
+        }
+
+        /**
+         * Called when the progress of the extraction changes.
+         * @param workDone The amount of work done.
+         * @param max The total amount of work.
+         */
+        default void progressChanged(final double workDone, final double max) {
+        }
+    }
+
+    /**
+     * The extraction parameters.
+     */
+    private final BatchExtractToTxtParameters parameters;
+    /**
+     * Receives the progress of the extraction.
+     */
+    private final Listener listener;
+    /**
+     * Tells whether the extraction was cancelled.
+     */
+    private final BooleanSupplier cancelled;
+
+    /**
+     * Creates a new instance.
+     * @param parameters The extraction parameters.
+     * @param listener Receives the progress of the extraction.
+     * @param cancelled Tells whether the extraction was cancelled, polled by the extraction threads.
+     * @throws NullPointerException If {@code parameters}, {@code listener} or {@code cancelled} is {@code null}.
+     */
+    public BatchExtractToTxtEngine(final BatchExtractToTxtParameters parameters, final Listener listener, final BooleanSupplier cancelled) throws NullPointerException {
+        Objects.requireNonNull(parameters);
+        Objects.requireNonNull(listener);
+        Objects.requireNonNull(cancelled);
+        this.parameters = parameters;
+        this.listener = listener;
+        this.cancelled = cancelled;
+        heapBudget = new HeapBudget(parameters.getHeapBudget());
+    }
+
+    /**
+     * Runs the extraction.
+     * @return Always {@code null}.
+     * @throws Exception In case of error.
+     */
+    @Override
+    public Void call() throws Exception {
+        if (isStreamCompressed()) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            compressionExecutor = Executors.newFixedThreadPool(COMPRESSION_THREADS, runnable -> {
+                final Thread thread = new Thread(runnable, String.format("compress-worker-%d", threadCount.incrementAndGet())); // NOI18N.
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try (final CheckpointJournal checkpointJournal = openJournal();
+                final ExtractionManifest extractionManifest = openManifest()) {
+            journal = checkpointJournal;
+            manifest = extractionManifest;
+            extractFiles();
+        } finally {
+            if (compressionExecutor != null) {
+                compressionExecutor.shutdownNow();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens the checkpoint journal.
+     * @return A {@code CheckpointJournal} instance, {@code null} if there is no file to export.
+     * @throws IOException In case of IO error.
+     */
+    private CheckpointJournal openJournal() throws IOException {
+        final Path stateDir = getStateDir();
+        return (stateDir == null) ? null : CheckpointJournal.open(stateDir.resolve(CheckpointJournal.FILE_NAME), parameters.isResume());
+    }
+
+    /**
+     * Opens the extraction manifest.
+     * @return An {@code ExtractionManifest} instance, {@code null} if the extraction is not incremental or if there is no file to export.
+     * @throws IOException In case of IO error.
+     */
+    private ExtractionManifest openManifest() throws IOException {
+        final Path stateDir = getStateDir();
+        return (stateDir == null || !parameters.isIncremental()) ? null : ExtractionManifest.open(stateDir.resolve(ExtractionManifest.FILE_NAME));
+    }
+
+    /**
+     * Gets the directory of the journal and of the manifest: the destination directory or the directory of the first file.
+     * @return A {@code Path} instance, {@code null} if there is no file to export.
+     */
+    private Path getStateDir() {
+        final Set<Path> files = parameters.getFiles();
+        if (files.isEmpty()) {
+            return null;
+        }
+        final Path destinationDir = parameters.getDestinationDir();
+        return (destinationDir == null) ? files.iterator().next().toAbsolutePath().getParent() : destinationDir;
+    }
+
+    /**
+     * Export all files.
+     * @throws Exception In case of error.
+     */
+    private void extractFiles() throws Exception {
+        final Set<Path> files = parameters.getFiles();
+        if (files.isEmpty()) {
+            return;
+        }
+        final String separator = parameters.getSeparator();
+        final Path destinationDir = parameters.getDestinationDir();
+        totalFiles = files.size();
+        reporter = new ProgressReporter(ProgressReporter.DEFAULT_INTERVAL, this::publishProgress);
+        //
+        // Rows inserted into a database are not written into a document.
+        final boolean singleDocument = parameters.isSingleDocument() && !isInsertIntoDatabase();
+        // Export files as a single document.
+        if (singleDocument) {
+            final Path firstFile = files.iterator().next();
+            final BatchExtractToTxtParameters.Settings settings = parameters.getSettings(firstFile);
+            final Path output = createDestination(firstFile, destinationDir, getOutputExtension());
+            final boolean inParts = isWrittenInParts();
+            final boolean partitioned = isPartitioned();
+            // The part manifest or the partition index stands for an output written in parts or partitioned.
+            final Path recordedOutput = inParts ? PartManifest.getFile(output) : partitioned ? PartitionedOutputStream.getIndex(output) : output;
+            // All files are written with the settings of the first file.
+            final String fingerprint = parameters.getFingerprint(firstFile);
+            final boolean journaled = isJournaled(output, fingerprint);
+            if ((journaled && journal.isComplete(output)) || isUpToDate(files, recordedOutput)) {
+                return;
+            }
+            // Continue from the last checkpoint or from the last complete part of a previous run.
+            final CheckpointJournal.Checkpoint checkpoint = journaled ? getResumableCheckpoint(output) : null;
+            final FileProgress progress = new FileProgress();
+            runningFiles.add(progress);
+            try (final PartManifest parts = inParts ? PartManifest.open(recordedOutput, parameters.isResume() && journaled) : null) {
+                final boolean resumed = checkpoint != null || (parts != null && parts.getPartCount() > 0);
+                if (!resumed) {
+                    journal.start(output, fingerprint);
+                }
+                try (final OutputStream out = (parts != null) ? openParts(output, parts) : partitioned ? openPartitions(output) : resumed ? ChannelOutputStream.openAt(output, checkpoint.getPosition(), parameters.getOutputBufferSize()) : openOutput(output)) {
+                    final ColumnarFileWriter columnar = createColumnarWriter(out);
+                    if (!resumed && parts == null && !partitioned) {
+                        writeOutputStart(out);
+                    }
+                    // Sources before the last source of the complete parts are already written.
+                    boolean skipping = resumed && parts != null;
+                    final Iterator<Path> fileIterator = files.iterator();
+                    for (int fileIndex = 0; fileIndex < files.size(); fileIndex++) {
+                        // Settings; each part or partition file gets the column header of the first file.
+                        final boolean includeColumnHeader = (parts != null || partitioned || (fileIndex == 0 && !resumed)) ? parameters.isIncludeColumnHeader() : false;
+                        final Path formatFile = (fileIndex == 0 && !resumed) ? createFormatFile(firstFile, destinationDir) : null;
+                        final Path file = fileIterator.next();
+                        final String[] variables = settings.getVariables().toArray(new String[0]);
+                        if (variables.length == 0) {
+                            final String message = String.format("No variable to export for file \"%s\".", file.toString()); // NOI18N.
+                            Logger.getLogger(getClass().getName()).warning(message);
+                            continue;
+                        }
+                        if (isCancelled()) {
+                            return;
+                        }
+                        // Title.
+                        updateTitleForFile(file);
+                        if (resumed && journal.isDone(output, file)) {
+                            progress.complete();
+                            continue;
+                        }
+                        long skippedRows = (checkpoint != null && checkpoint.isSource(file)) ? Math.max(0, checkpoint.getRows()) : 0;
+                        if (skipping) {
+                            if (!parts.isLastSource(file)) {
+                                progress.complete();
+                                continue;
+                            }
+                            skipping = false;
+                            skippedRows = parts.getLastSourceRows();
+                        }
+                        // Export.
+                        final FileCheckpoint fileCheckpoint = createFileCheckpoint(output, fingerprint, file, out, parts, skippedRows);
+                        try (final NetcdfFile netcdf = NetcdfFile.open(file.toString())) {
+                            exportFile(file, netcdf, out, columnar, includeColumnHeader, formatFile, separator, progress, fileCheckpoint, variables);
+                        }
+                        if (isCancelled()) {
+                            return;
+                        }
+                        if (fileCheckpoint != null) {
+                            fileCheckpoint.done();
+                        }
+                        progress.complete();
+                        if (parameters.isForceGarbageCollection()) {
+                            System.gc();
+                        }
+                    }
+                    if (columnar != null) {
+                        columnar.finish();
+                    }
+                    finishOutput(out);
+                }
+                if (parts != null) {
+                    parts.complete();
+                }
+            } finally {
+                runningFiles.remove(progress);
+            }
+            journal.complete(output, fingerprint);
+            recordExtraction(files, recordedOutput);
+
+        } // Export files individually.
+        else if (parameters.getWorkerCount() <= 1 || files.size() == 1) {
+            final FileProgress progress = new FileProgress();
+            runningFiles.add(progress);
+            try {
+                for (final Path file : files) {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    extractFile(file, destinationDir, separator, progress);
+                    //
+                    if (isCancelled()) {
+                        return;
+                    }
+                    progress.complete();
+                    if (parameters.isForceGarbageCollection()) {
+                        System.gc();
+                    }
+                }
+            } finally {
+                runningFiles.remove(progress);
+            }
+        } // Export files individually and concurrently.
+        else {
+            extractFilesConcurrently(files, destinationDir, separator);
+        }
+        if (!isCancelled()) {
+            reporter.publish();
+        }
+    }
+
+    /**
+     * Export files individually using several workers.
+     * <br>Files are scheduled largest first so that a big file does not end up being processed alone at the end of the batch.
+     * @param files The source files.
+     * @param destinationDir The destination directory.
+     * @param separator The separator.
+     * @throws Exception In case of error in one of the workers, the remaining workers are stopped.
+     */
+    private void extractFilesConcurrently(final Set<Path> files, final Path destinationDir, final String separator) throws Exception {
+        final Path[] schedule = files.stream()
+                .sorted(Comparator.comparingLong(BatchExtractToTxtEngine::sizeOf).reversed())
+                .toArray(Path[]::new);
+        final int workerCount = Math.min(parameters.getWorkerCount(), schedule.length);
+        // Workers share the heap budget.
+        budgetShares = workerCount;
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            final Thread thread = new Thread(runnable, String.format("extract-worker-%d", threadCount.incrementAndGet())); // NOI18N.
+            thread.setDaemon(true);
+            return thread;
+        });
+        final CompletionService<Path> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            // The executor queue is FIFO, this preserves the largest-first order.
+            for (final Path file : schedule) {
+                completionService.submit(() -> {
+                    final FileProgress progress = new FileProgress();
+                    runningFiles.add(progress);
+                    try {
+                        extractFile(file, destinationDir, separator, progress);
+                        if (!isStopped()) {
+                            progress.complete();
+                        }
+                    } finally {
+                        runningFiles.remove(progress);
+                    }
+                    return file;
+                });
+            }
+            for (int index = 0; index < schedule.length && !isCancelled(); index++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException ex) {
+                    aborted = true;
+                    final Throwable cause = ex.getCause();
+                    throw (cause instanceof Exception) ? (Exception) cause : ex;
+                }
+                if (parameters.isForceGarbageCollection()) {
+                    System.gc();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // The extraction has been cancelled.
+            if (!isCancelled()) {
+                throw ex;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Export a single file into its own destination file.
+     * @param file The source file.
+     * @param destinationDir The destination directory.
+     * @param separator The separator.
+     * @param progress The progress of this file.
+     * @throws IOException In case of IO error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private void extractFile(final Path file, final Path destinationDir, final String separator, final FileProgress progress) throws IOException, InvalidRangeException {
+        // Settings.
+        final boolean includeColumnHeader = parameters.isIncludeColumnHeader();
+        final BatchExtractToTxtParameters.Settings settings = parameters.getSettings(file);
+        final String[] variables = settings.getVariables().toArray(new String[0]);
+        if (variables.length == 0) {
+            final String message = String.format("No variable to export for file \"%s\".", file.toString()); // NOI18N.
+            Logger.getLogger(getClass().getName()).warning(message);
+            return;
+        }
+        if (isStopped()) {
+            return;
+        }
+        // Title.
+        updateTitleForFile(file);
+        // Insert into database; the journal records the source itself.
+        final String fingerprint = parameters.getFingerprint(file);
+        if (isInsertIntoDatabase()) {
+            if ((isJournaled(file, fingerprint) && journal.isComplete(file)) || isUpToDate(file, null)) {
+                return;
+            }
+            try (final NetcdfFile netcdf = NetcdfFile.open(file.toString())) {
+                exportFile(file, netcdf, null, null, false, null, separator, progress, null, variables);
+            }
+            if (!isStopped()) {
+                journal.complete(file, fingerprint);
+                recordExtraction(file, null);
+            }
+            return;
+        }
+        // Export.
+        final Path output = createDestination(file, destinationDir, getOutputExtension());
+        final boolean inParts = isWrittenInParts();
+        final boolean partitioned = isPartitioned();
+        // The part manifest or the partition index stands for an output written in parts or partitioned.
+        final Path recordedOutput = inParts ? PartManifest.getFile(output) : partitioned ? PartitionedOutputStream.getIndex(output) : output;
+        final boolean journaled = isJournaled(output, fingerprint);
+        if ((journaled && journal.isComplete(output)) || isUpToDate(file, recordedOutput)) {
+            return;
+        }
+        // Continue from the last checkpoint or from the last complete part of a previous run.
+        final CheckpointJournal.Checkpoint checkpoint = journaled ? getResumableCheckpoint(output) : null;
+        try (final PartManifest parts = inParts ? PartManifest.open(recordedOutput, parameters.isResume() && journaled) : null) {
+            final boolean resumed = (checkpoint != null && checkpoint.isSource(file)) || (parts != null && parts.getPartCount() > 0);
+            if (!resumed) {
+                journal.start(output, fingerprint);
+            }
+            final Path formatFile = createFormatFile(file, destinationDir);
+            try (final NetcdfFile netcdf = NetcdfFile.open(file.toString());
+                    final OutputStream out = (parts != null) ? openParts(output, parts) : partitioned ? openPartitions(output) : resumed ? ChannelOutputStream.openAt(output, checkpoint.getPosition(), parameters.getOutputBufferSize()) : openOutput(output)) {
+                final ColumnarFileWriter columnar = createColumnarWriter(out);
+                if (!resumed && parts == null && !partitioned) {
+                    writeOutputStart(out);
+                }
+                final long skippedRows = !resumed ? 0 : (parts != null) ? parts.getLastSourceRows() : Math.max(0, checkpoint.getRows());
+                final FileCheckpoint fileCheckpoint = createFileCheckpoint(output, fingerprint, file, out, parts, skippedRows);
+                // Each part gets the column header.
+                exportFile(file, netcdf, out, columnar, includeColumnHeader && (!resumed || parts != null), formatFile, separator, progress, fileCheckpoint, variables);
+                if (!isStopped()) {
+                    if (columnar != null) {
+                        columnar.finish();
+                    }
+                    finishOutput(out);
+                }
+            }
+            if (!isStopped() && parts != null) {
+                parts.complete();
+            }
+        }
+        if (!isStopped()) {
+            journal.complete(output, fingerprint);
+            recordExtraction(file, recordedOutput);
+        }
+    }
+
+    /**
+     * Tests whether the output of a source is up to date, according to the extraction manifest.
+     * @see ExtractionManifest#isUpToDate(Path, String, Path)
+     * @param source The source.
+     * @param output The output, {@code null} if rows are inserted into a database.
+     * @return {@code True} if the test succeeds, {@code false} otherwise; always {@code false} if the extraction is not incremental.
+     * @throws IOException In case of IO error.
+     */
+    private boolean isUpToDate(final Path source, final Path output) throws IOException {
+        return manifest != null && manifest.isUpToDate(source, parameters.getFingerprint(source), output);
+    }
+
+    /**
+     * Tests whether a single document is up to date, according to the extraction manifest.
+     * <br>The document is up to date if it was made of the same sources and if all of them are up to date.
+     * @param sources The sources.
+     * @param output The document.
+     * @return {@code True} if the test succeeds, {@code false} otherwise; always {@code false} if the extraction is not incremental.
+     * @throws IOException In case of IO error.
+     */
+    private boolean isUpToDate(final Set<Path> sources, final Path output) throws IOException {
+        if (manifest == null) {
+            return false;
+        }
+        final Set<Path> keys = sources.stream()
+                .map(ExtractionManifest::toKey)
+                .collect(Collectors.toSet());
+        if (!keys.equals(manifest.getSources(output))) {
+            return false;
+        }
+        for (final Path source : sources) {
+            if (!isUpToDate(source, output)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records an extracted source in the extraction manifest.
+     * @param source The source.
+     * @param output The output, {@code null} if rows were inserted into a database.
+     * @throws IOException In case of IO error.
+     */
+    private void recordExtraction(final Path source, final Path output) throws IOException {
+        if (manifest == null) {
+            return;
+        }
+        final long size = Files.size(source);
+        final long lastModified = Files.getLastModifiedTime(source).toMillis();
+        final long outputSize = (output == null) ? -1 : Files.size(output);
+        final long outputLastModified = (output == null) ? -1 : Files.getLastModifiedTime(output).toMillis();
+        manifest.put(new ExtractionManifest.Entry(source, size, lastModified, ExtractionManifest.hash(source), parameters.getFingerprint(source), output, outputSize, outputLastModified));
+    }
+
+    /**
+     * Records the sources of a single document in the extraction manifest.
+     * <br>Sources that were part of a previous version of the document are removed from the manifest.
+     * @param sources The sources.
+     * @param output The document.
+     * @throws IOException In case of IO error.
+     */
+    private void recordExtraction(final Set<Path> sources, final Path output) throws IOException {
+        if (manifest == null) {
+            return;
+        }
+        final Set<Path> keys = sources.stream()
+                .map(ExtractionManifest::toKey)
+                .collect(Collectors.toSet());
+        for (final Path previous : manifest.getSources(output)) {
+            if (!keys.contains(previous)) {
+                manifest.remove(previous);
+            }
+        }
+        for (final Path source : sources) {
+            recordExtraction(source, output);
+        }
+    }
+
+    /**
+     * Test whether outputs may be continued from a checkpoint within a source file.
+     * <br>Compressed streams and columnar files cannot be continued, they are written again from their start.
+     * Outputs written in parts continue from their last complete part instead; partitioned outputs are written again from their start.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private boolean isCheckpointed() {
+        final OutputFormat outputFormat = parameters.getOutputFormat();
+        return !isInsertIntoDatabase() && !isStreamCompressed() && !isWrittenInParts() && !isPartitioned() && outputFormat != OutputFormat.PARQUET && outputFormat != OutputFormat.ARROW;
+    }
+
+    /**
+     * Test whether outputs are written in parts.
+     * <br>Columnar files are never written in parts, their row groups or record batches can already be read in parallel; partitioned outputs are not split further.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private boolean isWrittenInParts() {
+        final OutputFormat outputFormat = parameters.getOutputFormat();
+        return (parameters.getPartRowCount() > 0 || parameters.getPartSize() > 0) && !isPartitioned()
+                && !isInsertIntoDatabase() && outputFormat != OutputFormat.PARQUET && outputFormat != OutputFormat.ARROW;
+    }
+
+    /**
+     * Test whether outputs are partitioned.
+     * <br>Columnar files are never partitioned, their writers cannot be closed and reopened to continue a file.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private boolean isPartitioned() {
+        final OutputFormat outputFormat = parameters.getOutputFormat();
+        return parameters.getPartitionLayout() != PartitionLayout.NONE
+                && !isInsertIntoDatabase() && outputFormat != OutputFormat.PARQUET && outputFormat != OutputFormat.ARROW;
+    }
+
+    /**
+     * Creates the object that records the checkpoints of a source written into an output.
+     * @param output The output.
+     * @param fingerprint The fingerprint of the settings the output is written with.
+     * @param source The source.
+     * @param out The output stream.
+     * @param parts The part manifest of the output, {@code null} if the output is not written in parts.
+     * @param skippedRows The number of rows of the source written before the extraction was resumed.
+     * @return A {@code FileCheckpoint} instance, {@code null} if the output cannot be continued from a checkpoint.
+     */
+    private FileCheckpoint createFileCheckpoint(final Path output, final String fingerprint, final Path source, final OutputStream out, final PartManifest parts, final long skippedRows) {
+        if (parts != null) {
+            return new FileCheckpoint(output, fingerprint, source, null, parts, skippedRows);
+        }
+        return isCheckpointed() ? new FileCheckpoint(output, fingerprint, source, (ChannelOutputStream) out, null, skippedRows) : null;
+    }
+
+    /**
+     * Tests whether the journal entries of an output were recorded with the current settings, in which case the output may be skipped or continued.
+     * @param output The output, or the source itself when rows are inserted into a database.
+     * @param fingerprint The fingerprint of the current settings of the output.
+     * @return {@code True} if the test succeeds, {@code false} if the journal has no entry for the output or if the output was written with other settings.
+     */
+    private boolean isJournaled(final Path output, final String fingerprint) {
+        final String recorded = journal.getFingerprint(output);
+        if (recorded == null) {
+            return false;
+        }
+        if (!recorded.equals(fingerprint)) {
+            final String message = String.format("Settings of output \"%s\" changed since it was written, writing it again.", output.toString()); // NOI18N.
+            Logger.getLogger(getClass().getName()).info(message);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the checkpoint from which an output may be continued.
+     * @param output The output.
+     * @return A {@code CheckpointJournal.Checkpoint} instance, {@code null} if the output must be written from its start.
+     * @throws IOException In case of IO error.
+     */
+    private CheckpointJournal.Checkpoint getResumableCheckpoint(final Path output) throws IOException {
+        final CheckpointJournal.Checkpoint checkpoint = isCheckpointed() ? journal.getCheckpoint(output) : null;
+        if (checkpoint == null) {
+            return null;
+        }
+        // The output was modified since the checkpoint.
+        if (!Files.isRegularFile(output) || Files.size(output) < checkpoint.getPosition()) {
+            final String message = String.format("Output \"%s\" does not match its checkpoint, writing it again.", output.toString()); // NOI18N.
+            Logger.getLogger(getClass().getName()).warning(message);
+            return null;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Gets the maximum size of a slab for a file, derived from the heap budget and the shape of the data to read.
+     * @param variables The variables.
+     * @param rowCount The number of rows to read.
+     * @return A {@code long} &gt; 0, in bytes.
+     */
+    private long getSlabSize(final Variable[] variables, final long rowCount) {
+        final long cellSize = Arrays.stream(variables)
+                .mapToLong(variable -> variable.getDataType().getSize())
+                .sum();
+        // Output buffers and row groups are held for the whole file.
+        long reserved = 2L * parameters.getOutputBufferSize();
+        if (parameters.getOutputFormat() == OutputFormat.PARQUET) {
+            reserved += parameters.getParquetRowGroupSize();
+        }
+        if (isPartitioned()) {
+            reserved += (long) parameters.getMaxOpenPartitions() * getPartitionBufferSize();
+        }
+        final long dataSize = (rowCount > Long.MAX_VALUE / Math.max(1, cellSize)) ? Long.MAX_VALUE : cellSize * rowCount;
+        return heapBudget.getSlabSize(budgetShares, SLABS_IN_MEMORY, reserved, dataSize);
+    }
+
+    /**
+     * Gets the size of a file.
+     * @param file The file.
+     * @return A {@code long}, 0 if the size cannot be determined.
+     */
+    private static long sizeOf(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Number of threads used to compress output files, shared by all workers.
+     */
+    private static final int COMPRESSION_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Runs the compression of output files, {@code null} if output files are not compressed.
+     */
+    private ExecutorService compressionExecutor;
+
+    /**
+     * Test whether rows are inserted into a database instead of being written into files.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private boolean isInsertIntoDatabase() {
+        return parameters.getJdbcUrl() != null;
+    }
+
+    /**
+     * Test whether output files are gzip-compressed as a whole.
+     * <br>Parquet files compress their pages instead.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private boolean isStreamCompressed() {
+        return parameters.isCompressed() && parameters.getOutputFormat() != OutputFormat.PARQUET;
+    }
+
+    /**
+     * Gets the extension of output files.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    private String getOutputExtension() {
+        final String extension = parameters.getOutputFormat().getExtension();
+        return isStreamCompressed() ? extension + ".gz" : extension; // NOI18N.
+    }
+
+    /**
+     * Creates the columnar writer of an output file, if the output format is columnar.
+     * @param out The output stream.
+     * @return A {@code ColumnarFileWriter} instance, may be {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private ColumnarFileWriter createColumnarWriter(final OutputStream out) throws IOException {
+        switch (parameters.getOutputFormat()) {
+            case PARQUET:
+                return new ParquetFileWriter(out, parameters.isCompressed(), parameters.getParquetRowGroupSize());
+            case ARROW:
+                return new ArrowFileWriter(out, ArrowFileWriter.DEFAULT_BATCH_SIZE);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Opens an output file.
+     * @param output The output file.
+     * @return An {@code OutputStream} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private OutputStream openOutput(final Path output) throws IOException {
+        final OutputStream result = ChannelOutputStream.open(output, parameters.getOutputBufferSize());
+        if (compressionExecutor == null) {
+            return result;
+        }
+        return new ParallelGzipOutputStream(result, compressionExecutor, 2 * COMPRESSION_THREADS, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Opens an output written in parts, starting after the last complete part.
+     * @param output The output.
+     * @param parts The part manifest of the output.
+     * @return A {@code RollingOutputStream} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private RollingOutputStream openParts(final Path output, final PartManifest parts) throws IOException {
+        final RollingOutputStream.PartHandler handler = new RollingOutputStream.PartHandler() {
+            @Override
+            public OutputStream open(final Path part) throws IOException {
+                return openOutput(part);
+            }
+
+            @Override
+            public void start(final OutputStream out) throws IOException {
+                writeOutputStart(out);
+            }
+
+            @Override
+            public void end(final OutputStream out) throws IOException {
+                writeOutputEnd(out);
+            }
+
+            @Override
+            public void completed(final Path part, final long rowCount) throws IOException {
+                parts.add(part, rowCount);
+            }
+        };
+        return new RollingOutputStream(output, getOutputExtension(), parts.getPartCount() + 1, parameters.getPartRowCount(), parameters.getPartSize(), handler);
+    }
+
+    /**
+     * Gets the size of the buffer of each open file of a partitioned output.
+     * <br>The output buffer is shared by the files that may be open at the same time.
+     * @return An {@code int} &gt; 0, in bytes.
+     */
+    private int getPartitionBufferSize() {
+        final int size = Math.max(ChannelOutputStream.MIN_BUFFER_SIZE, parameters.getOutputBufferSize() / parameters.getMaxOpenPartitions());
+        // Files closed and reopened often should not allocate large buffers.
+        return Math.min(size, MAX_PARTITION_BUFFER_SIZE);
+    }
+
+    /**
+     * The maximum size of the buffer of each open file of a partitioned output, is equal to {@value}.
+     */
+    private static final int MAX_PARTITION_BUFFER_SIZE = 1 << 18;
+
+    /**
+     * Opens a partitioned output.
+     * <br>Files of partitioned outputs are written through plain buffered streams, so that many of them may be open at the same time.
+     * @param output The output.
+     * @return A {@code PartitionedOutputStream} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private PartitionedOutputStream openPartitions(final Path output) throws IOException {
+        final int bufferSize = getPartitionBufferSize();
+        final PartitionedOutputStream.FileHandler handler = new PartitionedOutputStream.FileHandler() {
+            @Override
+            public OutputStream open(final Path file, final boolean append) throws IOException {
+                final OutputStream result = new BufferedOutputStream(Files.newOutputStream(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING), bufferSize);
+                if (compressionExecutor == null) {
+                    return result;
+                }
+                // Each reopening appends a new gzip member.
+                return new ParallelGzipOutputStream(result, compressionExecutor, 2, bufferSize);
+            }
+
+            @Override
+            public void start(final OutputStream out) throws IOException {
+                writeOutputStart(out);
+            }
+
+            @Override
+            public void end(final OutputStream out) throws IOException {
+                writeOutputEnd(out);
+            }
+        };
+        return PartitionedOutputStream.open(output, parameters.getMaxOpenPartitions(), handler);
+    }
+
+    /**
+     * Writes the end of an output; for an output written in parts, ends its last part; for a partitioned output, ends all its files.
+     * @param out The output stream.
+     * @throws IOException In case of IO error.
+     */
+    private void finishOutput(final OutputStream out) throws IOException {
+        if (out instanceof RollingOutputStream) {
+            ((RollingOutputStream) out).finish();
+        } else if (out instanceof PartitionedOutputStream) {
+            ((PartitionedOutputStream) out).finish();
+        } else {
+            writeOutputEnd(out);
+        }
+    }
+
+    /**
+     * Generate the format file that describes the destination file of given source file, if the output format requires one.
+     * @param source The source file.
+     * @param targetDir The target directory.
+     * @return A {@code Path} instance, may be {@code null}.
+     * @throws IOException If the format file is not writable.
+     */
+    private Path createFormatFile(final Path source, final Path targetDir) throws IOException {
+        switch (parameters.getOutputFormat()) {
+            case BCP_NATIVE:
+                return createDestination(source, targetDir, ".fmt"); // NOI18N.
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Writes the start of an output file, if its format requires one.
+     * @param out The output stream.
+     * @throws IOException In case of IO error.
+     */
+    private void writeOutputStart(final OutputStream out) throws IOException {
+        switch (parameters.getOutputFormat()) {
+            case POSTGRESQL_BINARY:
+                PostgresBinaryRowEncoder.writeFileHeader(out);
+                break;
+            case TEXT:
+            default:
+        }
+    }
+
+    /**
+     * Writes the end of an output file, if its format requires one.
+     * @param out The output stream.
+     * @throws IOException In case of IO error.
+     */
+    private void writeOutputEnd(final OutputStream out) throws IOException {
+        switch (parameters.getOutputFormat()) {
+            case POSTGRESQL_BINARY:
+                PostgresBinaryRowEncoder.writeFileTrailer(out);
+                break;
+            case TEXT:
+            default:
+        }
+    }
+
+    /**
+     * Generate destination file for given source file and given target directory.
+     * @param source The source file.
+     * @param targetDir The target directory.
+     * @return A {@code Path} instance, never {@code null}.
+     * @throws NullPointerException If {@code source} or {@code targetDir} is {@code null}.
+     * @throws IllegalArgumentException If {@code targetDir} is not a directory.
+     * @throws java.io.IOException If the destination file is not writable.
+     */
+    public static Path createDestination(final Path source, final Path targetDir) throws NullPointerException, IllegalArgumentException, IOException {
+        return createDestination(source, targetDir, ".txt"); // NOI18N.
+    }
+
+    /**
+     * Generate destination file for given source file and given target directory.
+     * @param source The source file.
+     * @param targetDir The target directory.
+     * @param extension The extension of the destination file, including the leading dot.
+     * @return A {@code Path} instance, never {@code null}.
+     * @throws NullPointerException If {@code source} or {@code extension} is {@code null}.
+     * @throws IllegalArgumentException If {@code targetDir} is not a directory.
+     * @throws java.io.IOException If the destination file is not writable.
+     */
+    public static Path createDestination(final Path source, final Path targetDir, final String extension) throws NullPointerException, IllegalArgumentException, IOException {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(extension);
+        final Path outputDir = (targetDir == null) ? source.getParent() : targetDir;
+        if (!Files.isDirectory(outputDir)) {
+            throw new IllegalArgumentException("targetDir is not a directory.");
+        }
+        final String dir = outputDir.toString();
+        final String sourceName = source.getFileName().toString();
+        final String outputName = sourceName.replaceAll("\\.(nc|cdf)", Matcher.quoteReplacement(extension)); // NOI18N.
+        final Path destination = Paths.get(dir, outputName);
+        if (Files.exists(destination) && (!Files.isRegularFile(destination) || !Files.isWritable(destination))) {
+            final String message = String.format("Cannot write destination file \"%s\".", destination.toString());
+            throw new IOException(message);
+        }
+        return destination;
+    }
+
+    /**
+     * Set of supported data types for export.
+     */
+    private static final Set<DataType> SUPPORTED_DATA_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            DataType.SHORT,
+            DataType.INT,
+            DataType.LONG,
+            DataType.FLOAT,
+            DataType.DOUBLE
+    )));
+
+    /**
+     * Number of files whose extraction has started.
+     */
+    private final AtomicInteger startedFiles = new AtomicInteger();
+    /**
+     * Number of files whose extraction is done.
+     */
+    private final AtomicInteger completedFiles = new AtomicInteger();
+    private int totalFiles = 0;
+
+    /**
+     * The heap budget, slab sizes are derived from it.
+     */
+    private final HeapBudget heapBudget;
+    /**
+     * Number of files sharing the heap budget.
+     */
+    private int budgetShares = 1;
+
+    /**
+     * Axis labels shared by all files of the batch.
+     */
+    private final AxisLabelCache labelCache = new AxisLabelCache();
+
+    /**
+     * Set when a concurrent worker fails, to stop the other workers.
+     */
+    private volatile boolean aborted = false;
+
+    /**
+     * Test whether the extraction should stop.
+     * @return {@code True} if the extraction has been cancelled or if a concurrent worker failed, {@code false} otherwise.
+     */
+    private boolean isStopped() {
+        return aborted || isCancelled();
+    }
+
+    /**
+     * Test whether the extraction has been cancelled.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    private boolean isCancelled() {
+        return cancelled.getAsBoolean();
+    }
+
+    private void updateTitle(final String title) {
+        listener.titleChanged(title);
+    }
+
+    private void updateMessage(final String message) {
+        listener.messageChanged(message);
+    }
+
+    private void updateProgress(final double workDone, final double max) {
+        listener.progressChanged(workDone, max);
+    }
+
+    /**
+     * Gets the number of files whose extraction is done, including those skipped because their output was up to date.
+     * @return An {@code int} &ge; 0.
+     */
+    public int getCompletedFileCount() {
+        return completedFiles.get();
+    }
+
+    /**
+     * Gets the number of rows extracted so far.
+     * @return A {@code long} &ge; 0.
+     */
+    public long getRowCount() {
+        final ProgressReporter progressReporter = reporter;
+        return (progressReporter == null) ? 0 : progressReporter.getDone();
+    }
+
+    /**
+     * Counts extracted rows and publishes the progress of the extraction at a limited rate.
+     */
+    private volatile ProgressReporter reporter;
+
+    /**
+     * Progress of the files currently being extracted.
+     */
+    private final Set<FileProgress> runningFiles = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * Tracks the progress of the extraction of a single file.
+     * <br>Values are only modified by the thread extracting the file; publication is delegated to the reporter.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private final class FileProgress {
+
+        private long current = 0;
+        private long total = 100;
+        /**
+         * Completed fraction of this file, read by other threads during publication.
+         */
+        private volatile double fraction = 0;
+
+        /**
+         * Starts a new file.
+         * @param value The total amount of work for this file.
+         */
+        void reset(final long value) {
+            current = 0;
+            total = value;
+            fraction = 0;
+        }
+
+        /**
+         * Add work to the total amount of work for this file.
+         * @param value The amount of work to add.
+         */
+        void addTotal(final long value) {
+            total += value;
+        }
+
+        /**
+         * Marks one unit of work as done.
+         */
+        void increment() {
+            advance(1, 0);
+        }
+
+        /**
+         * Marks some units of work as done.
+         * @param value The amount of work done.
+         * @param rows The number of rows written.
+         */
+        void advance(final long value, final long rows) {
+            current += value;
+            fraction = (total <= 0) ? 1 : Math.min(1, current / (double) total);
+            reporter.advance(rows);
+        }
+
+        /**
+         * Marks the current file as completed.
+         */
+        void complete() {
+            fraction = 0;
+            completedFiles.incrementAndGet();
+            reporter.advance(0);
+        }
+
+        /**
+         * Gets the completed fraction of the current file.
+         * @return A {@code double} in [0, 1].
+         */
+        double getFraction() {
+            return fraction;
+        }
+    }
+
+    /**
+     * Publish the progress of all files as a single progress, along with the extraction rate and the estimated remaining time.
+     * <br>Called at most once per reporter interval.
+     * @param source The source reporter.
+     */
+    private void publishProgress(final ProgressReporter source) {
+        double done = completedFiles.get();
+        for (final FileProgress progress : runningFiles) {
+            done += progress.getFraction();
+        }
+        done = Math.min(done, totalFiles);
+        updateProgress(done, totalFiles);
+        final String rowPattern = NetCDFExtractorConstants.I18N.getString("extract.progress.row.pattern"); // NOI18N.
+        final String remainingTime = ProgressReporter.formatDuration(source.getRemainingTime(done / totalFiles));
+        updateMessage(String.format(rowPattern, source.getDone(), source.getTotal(), source.getRate(), remainingTime));
+    }
+
+    /**
+     * Update the title for given file.
+     * @param source The source file.
+     */
+    private void updateTitleForFile(final Path source) {
+        final String titlePattern = NetCDFExtractorConstants.I18N.getString("extract.title.pattern"); // NOI18N.
+        final String title = String.format(titlePattern, startedFiles.incrementAndGet(), totalFiles, source.getFileName().toString());
+        updateTitle(title);
+    }
+
+    /**
+     * Export a given file into the given output.
+     * @param source The source file.
+     * @param netcdf The NetCDF file opened from the source.
+     * @param out The output stream, {@code null} when inserting into a database.
+     * @param columnar The columnar writer of the output, {@code null} unless the output format is columnar.
+     * @param includeColumnHeader If {@code true} prints out the columns names.
+     * @param formatFile The file that describes the output, may be {@code null}.
+     * @param separator The separator.
+     * @param progress The progress of this file.
+     * @param checkpoint Records the checkpoints of this file, {@code null} if the output cannot be continued from a checkpoint.
+     * @param variablesNames Variables to export.
+     * @throws IOException In case of IO error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private void exportFile(final Path source, final NetcdfFile netcdf, final OutputStream out, final ColumnarFileWriter columnar, final boolean includeColumnHeader, final Path formatFile, final String separator, final FileProgress progress, final FileCheckpoint checkpoint, final String... variableNames) throws IOException, InvalidRangeException {
+        progress.reset(100);
+        //
+        final int periodSize = parameters.getPeriodSize();
+        final ChronoUnit periodUnit = parameters.getPeriodUnit();
+        final ZonedDateTime startDate = parameters.getStartDate();
+        final Object outputMissingValue = parameters.getMissingValue();
+        final DateTimeFormatter dateTimeFormatter = parameters.getDateTimeFormatter();
+        final int precision = parameters.getPrecision();
+        final OutputFormat outputFormat = parameters.getOutputFormat();
+        // Binary formats have no column header.
+        final boolean writeColumnHeader = includeColumnHeader && outputFormat == OutputFormat.TEXT;
+        ////////////////////////////////////////////////////////////////////
+        // Collect variables.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-variables")); // NOI18N.
+        final Variable[] candidates = Arrays.stream(variableNames)
+                .map(netcdf::findVariable)
+                .filter(variable -> variable.getRank() > 0 && SUPPORTED_DATA_TYPES.contains(variable.getDataType()))
+                .toArray(Variable[]::new);
+        // Nothing to do.
+        if (candidates.length == 0) {
+            final String message = String.format("No variable to export for file \"%s\".", source.toString()); // NOI18N.
+            Logger.getLogger(getClass().getName()).warning(message);
+            return;
+        }
+        // Rows are built along the dimensions of the first variable of highest rank, other variables must share them.
+        final Variable reference = Arrays.stream(candidates)
+                .max(Comparator.comparingInt(Variable::getRank))
+                .get();
+        final List<Dimension> sharedDimensions = reference.getDimensions();
+        final Variable[] variables = Arrays.stream(candidates)
+                .filter(variable -> {
+                    final boolean shared = variable.getDimensions().equals(sharedDimensions);
+                    if (!shared) {
+                        final String message = String.format("Variable \"%s\" of file \"%s\" does not have the dimensions of variable \"%s\" and is ignored.", variable.getFullName(), source.toString(), reference.getFullName()); // NOI18N.
+                        Logger.getLogger(getClass().getName()).warning(message);
+                    }
+                    return shared;
+                })
+                .toArray(Variable[]::new);
+        if (isStopped()) {
+            return;
+        }
+        ////////////////////////////////////////////////////////////////////
+        // Collect dimensions.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-dimensions")); // NOI18N.
+        final Dimension[] dimensions = variables[0].getDimensions()
+                .stream()
+                .toArray(Dimension[]::new);
+        if (isStopped()) {
+            return;
+        }
+        // Dimension sizes.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-dimensions-sizes")); // NOI18N.
+        final int[] sizes = Arrays.stream(dimensions)
+                .mapToInt(Dimension::getLength)
+                .toArray();
+        if (isStopped()) {
+            return;
+        }
+        // Dimension variables.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-dimensions-variables")); // NOI18N.
+        final Variable[] dimensionVariables = Arrays.stream(dimensions)
+                .map(Dimension::getFullName)
+                .map(dimensionName -> netcdf.findVariable(dimensionName))
+                .toArray(Variable[]::new);
+        final Axis[] axes = new Axis[dimensions.length];
+        for (int dimensionIndex = 0; dimensionIndex < dimensions.length; dimensionIndex++) {
+            axes[dimensionIndex] = createAxis(dimensions[dimensionIndex], dimensionVariables[dimensionIndex]);
+        }
+        if (isStopped()) {
+            return;
+        }
+        // Only the sections within the requested bounds are read.
+        final List<Section> requestedSections = createSections(source, sizes, axes, dimensionVariables);
+        if (requestedSections.isEmpty()) {
+            final String message = String.format("No data within the requested bounds for file \"%s\".", source.toString()); // NOI18N.
+            Logger.getLogger(getClass().getName()).warning(message);
+            return;
+        }
+        // Rows written before the extraction was resumed are not read again.
+        final long skippedRows = (checkpoint == null) ? 0 : checkpoint.getSkippedRows();
+        final List<Section> sections = (skippedRows == 0) ? requestedSections : SlabReader.skip(requestedSections, skippedRows);
+        if (sections.isEmpty()) {
+            return;
+        }
+        ////////////////////////////////////////////////////////////////////
+        // Now compute total extraction length.
+        // 6 preliminary steps.
+        final long totalRows = sections.stream()
+                .mapToLong(section -> Odometer.count(section.getShape()))
+                .sum();
+        reporter.addTotal(totalRows);
+        progress.reset(6);
+        // 1 header to write
+        if (writeColumnHeader) {
+            progress.addTotal(1);
+        }
+        // Each file row is (numDims + numVars + 1 row to write)
+        progress.addTotal((dimensions.length + variables.length + 1) * totalRows);
+        ////////////////////////////////////////////////////////////////////
+        // Variable data type.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-variables-types")); // NOI18N.
+        final DataType[] dataTypes = Arrays.stream(variables)
+                .map(Variable::getDataType)
+                .toArray(DataType[]::new);
+        progress.increment();
+        if (isStopped()) {
+            return;
+        }
+        // Variable fill values.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-variables-fill-values")); // NOI18N.
+        final Number[] fillValues = Arrays.stream(variables)
+                .map(variable -> NetCDFUtils.INSTANCE.getNumericAttribute(variable, "_FillValue", Double.NaN)) // NOI18N.
+                .toArray(Number[]::new);
+        progress.increment();
+        if (isStopped()) {
+            return;
+        }
+        // Variable missing values.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-variables-missing-values")); // NOI18N.
+        final Number[] missingValues = Arrays.stream(variables)
+                .map(variable -> NetCDFUtils.INSTANCE.getNumericAttribute(variable, "missing_value", Double.NaN)) // NOI18N.
+                .toArray(Number[]::new);
+        progress.increment();
+        if (isStopped()) {
+            return;
+        }
+        // Variable scale factors.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-variables-scale-factors")); // NOI18N.
+        final Number[] scaleFactors = Arrays.stream(variables)
+                .map(variable -> NetCDFUtils.INSTANCE.getNumericAttribute(variable, "scale_factor", 1)) // NOI18N.
+                .toArray(Number[]::new);
+        progress.increment();
+        if (isStopped()) {
+            return;
+        }
+        // Variable add offets.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-variables-add-offsets")); // NOI18N.
+        final Number[] addOffsets = Arrays.stream(variables)
+                .map(variable -> NetCDFUtils.INSTANCE.getNumericAttribute(variable, "add_offset", 0)) // NOI18N.
+                .toArray(Number[]::new);
+        progress.increment();
+        if (isStopped()) {
+            return;
+        }
+        // Variable valid ranges.
+        updateMessage(NetCDFExtractorConstants.I18N.getString("extract.progress.collecting-variables-valid-ranges")); // NOI18N.
+        final Map.Entry<Number, Number>[] validRanges = Arrays.stream(variables)
+                .map(variable -> NetCDFUtils.INSTANCE.getValidRangeAttribute(variable, -Double.MAX_VALUE, Double.MAX_VALUE))
+                .toArray(Map.Entry[]::new);
+        progress.increment();
+        if (isStopped()) {
+            return;
+        }
+        ////////////////////////////////////////////////////////////////////
+        // Extract.
+        // Write header.
+        if (writeColumnHeader) {
+            writeHeader(out, separator, axes, variables);
+            progress.increment();
+            if (isStopped()) {
+                return;
+            }
+        }
+        // Write format file.
+        if (formatFile != null) {
+            BcpNativeRowEncoder.writeFormatFile(formatFile, axes, getVariableNames(variables));
+        }
+        // Extraction.
+        final Number[] validMins = Arrays.stream(validRanges)
+                .map(Map.Entry::getKey)
+                .toArray(Number[]::new);
+        final Number[] validMaxs = Arrays.stream(validRanges)
+                .map(Map.Entry::getValue)
+                .toArray(Number[]::new);
+        // Each row is (numDims + numVars + 1 row to write)
+        final long rowWork = dimensions.length + variables.length + 1;
+        final long slabSize = getSlabSize(variables, totalRows);
+        if (isInsertIntoDatabase() || columnar != null) {
+            final ValueDecoder decoder = new ValueDecoder(dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+            if (columnar != null) {
+                writeColumnarFile(columnar, axes, variables, sections, slabSize, decoder, rowWork, progress);
+            } else {
+                insertFile(axes, variables, sections, slabSize, decoder, rowWork, progress);
+            }
+            return;
+        }
+        final RowEncoder encoder;
+        switch (outputFormat) {
+            case POSTGRESQL_BINARY: {
+                encoder = new PostgresBinaryRowEncoder(axes,
+                        dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+            }
+            break;
+            case BCP_NATIVE: {
+                encoder = new BcpNativeRowEncoder(axes,
+                        dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+            }
+            break;
+            case TEXT:
+            default: {
+                // Coordinates are small: read them in full once and encode their labels, files sharing the same grid reuse the labels.
+                final AxisLabels[] labels = Arrays.stream(axes)
+                        .map(axis -> axis.isTime()
+                                ? labelCache.getTimeLabels(axis.getValues(), startDate, periodSize, periodUnit, dateTimeFormatter)
+                                : labelCache.getCoordinateLabels(axis.getValues()))
+                        .toArray(AxisLabels[]::new);
+                encoder = new TextRowEncoder(separator, outputMissingValue, precision,
+                        labels, dataTypes, fillValues, missingValues, scaleFactors, addOffsets, validMins, validMaxs);
+            }
+        }
+        // Pipeline: a reader thread reads slabs ahead, slabs are split in partitions that formatter threads encode concurrently and a writer thread writes the partitions in order.
+        // Stages are connected by bounded queues, a slow stage holds back the stages before it.
+        final int threads = parameters.getThreadsPerFile();
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final BlockingQueue<Partition> pending = new ArrayBlockingQueue<>(PARTITION_WINDOW * threads);
+        // Buffers are recycled once their content has been written.
+        final Queue<RowBuffer> buffers = new ConcurrentLinkedQueue<>();
+        // Keep the encoded text waiting to be written within the size of a slab.
+        final long estimatedRowSize = 2 * ROW_CELL_SIZE * (dimensions.length + variables.length);
+        final long maxPartitionSize = slabSize / (PARTITION_WINDOW * threads * estimatedRowSize);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "partition-writer"); // NOI18N.
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Rows of a partitioned output are routed by the formatters and written into their file by the writer.
+        final PartitionRouter router = (out instanceof PartitionedOutputStream) ? createRouter(source, axes, dimensionVariables) : null;
+        final Future<?> writing = writer.submit(() -> {
+            writePartitions(out, pending, buffers, rowWork, progress, checkpoint, router, cancelled);
+            return null;
+        });
+        // Partitions end on the boundaries of parts so that parts hold exactly their maximum number of rows.
+        final RollingOutputStream rolling = (out instanceof RollingOutputStream) ? (RollingOutputStream) out : null;
+        long rowsToBoundary = (rolling == null) ? Long.MAX_VALUE : rolling.getRemainingRows();
+        try (final SlabPrefetcher slabs = new SlabPrefetcher(new SlabReader(variables, sections, slabSize), READ_AHEAD_SLABS, heapBudget)) {
+            Slab next;
+            while ((next = takeSlab(slabs)) != null) {
+                final Slab slab = next;
+                if (isStopped()) {
+                    return;
+                }
+                final int cellCount = slab.getSize();
+                final int partitionSize = (int) Math.max(1, Math.min(Math.min(PARTITION_SIZE, (cellCount + threads - 1) / threads), maxPartitionSize));
+                int from = 0;
+                while (from < cellCount) {
+                    if (rowsToBoundary == 0) {
+                        rowsToBoundary = rolling.getMaxRows();
+                    }
+                    final int start = from;
+                    final int end = (int) Math.min(cellCount, from + Math.min(partitionSize, rowsToBoundary));
+                    rowsToBoundary -= end - start;
+                    from = end;
+                    final RowBuffer recycled = buffers.poll();
+                    final RowBuffer buffer = (recycled == null) ? new RowBuffer() : recycled;
+                    final Partition partition;
+                    if (router == null) {
+                        partition = new Partition(end - start, buffer, null, pool.submit(() -> encoder.encodeRows(slab, start, end, buffer)));
+                    } else {
+                        final PartitionRouter.Runs runs = new PartitionRouter.Runs();
+                        partition = new Partition(end - start, buffer, runs, pool.submit(() -> encoder.encodeRows(slab, start, end, buffer, router, runs)));
+                    }
+                    if (!putPartition(pending, partition, writing) || isStopped()) {
+                        return;
+                    }
+                }
+            }
+            if (putPartition(pending, Partition.END, writing)) {
+                awaitWriter(writing);
+            }
+        } finally {
+            // Nothing may be written once this method has returned.
+            cancelled.set(true);
+            writer.shutdown();
+            awaitTermination(writer);
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes encoded partitions in order until the end marker, runs on the writer thread.
+     * @param out The output stream.
+     * @param pending The partitions waiting to be written.
+     * @param buffers Receives the buffers once written.
+     * @param rowWork The amount of work for a single row.
+     * @param progress The progress of this file.
+     * @param checkpoint Records the checkpoints of this file, may be {@code null}.
+     * @param router Gives the directories of the rows of a partitioned output, {@code null} if the output is not partitioned.
+     * @param cancelled Set when the extraction of the file ends early.
+     * @throws IOException In case of IO error.
+     * @throws InterruptedException If the writer thread was interrupted.
+     */
+    private void writePartitions(final OutputStream out, final BlockingQueue<Partition> pending, final Queue<RowBuffer> buffers, final long rowWork, final FileProgress progress, final FileCheckpoint checkpoint, final PartitionRouter router, final AtomicBoolean cancelled) throws IOException, InterruptedException {
+        // Parts are rolled between partitions, which hold whole rows.
+        final RollingOutputStream rolling = (out instanceof RollingOutputStream) ? (RollingOutputStream) out : null;
+        long rowCount = 0;
+        while (!cancelled.get() && !isStopped()) {
+            final Partition partition = pending.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+            if (partition == null) {
+                continue;
+            }
+            if (partition == Partition.END) {
+                return;
+            }
+            partition.task.join();
+            if (rolling != null && rolling.isFull(partition.rowCount, partition.buffer.size())) {
+                rolling.roll();
+            }
+            if (router == null) {
+                writePartition(out, partition.buffer, partition.rowCount, rowWork, progress);
+            } else {
+                writeRuns((PartitionedOutputStream) out, partition.buffer, partition.runs, router, rowWork, progress);
+            }
+            if (rolling != null) {
+                rolling.rowsWritten(partition.rowCount);
+            }
+            buffers.add(partition.buffer);
+            rowCount += partition.rowCount;
+            // Partitions hold whole rows: a checkpoint may follow any of them.
+            if (checkpoint != null) {
+                checkpoint.rowsWritten(rowCount);
+            }
+        }
+    }
+
+    /**
+     * Waits for room in the queue of the writer and adds a partition.
+     * @param pending The partitions waiting to be written.
+     * @param partition The partition.
+     * @param writing The writer.
+     * @return {@code True} if the partition was added, {@code false} if the writer stopped because the extraction was stopped.
+     * @throws IOException If the writer failed.
+     */
+    private static boolean putPartition(final BlockingQueue<Partition> pending, final Partition partition, final Future<?> writing) throws IOException {
+        try {
+            while (!pending.offer(partition, POLL_DELAY, TimeUnit.MILLISECONDS)) {
+                if (writing.isDone()) {
+                    awaitWriter(writing);
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException();
+            exception.initCause(ex);
+            throw exception;
+        }
+    }
+
+    /**
+     * Waits for the writer to end.
+     * @param writing The writer.
+     * @throws IOException If the writer failed.
+     */
+    private static void awaitWriter(final Future<?> writing) throws IOException {
+        try {
+            writing.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException();
+            exception.initCause(ex);
+            throw exception;
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Waits for an executor to terminate, without being interrupted.
+     * @param executor The executor, already shut down.
+     */
+    private static void awaitTermination(final ExecutorService executor) {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(POLL_DELAY, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the next slab.
+     * @param slabs The slab prefetcher.
+     * @return A {@code Slab} instance, {@code null} if there is no more slab.
+     * @throws IOException In case of IO error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private static Slab takeSlab(final SlabPrefetcher slabs) throws IOException, InvalidRangeException {
+        try {
+            return slabs.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException();
+            exception.initCause(ex);
+            throw exception;
+        }
+    }
+
+    /**
+     * Creates the axis of a dimension.
+     * <br>The coordinates are read in full from the coordinate variable of the dimension; if there is none, coordinates are the indices along the dimension.
+     * <br>The axis is a time axis if its coordinate variable is the time variable.
+     * @param dimension The dimension.
+     * @param dimensionVariable The coordinate variable of the dimension, may be {@code null}.
+     * @return An {@code Axis} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private Axis createAxis(final Dimension dimension, final Variable dimensionVariable) throws IOException {
+        final String name = dimension.getShortName();
+        if (dimensionVariable == null || dimensionVariable.getRank() != 1) {
+            return Axis.ofIndices(name, dimension.getLength());
+        }
+        final Array values = dimensionVariable.read();
+        if (dimensionVariable.getShortName().equals(parameters.getTimeVariable())) {
+            return Axis.ofTimes(name, values, parameters.getStartDate(), parameters.getPeriodSize(), parameters.getPeriodUnit());
+        }
+        return Axis.ofCoordinates(name, values);
+    }
+
+    /**
+     * Creates the router of the rows of a file into the directories of a partitioned output.
+     * <br>Rows are partitioned along the time axis, or along the latitude and longitude axes, found as for the requested bounds.
+     * @param source The source file.
+     * @param axes The axes.
+     * @param dimensionVariables The coordinate variables of the dimensions.
+     * @return A {@code PartitionRouter} instance, never {@code null}.
+     */
+    private PartitionRouter createRouter(final Path source, final Axis[] axes, final Variable[] dimensionVariables) {
+        final PartitionLayout layout = parameters.getPartitionLayout();
+        int timeDimension = -1;
+        int latitudeDimension = -1;
+        int longitudeDimension = -1;
+        for (int dimensionIndex = 0; dimensionIndex < axes.length; dimensionIndex++) {
+            final String coordinateName = (dimensionVariables[dimensionIndex] == null) ? null : dimensionVariables[dimensionIndex].getShortName();
+            if (axes[dimensionIndex].isTime() && timeDimension < 0) {
+                timeDimension = dimensionIndex;
+            } else if (parameters.getLatitudeVariable().equals(coordinateName)) {
+                latitudeDimension = dimensionIndex;
+            } else if (parameters.getLongitudeVariable().equals(coordinateName)) {
+                longitudeDimension = dimensionIndex;
+            }
+        }
+        final PartitionRouter result = layout.isPeriod()
+                ? PartitionRouter.ofPeriods(layout, axes, timeDimension)
+                : PartitionRouter.ofTiles(axes, latitudeDimension, longitudeDimension, parameters.getTileSize());
+        if (result.isFlat()) {
+            final String message = String.format("Rows of file \"%s\" are not partitioned, its variables have no axis to partition by %s.", source.toString(), layout); // NOI18N.
+            Logger.getLogger(getClass().getName()).warning(message);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the sections of a file that are within the requested bounds.
+     * <br>Time axes are restricted to the requested dates, the latitude and longitude axes to the requested area; indices are found by binary search on the coordinates.
+     * <br>An area that crosses the seam of the longitude grid yields two sections, which {@code SlabReader} reads together so that rows stay in time and latitude order.
+     * @param source The source file.
+     * @param sizes The dimension sizes.
+     * @param axes The axes.
+     * @param dimensionVariables The coordinate variables of the dimensions.
+     * @return A {@code List<Section>} instance, never {@code null}; empty if no data is within the bounds.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private List<Section> createSections(final Path source, final int[] sizes, final Axis[] axes, final Variable[] dimensionVariables) throws InvalidRangeException {
+        final boolean dateBounded = parameters.getMinDate() != null || parameters.getMaxDate() != null;
+        final boolean latitudeBounded = parameters.getMinLatitude() > BatchExtractToTxtParameters.DEFAULT_MIN_LATITUDE || parameters.getMaxLatitude() < BatchExtractToTxtParameters.DEFAULT_MAX_LATITUDE;
+        final boolean longitudeBounded = parameters.getMinLongitude() != BatchExtractToTxtParameters.DEFAULT_MIN_LONGITUDE || parameters.getMaxLongitude() != BatchExtractToTxtParameters.DEFAULT_MAX_LONGITUDE;
+        boolean latitudeFound = false;
+        boolean longitudeFound = false;
+        // Ranges of each axis.
+        final List<List<Range>> axisRanges = new ArrayList<>(axes.length);
+        for (int dimensionIndex = 0; dimensionIndex < axes.length; dimensionIndex++) {
+            final Axis axis = axes[dimensionIndex];
+            final String coordinateName = (dimensionVariables[dimensionIndex] == null) ? null : dimensionVariables[dimensionIndex].getShortName();
+            final List<Range> ranges;
+            if (axis.isTime() && dateBounded) {
+                final Instant minDate = (parameters.getMinDate() == null) ? null : parameters.getMinDate().toInstant();
+                final Instant maxDate = (parameters.getMaxDate() == null) ? null : parameters.getMaxDate().toInstant();
+                final Range range = axis.findRange(minDate, maxDate);
+                ranges = (range == null) ? Collections.emptyList() : Collections.singletonList(range);
+            } else if (parameters.getLatitudeVariable().equals(coordinateName) && latitudeBounded) {
+                latitudeFound = true;
+                final Range range = axis.findRange(parameters.getMinLatitude(), parameters.getMaxLatitude());
+                ranges = (range == null) ? Collections.emptyList() : Collections.singletonList(range);
+            } else if (parameters.getLongitudeVariable().equals(coordinateName) && longitudeBounded) {
+                longitudeFound = true;
+                ranges = axis.findLongitudeRanges(parameters.getMinLongitude(), parameters.getMaxLongitude());
+            } else {
+                ranges = Collections.singletonList(new Range(0, sizes[dimensionIndex] - 1));
+            }
+            if (ranges.isEmpty()) {
+                return Collections.emptyList();
+            }
+            axisRanges.add(ranges);
+        }
+        if ((latitudeBounded && !latitudeFound) || (longitudeBounded && !longitudeFound)) {
+            final String message = String.format("Area bounds do not apply to file \"%s\", its variables have no \"%s\" or \"%s\" dimension.", source.toString(), parameters.getLatitudeVariable(), parameters.getLongitudeVariable()); // NOI18N.
+            Logger.getLogger(getClass().getName()).warning(message);
+        }
+        // All combinations of ranges, in order.
+        List<List<Range>> combinations = Collections.singletonList(Collections.emptyList());
+        for (final List<Range> ranges : axisRanges) {
+            final List<List<Range>> next = new ArrayList<>(combinations.size() * ranges.size());
+            for (final List<Range> combination : combinations) {
+                for (final Range range : ranges) {
+                    final List<Range> extended = new ArrayList<>(combination);
+                    extended.add(range);
+                    next.add(extended);
+                }
+            }
+            combinations = next;
+        }
+        return combinations.stream()
+                .map(Section::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Inserts the rows of a file into the database.
+     * <br>All rows of the file are inserted in a single transaction per connection; nothing is committed if the extraction is stopped.
+     * <br>Rows previously loaded from the file are deleted first, so that loading a file again, after a partial commit or a change in the file, does not duplicate its rows.
+     * @param axes The axes.
+     * @param variables The variables.
+     * @param sections The sections to read.
+     * @param slabSize The maximum size of a slab, in bytes.
+     * @param decoder Decodes the values of the variables.
+     * @param rowWork The amount of work for a single row.
+     * @param progress The progress of this file.
+     * @throws IOException In case of IO or database error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private void insertFile(final Axis[] axes, final Variable[] variables, final List<Section> sections, final long slabSize, final ValueDecoder decoder, final long rowWork, final FileProgress progress) throws IOException, InvalidRangeException {
+        final String[] columnNames = getColumnNames(axes, variables);
+        final int connectionCount = parameters.getJdbcConnectionCount();
+        // Connections wait for each other after each chunk, which is also when the progress is updated.
+        final int chunkSize = connectionCount * Math.max(PARTITION_SIZE, parameters.getJdbcBatchSize());
+        try (final JdbcRowWriter writer = new JdbcRowWriter(parameters.getJdbcUrl(), parameters.getJdbcUser(), parameters.getJdbcPassword(), parameters.getJdbcTable(), columnNames,
+                connectionCount, parameters.getJdbcBatchSize(), axes, decoder);
+                final SlabPrefetcher slabs = new SlabPrefetcher(new SlabReader(variables, sections, slabSize), READ_AHEAD_SLABS, heapBudget)) {
+            writer.deleteRows(sections);
+            Slab slab;
+            while ((slab = slabs.take()) != null) {
+                if (isStopped()) {
+                    return;
+                }
+                final int cellCount = slab.getSize();
+                for (int from = 0; from < cellCount; from += chunkSize) {
+                    final int to = Math.min(cellCount, from + chunkSize);
+                    writer.write(slab, from, to);
+                    progress.advance(rowWork * (to - from), to - from);
+                    if (isStopped()) {
+                        return;
+                    }
+                }
+            }
+            writer.commit();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException();
+            exception.initCause(ex);
+            throw exception;
+        }
+    }
+
+    /**
+     * Writes the rows of a file into a columnar file.
+     * <br>The rows are buffered by the writer and flushed in blocks; the last block of the file is written once all rows have been read.
+     * @param columnar The columnar writer.
+     * @param axes The axes.
+     * @param variables The variables.
+     * @param sections The sections to read.
+     * @param slabSize The maximum size of a slab, in bytes.
+     * @param decoder Decodes the values of the variables.
+     * @param rowWork The amount of work for a single row.
+     * @param progress The progress of this file.
+     * @throws IOException In case of IO error.
+     * @throws InvalidRangeException NetCDF index error, should never happen.
+     */
+    private void writeColumnarFile(final ColumnarFileWriter columnar, final Axis[] axes, final Variable[] variables, final List<Section> sections, final long slabSize, final ValueDecoder decoder, final long rowWork, final FileProgress progress) throws IOException, InvalidRangeException {
+        columnar.begin(axes, getVariableNames(variables), decoder);
+        try (final SlabPrefetcher slabs = new SlabPrefetcher(new SlabReader(variables, sections, slabSize), READ_AHEAD_SLABS, heapBudget)) {
+            Slab slab;
+            while ((slab = takeSlab(slabs)) != null) {
+                if (isStopped()) {
+                    return;
+                }
+                final int cellCount = slab.getSize();
+                for (int from = 0; from < cellCount; from += PARTITION_SIZE) {
+                    final int to = Math.min(cellCount, from + PARTITION_SIZE);
+                    columnar.write(slab, from, to);
+                    progress.advance(rowWork * (to - from), to - from);
+                    if (isStopped()) {
+                        return;
+                    }
+                }
+            }
+        }
+        columnar.end();
+    }
+
+    /**
+     * Gets the names of the columns: axes first, then variables.
+     * @param axes The axes.
+     * @param variables The variables.
+     * @return A {@code String[]} instance, never {@code null}.
+     */
+    private static String[] getColumnNames(final Axis[] axes, final Variable[] variables) {
+        return Stream.concat(Arrays.stream(axes).map(Axis::getName), Arrays.stream(variables).map(Variable::getShortName))
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Gets the names of the variable columns.
+     * @param variables The variables.
+     * @return A {@code String[]} instance, never {@code null}.
+     */
+    private static String[] getVariableNames(final Variable[] variables) {
+        return Arrays.stream(variables)
+                .map(Variable::getShortName)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Maximum number of rows in a partition, is equal to {@value}.
+     */
+    private static final int PARTITION_SIZE = 1 << 14;
+
+    /**
+     * Estimated number of characters needed to format a single cell, is equal to {@value}.
+     */
+    private static final int ROW_CELL_SIZE = 16;
+
+    /**
+     * Number of partitions per thread that may wait to be written, is equal to {@value}.
+     */
+    private static final int PARTITION_WINDOW = 4;
+
+    /**
+     * Number of slabs that may be read ahead, is equal to {@value}.
+     */
+    private static final int READ_AHEAD_SLABS = 1;
+
+    /**
+     * Number of slabs a file holds in memory at once: the slabs read ahead, the slab being read, the slab being processed and its encoded rows.
+     */
+    private static final int SLABS_IN_MEMORY = READ_AHEAD_SLABS + 3;
+
+    /**
+     * Delay between two checks of the stop flag while a pipeline stage waits, in milliseconds, is equal to {@value}.
+     */
+    private static final long POLL_DELAY = 100;
+
+    /**
+     * A partition of rows being encoded.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class Partition {
+
+        /**
+         * Marks the end of the partitions.
+         */
+        static final Partition END = new Partition(0, null, null, null);
+
+        final int rowCount;
+        final RowBuffer buffer;
+        /**
+         * The runs of rows that go to the same file of a partitioned output, {@code null} if the output is not partitioned.
+         */
+        final PartitionRouter.Runs runs;
+        final ForkJoinTask<?> task;
+
+        Partition(final int rowCount, final RowBuffer buffer, final PartitionRouter.Runs runs, final ForkJoinTask<?> task) {
+            this.rowCount = rowCount;
+            this.buffer = buffer;
+            this.runs = runs;
+            this.task = task;
+        }
+    }
+
+    /**
+     * The checkpoint journal.
+     */
+    private CheckpointJournal journal;
+
+    /**
+     * The extraction manifest, {@code null} if the extraction is not incremental.
+     */
+    private ExtractionManifest manifest;
+
+    /**
+     * Records the checkpoints of a source written into an output.
+     * <br>Checkpoints within the source are taken at most once per checkpoint interval.
+     * <br>For an output written in parts, the position within the source is given to the part manifest instead, which records it with each complete part.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private final class FileCheckpoint {
+
+        private final Path output;
+        private final String fingerprint;
+        private final Path source;
+        private final ChannelOutputStream out;
+        private final PartManifest parts;
+        /**
+         * Number of rows of the source written before the extraction was resumed.
+         */
+        private final long skippedRows;
+        /**
+         * Time of the last checkpoint in nanoseconds.
+         */
+        private long lastTime = System.nanoTime();
+
+        FileCheckpoint(final Path output, final String fingerprint, final Path source, final ChannelOutputStream out, final PartManifest parts, final long skippedRows) {
+            this.output = output;
+            this.fingerprint = fingerprint;
+            this.source = source;
+            this.out = out;
+            this.parts = parts;
+            this.skippedRows = skippedRows;
+            if (parts != null) {
+                parts.setPosition(source, skippedRows);
+            }
+        }
+
+        /**
+         * Gets the number of rows of the source written before the extraction was resumed.
+         * @return A {@code long} &ge; 0.
+         */
+        long getSkippedRows() {
+            return skippedRows;
+        }
+
+        /**
+         * Called once rows have been written, takes a checkpoint if the checkpoint interval has elapsed.
+         * @param rowCount The number of rows written since the extraction of the source started or resumed.
+         * @throws IOException In case of IO error.
+         */
+        void rowsWritten(final long rowCount) throws IOException {
+            if (parts != null) {
+                parts.setPosition(source, skippedRows + rowCount);
+                return;
+            }
+            final long now = System.nanoTime();
+            if (now - lastTime < TimeUnit.MILLISECONDS.toNanos(parameters.getCheckpointInterval())) {
+                return;
+            }
+            lastTime = now;
+            journal.checkpoint(output, fingerprint, source, skippedRows + rowCount, out.sync());
+        }
+
+        /**
+         * Called once all rows of the source have been written.
+         * @throws IOException In case of IO error.
+         */
+        void done() throws IOException {
+            if (parts != null) {
+                return;
+            }
+            journal.done(output, fingerprint, source, out.sync());
+        }
+    }
+
+    /**
+     * Writes an encoded partition and updates the progress.
+     * <br>The buffer is cleared afterwards.
+     * @param out The output stream.
+     * @param buffer The encoded rows.
+     * @param rowCount The number of rows in the partition.
+     * @param rowWork The amount of work for a single row.
+     * @param progress The progress of this file.
+     * @throws IOException In case of IO error.
+     */
+    private void writePartition(final OutputStream out, final RowBuffer buffer, final int rowCount, final long rowWork, final FileProgress progress) throws IOException {
+        buffer.writeTo(out);
+        buffer.clear();
+        progress.advance(rowWork * rowCount, rowCount);
+    }
+
+    /**
+     * Writes the runs of an encoded partition into the files of a partitioned output and updates the progress.
+     * <br>Runs are grouped by file, keeping their order within each file, so that each file is selected once per partition.
+     * <br>The buffer is cleared afterwards.
+     * @param out The partitioned output.
+     * @param buffer The encoded rows.
+     * @param runs The runs of rows that go to the same file.
+     * @param router Gives the directory of each run.
+     * @param rowWork The amount of work for a single row.
+     * @param progress The progress of this file.
+     * @throws IOException In case of IO error.
+     */
+    private void writeRuns(final PartitionedOutputStream out, final RowBuffer buffer, final PartitionRouter.Runs runs, final PartitionRouter router, final long rowWork, final FileProgress progress) throws IOException {
+        final Integer[] order = new Integer[runs.size()];
+        Arrays.setAll(order, Integer::valueOf);
+        // The sort is stable.
+        Arrays.sort(order, Comparator.comparingLong(runs::getKey));
+        long rowCount = 0;
+        for (final int run : order) {
+            final int offset = runs.getOffset(run);
+            final int end = (run + 1 < runs.size()) ? runs.getOffset(run + 1) : buffer.size();
+            out.select(router.getDirectory(runs.getKey(run)));
+            buffer.writeTo(out, offset, end - offset);
+            out.rowsWritten(runs.getRowCount(run));
+            rowCount += runs.getRowCount(run);
+        }
+        buffer.clear();
+        progress.advance(rowWork * rowCount, rowCount);
+    }
+
+    /**
+     * Write the header of the file.
+     * @param out The output stream.
+     * @param separator The value separator.
+     * @param axes Array of axes.
+     * @param variables Array of variables.
+     * @throws IOException In case of IO error.
+     */
+    private void writeHeader(final OutputStream out, final String separator, final Axis[] axes, final Variable[] variables) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        // Axes.
+        for (final Axis axis : axes) {
+            line.append(axis.getName());
+            line.append(separator);
+        }
+        // Variables.
+        for (final Variable variable : variables) {
+            line.append(variable.getShortName());
+            line.append(separator);
+        }
+        // Write line.
+        line.delete(line.lastIndexOf(separator), line.length());
+        line.append(System.lineSeparator());
+        final byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (out instanceof RollingOutputStream) {
+            ((RollingOutputStream) out).writeHeader(bytes);
+        } else if (out instanceof PartitionedOutputStream) {
+            ((PartitionedOutputStream) out).setHeader(bytes);
+        } else {
+            out.write(bytes);
+        }
+    }
+}
@@ -15,6 +15,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.spc.ofp.project.netcdfextractor.extract.HeapBudget;
+import org.spc.ofp.project.netcdfextractor.extract.OutputFormat;
+import org.spc.ofp.project.netcdfextractor.extract.PartitionLayout;
+import org.spc.ofp.project.netcdfextractor.extract.io.ChannelOutputStream;
+import org.spc.ofp.project.netcdfextractor.extract.parquet.ParquetFileWriter;
 
 /**
  * Parameters for the text batch tasks.
@@ -22,14 +27,131 @@ import java.util.Set;
  */
 public final class BatchExtractToTxtParameters {
 
-    public static final boolean DEFAULT_FORCE_GC = true;
+    /**
+     * By default, no explicit garbage collection is requested: slabs are sized from the heap budget instead.
+     */
+    public static final boolean DEFAULT_FORCE_GC = false;
 
     boolean forceGarbageCollection = DEFAULT_FORCE_GC;
 
+    /**
+     * Tests whether a garbage collection is requested after each file.
+     * <br>This is no longer needed since slabs are sized from the heap budget, a collection may take several seconds on a large heap.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
     public boolean isForceGarbageCollection() {
         return forceGarbageCollection;
     }
 
+    /**
+     * The default heap budget in bytes, half of the maximum heap size.
+     */
+    public static final long DEFAULT_HEAP_BUDGET = HeapBudget.defaultSize();
+
+    long heapBudget = DEFAULT_HEAP_BUDGET;
+
+    /**
+     * Gets the share of the heap that the extraction may use.
+     * <br>Slab sizes are derived from this budget, which is shared by the files extracted concurrently; reads ahead pause when the heap is under pressure.
+     * @return A {@code long} &gt; 0, in bytes.
+     */
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    public static final boolean DEFAULT_RESUME = false;
+
+    boolean resume = DEFAULT_RESUME;
+
+    /**
+     * Tests whether the extraction resumes from the checkpoint journal of a previous run.
+     * <br>Complete outputs are skipped; partial outputs are truncated back to their last checkpoint and continued, or written again when their format cannot be continued (compressed streams, columnar files).
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     * @see CheckpointJournal
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * The default minimum interval between two checkpoints within a file in milliseconds, is equal to {@value}.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 30_000;
+
+    long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    /**
+     * Gets the minimum interval between two checkpoints within a file.
+     * <br>A checkpoint forces the output to disk, it is taken between two blocks of encoded rows.
+     * @return A {@code long} &gt; 0, in milliseconds.
+     */
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public static final boolean DEFAULT_INCREMENTAL = false;
+
+    boolean incremental = DEFAULT_INCREMENTAL;
+
+    /**
+     * Tests whether the extraction skips sources whose output is still up to date.
+     * <br>A manifest records the size, last modification time and content hash of each extracted source, along with the fingerprint of the parameters and the size and last modification time of its output.
+     * A source is extracted again when it is new, when its content changed, when the parameters that shape its output changed or when its output was modified or deleted.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     * @see ExtractionManifest
+     * @see #getFingerprint(Path)
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * The default number of files extracted concurrently, is equal to {@value}.
+     */
+    public static final int DEFAULT_WORKER_COUNT = 1;
+
+    int workerCount = DEFAULT_WORKER_COUNT;
+
+    /**
+     * Gets the number of files extracted concurrently.
+     * <br>Files are scheduled largest first; this setting is ignored when exporting as a single document.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * The default number of threads used to extract a single file, is equal to {@value}.
+     */
+    public static final int DEFAULT_THREADS_PER_FILE = 1;
+
+    int threadsPerFile = DEFAULT_THREADS_PER_FILE;
+
+    /**
+     * Gets the number of threads used to format the content of a single file.
+     * <br>Rows are always written in their original order.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getThreadsPerFile() {
+        return threadsPerFile;
+    }
+
+    /**
+     * The default size of output buffers in bytes, is equal to {@value}.
+     */
+    public static final int DEFAULT_OUTPUT_BUFFER_SIZE = ChannelOutputStream.DEFAULT_BUFFER_SIZE;
+
+    int outputBufferSize = DEFAULT_OUTPUT_BUFFER_SIZE;
+
+    /**
+     * Gets the size of each of the two buffers used when writing an output file.
+     * @return An {@code int} &gt; 0.
+     */
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
     public static final boolean DEFAULT_SINGLE_DOCUMENT = false;
 
     boolean singleDocument = DEFAULT_SINGLE_DOCUMENT;
@@ -38,6 +160,144 @@ public final class BatchExtractToTxtParameters {
         return singleDocument;
     }
 
+    /**
+     * The default compressed flag, is equal to {@value}.
+     */
+    public static final boolean DEFAULT_COMPRESSED = false;
+
+    boolean compressed = DEFAULT_COMPRESSED;
+
+    /**
+     * Tests whether output files are gzip-compressed.
+     * <br>Compression is done in parallel by blocks, the output is a standard {@code .gz} file.
+     * <br>Parquet files are never gzip-compressed as a whole, their pages are compressed instead.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * The default output format.
+     */
+    public static final OutputFormat DEFAULT_OUTPUT_FORMAT = OutputFormat.TEXT;
+
+    OutputFormat outputFormat = DEFAULT_OUTPUT_FORMAT;
+
+    /**
+     * Gets the format of output files.
+     * <br>The separator, the missing value, the precision, the column header and the date time formatter only apply to text output.
+     * @return An {@code OutputFormat} instance, never {@code null}.
+     */
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * The default memory budget of a Parquet row group in bytes, is equal to {@value}.
+     */
+    public static final long DEFAULT_PARQUET_ROW_GROUP_SIZE = ParquetFileWriter.DEFAULT_ROW_GROUP_SIZE;
+
+    long parquetRowGroupSize = DEFAULT_PARQUET_ROW_GROUP_SIZE;
+
+    /**
+     * Gets the memory budget of a Parquet row group.
+     * <br>Rows of a Parquet file are buffered in memory until this budget is reached, then written as a row group; each worker has its own buffer.
+     * @return A {@code long} &gt; 0.
+     */
+    public long getParquetRowGroupSize() {
+        return parquetRowGroupSize;
+    }
+
+    /**
+     * By default, outputs are not split into parts.
+     */
+    public static final long DEFAULT_PART_ROW_COUNT = 0;
+
+    long partRowCount = DEFAULT_PART_ROW_COUNT;
+
+    /**
+     * Gets the maximum number of rows in a part of an output.
+     * <br>When a limit on the rows or on the size of parts is set, each output is written as numbered parts, such as {@code sst.part-00001.txt}, listed in a part manifest as they are completed.
+     * Each part is a complete file: it starts with the column header, if any, and with the file header of its format.
+     * <br>Parts are only written for text, PostgreSQL binary and SQL Server bcp outputs; Parquet and Arrow files are already split in row groups and record batches, and rows inserted into a database have no output.
+     * @return A {@code long} &ge; 0, 0 if there is no limit.
+     * @see PartManifest
+     * @see #getPartSize()
+     */
+    public long getPartRowCount() {
+        return partRowCount;
+    }
+
+    /**
+     * By default, outputs are not split into parts.
+     */
+    public static final long DEFAULT_PART_SIZE = 0;
+
+    long partSize = DEFAULT_PART_SIZE;
+
+    /**
+     * Gets the maximum size of a part of an output.
+     * <br>A part is completed before the rows that would make it exceed this size; it may only exceed it if a single block of rows does.
+     * The size is that of the content before compression.
+     * @return A {@code long} &ge; 0, in bytes, 0 if there is no limit.
+     * @see #getPartRowCount()
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * By default, outputs are not partitioned.
+     */
+    public static final PartitionLayout DEFAULT_PARTITION_LAYOUT = PartitionLayout.NONE;
+
+    PartitionLayout partitionLayout = DEFAULT_PARTITION_LAYOUT;
+
+    /**
+     * Gets the layout of partitioned outputs.
+     * <br>When set, the rows of each output are routed into a hierarchy of directories below the destination directory, keyed by period or by spatial tile, such as {@code year=2016/month=03/sst.txt}; an index next to the output lists the files written.
+     * Each file is a complete file: it starts with the column header, if any, and with the file header of its format.
+     * <br>Outputs are only partitioned for text, PostgreSQL binary and SQL Server bcp outputs; partitioned outputs are not split into parts and are written again from their start when the extraction is resumed.
+     * @return A {@code PartitionLayout} instance, never {@code null}.
+     * @see org.spc.ofp.project.netcdfextractor.extract.io.PartitionedOutputStream
+     */
+    public PartitionLayout getPartitionLayout() {
+        return partitionLayout;
+    }
+
+    /**
+     * The default size of spatial tiles in degrees, is equal to {@value}.
+     */
+    public static final double DEFAULT_TILE_SIZE = 5;
+
+    double tileSize = DEFAULT_TILE_SIZE;
+
+    /**
+     * Gets the size of spatial tiles when outputs are partitioned by tile.
+     * <br>Tiles are aligned on multiples of their size along the latitude and longitude axes.
+     * @return A {@code double} &gt; 0, in degrees.
+     */
+    public double getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * The default maximum number of files of a partitioned output open at the same time, is equal to {@value}.
+     */
+    public static final int DEFAULT_MAX_OPEN_PARTITIONS = 64;
+
+    int maxOpenPartitions = DEFAULT_MAX_OPEN_PARTITIONS;
+
+    /**
+     * Gets the maximum number of files of a partitioned output open at the same time.
+     * <br>The least recently used file is closed when another one must be opened; each worker has its own open files.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getMaxOpenPartitions() {
+        return maxOpenPartitions;
+    }
+
     public static final boolean DEFAULT_INCLUDE_COLUMN_HEADER = true;
 
     boolean includeColumnHeader = DEFAULT_INCLUDE_COLUMN_HEADER;
@@ -46,6 +306,81 @@ public final class BatchExtractToTxtParameters {
         return includeColumnHeader;
     }
 
+    String jdbcUrl = null;
+
+    /**
+     * Gets the JDBC URL of the database into which rows are inserted.
+     * <br>When set, rows are inserted into the database instead of being written into files, and the output settings are ignored.
+     * @return A {@code String} instance, may be {@code null}.
+     */
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    String jdbcUser = null;
+
+    /**
+     * Gets the user of the database.
+     * @return A {@code String} instance, may be {@code null}.
+     */
+    public String getJdbcUser() {
+        return jdbcUser;
+    }
+
+    String jdbcPassword = null;
+
+    /**
+     * Gets the password of the database.
+     * @return A {@code String} instance, may be {@code null}.
+     */
+    public String getJdbcPassword() {
+        return jdbcPassword;
+    }
+
+    String jdbcTable = null;
+
+    /**
+     * Gets the table into which rows are inserted.
+     * <br>The table must exist and have one column for the time, the latitude, the longitude and each variable, named after the dimensions and the variables of the file.
+     * <br>Names are quoted, they must match the case of the names in the file; a table in a schema is given as {@code schema.table}.
+     * <br>Rows loaded from a file replace the rows of the table within the same time, latitude and longitude bounds.
+     * @return A {@code String} instance, may be {@code null}.
+     */
+    public String getJdbcTable() {
+        return jdbcTable;
+    }
+
+    /**
+     * The default number of rows sent to the database at once, is equal to {@value}.
+     */
+    public static final int DEFAULT_JDBC_BATCH_SIZE = 1000;
+
+    int jdbcBatchSize = DEFAULT_JDBC_BATCH_SIZE;
+
+    /**
+     * Gets the number of rows sent to the database at once by each connection.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getJdbcBatchSize() {
+        return jdbcBatchSize;
+    }
+
+    /**
+     * The default number of connections used to insert the rows of a single file, is equal to {@value}.
+     */
+    public static final int DEFAULT_JDBC_CONNECTION_COUNT = 1;
+
+    int jdbcConnectionCount = DEFAULT_JDBC_CONNECTION_COUNT;
+
+    /**
+     * Gets the number of connections used to insert the rows of a single file.
+     * <br>Each connection inserts its own partition of the rows; transactions are committed one after the other once the file has been fully inserted.
+     * @return An {@code int} &ge; 1.
+     */
+    public int getJdbcConnectionCount() {
+        return jdbcConnectionCount;
+    }
+
     /**
      * The default missing value, is equal to {@value}.    
      */
@@ -61,6 +396,16 @@ public final class BatchExtractToTxtParameters {
         return dateTimeFormatter;
     }
 
+    String dateTimePattern = null;
+
+    /**
+     * Gets the pattern of the date time formatter.
+     * @return A {@code String} instance, {@code null} if the formatter was not created from a pattern.
+     */
+    public String getDateTimePattern() {
+        return dateTimePattern;
+    }
+
     /**
      * The value to be printed out when encountering a missing, fill or out of bounds value in the file.
      * @return The missing value, may be {@code null}.
@@ -69,6 +414,21 @@ public final class BatchExtractToTxtParameters {
         return missingValue;
     }
 
+    /**
+     * The default precision, is equal to {@value}.
+     */
+    public static final int DEFAULT_PRECISION = -1;
+
+    int precision = DEFAULT_PRECISION;
+
+    /**
+     * Gets the number of decimals printed out for floating point values.
+     * @return An {@code int}; if negative, values are printed out using the shortest decimal that rounds to the value.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
     /**
      * The default separator, is equal to {@value}.    
      */
@@ -186,4 +546,139 @@ public final class BatchExtractToTxtParameters {
     public String getTimeVariable() {
         return timeVariable;
     }
+
+    public static final String DEFAULT_LATITUDE_VARIABLE = "lat"; // NOI18N.
+
+    String latitudeVariable = DEFAULT_LATITUDE_VARIABLE;
+
+    /**
+     * Gets the name of the latitude coordinate variable, used to apply the latitude bounds.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    public String getLatitudeVariable() {
+        return latitudeVariable;
+    }
+
+    public static final String DEFAULT_LONGITUDE_VARIABLE = "lon"; // NOI18N.
+
+    String longitudeVariable = DEFAULT_LONGITUDE_VARIABLE;
+
+    /**
+     * Gets the name of the longitude coordinate variable, used to apply the longitude bounds.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    public String getLongitudeVariable() {
+        return longitudeVariable;
+    }
+
+    public static final double DEFAULT_MIN_LATITUDE = -90;
+
+    double minLatitude = DEFAULT_MIN_LATITUDE;
+
+    /**
+     * Gets the southern bound of the exported area (inclusive).
+     * @return A {@code double}, in degrees.
+     */
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public static final double DEFAULT_MAX_LATITUDE = 90;
+
+    double maxLatitude = DEFAULT_MAX_LATITUDE;
+
+    /**
+     * Gets the northern bound of the exported area (inclusive).
+     * @return A {@code double}, in degrees.
+     */
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public static final double DEFAULT_MIN_LONGITUDE = -180;
+
+    double minLongitude = DEFAULT_MIN_LONGITUDE;
+
+    /**
+     * Gets the western bound of the exported area (inclusive).
+     * <br>If the western bound is greater than the eastern bound, the area crosses the antimeridian; bounds may be given in either the [-180, 180] or the [0, 360] convention, whatever the convention of the files.
+     * @return A {@code double}, in degrees.
+     */
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public static final double DEFAULT_MAX_LONGITUDE = 180;
+
+    double maxLongitude = DEFAULT_MAX_LONGITUDE;
+
+    /**
+     * Gets the eastern bound of the exported area (inclusive).
+     * @return A {@code double}, in degrees.
+     * @see #getMinLongitude()
+     */
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    ZonedDateTime minDate = null;
+
+    /**
+     * Gets the first exported date (inclusive).
+     * @return A {@code ZonedDateTime} instance, {@code null} if there is no lower bound.
+     */
+    public ZonedDateTime getMinDate() {
+        return minDate;
+    }
+
+    ZonedDateTime maxDate = null;
+
+    /**
+     * Gets the last exported date (inclusive).
+     * @return A {@code ZonedDateTime} instance, {@code null} if there is no upper bound.
+     */
+    public ZonedDateTime getMaxDate() {
+        return maxDate;
+    }
+
+    /**
+     * Gets the fingerprint of the parameters that shape the output of a source.
+     * <br>Settings that only affect the speed of the extraction (workers, threads, buffers, heap budget...) are not part of the fingerprint.
+     * @param source The source file.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    public String getFingerprint(final Path source) {
+        final Settings settings = getSettings(source);
+        final List<String> variables = (settings == null) ? Collections.emptyList() : settings.getVariables();
+        final String text = String.join("\n", // NOI18N.
+                String.valueOf(outputFormat),
+                String.valueOf(compressed),
+                String.valueOf(parquetRowGroupSize),
+                String.valueOf(partRowCount),
+                String.valueOf(partSize),
+                String.valueOf(partitionLayout),
+                String.valueOf(tileSize),
+                String.valueOf(singleDocument),
+                String.valueOf(includeColumnHeader),
+                String.valueOf(jdbcUrl),
+                String.valueOf(jdbcTable),
+                String.valueOf(missingValue),
+                String.valueOf(dateTimeFormatter),
+                String.valueOf(precision),
+                separator,
+                String.valueOf(periodSize),
+                String.valueOf(periodUnit),
+                String.valueOf(startDate),
+                timeVariable,
+                latitudeVariable,
+                longitudeVariable,
+                String.valueOf(minLatitude),
+                String.valueOf(maxLatitude),
+                String.valueOf(minLongitude),
+                String.valueOf(maxLongitude),
+                String.valueOf(minDate),
+                String.valueOf(maxDate),
+                String.join(",", variables)); // NOI18N.
+        return ExtractionManifest.hash(text);
+    }
 }
@@ -10,6 +10,8 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
+import org.spc.ofp.project.netcdfextractor.extract.OutputFormat;
+import org.spc.ofp.project.netcdfextractor.extract.PartitionLayout;
 
 /**
  * Extraction parameters builder.
@@ -35,16 +37,47 @@ public final class BatchExtractToTxtParametersBuilder {
     public BatchExtractToTxtParameters build() {
         final BatchExtractToTxtParameters copy = new BatchExtractToTxtParameters();
         copy.forceGarbageCollection = delegated.forceGarbageCollection;
+        copy.heapBudget = delegated.heapBudget;
+        copy.resume = delegated.resume;
+        copy.checkpointInterval = delegated.checkpointInterval;
+        copy.incremental = delegated.incremental;
+        copy.workerCount = delegated.workerCount;
+        copy.threadsPerFile = delegated.threadsPerFile;
+        copy.outputBufferSize = delegated.outputBufferSize;
         copy.singleDocument = delegated.singleDocument;
+        copy.compressed = delegated.compressed;
+        copy.outputFormat = delegated.outputFormat;
+        copy.parquetRowGroupSize = delegated.parquetRowGroupSize;
+        copy.partRowCount = delegated.partRowCount;
+        copy.partSize = delegated.partSize;
+        copy.partitionLayout = delegated.partitionLayout;
+        copy.tileSize = delegated.tileSize;
+        copy.maxOpenPartitions = delegated.maxOpenPartitions;
+        copy.jdbcUrl = delegated.jdbcUrl;
+        copy.jdbcUser = delegated.jdbcUser;
+        copy.jdbcPassword = delegated.jdbcPassword;
+        copy.jdbcTable = delegated.jdbcTable;
+        copy.jdbcBatchSize = delegated.jdbcBatchSize;
+        copy.jdbcConnectionCount = delegated.jdbcConnectionCount;
         copy.includeColumnHeader = delegated.includeColumnHeader;
         copy.destinationDir = delegated.destinationDir;
         copy.missingValue = delegated.missingValue;
+        copy.precision = delegated.precision;
         copy.dateTimeFormatter = delegated.dateTimeFormatter;
+        copy.dateTimePattern = delegated.dateTimePattern;
         copy.separator = delegated.separator;
         copy.periodSize = delegated.periodSize;
         copy.periodUnit = delegated.periodUnit;
         copy.startDate = delegated.startDate;
         copy.timeVariable = delegated.timeVariable;
+        copy.latitudeVariable = delegated.latitudeVariable;
+        copy.longitudeVariable = delegated.longitudeVariable;
+        copy.minLatitude = delegated.minLatitude;
+        copy.maxLatitude = delegated.maxLatitude;
+        copy.minLongitude = delegated.minLongitude;
+        copy.maxLongitude = delegated.maxLongitude;
+        copy.minDate = delegated.minDate;
+        copy.maxDate = delegated.maxDate;
         delegated.files
                 .entrySet()
                 .forEach(entry -> {
@@ -74,6 +107,86 @@ public final class BatchExtractToTxtParametersBuilder {
         return this;
     }
 
+    /**
+     * Sets the share of the heap that the extraction may use.
+     * @param value The new value, in bytes.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_HEAP_BUDGET
+     */
+    public BatchExtractToTxtParametersBuilder heapBudget(final long value) {
+        delegated.heapBudget = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_HEAP_BUDGET : value;
+        return this;
+    }
+
+    /**
+     * Sets whether the extraction resumes from the checkpoint journal of a previous run.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder resume(final boolean value) {
+        delegated.resume = value;
+        return this;
+    }
+
+    /**
+     * Sets the minimum interval between two checkpoints within a file.
+     * @param value The new value, in milliseconds.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_CHECKPOINT_INTERVAL
+     */
+    public BatchExtractToTxtParametersBuilder checkpointInterval(final long value) {
+        delegated.checkpointInterval = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_CHECKPOINT_INTERVAL : value;
+        return this;
+    }
+
+    /**
+     * Sets whether the extraction skips sources whose output is still up to date.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder incremental(final boolean value) {
+        delegated.incremental = value;
+        return this;
+    }
+
+    /**
+     * Sets the number of files extracted concurrently.
+     * @param value The new value.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_WORKER_COUNT
+     */
+    public BatchExtractToTxtParametersBuilder workerCount(final int value) {
+        delegated.workerCount = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_WORKER_COUNT : value;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to extract a single file.
+     * @param value The new value.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_THREADS_PER_FILE
+     */
+    public BatchExtractToTxtParametersBuilder threadsPerFile(final int value) {
+        delegated.threadsPerFile = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_THREADS_PER_FILE : value;
+        return this;
+    }
+
+    /**
+     * Sets the size of each of the two buffers used when writing an output file.
+     * @param value The new value, in bytes.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_OUTPUT_BUFFER_SIZE
+     */
+    public BatchExtractToTxtParametersBuilder outputBufferSize(final int value) {
+        delegated.outputBufferSize = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_OUTPUT_BUFFER_SIZE : value;
+        return this;
+    }
+
     /**
      * Sets the single document flag.
      * @param value The new value.
@@ -84,6 +197,164 @@ public final class BatchExtractToTxtParametersBuilder {
         return this;
     }
 
+    /**
+     * Sets the compressed flag.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder compressed(final boolean value) {
+        delegated.compressed = value;
+        return this;
+    }
+
+    /**
+     * Sets the format of output files.
+     * @param value The new value.
+     * <br>If {@code null}, the default format is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_OUTPUT_FORMAT
+     */
+    public BatchExtractToTxtParametersBuilder outputFormat(final OutputFormat value) {
+        delegated.outputFormat = (value == null) ? BatchExtractToTxtParameters.DEFAULT_OUTPUT_FORMAT : value;
+        return this;
+    }
+
+    /**
+     * Sets the memory budget of a Parquet row group.
+     * @param value The new value, in bytes.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_PARQUET_ROW_GROUP_SIZE
+     */
+    public BatchExtractToTxtParametersBuilder parquetRowGroupSize(final long value) {
+        delegated.parquetRowGroupSize = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_PARQUET_ROW_GROUP_SIZE : value;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of rows in a part of an output.
+     * @param value The new value.
+     * <br>If {@code value} &le; 0, the number of rows in a part is not limited.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder partRowCount(final long value) {
+        delegated.partRowCount = Math.max(0, value);
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of a part of an output.
+     * @param value The new value, in bytes.
+     * <br>If {@code value} &le; 0, the size of a part is not limited.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder partSize(final long value) {
+        delegated.partSize = Math.max(0, value);
+        return this;
+    }
+
+    /**
+     * Sets the layout of partitioned outputs.
+     * @param value The new value.
+     * <br>If {@code null}, the default layout is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_PARTITION_LAYOUT
+     */
+    public BatchExtractToTxtParametersBuilder partitionLayout(final PartitionLayout value) {
+        delegated.partitionLayout = (value == null) ? BatchExtractToTxtParameters.DEFAULT_PARTITION_LAYOUT : value;
+        return this;
+    }
+
+    /**
+     * Sets the size of spatial tiles when outputs are partitioned by tile.
+     * @param value The new value, in degrees.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @throws IllegalArgumentException If {@code value} is not a finite number &gt; 0.
+     */
+    public BatchExtractToTxtParametersBuilder tileSize(final double value) throws IllegalArgumentException {
+        if (!(value > 0) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(String.format("Invalid tile size %s.", value)); // NOI18N.
+        }
+        delegated.tileSize = value;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of files of a partitioned output open at the same time.
+     * @param value The new value.
+     * <br>If {@code value} &lt; 1, a single file is open at a time.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder maxOpenPartitions(final int value) {
+        delegated.maxOpenPartitions = Math.max(1, value);
+        return this;
+    }
+
+    /**
+     * Sets the JDBC URL of the database into which rows are inserted.
+     * @param value The new value.
+     * <br>If {@code null}, rows are written into files.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder jdbcUrl(final String value) {
+        delegated.jdbcUrl = value;
+        return this;
+    }
+
+    /**
+     * Sets the user of the database.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder jdbcUser(final String value) {
+        delegated.jdbcUser = value;
+        return this;
+    }
+
+    /**
+     * Sets the password of the database.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder jdbcPassword(final String value) {
+        delegated.jdbcPassword = value;
+        return this;
+    }
+
+    /**
+     * Sets the table into which rows are inserted.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder jdbcTable(final String value) {
+        delegated.jdbcTable = value;
+        return this;
+    }
+
+    /**
+     * Sets the number of rows sent to the database at once by each connection.
+     * @param value The new value.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_JDBC_BATCH_SIZE
+     */
+    public BatchExtractToTxtParametersBuilder jdbcBatchSize(final int value) {
+        delegated.jdbcBatchSize = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_JDBC_BATCH_SIZE : value;
+        return this;
+    }
+
+    /**
+     * Sets the number of connections used to insert the rows of a single file.
+     * @param value The new value.
+     * <br>If {@code value} &le; 0, the default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_JDBC_CONNECTION_COUNT
+     */
+    public BatchExtractToTxtParametersBuilder jdbcConnectionCount(final int value) {
+        delegated.jdbcConnectionCount = (value <= 0) ? BatchExtractToTxtParameters.DEFAULT_JDBC_CONNECTION_COUNT : value;
+        return this;
+    }
+
     /**
      * Sets the include columns header flag.
      * @param value The new value.
@@ -104,6 +375,18 @@ public final class BatchExtractToTxtParametersBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of decimals printed out for floating point values.
+     * @param value The new value.
+     * <br>If {@code value} &lt; 0, values are printed out using the shortest decimal that rounds to the value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_PRECISION
+     */
+    public BatchExtractToTxtParametersBuilder precision(final int value) {
+        delegated.precision = (value < 0) ? BatchExtractToTxtParameters.DEFAULT_PRECISION : value;
+        return this;
+    }
+
     /**
      * Sets the date time formatter.
      * @param value The new value.
@@ -111,6 +394,22 @@ public final class BatchExtractToTxtParametersBuilder {
      */
     public BatchExtractToTxtParametersBuilder dateTimeFormatter(final DateTimeFormatter value) {
         delegated.dateTimeFormatter = (value == null) ? BatchExtractToTxtParameters.DEFAULT_DATE_TIME_FORMATTER : value;
+        delegated.dateTimePattern = null;
+        return this;
+    }
+
+    /**
+     * Sets the date time formatter from a pattern.
+     * @param value The new value.
+     * <br>If {@code value} is {@code null} or empty, the default formatter is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @throws IllegalArgumentException If {@code value} is not a valid pattern.
+     * @see DateTimeFormatter#ofPattern(String)
+     */
+    public BatchExtractToTxtParametersBuilder dateTimePattern(final String value) throws IllegalArgumentException {
+        final boolean isDefault = (value == null) || value.isEmpty();
+        delegated.dateTimeFormatter = isDefault ? BatchExtractToTxtParameters.DEFAULT_DATE_TIME_FORMATTER : DateTimeFormatter.ofPattern(value);
+        delegated.dateTimePattern = isDefault ? null : value;
         return this;
     }
 
@@ -154,6 +453,68 @@ public final class BatchExtractToTxtParametersBuilder {
         return this;
     }
 
+    /**
+     * Sets the latitude variable.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder latitudeVariable(final String value) {
+        delegated.latitudeVariable = (value == null) ? BatchExtractToTxtParameters.DEFAULT_LATITUDE_VARIABLE : value;
+        return this;
+    }
+
+    /**
+     * Sets the longitude variable.
+     * @param value The new value.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder longitudeVariable(final String value) {
+        delegated.longitudeVariable = (value == null) ? BatchExtractToTxtParameters.DEFAULT_LONGITUDE_VARIABLE : value;
+        return this;
+    }
+
+    /**
+     * Sets the latitude bounds of the exported area.
+     * @param min The southern bound (inclusive), in degrees.
+     * @param max The northern bound (inclusive), in degrees.
+     * <br>If a bound is {@code NaN}, its default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_MIN_LATITUDE
+     * @see BatchExtractToTxtParameters#DEFAULT_MAX_LATITUDE
+     */
+    public BatchExtractToTxtParametersBuilder latitudeBounds(final double min, final double max) {
+        delegated.minLatitude = Double.isNaN(min) ? BatchExtractToTxtParameters.DEFAULT_MIN_LATITUDE : min;
+        delegated.maxLatitude = Double.isNaN(max) ? BatchExtractToTxtParameters.DEFAULT_MAX_LATITUDE : max;
+        return this;
+    }
+
+    /**
+     * Sets the longitude bounds of the exported area.
+     * @param min The western bound (inclusive), in degrees.
+     * @param max The eastern bound (inclusive), in degrees; may be lower than {@code min} if the area crosses the antimeridian.
+     * <br>If a bound is {@code NaN}, its default value is used instead.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @see BatchExtractToTxtParameters#DEFAULT_MIN_LONGITUDE
+     * @see BatchExtractToTxtParameters#DEFAULT_MAX_LONGITUDE
+     */
+    public BatchExtractToTxtParametersBuilder longitudeBounds(final double min, final double max) {
+        delegated.minLongitude = Double.isNaN(min) ? BatchExtractToTxtParameters.DEFAULT_MIN_LONGITUDE : min;
+        delegated.maxLongitude = Double.isNaN(max) ? BatchExtractToTxtParameters.DEFAULT_MAX_LONGITUDE : max;
+        return this;
+    }
+
+    /**
+     * Sets the date bounds of the export.
+     * @param min The first date (inclusive), {@code null} if there is no lower bound.
+     * @param max The last date (inclusive), {@code null} if there is no upper bound.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     */
+    public BatchExtractToTxtParametersBuilder dateBounds(final ZonedDateTime min, final ZonedDateTime max) {
+        delegated.minDate = min;
+        delegated.maxDate = max;
+        return this;
+    }
+
     /**
      * Sets the separator.
      * @param separator The separator.
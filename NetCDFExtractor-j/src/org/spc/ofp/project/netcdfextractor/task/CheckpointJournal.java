@@ -0,0 +1,359 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Records the progress of a batch extraction so that it may be resumed after a cancellation or a crash.
+ * <br>The journal is a text file, one entry per line, only ever appended to and forced to disk after each entry:
+ * <ul>
+ * <li>{@code start <output> <fingerprint>}: the output is written from its start, previous entries of the output are void;</li>
+ * <li>{@code checkpoint <output> <fingerprint> <source> <rows> <position>}: the first {@code rows} rows of the source are in the output, which holds {@code position} bytes;</li>
+ * <li>{@code done <output> <fingerprint> <source> <position>}: all rows of the source are in the output, which holds {@code position} bytes;</li>
+ * <li>{@code complete <output> <fingerprint>}: the output is complete.</li>
+ * </ul>
+ * Fields are separated by tabulations; a truncated last line, left by a crash, is dropped when the journal is opened.
+ * <br>The fingerprint is the one of the settings the output is written with, see {@link BatchExtractToTxtParameters#getFingerprint(java.nio.file.Path)};
+ * an entry whose fingerprint differs from the previous entries of its output voids them, and callers must not continue an output written with other settings.
+ * <br>When rows are inserted into a database, the output is the source itself.
+ * <br>Instances are thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class CheckpointJournal implements Closeable {
+
+    /**
+     * The name of the journal file, is equal to {@value}.
+     */
+    public static final String FILE_NAME = "extraction.journal"; // NOI18N.
+
+    private static final String START = "start"; // NOI18N.
+    private static final String CHECKPOINT = "checkpoint"; // NOI18N.
+    private static final String DONE = "done"; // NOI18N.
+    private static final String COMPLETE = "complete"; // NOI18N.
+    private static final String SEPARATOR = "\t"; // NOI18N.
+
+    /**
+     * A position within an output.
+     * <br>Instances are immutable.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    public static final class Checkpoint {
+
+        private final Path source;
+        private final long rows;
+        private final long position;
+
+        private Checkpoint(final Path source, final long rows, final long position) {
+            this.source = source;
+            this.rows = rows;
+            this.position = position;
+        }
+
+        /**
+         * Gets the source being written at this checkpoint.
+         * @return A {@code Path} instance, never {@code null}.
+         */
+        public Path getSource() {
+            return source;
+        }
+
+        /**
+         * Tests whether given file is the source being written at this checkpoint.
+         * @param file The file.
+         * @return {@code True} if the test succeeds, {@code false} otherwise.
+         */
+        public boolean isSource(final Path file) {
+            return source.equals(toKey(file));
+        }
+
+        /**
+         * Gets the number of rows of the source already in the output.
+         * @return A {@code long} &ge; 0, -1 if all rows of the source are in the output.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Gets the size of the output at this checkpoint.
+         * @return A {@code long} &ge; 0, in bytes.
+         */
+        public long getPosition() {
+            return position;
+        }
+    }
+
+    /**
+     * The journal file.
+     */
+    private final FileChannel channel;
+    /**
+     * Last checkpoint of each output.
+     */
+    private final Map<String, Checkpoint> checkpoints = new HashMap<>();
+    /**
+     * Sources fully written, per output.
+     */
+    private final Map<String, Set<String>> doneSources = new HashMap<>();
+    /**
+     * Complete outputs.
+     */
+    private final Set<String> completeOutputs = new HashSet<>();
+    /**
+     * Fingerprint of the settings of each output.
+     */
+    private final Map<String, String> fingerprints = new HashMap<>();
+
+    private CheckpointJournal(final FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a journal.
+     * @param file The journal file.
+     * @param resume If {@code true}, the entries of an existing journal are loaded and new entries are appended; otherwise the journal starts empty.
+     * @return A {@code CheckpointJournal} instance, never {@code null}.
+     * @throws NullPointerException If {@code file} is {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public static CheckpointJournal open(final Path file, final boolean resume) throws NullPointerException, IOException {
+        Objects.requireNonNull(file);
+        if (!resume || !Files.isRegularFile(file)) {
+            return new CheckpointJournal(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        }
+        // Drop the last line if a crash left it truncated.
+        final byte[] bytes = Files.readAllBytes(file);
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        final CheckpointJournal result = new CheckpointJournal(channel);
+        try {
+            channel.truncate(length);
+            channel.position(length);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        Arrays.stream(new String(bytes, 0, length, StandardCharsets.UTF_8).split("\n")) // NOI18N.
+                .filter(line -> !line.isEmpty())
+                .forEach(result::load);
+        return result;
+    }
+
+    /**
+     * Loads an entry.
+     * @param line The line of the entry.
+     */
+    private void load(final String line) {
+        final String[] fields = line.split(SEPARATOR);
+        try {
+            switch (fields[0]) {
+                case START:
+                    if (fields.length == 3) {
+                        clear(fields[1], fields[2]);
+                        return;
+                    }
+                    break;
+                case CHECKPOINT:
+                    if (fields.length == 6) {
+                        final long rows = Long.parseLong(fields[4]);
+                        final long position = Long.parseLong(fields[5]);
+                        useFingerprint(fields[1], fields[2]);
+                        apply(fields[1], fields[3], rows, position);
+                        return;
+                    }
+                    break;
+                case DONE:
+                    if (fields.length == 5) {
+                        final long position = Long.parseLong(fields[4]);
+                        useFingerprint(fields[1], fields[2]);
+                        apply(fields[1], fields[3], -1, position);
+                        return;
+                    }
+                    break;
+                case COMPLETE:
+                    if (fields.length == 3) {
+                        useFingerprint(fields[1], fields[2]);
+                        completeOutputs.add(fields[1]);
+                        return;
+                    }
+                    break;
+                default:
+            }
+        } catch (NumberFormatException ex) {
+            // Handled below.
+        }
+        final String message = String.format("Ignoring malformed journal entry \"%s\".", line); // NOI18N.
+        Logger.getLogger(getClass().getName()).warning(message);
+    }
+
+    /**
+     * Voids all entries of an output.
+     * @param output The output.
+     * @param fingerprint The fingerprint of the settings the output is now written with.
+     */
+    private void clear(final String output, final String fingerprint) {
+        checkpoints.remove(output);
+        doneSources.remove(output);
+        completeOutputs.remove(output);
+        fingerprints.put(output, fingerprint);
+    }
+
+    /**
+     * Voids the entries of an output if they were recorded with other settings.
+     * @param output The output.
+     * @param fingerprint The fingerprint of the settings of the entry.
+     */
+    private void useFingerprint(final String output, final String fingerprint) {
+        if (!fingerprint.equals(fingerprints.get(output))) {
+            clear(output, fingerprint);
+        }
+    }
+
+    private void apply(final String output, final String source, final long rows, final long position) {
+        checkpoints.put(output, new Checkpoint(Paths.get(source), rows, position));
+        if (rows < 0) {
+            doneSources.computeIfAbsent(output, key -> new HashSet<>()).add(source);
+        }
+    }
+
+    /**
+     * Gets the key of a file in the journal.
+     * @param file The file.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    private static Path toKey(final Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Appends an entry and forces it to disk.
+     * @param fields The fields of the entry.
+     * @throws IOException In case of IO error.
+     */
+    private void append(final String... fields) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap((String.join(SEPARATOR, fields) + "\n").getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Records that an output is written from its start.
+     * @param output The output.
+     * @param fingerprint The fingerprint of the settings the output is written with.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void start(final Path output, final String fingerprint) throws IOException {
+        append(START, toKey(output).toString(), fingerprint);
+        clear(toKey(output).toString(), fingerprint);
+    }
+
+    /**
+     * Records that the first rows of a source are in an output.
+     * <br>The output must have been forced to disk beforehand.
+     * @param output The output.
+     * @param fingerprint The fingerprint of the settings the output is written with.
+     * @param source The source.
+     * @param rows The number of rows of the source in the output.
+     * @param position The size of the output, in bytes.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void checkpoint(final Path output, final String fingerprint, final Path source, final long rows, final long position) throws IOException {
+        append(CHECKPOINT, toKey(output).toString(), fingerprint, toKey(source).toString(), String.valueOf(rows), String.valueOf(position));
+        useFingerprint(toKey(output).toString(), fingerprint);
+        apply(toKey(output).toString(), toKey(source).toString(), rows, position);
+    }
+
+    /**
+     * Records that all rows of a source are in an output.
+     * <br>The output must have been forced to disk beforehand.
+     * @param output The output.
+     * @param fingerprint The fingerprint of the settings the output is written with.
+     * @param source The source.
+     * @param position The size of the output, in bytes.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void done(final Path output, final String fingerprint, final Path source, final long position) throws IOException {
+        append(DONE, toKey(output).toString(), fingerprint, toKey(source).toString(), String.valueOf(position));
+        useFingerprint(toKey(output).toString(), fingerprint);
+        apply(toKey(output).toString(), toKey(source).toString(), -1, position);
+    }
+
+    /**
+     * Records that an output is complete.
+     * @param output The output.
+     * @param fingerprint The fingerprint of the settings the output was written with.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void complete(final Path output, final String fingerprint) throws IOException {
+        append(COMPLETE, toKey(output).toString(), fingerprint);
+        useFingerprint(toKey(output).toString(), fingerprint);
+        completeOutputs.add(toKey(output).toString());
+    }
+
+    /**
+     * Gets the fingerprint of the settings an output was last written with.
+     * @param output The output.
+     * @return A {@code String} instance, {@code null} if the journal has no entry for this output.
+     */
+    public synchronized String getFingerprint(final Path output) {
+        return fingerprints.get(toKey(output).toString());
+    }
+
+    /**
+     * Tests whether an output is complete.
+     * @param output The output.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public synchronized boolean isComplete(final Path output) {
+        return completeOutputs.contains(toKey(output).toString());
+    }
+
+    /**
+     * Tests whether all rows of a source are in an output.
+     * @param output The output.
+     * @param source The source.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public synchronized boolean isDone(final Path output, final Path source) {
+        final Set<String> sources = doneSources.get(toKey(output).toString());
+        return sources != null && sources.contains(toKey(source).toString());
+    }
+
+    /**
+     * Gets the last checkpoint of an output.
+     * @param output The output.
+     * @return A {@code Checkpoint} instance, {@code null} if there is none.
+     */
+    public synchronized Checkpoint getCheckpoint(final Path output) {
+        return checkpoints.get(toKey(output).toString());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,613 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.spc.ofp.project.netcdfextractor.extract.OutputFormat;
+import org.spc.ofp.project.netcdfextractor.extract.PartitionLayout;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.time.CalendarDateUnit;
+
+/**
+ * Builds extraction parameters from options given as text, on the command line or in a job file, and saves parameters as job files.
+ * <br>A job file is a properties file, encoded in UTF-8, whose keys are the names of the options, such as:
+ * <pre>
+ * version=1
+ * files=/data/sst/*.nc
+ * variables=sst,chl
+ * file.1=/data/chl/chl-2020.nc
+ * file.1.variables=chl
+ * destination=/data/out
+ * format=PARQUET
+ * workers=4
+ * </pre>
+ * Entries of {@value #FILES} are separated by the path separator of the platform; they may be files, directories, which are searched recursively for NetCDF files, or glob patterns.
+ * The variables of {@value #VARIABLES} are exported from all of them; {@code file.<n>} entries give files with their own variables in {@code file.<n>.variables}.
+ * <br>If neither {@value #PERIOD_UNIT} nor {@value #START_DATE} is given, both are read from the units of the time variable of the first file.
+ * <br>The {@value #VERSION} entry gives the version of the format; files without it are read as version 1.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ExtractionJob {
+
+    /**
+     * The version of the job file format written by this class, is equal to {@value}.
+     */
+    public static final int CURRENT_VERSION = 1;
+
+    /**
+     * The default extension of job files, is equal to {@value}.
+     */
+    public static final String FILE_EXTENSION = ".job"; // NOI18N.
+
+    public static final String VERSION = "version"; // NOI18N.
+    public static final String FILES = "files"; // NOI18N.
+    public static final String VARIABLES = "variables"; // NOI18N.
+    public static final String DESTINATION = "destination"; // NOI18N.
+    public static final String SINGLE_DOCUMENT = "single-document"; // NOI18N.
+    public static final String FORMAT = "format"; // NOI18N.
+    public static final String COMPRESSED = "compressed"; // NOI18N.
+    public static final String PARQUET_ROW_GROUP_SIZE = "parquet-row-group-size"; // NOI18N.
+    public static final String PART_ROWS = "part-rows"; // NOI18N.
+    public static final String PART_SIZE = "part-size"; // NOI18N.
+    public static final String PARTITION_BY = "partition-by"; // NOI18N.
+    public static final String TILE_SIZE = "tile-size"; // NOI18N.
+    public static final String MAX_OPEN_PARTITIONS = "max-open-partitions"; // NOI18N.
+    public static final String HEADER = "header"; // NOI18N.
+    public static final String SEPARATOR = "separator"; // NOI18N.
+    public static final String MISSING_VALUE = "missing-value"; // NOI18N.
+    public static final String PRECISION = "precision"; // NOI18N.
+    public static final String DATE_PATTERN = "date-pattern"; // NOI18N.
+    public static final String PERIOD_SIZE = "period-size"; // NOI18N.
+    public static final String PERIOD_UNIT = "period-unit"; // NOI18N.
+    public static final String START_DATE = "start-date"; // NOI18N.
+    public static final String TIME_VARIABLE = "time-variable"; // NOI18N.
+    public static final String LATITUDE_VARIABLE = "latitude-variable"; // NOI18N.
+    public static final String LONGITUDE_VARIABLE = "longitude-variable"; // NOI18N.
+    public static final String MIN_LATITUDE = "min-latitude"; // NOI18N.
+    public static final String MAX_LATITUDE = "max-latitude"; // NOI18N.
+    public static final String MIN_LONGITUDE = "min-longitude"; // NOI18N.
+    public static final String MAX_LONGITUDE = "max-longitude"; // NOI18N.
+    public static final String MIN_DATE = "min-date"; // NOI18N.
+    public static final String MAX_DATE = "max-date"; // NOI18N.
+    public static final String WORKERS = "workers"; // NOI18N.
+    public static final String THREADS = "threads"; // NOI18N.
+    public static final String OUTPUT_BUFFER_SIZE = "output-buffer-size"; // NOI18N.
+    public static final String HEAP_BUDGET = "heap-budget"; // NOI18N.
+    public static final String RESUME = "resume"; // NOI18N.
+    public static final String CHECKPOINT_INTERVAL = "checkpoint-interval"; // NOI18N.
+    public static final String INCREMENTAL = "incremental"; // NOI18N.
+    public static final String JDBC_URL = "jdbc-url"; // NOI18N.
+    public static final String JDBC_USER = "jdbc-user"; // NOI18N.
+    public static final String JDBC_PASSWORD = "jdbc-password"; // NOI18N.
+    public static final String JDBC_TABLE = "jdbc-table"; // NOI18N.
+    public static final String JDBC_BATCH_SIZE = "jdbc-batch-size"; // NOI18N.
+    public static final String JDBC_CONNECTIONS = "jdbc-connections"; // NOI18N.
+
+    /**
+     * All option names, in the order in which they are documented.
+     */
+    public static final List<String> OPTIONS = Collections.unmodifiableList(Arrays.asList(
+            FILES, VARIABLES, DESTINATION, SINGLE_DOCUMENT, FORMAT, COMPRESSED, PARQUET_ROW_GROUP_SIZE, PART_ROWS, PART_SIZE,
+            PARTITION_BY, TILE_SIZE, MAX_OPEN_PARTITIONS, HEADER, SEPARATOR, MISSING_VALUE, PRECISION, DATE_PATTERN,
+            PERIOD_SIZE, PERIOD_UNIT, START_DATE, TIME_VARIABLE,
+            LATITUDE_VARIABLE, LONGITUDE_VARIABLE, MIN_LATITUDE, MAX_LATITUDE, MIN_LONGITUDE, MAX_LONGITUDE, MIN_DATE, MAX_DATE,
+            WORKERS, THREADS, OUTPUT_BUFFER_SIZE, HEAP_BUDGET, RESUME, CHECKPOINT_INTERVAL, INCREMENTAL,
+            JDBC_URL, JDBC_USER, JDBC_PASSWORD, JDBC_TABLE, JDBC_BATCH_SIZE, JDBC_CONNECTIONS));
+
+    /**
+     * Matches the keys of the files that have their own variables.
+     */
+    private static final Pattern FILE_KEY = Pattern.compile("file\\.(\\d+)(\\.variables)?"); // NOI18N.
+    private static final String FILE_PREFIX = "file."; // NOI18N.
+    private static final String FILE_VARIABLES_SUFFIX = ".variables"; // NOI18N.
+    private static final String LIST_SEPARATOR = ","; // NOI18N.
+
+    private ExtractionJob() {
+    }
+
+    /**
+     * Loads the options of a job file.
+     * @param file The job file, encoded in UTF-8.
+     * @return A {@code Map<String, String>} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public static Map<String, String> load(final Path file) throws IOException {
+        final Properties properties = new Properties();
+        try (final Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        final Map<String, String> result = new LinkedHashMap<>();
+        properties.stringPropertyNames().forEach(key -> result.put(key, properties.getProperty(key)));
+        return result;
+    }
+
+    /**
+     * Saves options to a job file.
+     * @param options The options, by name; they are written in iteration order.
+     * @param file The job file, encoded in UTF-8.
+     * @throws IOException In case of IO error.
+     */
+    public static void save(final Map<String, String> options, final Path file) throws IOException {
+        final StringBuilder content = new StringBuilder();
+        content.append("# NetCDF Extractor job file.\n"); // NOI18N.
+        options.forEach((key, value) -> content.append(escape(key, true))
+                .append('=')
+                .append(escape(value, false))
+                .append('\n'));
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Escapes a key or a value of a job file.
+     * <br>Unlike {@code Properties.store()}, non-ASCII characters are kept as is since job files are encoded in UTF-8.
+     * @param text The text.
+     * @param key {@code True} if the text is a key.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    private static String escape(final String text, final boolean key) {
+        final StringBuilder result = new StringBuilder();
+        for (int index = 0; index < text.length(); index++) {
+            final char c = text.charAt(index);
+            switch (c) {
+                case '\\':
+                    result.append("\\\\"); // NOI18N.
+                    break;
+                case '\t':
+                    result.append("\\t"); // NOI18N.
+                    break;
+                case '\n':
+                    result.append("\\n"); // NOI18N.
+                    break;
+                case '\r':
+                    result.append("\\r"); // NOI18N.
+                    break;
+                case '\f':
+                    result.append("\\f"); // NOI18N.
+                    break;
+                case ' ':
+                    // Leading spaces of values and all spaces of keys would be dropped.
+                    result.append((key || index == 0) ? "\\ " : " "); // NOI18N.
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    // Only meaningful in keys.
+                    if (key) {
+                        result.append('\\');
+                    }
+                    result.append(c);
+                    break;
+                default:
+                    result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Gets the options that recreate extraction parameters.
+     * <br>Each file is written with its own variables, in a {@code file.<n>} entry; the variables of the first file are also written as {@value #VARIABLES} so that files with the same variables do not repeat them.
+     * The period and the start date are written explicitly, so the time units of the files are not read again.
+     * <br>The database password is never written; nor is a date time formatter that was not created from a pattern, in which case the default formatter is used.
+     * @param parameters The parameters.
+     * @return A {@code Map<String, String>} instance, never {@code null}, in the order in which options are documented.
+     */
+    public static Map<String, String> toOptions(final BatchExtractToTxtParameters parameters) {
+        final Map<String, String> result = new LinkedHashMap<>();
+        result.put(VERSION, String.valueOf(CURRENT_VERSION));
+        // Files and variables.
+        final List<String> sharedVariables = parameters.getFiles()
+                .stream()
+                .findFirst()
+                .map(file -> parameters.getSettings(file).getVariables())
+                .orElse(Collections.emptyList());
+        putIfNotNull(result, VARIABLES, String.join(LIST_SEPARATOR, sharedVariables));
+        int index = 1;
+        for (final Path file : parameters.getFiles()) {
+            result.put(FILE_PREFIX + index, file.toString());
+            final List<String> variables = parameters.getSettings(file).getVariables();
+            if (!variables.equals(sharedVariables)) {
+                result.put(FILE_PREFIX + index + FILE_VARIABLES_SUFFIX, String.join(LIST_SEPARATOR, variables));
+            }
+            index++;
+        }
+        // Output.
+        putIfNotNull(result, DESTINATION, parameters.getDestinationDir());
+        result.put(SINGLE_DOCUMENT, String.valueOf(parameters.isSingleDocument()));
+        result.put(FORMAT, parameters.getOutputFormat().name());
+        result.put(COMPRESSED, String.valueOf(parameters.isCompressed()));
+        result.put(PARQUET_ROW_GROUP_SIZE, String.valueOf(parameters.getParquetRowGroupSize()));
+        result.put(PART_ROWS, String.valueOf(parameters.getPartRowCount()));
+        result.put(PART_SIZE, String.valueOf(parameters.getPartSize()));
+        result.put(PARTITION_BY, parameters.getPartitionLayout().name());
+        result.put(TILE_SIZE, String.valueOf(parameters.getTileSize()));
+        result.put(MAX_OPEN_PARTITIONS, String.valueOf(parameters.getMaxOpenPartitions()));
+        result.put(HEADER, String.valueOf(parameters.isIncludeColumnHeader()));
+        // Text formatting.
+        result.put(SEPARATOR, parameters.getSeparator());
+        putIfNotNull(result, MISSING_VALUE, parameters.getMissingValue());
+        result.put(PRECISION, String.valueOf(parameters.getPrecision()));
+        putIfNotNull(result, DATE_PATTERN, parameters.getDateTimePattern());
+        // Time.
+        result.put(PERIOD_SIZE, String.valueOf(parameters.getPeriodSize()));
+        result.put(PERIOD_UNIT, parameters.getPeriodUnit().name());
+        result.put(START_DATE, parameters.getStartDate().toString());
+        result.put(TIME_VARIABLE, parameters.getTimeVariable());
+        // Subsetting.
+        result.put(LATITUDE_VARIABLE, parameters.getLatitudeVariable());
+        result.put(LONGITUDE_VARIABLE, parameters.getLongitudeVariable());
+        result.put(MIN_LATITUDE, String.valueOf(parameters.getMinLatitude()));
+        result.put(MAX_LATITUDE, String.valueOf(parameters.getMaxLatitude()));
+        result.put(MIN_LONGITUDE, String.valueOf(parameters.getMinLongitude()));
+        result.put(MAX_LONGITUDE, String.valueOf(parameters.getMaxLongitude()));
+        putIfNotNull(result, MIN_DATE, parameters.getMinDate());
+        putIfNotNull(result, MAX_DATE, parameters.getMaxDate());
+        // Performance.
+        result.put(WORKERS, String.valueOf(parameters.getWorkerCount()));
+        result.put(THREADS, String.valueOf(parameters.getThreadsPerFile()));
+        result.put(OUTPUT_BUFFER_SIZE, String.valueOf(parameters.getOutputBufferSize()));
+        // The default heap budget depends on the JVM that runs the job.
+        if (parameters.getHeapBudget() != BatchExtractToTxtParameters.DEFAULT_HEAP_BUDGET) {
+            result.put(HEAP_BUDGET, String.valueOf(parameters.getHeapBudget()));
+        }
+        result.put(RESUME, String.valueOf(parameters.isResume()));
+        result.put(CHECKPOINT_INTERVAL, String.valueOf(parameters.getCheckpointInterval()));
+        result.put(INCREMENTAL, String.valueOf(parameters.isIncremental()));
+        // Database.
+        putIfNotNull(result, JDBC_URL, parameters.getJdbcUrl());
+        putIfNotNull(result, JDBC_USER, parameters.getJdbcUser());
+        putIfNotNull(result, JDBC_TABLE, parameters.getJdbcTable());
+        result.put(JDBC_BATCH_SIZE, String.valueOf(parameters.getJdbcBatchSize()));
+        result.put(JDBC_CONNECTIONS, String.valueOf(parameters.getJdbcConnectionCount()));
+        return result;
+    }
+
+    private static void putIfNotNull(final Map<String, String> options, final String key, final Object value) {
+        if (value != null) {
+            options.put(key, value.toString());
+        }
+    }
+
+    /**
+     * Creates extraction parameters from options.
+     * @param options The options, by name.
+     * @return A {@code BatchExtractToTxtParametersBuilder} instance, never {@code null}.
+     * @throws IllegalArgumentException If an option is unknown or has an invalid value, or if there is no file or no variable to export.
+     * @throws IOException In case of IO error while listing the files or reading the time units.
+     */
+    public static BatchExtractToTxtParametersBuilder toParameters(final Map<String, String> options) throws IllegalArgumentException, IOException {
+        for (final String key : options.keySet()) {
+            if (!OPTIONS.contains(key) && !VERSION.equals(key) && !FILE_KEY.matcher(key).matches()) {
+                throw new IllegalArgumentException(String.format("Unknown option \"%s\".", key)); // NOI18N.
+            }
+        }
+        final int version = getInt(options, VERSION, CURRENT_VERSION);
+        if (version < 1 || version > CURRENT_VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported job file version %d.", version)); // NOI18N.
+        }
+        final BatchExtractToTxtParametersBuilder builder = BatchExtractToTxtParametersBuilder.create();
+        // Files and variables.
+        final String[] variables = splitList(getString(options, VARIABLES, ""), LIST_SEPARATOR); // NOI18N.
+        final List<Path> files = new ArrayList<>();
+        for (final Path file : listFiles(getString(options, FILES, ""))) { // NOI18N.
+            if (variables.length == 0) {
+                throw new IllegalArgumentException(String.format("No variable to export for file \"%s\".", file)); // NOI18N.
+            }
+            Arrays.stream(variables).forEach(variable -> builder.addVariable(file, variable));
+            files.add(file);
+        }
+        for (final int index : getFileIndexes(options)) {
+            final Path file = Paths.get(options.get(FILE_PREFIX + index));
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalArgumentException(String.format("File \"%s\" does not exist.", file)); // NOI18N.
+            }
+            final String fileVariables = options.get(FILE_PREFIX + index + FILE_VARIABLES_SUFFIX);
+            final String[] names = (fileVariables == null) ? variables : splitList(fileVariables, LIST_SEPARATOR);
+            if (names.length == 0) {
+                throw new IllegalArgumentException(String.format("No variable to export for file \"%s\".", file)); // NOI18N.
+            }
+            Arrays.stream(names).forEach(variable -> builder.addVariable(file, variable));
+            files.add(file);
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No NetCDF file to export."); // NOI18N.
+        }
+        // Output.
+        final String destination = getString(options, DESTINATION, null);
+        if (destination != null) {
+            builder.destinationDir(Paths.get(destination));
+        }
+        builder.singleDocument(getBoolean(options, SINGLE_DOCUMENT, BatchExtractToTxtParameters.DEFAULT_SINGLE_DOCUMENT));
+        builder.outputFormat(getEnum(options, FORMAT, OutputFormat.class, BatchExtractToTxtParameters.DEFAULT_OUTPUT_FORMAT));
+        builder.compressed(getBoolean(options, COMPRESSED, BatchExtractToTxtParameters.DEFAULT_COMPRESSED));
+        builder.parquetRowGroupSize(getLong(options, PARQUET_ROW_GROUP_SIZE, BatchExtractToTxtParameters.DEFAULT_PARQUET_ROW_GROUP_SIZE));
+        builder.partRowCount(getLong(options, PART_ROWS, BatchExtractToTxtParameters.DEFAULT_PART_ROW_COUNT));
+        builder.partSize(getLong(options, PART_SIZE, BatchExtractToTxtParameters.DEFAULT_PART_SIZE));
+        builder.partitionLayout(getEnum(options, PARTITION_BY, PartitionLayout.class, BatchExtractToTxtParameters.DEFAULT_PARTITION_LAYOUT));
+        final double tileSize = getDouble(options, TILE_SIZE, BatchExtractToTxtParameters.DEFAULT_TILE_SIZE);
+        try {
+            builder.tileSize(tileSize);
+        } catch (IllegalArgumentException ex) {
+            throw invalidValue(TILE_SIZE, options.get(TILE_SIZE), ex);
+        }
+        builder.maxOpenPartitions(getInt(options, MAX_OPEN_PARTITIONS, BatchExtractToTxtParameters.DEFAULT_MAX_OPEN_PARTITIONS));
+        builder.includeColumnHeader(getBoolean(options, HEADER, BatchExtractToTxtParameters.DEFAULT_INCLUDE_COLUMN_HEADER));
+        // Text formatting.
+        final String separator = getString(options, SEPARATOR, BatchExtractToTxtParameters.DEFAULT_SEPARATOR);
+        builder.separator("\\t".equals(separator) ? "\t" : separator); // NOI18N.
+        builder.missingValue(getString(options, MISSING_VALUE, BatchExtractToTxtParameters.DEFAULT_MISSING_VALUE));
+        builder.precision(getInt(options, PRECISION, BatchExtractToTxtParameters.DEFAULT_PRECISION));
+        final String datePattern = getString(options, DATE_PATTERN, null);
+        if (datePattern != null) {
+            try {
+                builder.dateTimePattern(datePattern);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException(String.format("Invalid value \"%s\" for option \"%s\".", datePattern, DATE_PATTERN), ex); // NOI18N.
+            }
+        }
+        // Time.
+        final String timeVariable = getString(options, TIME_VARIABLE, BatchExtractToTxtParameters.DEFAULT_TIME_VARIABLE);
+        builder.timeVariable(timeVariable);
+        if (!options.containsKey(PERIOD_UNIT) && !options.containsKey(START_DATE)) {
+            applyTimeUnits(builder, files.get(0), timeVariable);
+        }
+        if (options.containsKey(PERIOD_SIZE)) {
+            builder.periodSize(getInt(options, PERIOD_SIZE, BatchExtractToTxtParameters.DEFAULT_PERIOD_SIZE));
+        }
+        if (options.containsKey(PERIOD_UNIT)) {
+            builder.periodUnit(getEnum(options, PERIOD_UNIT, ChronoUnit.class, BatchExtractToTxtParameters.DEFAULT_PERIOD_UNIT));
+        }
+        if (options.containsKey(START_DATE)) {
+            builder.startDate(getDate(options, START_DATE));
+        }
+        // Subsetting.
+        builder.latitudeVariable(getString(options, LATITUDE_VARIABLE, BatchExtractToTxtParameters.DEFAULT_LATITUDE_VARIABLE));
+        builder.longitudeVariable(getString(options, LONGITUDE_VARIABLE, BatchExtractToTxtParameters.DEFAULT_LONGITUDE_VARIABLE));
+        builder.latitudeBounds(getDouble(options, MIN_LATITUDE, BatchExtractToTxtParameters.DEFAULT_MIN_LATITUDE),
+                getDouble(options, MAX_LATITUDE, BatchExtractToTxtParameters.DEFAULT_MAX_LATITUDE));
+        builder.longitudeBounds(getDouble(options, MIN_LONGITUDE, BatchExtractToTxtParameters.DEFAULT_MIN_LONGITUDE),
+                getDouble(options, MAX_LONGITUDE, BatchExtractToTxtParameters.DEFAULT_MAX_LONGITUDE));
+        builder.dateBounds(getDate(options, MIN_DATE), getDate(options, MAX_DATE));
+        // Performance.
+        builder.workerCount(getInt(options, WORKERS, BatchExtractToTxtParameters.DEFAULT_WORKER_COUNT));
+        builder.threadsPerFile(getInt(options, THREADS, BatchExtractToTxtParameters.DEFAULT_THREADS_PER_FILE));
+        builder.outputBufferSize(getInt(options, OUTPUT_BUFFER_SIZE, BatchExtractToTxtParameters.DEFAULT_OUTPUT_BUFFER_SIZE));
+        builder.heapBudget(getLong(options, HEAP_BUDGET, BatchExtractToTxtParameters.DEFAULT_HEAP_BUDGET));
+        builder.resume(getBoolean(options, RESUME, BatchExtractToTxtParameters.DEFAULT_RESUME));
+        builder.checkpointInterval(getLong(options, CHECKPOINT_INTERVAL, BatchExtractToTxtParameters.DEFAULT_CHECKPOINT_INTERVAL));
+        builder.incremental(getBoolean(options, INCREMENTAL, BatchExtractToTxtParameters.DEFAULT_INCREMENTAL));
+        // Database.
+        builder.jdbcUrl(getString(options, JDBC_URL, null));
+        builder.jdbcUser(getString(options, JDBC_USER, null));
+        builder.jdbcPassword(getString(options, JDBC_PASSWORD, null));
+        builder.jdbcTable(getString(options, JDBC_TABLE, null));
+        builder.jdbcBatchSize(getInt(options, JDBC_BATCH_SIZE, BatchExtractToTxtParameters.DEFAULT_JDBC_BATCH_SIZE));
+        builder.jdbcConnectionCount(getInt(options, JDBC_CONNECTIONS, BatchExtractToTxtParameters.DEFAULT_JDBC_CONNECTION_COUNT));
+        return builder;
+    }
+
+    /**
+     * Lists the NetCDF files to export.
+     * @param value The files and directories, separated by the path separator of the platform.
+     * @return A {@code List<Path>} instance, never {@code null}.
+     * @throws IllegalArgumentException If a file does not exist.
+     * @throws IOException In case of IO error.
+     */
+    private static List<Path> listFiles(final String value) throws IllegalArgumentException, IOException {
+        final List<Path> result = new ArrayList<>();
+        for (final String path : splitList(value, File.pathSeparator)) {
+            if (isGlob(path)) {
+                result.addAll(listGlob(path));
+                continue;
+            }
+            final Path file = Paths.get(path);
+            if (Files.isDirectory(file)) {
+                try (final Stream<Path> stream = Files.walk(file)) {
+                    result.addAll(stream.filter(Files::isRegularFile)
+                            .filter(ExtractionJob::isNetCDF)
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else if (Files.isRegularFile(file)) {
+                result.add(file);
+            } else {
+                throw new IllegalArgumentException(String.format("File \"%s\" does not exist.", path)); // NOI18N.
+            }
+        }
+        return result;
+    }
+
+    private static boolean isGlob(final String path) {
+        return path.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    /**
+     * Lists the files that match a glob pattern, such as {@code /data/sst/2020-*.nc} or {@code /data/**}{@code /*.nc}.
+     * <br>The search starts from the deepest directory of the pattern that contains no wildcard.
+     * @param pattern The pattern.
+     * @return A {@code List<Path>} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private static List<Path> listGlob(final String pattern) throws IOException {
+        // Wildcards are not valid in paths on all platforms, the base directory is found from the text of the pattern.
+        final String text = pattern.replace(File.separatorChar, '/');
+        int wildcardIndex = 0;
+        while (!isGlob(text.substring(wildcardIndex, wildcardIndex + 1))) {
+            wildcardIndex++;
+        }
+        final int baseEnd = text.lastIndexOf('/', wildcardIndex);
+        final Path base = Paths.get((baseEnd < 0) ? "." : (baseEnd == 0) ? "/" : text.substring(0, baseEnd)); // NOI18N.
+        if (!Files.isDirectory(base)) {
+            return Collections.emptyList();
+        }
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + text); // NOI18N.
+        try (final Stream<Path> stream = Files.walk(base)) {
+            return stream.filter(Files::isRegularFile)
+                    // Relative patterns without a directory are matched against paths relative to the working directory.
+                    .filter(file -> matcher.matches((baseEnd < 0) ? base.relativize(file) : file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Gets the indexes of the {@code file.<n>} entries.
+     * @param options The options.
+     * @return A {@code List<Integer>} instance, never {@code null}, sorted.
+     */
+    private static List<Integer> getFileIndexes(final Map<String, String> options) {
+        return options.keySet()
+                .stream()
+                .map(FILE_KEY::matcher)
+                .filter(matcher -> matcher.matches() && matcher.group(2) == null)
+                .map(matcher -> Integer.parseInt(matcher.group(1)))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isNetCDF(final Path file) {
+        final String fileName = file.getFileName().toString();
+        return fileName.endsWith(".nc") || fileName.endsWith(".cdf"); // NOI18N.
+    }
+
+    /**
+     * Reads the period and the start date of the calendar from the units of the time variable, such as {@code days since 1950-01-01}.
+     * @param builder The builder.
+     * @param file The file.
+     * @param timeVariable The name of the time variable.
+     * @throws IOException In case of IO error.
+     */
+    private static void applyTimeUnits(final BatchExtractToTxtParametersBuilder builder, final Path file, final String timeVariable) throws IOException {
+        try (final NetcdfFile netcdf = NetcdfFile.open(file.toString())) {
+            final Variable variable = netcdf.findVariable(timeVariable);
+            if (variable == null || variable.getUnitsString() == null) {
+                return;
+            }
+            try {
+                final CalendarDateUnit calendarDateUnit = CalendarDateUnit.of(ucar.nc2.time.Calendar.proleptic_gregorian.name(), variable.getUnitsString());
+                builder.periodSize(calendarDateUnit.getTimeUnit().getValue());
+                builder.periodUnit(NetCDFUtils.INSTANCE.fieldToJava(calendarDateUnit.getTimeUnit().getField()));
+                builder.startDate(ZonedDateTime.parse(calendarDateUnit.getBaseCalendarDate().toString()));
+            } catch (IllegalArgumentException | DateTimeParseException ex) {
+                throw new IllegalArgumentException(String.format("Cannot read the time units \"%s\" of file \"%s\".", variable.getUnitsString(), file), ex); // NOI18N.
+            }
+        }
+    }
+
+    private static String[] splitList(final String value, final String separator) {
+        return Arrays.stream(value.split(Pattern.quote(separator)))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static String getString(final Map<String, String> options, final String key, final String defaultValue) {
+        final String value = options.get(key);
+        return (value == null) ? defaultValue : value;
+    }
+
+    private static IllegalArgumentException invalidValue(final String key, final String value, final Exception cause) {
+        return new IllegalArgumentException(String.format("Invalid value \"%s\" for option \"%s\".", value, key), cause); // NOI18N.
+    }
+
+    private static boolean getBoolean(final Map<String, String> options, final String key, final boolean defaultValue) throws IllegalArgumentException {
+        final String value = options.get(key);
+        if (value == null) {
+            return defaultValue;
+        } else if ("true".equalsIgnoreCase(value.trim())) { // NOI18N.
+            return true;
+        } else if ("false".equalsIgnoreCase(value.trim())) { // NOI18N.
+            return false;
+        }
+        throw invalidValue(key, value, null);
+    }
+
+    private static int getInt(final Map<String, String> options, final String key, final int defaultValue) throws IllegalArgumentException {
+        final String value = options.get(key);
+        try {
+            return (value == null) ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw invalidValue(key, value, ex);
+        }
+    }
+
+    private static long getLong(final Map<String, String> options, final String key, final long defaultValue) throws IllegalArgumentException {
+        final String value = options.get(key);
+        try {
+            return (value == null) ? defaultValue : Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw invalidValue(key, value, ex);
+        }
+    }
+
+    private static double getDouble(final Map<String, String> options, final String key, final double defaultValue) throws IllegalArgumentException {
+        final String value = options.get(key);
+        try {
+            return (value == null) ? defaultValue : Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            throw invalidValue(key, value, ex);
+        }
+    }
+
+    private static <E extends Enum<E>> E getEnum(final Map<String, String> options, final String key, final Class<E> enumClass, final E defaultValue) throws IllegalArgumentException {
+        final String value = options.get(key);
+        try {
+            return (value == null) ? defaultValue : Enum.valueOf(enumClass, value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw invalidValue(key, value, ex);
+        }
+    }
+
+    /**
+     * Gets a date option.
+     * <br>Dates are given as ISO date times, such as {@code 2020-01-01T00:00Z}, or as ISO dates, such as {@code 2020-01-01}, which stand for the start of the day in UTC.
+     * @param options The options.
+     * @param key The name of the option.
+     * @return A {@code ZonedDateTime} instance, {@code null} if the option is not set.
+     * @throws IllegalArgumentException If the value is not a valid date.
+     */
+    private static ZonedDateTime getDate(final Map<String, String> options, final String key) throws IllegalArgumentException {
+        final String value = options.get(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            try {
+                return LocalDate.parse(value.trim()).atStartOfDay(ZoneOffset.UTC);
+            } catch (DateTimeParseException ex2) {
+                throw invalidValue(key, value, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers the sources that have been extracted, so that an incremental extraction only extracts new or modified sources.
+ * <br>For each source, the manifest records its size, last modification time and content hash, the fingerprint of the parameters it was extracted with, and the size and last modification time of its output.
+ * <br>The manifest is a text file, one entry per line with fields separated by tabulations; entries are appended as sources are extracted, a later entry replaces an earlier one for the same source and a line holding only a source removes its entry.
+ * The file is compacted when opened.
+ * <br>Instances are thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ExtractionManifest implements Closeable {
+
+    /**
+     * The name of the manifest file, is equal to {@value}.
+     */
+    public static final String FILE_NAME = "extraction.manifest"; // NOI18N.
+
+    private static final String SEPARATOR = "\t"; // NOI18N.
+    private static final int FIELD_COUNT = 8;
+
+    /**
+     * The manifest entry of a source.
+     * <br>Instances are immutable.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    public static final class Entry {
+
+        private final Path source;
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final String fingerprint;
+        private final Path output;
+        private final long outputSize;
+        private final long outputLastModified;
+
+        /**
+         * Creates a new instance.
+         * @param source The source.
+         * @param size The size of the source, in bytes.
+         * @param lastModified The last modification time of the source, in milliseconds since the epoch.
+         * @param hash The content hash of the source.
+         * @param fingerprint The fingerprint of the parameters used to extract the source.
+         * @param output The output, {@code null} if rows were inserted into a database.
+         * @param outputSize The size of the output, in bytes; ignored if there is no output.
+         * @param outputLastModified The last modification time of the output, in milliseconds since the epoch; ignored if there is no output.
+         * @throws NullPointerException If {@code source}, {@code hash} or {@code fingerprint} is {@code null}.
+         */
+        public Entry(final Path source, final long size, final long lastModified, final String hash, final String fingerprint, final Path output, final long outputSize, final long outputLastModified) throws NullPointerException {
+            this.source = toKey(Objects.requireNonNull(source));
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = Objects.requireNonNull(hash);
+            this.fingerprint = Objects.requireNonNull(fingerprint);
+            this.output = (output == null) ? null : toKey(output);
+            this.outputSize = (output == null) ? -1 : outputSize;
+            this.outputLastModified = (output == null) ? -1 : outputLastModified;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Gets the output.
+         * @return A {@code Path} instance, {@code null} if rows were inserted into a database.
+         */
+        public Path getOutput() {
+            return output;
+        }
+
+        public long getOutputSize() {
+            return outputSize;
+        }
+
+        public long getOutputLastModified() {
+            return outputLastModified;
+        }
+
+        /**
+         * Tests whether the source still has the size and last modification time recorded in this entry.
+         * @return {@code True} if the test succeeds, {@code false} otherwise.
+         * @throws IOException In case of IO error.
+         */
+        public boolean isSourceUnchanged() throws IOException {
+            return Files.isRegularFile(source)
+                    && Files.size(source) == size
+                    && Files.getLastModifiedTime(source).toMillis() == lastModified;
+        }
+
+        /**
+         * Tests whether given output is the output of this entry and has not been modified since.
+         * @param file The output.
+         * @return {@code True} if the test succeeds, {@code false} otherwise.
+         * @throws IOException In case of IO error.
+         */
+        public boolean isOutputUnchanged(final Path file) throws IOException {
+            if (file == null || output == null) {
+                return file == output;
+            }
+            return output.equals(toKey(file))
+                    && Files.isRegularFile(output)
+                    && Files.size(output) == outputSize
+                    && Files.getLastModifiedTime(output).toMillis() == outputLastModified;
+        }
+
+        /**
+         * Creates a copy of this entry for a source whose size or modification time changed but whose content did not.
+         * @param newSize The new size of the source, in bytes.
+         * @param newLastModified The new last modification time of the source, in milliseconds since the epoch.
+         * @return An {@code Entry} instance, never {@code null}.
+         */
+        public Entry withSource(final long newSize, final long newLastModified) {
+            return new Entry(source, newSize, newLastModified, hash, fingerprint, output, outputSize, outputLastModified);
+        }
+
+        private String toLine() {
+            return String.join(SEPARATOR, source.toString(), String.valueOf(size), String.valueOf(lastModified), hash, fingerprint,
+                    (output == null) ? "" : output.toString(), String.valueOf(outputSize), String.valueOf(outputLastModified)); // NOI18N.
+        }
+
+        private static Entry fromLine(final String line) throws IllegalArgumentException {
+            final String[] fields = line.split(SEPARATOR, -1);
+            if (fields.length != FIELD_COUNT) {
+                throw new IllegalArgumentException();
+            }
+            final Path output = fields[5].isEmpty() ? null : Paths.get(fields[5]);
+            return new Entry(Paths.get(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], fields[4],
+                    output, Long.parseLong(fields[6]), Long.parseLong(fields[7]));
+        }
+    }
+
+    /**
+     * The manifest file.
+     */
+    private final FileChannel channel;
+    /**
+     * Entries, by source.
+     */
+    private final Map<Path, Entry> entries;
+
+    private ExtractionManifest(final FileChannel channel, final Map<Path, Entry> entries) {
+        this.channel = channel;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens a manifest, creating it if it does not exist.
+     * @param file The manifest file.
+     * @return An {@code ExtractionManifest} instance, never {@code null}.
+     * @throws NullPointerException If {@code file} is {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public static ExtractionManifest open(final Path file) throws NullPointerException, IOException {
+        Objects.requireNonNull(file);
+        final Map<Path, Entry> entries = new LinkedHashMap<>();
+        if (Files.isRegularFile(file)) {
+            // Only lines ended by a line feed are complete.
+            final byte[] bytes = Files.readAllBytes(file);
+            int length = bytes.length;
+            while (length > 0 && bytes[length - 1] != '\n') {
+                length--;
+            }
+            Arrays.stream(new String(bytes, 0, length, StandardCharsets.UTF_8).split("\n")) // NOI18N.
+                    .filter(line -> !line.isEmpty())
+                    .forEach(line -> {
+                        try {
+                            if (!line.contains(SEPARATOR)) {
+                                entries.remove(Paths.get(line));
+                                return;
+                            }
+                            final Entry entry = Entry.fromLine(line);
+                            entries.put(entry.getSource(), entry);
+                        } catch (IllegalArgumentException ex) {
+                            final String message = String.format("Ignoring malformed manifest entry \"%s\".", line); // NOI18N.
+                            Logger.getLogger(ExtractionManifest.class.getName()).warning(message);
+                        }
+                    });
+            // Compact: write the current entries to a new file that replaces the old one.
+            final Path compacted = file.resolveSibling(file.getFileName() + ".tmp"); // NOI18N.
+            final StringBuilder content = new StringBuilder();
+            entries.values().forEach(entry -> content.append(entry.toLine()).append('\n'));
+            Files.write(compacted, content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new ExtractionManifest(channel, entries);
+    }
+
+    /**
+     * Gets the entry of a source.
+     * @param source The source.
+     * @return An {@code Entry} instance, {@code null} if the source has no entry.
+     */
+    public synchronized Entry get(final Path source) {
+        return entries.get(toKey(source));
+    }
+
+    /**
+     * Gets the sources whose entry has given output.
+     * @param output The output.
+     * @return A {@code Set<Path>} instance, never {@code null}.
+     */
+    public synchronized Set<Path> getSources(final Path output) {
+        final Path key = toKey(output);
+        return entries.values()
+                .stream()
+                .filter(entry -> key.equals(entry.getOutput()))
+                .map(Entry::getSource)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Adds or replaces the entry of a source and appends it to the manifest file.
+     * @param entry The entry.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void put(final Entry entry) throws IOException {
+        append(entry.toLine());
+        entries.put(entry.getSource(), entry);
+    }
+
+    /**
+     * Removes the entry of a source.
+     * @param source The source.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void remove(final Path source) throws IOException {
+        final Path key = toKey(source);
+        if (entries.remove(key) != null) {
+            append(key.toString());
+        }
+    }
+
+    /**
+     * Tests whether the output of a source is up to date.
+     * <br>The content hash of the source is only computed when its size is unchanged but its last modification time changed; if the content did not change, the entry is updated so that the hash is not computed again.
+     * @param source The source.
+     * @param fingerprint The fingerprint of the parameters the source would be extracted with.
+     * @param output The output, {@code null} if rows are inserted into a database.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     * @throws IOException In case of IO error.
+     */
+    public boolean isUpToDate(final Path source, final String fingerprint, final Path output) throws IOException {
+        final Entry entry = get(source);
+        if (entry == null || !entry.getFingerprint().equals(fingerprint) || !entry.isOutputUnchanged(output)) {
+            return false;
+        }
+        if (entry.isSourceUnchanged()) {
+            return true;
+        }
+        if (!Files.isRegularFile(source) || Files.size(source) != entry.getSize() || !entry.getHash().equals(hash(source))) {
+            return false;
+        }
+        put(entry.withSource(entry.getSize(), Files.getLastModifiedTime(source).toMillis()));
+        return true;
+    }
+
+    /**
+     * Appends a line to the manifest file and forces it to disk.
+     * @param line The line.
+     * @throws IOException In case of IO error.
+     */
+    private void append(final String line) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Computes the content hash of a file.
+     * @param file The file.
+     * @return A {@code String} instance, never {@code null}; the hexadecimal SHA-256 digest of the content of the file.
+     * @throws IOException In case of IO error.
+     */
+    public static String hash(final Path file) throws IOException {
+        final MessageDigest digest = createDigest();
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        try (final FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (input.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the hash of a text.
+     * @param text The text.
+     * @return A {@code String} instance, never {@code null}; the hexadecimal SHA-256 digest of the text encoded in UTF-8.
+     */
+    static String hash(final String text) {
+        return toHex(createDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256"); // NOI18N.
+        } catch (NoSuchAlgorithmException ex) {
+            // Should never happen, all Java platforms support SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder result = new StringBuilder();
+        for (final byte value : bytes) {
+            result.append(String.format("%02x", value)); // NOI18N.
+        }
+        return result.toString();
+    }
+
+    /**
+     * Gets the key of a file in the manifest.
+     * <br>Also used to compare sources with those returned by {@link #getSources(Path)}.
+     * @param file The file.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    static Path toKey(final Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -65,13 +65,16 @@ public final class NavigationTreeConstructionTask extends Task<TreeItem> {
         return variable.getRank() > 1;
     }
 
-    private long progress = 0;
-    private long totalProgress = 100;
+    /**
+     * Publishes the progress of the task at a limited rate.
+     */
+    private final ProgressReporter reporter = new ProgressReporter(ProgressReporter.DEFAULT_INTERVAL, source -> updateProgress(source.getDone(), source.getTotal()));
 
     @Override
     protected TreeItem call() throws Exception {
         // Task initialization.
-        updateProgress(progress, totalProgress);
+        reporter.setTotal(100);
+        reporter.publish();
         if (isCancelled()) {
             return null;
         }
@@ -79,9 +82,8 @@ public final class NavigationTreeConstructionTask extends Task<TreeItem> {
         final Path[] files = Files.list(sourceDir)
                 .filter(this::filterFile)
                 .toArray(Path[]::new);
-        totalProgress = 2 + 2 * files.length;
-        progress++;
-        updateProgress(progress, totalProgress);
+        reporter.setTotal(2 + 2 * files.length);
+        reporter.advance(1);
         if (isCancelled()) {
             return null;
         }
@@ -103,8 +105,8 @@ public final class NavigationTreeConstructionTask extends Task<TreeItem> {
         final TreeItem result = new TreeItem(null);
         result.getChildren().setAll(fileItemList);
         result.setExpanded(true);
-        progress++;
-        updateProgress(progress, totalProgress);
+        reporter.advance(1);
+        reporter.publish();
         if (isCancelled()) {
             return null;
         }
@@ -125,9 +127,8 @@ public final class NavigationTreeConstructionTask extends Task<TreeItem> {
                     .stream()
                     .filter(this::filterVariable)
                     .toArray(Variable[]::new);
-            totalProgress += variables.length;
-            progress++;
-            updateProgress(progress, totalProgress);
+            reporter.addTotal(variables.length);
+            reporter.advance(1);
             if (isCancelled()) {
                 return null;
             }
@@ -148,8 +149,7 @@ public final class NavigationTreeConstructionTask extends Task<TreeItem> {
             final TreeItem result = new TreeItem(fileInfo);
             result.getChildren().setAll(variableItemList);
             result.setExpanded(true);
-            progress++;
-            updateProgress(progress, totalProgress);
+            reporter.advance(1);
             if (isCancelled()) {
                 return null;
             }
@@ -166,8 +166,7 @@ public final class NavigationTreeConstructionTask extends Task<TreeItem> {
     private TreeItem variableToTreeItem(final Variable variable) throws IOException {
         final VariableInfo variableInfo = new VariableInfo(variable.getShortName(), variable.getFullName(), variable.getDescription());
         final TreeItem result = new TreeItem(variableInfo);
-        progress++;
-        updateProgress(progress, totalProgress);
+        reporter.advance(1);
         if (isCancelled()) {
             return null;
         }
@@ -6,9 +6,10 @@
 package org.spc.ofp.project.netcdfextractor.task;
 
 import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Logger;
-import javafx.util.Pair;
 import ucar.nc2.Attribute;
 import ucar.nc2.Variable;
 import ucar.nc2.time.CalendarPeriod.Field;
@@ -23,11 +24,21 @@ public enum NetCDFUtils {
      */
     INSTANCE;
 
+    /**
+     * Gets the value of a numeric attribute.
+     * <br>Integer attributes keep their exact value, other attributes are converted to {@code float}.
+     * @param variable The variable.
+     * @param attributeName The name of the attribute.
+     * @param defaultValue The value used when the variable has no such attribute.
+     * @return A {@code Number} instance.
+     */
     public Number getNumericAttribute(final Variable variable, final String attributeName, final Number defaultValue) {
         Number result = defaultValue;
         final Attribute attribute = variable.findAttribute(attributeName);
         if (attribute != null) {
-            result = attribute.getNumericValue().floatValue();
+            final Number value = attribute.getNumericValue();
+            // A float cannot hold every long, int64 fill values such as -9223372036854775806 would be lost.
+            result = attribute.getDataType().isIntegral() ? value : value.floatValue();
         } else {
             final String message = String.format("Could not locate attribute \"%s\" in variable \"%s\", using default value.", attributeName, variable.getShortName());
             Logger.getLogger(getClass().getName()).warning(message);
@@ -35,17 +46,24 @@ public enum NetCDFUtils {
         return result;
     }
 
-    public Pair<Number, Number> getValidRangeAttribute(final Variable variable, final Number defaultMin, final Number defaultMax) {
+    /**
+     * Gets the valid range of a variable.
+     * @param variable The variable.
+     * @param defaultMin The minimum used when the variable has no valid range.
+     * @param defaultMax The maximum used when the variable has no valid range.
+     * @return A {@code Map.Entry<Number, Number>} instance, never {@code null}; the key is the minimum and the value is the maximum.
+     */
+    public Map.Entry<Number, Number> getValidRangeAttribute(final Variable variable, final Number defaultMin, final Number defaultMax) {
         final Attribute validMinAttribute = variable.findAttribute("valid_min"); // NOI18N.
         final Attribute validMaxAttribute = variable.findAttribute("valid_max"); // NOI18N.
         final Attribute validRangeAttribute = variable.findAttribute("valid_range"); // NOI18N.
-        Pair<Number, Number> result = null;
+        Map.Entry<Number, Number> result = null;
         if (validRangeAttribute != null) {
-            result = new Pair<>(validRangeAttribute.getNumericValue(0), validRangeAttribute.getNumericValue(1));
+            result = new AbstractMap.SimpleImmutableEntry<>(validRangeAttribute.getNumericValue(0), validRangeAttribute.getNumericValue(1));
         } else if (validMinAttribute != null && validMaxAttribute != null) {
-            result = new Pair<>(validMinAttribute.getNumericValue(), validMaxAttribute.getNumericValue());
+            result = new AbstractMap.SimpleImmutableEntry<>(validMinAttribute.getNumericValue(), validMaxAttribute.getNumericValue());
         } else {
-            result = new Pair<>(defaultMin, defaultMax);
+            result = new AbstractMap.SimpleImmutableEntry<>(defaultMin, defaultMax);
         }
         return result;
     }
@@ -0,0 +1,235 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * Lists the parts of an output written in parts.
+ * <br>The manifest is a text file next to the output, named after it, such as {@code sst.txt.parts}; one line per part, appended and forced to disk once the part is complete, with fields separated by tabulations:
+ * <pre>
+ * &lt;file name of the part&gt; &lt;rows&gt; &lt;bytes&gt; &lt;source of the last rows&gt; &lt;rows of that source written so far&gt;
+ * </pre>
+ * A last line holding {@value #COMPLETE} is appended once the whole output has been written.
+ * Loaders may ingest listed parts while the extraction goes on; the parts that are not listed yet are still being written.
+ * <br>The last two fields tell where the next part starts, so that a resumed extraction continues from the last complete part.
+ * <br>Instances are thread-safe.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class PartManifest implements Closeable {
+
+    /**
+     * The extension of manifest files, is equal to {@value}.
+     */
+    public static final String FILE_EXTENSION = ".parts"; // NOI18N.
+
+    /**
+     * The last line of the manifest of a complete output, is equal to {@value}.
+     */
+    public static final String COMPLETE = "complete"; // NOI18N.
+
+    private static final String SEPARATOR = "\t"; // NOI18N.
+    private static final int FIELD_COUNT = 5;
+
+    /**
+     * The manifest file.
+     */
+    private final Path file;
+    private final FileChannel channel;
+    /**
+     * The file names of the complete parts.
+     */
+    private final List<String> parts = new ArrayList<>();
+    /**
+     * The source being written, may be {@code null}.
+     */
+    private Path source;
+    /**
+     * The rows of the source written so far.
+     */
+    private long sourceRows;
+
+    private PartManifest(final Path file, final FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Gets the manifest file of an output.
+     * @param output The output.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    public static Path getFile(final Path output) {
+        return output.resolveSibling(output.getFileName() + FILE_EXTENSION);
+    }
+
+    /**
+     * Opens a manifest.
+     * @param file The manifest file.
+     * @param resume If {@code true}, the parts listed in an existing manifest are kept and new parts are appended; otherwise they are deleted and the manifest starts empty.
+     * @return A {@code PartManifest} instance, never {@code null}.
+     * @throws NullPointerException If {@code file} is {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    public static PartManifest open(final Path file, final boolean resume) throws NullPointerException, IOException {
+        Objects.requireNonNull(file);
+        final List<String> lines = Files.isRegularFile(file) ? readLines(file) : Collections.emptyList();
+        if (!resume) {
+            // Parts of a previous run must not be mistaken for parts of this one.
+            for (final String line : lines) {
+                final String[] fields = line.split(SEPARATOR, -1);
+                if (fields.length == FIELD_COUNT) {
+                    Files.deleteIfExists(file.resolveSibling(fields[0]));
+                }
+            }
+            return new PartManifest(file, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        }
+        final List<String> names = new ArrayList<>();
+        Path lastSource = null;
+        long lastSourceRows = 0;
+        final StringBuilder content = new StringBuilder();
+        for (final String line : lines) {
+            final String[] fields = line.split(SEPARATOR, -1);
+            try {
+                if (fields.length == FIELD_COUNT) {
+                    lastSourceRows = Long.parseLong(fields[4]);
+                    lastSource = fields[3].isEmpty() ? null : Paths.get(fields[3]);
+                    names.add(fields[0]);
+                    content.append(line).append('\n');
+                    continue;
+                }
+            } catch (NumberFormatException ex) {
+                // Handled below.
+            }
+            final String message = String.format("Ignoring malformed part manifest entry \"%s\".", line); // NOI18N.
+            Logger.getLogger(PartManifest.class.getName()).warning(message);
+        }
+        // Drop what follows the last complete part, such as a truncated line or the end of the output.
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        final PartManifest result = new PartManifest(file, FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        result.parts.addAll(names);
+        result.source = lastSource;
+        result.sourceRows = lastSourceRows;
+        return result;
+    }
+
+    /**
+     * Reads the complete lines of a manifest.
+     * @param file The manifest file.
+     * @return A {@code List<String>} instance, never {@code null}.
+     * @throws IOException In case of IO error.
+     */
+    private static List<String> readLines(final Path file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+        final List<String> result = new ArrayList<>();
+        Arrays.stream(new String(bytes, 0, length, StandardCharsets.UTF_8).split("\n")) // NOI18N.
+                .filter(line -> !line.isEmpty() && !COMPLETE.equals(line))
+                .forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Gets the manifest file.
+     * @return A {@code Path} instance, never {@code null}.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of complete parts.
+     * @return An {@code int} &ge; 0.
+     */
+    public synchronized int getPartCount() {
+        return parts.size();
+    }
+
+    /**
+     * Tests whether given file is the source of the last rows of the last complete part.
+     * @param file The file.
+     * @return {@code True} if the test succeeds, {@code false} otherwise.
+     */
+    public synchronized boolean isLastSource(final Path file) {
+        return source != null && source.equals(ExtractionManifest.toKey(file));
+    }
+
+    /**
+     * Gets the number of rows of the last source that are in the complete parts.
+     * @return A {@code long} &ge; 0.
+     * @see #isLastSource(Path)
+     */
+    public synchronized long getLastSourceRows() {
+        return sourceRows;
+    }
+
+    /**
+     * Records the source being written and the number of its rows written so far.
+     * <br>This position is recorded along with the next part to complete.
+     * @param file The source.
+     * @param rowCount The number of rows.
+     */
+    public synchronized void setPosition(final Path file, final long rowCount) {
+        source = ExtractionManifest.toKey(file);
+        sourceRows = rowCount;
+    }
+
+    /**
+     * Records a complete part and forces it to disk.
+     * @param part The part, closed.
+     * @param rowCount The number of rows in the part.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void add(final Path part, final long rowCount) throws IOException {
+        final String name = part.getFileName().toString();
+        append(String.join(SEPARATOR, name, String.valueOf(rowCount), String.valueOf(Files.size(part)),
+                (source == null) ? "" : source.toString(), String.valueOf(sourceRows))); // NOI18N.
+        parts.add(name);
+    }
+
+    /**
+     * Records that the output is complete.
+     * @throws IOException In case of IO error.
+     */
+    public synchronized void complete() throws IOException {
+        append(COMPLETE);
+    }
+
+    /**
+     * Appends a line to the manifest file and forces it to disk.
+     * @param line The line.
+     * @throws IOException In case of IO error.
+     */
+    private void append(final String line) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
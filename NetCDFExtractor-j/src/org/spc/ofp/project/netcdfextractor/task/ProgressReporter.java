@@ -0,0 +1,183 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the work done by a long-running job and publishes it at a limited rate.
+ * <br>Work may be counted from several threads; the listener is invoked at most once per interval, from the thread that happens to cross it.
+ * <br>This class does not depend on JavaFX, the listener is responsible for pushing values to the UI.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class ProgressReporter {
+
+    /**
+     * Default minimum interval between two publications in milliseconds, is equal to {@value}.
+     */
+    public static final long DEFAULT_INTERVAL = 200;
+
+    /**
+     * Receives progress publications.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called when the progress is published.
+         * @param reporter The source reporter.
+         */
+        void progressChanged(final ProgressReporter reporter);
+    }
+
+    /**
+     * Minimum interval between two publications in nanoseconds.
+     */
+    private final long interval;
+    /**
+     * The listener.
+     */
+    private final Listener listener;
+    /**
+     * Creation time in nanoseconds.
+     */
+    private final long startTime = System.nanoTime();
+    /**
+     * Amount of work done.
+     */
+    private final LongAdder done = new LongAdder();
+    /**
+     * Total amount of work.
+     */
+    private final AtomicLong total = new AtomicLong();
+    /**
+     * Time of the next publication in nanoseconds.
+     */
+    private final AtomicLong nextPublicationTime = new AtomicLong(startTime);
+
+    /**
+     * Creates a new instance.
+     * @param interval The minimum interval between two publications in milliseconds.
+     * @param listener The listener.
+     * @throws NullPointerException If {@code listener} is {@code null}.
+     */
+    public ProgressReporter(final long interval, final Listener listener) throws NullPointerException {
+        Objects.requireNonNull(listener);
+        this.interval = TimeUnit.MILLISECONDS.toNanos(Math.max(0, interval));
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the total amount of work.
+     * @param value The new total.
+     */
+    public void setTotal(final long value) {
+        total.set(value);
+    }
+
+    /**
+     * Adds work to the total amount of work.
+     * @param value The amount of work to add.
+     */
+    public void addTotal(final long value) {
+        total.addAndGet(value);
+    }
+
+    /**
+     * Marks some work as done and publishes the progress if the interval has elapsed.
+     * @param value The amount of work done, may be 0.
+     */
+    public void advance(final long value) {
+        if (value != 0) {
+            done.add(value);
+        }
+        final long now = System.nanoTime();
+        final long next = nextPublicationTime.get();
+        if (now - next >= 0 && nextPublicationTime.compareAndSet(next, now + interval)) {
+            listener.progressChanged(this);
+        }
+    }
+
+    /**
+     * Publishes the progress now, regardless of the interval.
+     */
+    public void publish() {
+        nextPublicationTime.set(System.nanoTime() + interval);
+        listener.progressChanged(this);
+    }
+
+    /**
+     * Gets the amount of work done.
+     * @return A {@code long}.
+     */
+    public long getDone() {
+        return done.sum();
+    }
+
+    /**
+     * Gets the total amount of work.
+     * @return A {@code long}.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Gets the time elapsed since this reporter was created.
+     * @return A {@code long} in milliseconds.
+     */
+    public long getElapsedTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Gets the average amount of work done per second since this reporter was created.
+     * @return A {@code double} &ge; 0.
+     */
+    public double getRate() {
+        final long elapsed = System.nanoTime() - startTime;
+        return (elapsed <= 0) ? 0 : getDone() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Estimates the remaining time from the amount of work done and the total amount of work.
+     * @return A {@code long} in milliseconds, -1 if the remaining time cannot be estimated.
+     */
+    public long getRemainingTime() {
+        final long totalValue = getTotal();
+        return getRemainingTime((totalValue <= 0) ? 0 : getDone() / (double) totalValue);
+    }
+
+    /**
+     * Estimates the remaining time from a completed fraction.
+     * <br>Use this method when the work counted by this reporter is not a good indicator of the overall progress.
+     * @param fraction The completed fraction, in [0, 1].
+     * @return A {@code long} in milliseconds, -1 if the remaining time cannot be estimated.
+     */
+    public long getRemainingTime(final double fraction) {
+        if (!(fraction > 0)) {
+            return -1;
+        }
+        return Math.round(getElapsedTime() * (1 - Math.min(1, fraction)) / fraction);
+    }
+
+    /**
+     * Formats a duration as {@code h:mm:ss}.
+     * @param duration The duration in milliseconds.
+     * @return A {@code String} instance, never {@code null}; {@code --:--:--} if {@code duration} is negative.
+     */
+    public static String formatDuration(final long duration) {
+        if (duration < 0) {
+            return "--:--:--"; // NOI18N.
+        }
+        final long seconds = TimeUnit.MILLISECONDS.toSeconds(duration);
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60); // NOI18N.
+    }
+}
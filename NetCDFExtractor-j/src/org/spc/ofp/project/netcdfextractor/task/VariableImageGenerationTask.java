@@ -8,13 +8,13 @@ package org.spc.ofp.project.netcdfextractor.task;
 import java.awt.Color;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Logger;
 import javafx.concurrent.Task;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
-import javafx.util.Pair;
 import ucar.ma2.Array;
 import ucar.ma2.Index;
 import ucar.nc2.Attribute;
@@ -36,6 +36,11 @@ public final class VariableImageGenerationTask extends Task<Image> {
 
     private final boolean invertLat = true;
 
+    /**
+     * Publishes the progress of the task at a limited rate.
+     */
+    private final ProgressReporter reporter = new ProgressReporter(ProgressReporter.DEFAULT_INTERVAL, source -> updateProgress(source.getDone(), source.getTotal()));
+
     /**
      * Creates a new instance.
      * @param file The source file.
@@ -69,7 +74,7 @@ public final class VariableImageGenerationTask extends Task<Image> {
             final float fillValue = NetCDFUtils.INSTANCE.getNumericAttribute(variable, "_FillValue", Float.NaN).floatValue();
             final float scaleFactor = NetCDFUtils.INSTANCE.getNumericAttribute(variable, "scale_factor", 1).floatValue();
             final float add_offset = NetCDFUtils.INSTANCE.getNumericAttribute(variable, "add_offset", 0).floatValue();
-            final Pair<Number, Number> validRange = NetCDFUtils.INSTANCE.getValidRangeAttribute(variable, Float.NaN, Float.NaN);
+            final Map.Entry<Number, Number> validRange = NetCDFUtils.INSTANCE.getValidRangeAttribute(variable, Float.NaN, Float.NaN);
             // Extract dimensions from the variable.
             final int[] shape = variable.getShape();
             final int xlon = shape[rank - 1];
@@ -78,6 +83,8 @@ public final class VariableImageGenerationTask extends Task<Image> {
             final Index index = array.getIndex();
             float min = validRange.getKey().floatValue();
             float max = validRange.getValue().floatValue();
+            // One unit of work per latitude row to scan and per latitude row to draw.
+            reporter.setTotal((Float.isNaN(min) || Float.isNaN(max)) ? 2L * ylat : ylat);
             // Range is not valid, we have to get throught the matrix.
             // We only use the 1st layer, the one we will turn into a preview image.
             if (Float.isNaN(min) || Float.isNaN(max)) {
@@ -97,6 +104,7 @@ public final class VariableImageGenerationTask extends Task<Image> {
                             }
                         }
                     }
+                    reporter.advance(1);
                 }
             }
             // Range still not valid, there is nothing we can do.
@@ -131,7 +139,9 @@ public final class VariableImageGenerationTask extends Task<Image> {
                         }
                     }
                 }
+                reporter.advance(1);
             }
+            reporter.publish();
             return result;
         }
     }
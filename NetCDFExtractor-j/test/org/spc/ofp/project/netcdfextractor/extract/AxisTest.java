@@ -0,0 +1,143 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.Range;
+
+/**
+ * Tests the range lookups of {@code Axis}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class AxisTest {
+
+    /**
+     * Creates an axis with coordinates every {@code step} degrees.
+     */
+    private static Axis createAxis(final double first, final double step, final int length) {
+        final double[] coordinates = new double[length];
+        for (int index = 0; index < length; index++) {
+            coordinates[index] = first + step * index;
+        }
+        return Axis.ofCoordinates("axis", Array.factory(DataType.DOUBLE, new int[]{length}, coordinates)); // NOI18N.
+    }
+
+    private static String toString(final Range range) {
+        return (range == null) ? null : String.format("%d:%d", range.first(), range.last()); // NOI18N.
+    }
+
+    private static String toString(final List<Range> ranges) {
+        return ranges.stream()
+                .map(AxisTest::toString)
+                .collect(Collectors.joining(" ")); // NOI18N.
+    }
+
+    @Test
+    public void testFindRange() {
+        final Axis axis = createAxis(-90, 10, 19);
+        // Bounds on grid points are inclusive.
+        assertEquals("7:11", toString(axis.findRange(-20, 20))); // NOI18N.
+        assertEquals("7:11", toString(axis.findRange(-25, 25))); // NOI18N.
+        assertEquals("0:18", toString(axis.findRange(-90, 90))); // NOI18N.
+        assertEquals("0:0", toString(axis.findRange(-100, -90))); // NOI18N.
+        assertEquals("18:18", toString(axis.findRange(90, 100))); // NOI18N.
+        assertNull(axis.findRange(21, 29));
+        assertNull(axis.findRange(95, 100));
+        assertNull(axis.findRange(20, 10));
+    }
+
+    @Test
+    public void testFindRangeDecreasing() {
+        final Axis axis = createAxis(90, -10, 19);
+        assertEquals("7:11", toString(axis.findRange(-20, 20))); // NOI18N.
+        assertEquals("8:10", toString(axis.findRange(-15, 15))); // NOI18N.
+        assertEquals("0:0", toString(axis.findRange(90, 90))); // NOI18N.
+        assertEquals("18:18", toString(axis.findRange(-90, -90))); // NOI18N.
+        assertNull(axis.findRange(1, 9));
+    }
+
+    @Test
+    public void testFindRangeSinglePoint() {
+        final Axis axis = createAxis(5, 1, 1);
+        assertEquals("0:0", toString(axis.findRange(5, 5))); // NOI18N.
+        assertNull(axis.findRange(6, 7));
+        assertEquals("", toString(createAxis(0, 1, 0).findLongitudeRanges(0, 10))); // NOI18N.
+    }
+
+    @Test
+    public void testFindTimeRange() {
+        final ZonedDateTime startDate = ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        final Axis axis = Axis.ofTimes("time", Array.factory(DataType.INT, new int[]{5}, new int[]{0, 1, 2, 3, 4}), startDate, 1, ChronoUnit.DAYS); // NOI18N.
+        assertEquals("1:3", toString(axis.findRange(startDate.plusDays(1).toInstant(), startDate.plusDays(3).toInstant()))); // NOI18N.
+        assertEquals("2:4", toString(axis.findRange(startDate.plusHours(36).toInstant(), null))); // NOI18N.
+        assertEquals("0:0", toString(axis.findRange(null, startDate.toInstant()))); // NOI18N.
+        assertNull(axis.findRange(startDate.plusHours(1).toInstant(), startDate.plusHours(2).toInstant()));
+    }
+
+    @Test
+    public void testLongitudes0To360() {
+        final Axis axis = createAxis(0, 10, 36);
+        assertEquals("2:4", toString(axis.findLongitudeRanges(20, 40))); // NOI18N.
+        // Bounds in the other convention.
+        assertEquals("17:19", toString(axis.findLongitudeRanges(170, -170))); // NOI18N.
+        assertEquals("25:27", toString(axis.findLongitudeRanges(-110, -90))); // NOI18N.
+        // Across the seam of the grid: the western part first.
+        assertEquals("34:35 0:2", toString(axis.findLongitudeRanges(-20, 20))); // NOI18N.
+        assertEquals("35:35 0:1", toString(axis.findLongitudeRanges(350, 10))); // NOI18N.
+        assertEquals("35:35 0:0", toString(axis.findLongitudeRanges(345, 5))); // NOI18N.
+        assertEquals("0:0", toString(axis.findLongitudeRanges(355, 5))); // NOI18N.
+    }
+
+    @Test
+    public void testLongitudesMinus180To180() {
+        final Axis axis = createAxis(-180, 10, 36);
+        assertEquals("20:22", toString(axis.findLongitudeRanges(20, 40))); // NOI18N.
+        assertEquals("20:22", toString(axis.findLongitudeRanges(380, 400))); // NOI18N.
+        // Bounds in the other convention.
+        assertEquals("7:9", toString(axis.findLongitudeRanges(250, 270))); // NOI18N.
+        // Across the antimeridian, which is the seam of the grid.
+        assertEquals("35:35 0:1", toString(axis.findLongitudeRanges(170, -170))); // NOI18N.
+        assertEquals("35:35 0:1", toString(axis.findLongitudeRanges(170, 190))); // NOI18N.
+        // West greater than east: everything but the gap between them.
+        assertEquals("19:35 0:18", toString(axis.findLongitudeRanges(10, 5))); // NOI18N.
+        assertEquals("19:35 0:17", toString(axis.findLongitudeRanges(10, -5))); // NOI18N.
+    }
+
+    @Test
+    public void testLongitudesFullCircle() {
+        final Axis axis = createAxis(-180, 10, 36);
+        assertEquals("0:35", toString(axis.findLongitudeRanges(-180, 180))); // NOI18N.
+        assertEquals("0:35", toString(axis.findLongitudeRanges(0, 360))); // NOI18N.
+        assertEquals("0:35", toString(axis.findLongitudeRanges(10, 370))); // NOI18N.
+        assertEquals("0:35", toString(axis.findLongitudeRanges(0, 720))); // NOI18N.
+    }
+
+    @Test
+    public void testLongitudesDecreasing() {
+        final Axis axis = createAxis(350, -10, 36);
+        assertEquals("31:33", toString(axis.findLongitudeRanges(20, 40))); // NOI18N.
+        assertEquals("0:0 34:35", toString(axis.findLongitudeRanges(350, 10))); // NOI18N.
+        assertEquals("0:35", toString(axis.findLongitudeRanges(0, 360))); // NOI18N.
+    }
+
+    @Test
+    public void testLongitudesNoMatch() {
+        assertEquals("", toString(createAxis(0, 10, 36).findLongitudeRanges(21, 29))); // NOI18N.
+        assertEquals("", toString(createAxis(-180, 10, 36).findLongitudeRanges(171, 179))); // NOI18N.
+        // A regional grid outside the box.
+        assertEquals("", toString(createAxis(100, 1, 50).findLongitudeRanges(-20, 20))); // NOI18N.
+        assertEquals("", toString(createAxis(100, 1, 50).findLongitudeRanges(150, 99))); // NOI18N.
+    }
+}
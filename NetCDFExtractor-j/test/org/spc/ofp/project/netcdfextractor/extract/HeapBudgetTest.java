@@ -0,0 +1,105 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests {@code HeapBudget}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class HeapBudgetTest {
+
+    private List<MemoryPoolMXBean> pools;
+    private long[] usageThresholds;
+    private long[] collectionUsageThresholds;
+
+    @Before
+    public void setUp() {
+        pools = ManagementFactory.getMemoryPoolMXBeans()
+                .stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.getUsage().getMax() > 0)
+                .collect(Collectors.toList());
+        usageThresholds = pools.stream()
+                .mapToLong(MemoryPoolMXBean::getUsageThreshold)
+                .toArray();
+        collectionUsageThresholds = pools.stream()
+                .mapToLong(pool -> pool.isCollectionUsageThresholdSupported() ? pool.getCollectionUsageThreshold() : 0)
+                .toArray();
+    }
+
+    /**
+     * Restores the thresholds, which are shared by the whole JVM.
+     */
+    @After
+    public void tearDown() {
+        for (int index = 0; index < pools.size(); index++) {
+            final MemoryPoolMXBean pool = pools.get(index);
+            pool.setUsageThreshold(usageThresholds[index]);
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(collectionUsageThresholds[index]);
+            }
+        }
+    }
+
+    @Test
+    public void testExistingThresholdsAreKept() {
+        for (final MemoryPoolMXBean pool : pools) {
+            // Set by someone else, well above the usage of the pool.
+            final long threshold = pool.getUsage().getMax() - 1;
+            pool.setUsageThreshold(threshold);
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(threshold);
+            }
+        }
+        final HeapBudget budget = new HeapBudget(0);
+        for (final MemoryPoolMXBean pool : pools) {
+            final long threshold = pool.getUsage().getMax() - 1;
+            assertEquals(pool.getName(), threshold, pool.isCollectionUsageThresholdSupported() ? pool.getCollectionUsageThreshold() : pool.getUsageThreshold());
+        }
+        // The tests use far less than three quarters of the heap.
+        assertFalse(budget.isUnderPressure());
+    }
+
+    @Test
+    public void testMissingThresholdsAreSet() {
+        for (final MemoryPoolMXBean pool : pools) {
+            pool.setUsageThreshold(0);
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(0);
+            }
+        }
+        final HeapBudget budget = new HeapBudget(0);
+        for (final MemoryPoolMXBean pool : pools) {
+            final long threshold = (long) (pool.getUsage().getMax() * HeapBudget.PRESSURE_THRESHOLD);
+            assertEquals(pool.getName(), threshold, pool.isCollectionUsageThresholdSupported() ? pool.getCollectionUsageThreshold() : pool.getUsageThreshold());
+        }
+        assertFalse(budget.isUnderPressure());
+        // A second budget finds the thresholds set by the first one and measures the pools itself.
+        assertFalse(new HeapBudget(0).isUnderPressure());
+    }
+
+    @Test
+    public void testSlabSize() {
+        final HeapBudget budget = new HeapBudget(64L << 20);
+        assertEquals(64L << 20, budget.getSize());
+        // 64 MiB shared by 2 workers, 8 MiB reserved each, 3 slabs at once.
+        assertEquals((32L << 20) - (8L << 20), 3 * budget.getSlabSize(2, 3, 8L << 20, Long.MAX_VALUE));
+        assertEquals(SlabReader.MIN_SLAB_SIZE, budget.getSlabSize(2, 3, 8L << 20, 1));
+        assertEquals(SlabReader.MIN_SLAB_SIZE, budget.getSlabSize(1000, 3, 0, Long.MAX_VALUE));
+        assertEquals(Runtime.getRuntime().maxMemory(), new HeapBudget(Long.MAX_VALUE).getSize());
+        assertEquals(HeapBudget.defaultSize(), new HeapBudget(0).getSize());
+    }
+}
@@ -0,0 +1,209 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+
+/**
+ * Tests {@code JdbcRowWriter} against an in-memory H2 database.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class JdbcRowWriterTest {
+
+    private static final AtomicInteger DATABASE_COUNT = new AtomicInteger();
+    private static final String TABLE = "sst data"; // NOI18N.
+    private static final String[] COLUMN_NAMES = {"time", "lat", "sst"}; // NOI18N.
+    private static final int TIME_COUNT = 5;
+    private static final int LATITUDE_COUNT = 4;
+    private static final float FILL_VALUE = -999f;
+
+    private String url;
+    /**
+     * Keeps the in-memory database alive during the test.
+     */
+    private Connection connection;
+    private Axis[] axes;
+    private ValueDecoder decoder;
+    private Slab slab;
+
+    @Before
+    public void setUp() throws SQLException {
+        url = String.format("jdbc:h2:mem:jdbc-row-writer-%d", DATABASE_COUNT.incrementAndGet()); // NOI18N.
+        connection = DriverManager.getConnection(url);
+        try (final Statement statement = connection.createStatement()) {
+            // Quoted lower-case names: unquoted names would not match them.
+            statement.execute("CREATE TABLE \"sst data\" (\"time\" TIMESTAMP, \"lat\" REAL, \"sst\" DOUBLE)"); // NOI18N.
+        }
+        final ZonedDateTime startDate = ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        axes = new Axis[]{
+            Axis.ofTimes("time", Array.factory(DataType.INT, new int[]{TIME_COUNT}, new int[]{0, 1, 2, 3, 4}), startDate, 1, ChronoUnit.DAYS), // NOI18N.
+            Axis.ofCoordinates("lat", Array.factory(DataType.FLOAT, new int[]{LATITUDE_COUNT}, new float[]{-1.5f, -0.5f, 0.5f, 1.5f})) // NOI18N.
+        };
+        decoder = new ValueDecoder(new DataType[]{DataType.FLOAT}, new Number[]{FILL_VALUE}, new Number[]{Float.NaN}, new Number[]{1f}, new Number[]{0f},
+                new Number[]{-Double.MAX_VALUE}, new Number[]{Double.MAX_VALUE});
+        // Value of (t, y) is 10 * t + y, every third value is the fill value.
+        final float[] values = new float[TIME_COUNT * LATITUDE_COUNT];
+        for (int cell = 0; cell < values.length; cell++) {
+            values[cell] = (cell % 3 == 2) ? FILL_VALUE : 10 * (cell / LATITUDE_COUNT) + (cell % LATITUDE_COUNT);
+        }
+        slab = new Slab(new int[]{0, 0}, new int[]{TIME_COUNT, LATITUDE_COUNT}, new Array[]{Array.factory(DataType.FLOAT, new int[]{TIME_COUNT, LATITUDE_COUNT}, values)});
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    private JdbcRowWriter createWriter(final int connectionCount, final int batchSize) throws SQLException {
+        return new JdbcRowWriter(url, null, null, TABLE, COLUMN_NAMES, connectionCount, batchSize, axes, decoder);
+    }
+
+    private int countRows() throws SQLException {
+        try (final Statement statement = connection.createStatement();
+                final ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM \"sst data\"")) { // NOI18N.
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
+    /**
+     * Checks that the table holds each row of the slab exactly once.
+     */
+    private void assertRows() throws SQLException {
+        final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC")); // NOI18N.
+        final List<String> rows = new ArrayList<>();
+        try (final Statement statement = connection.createStatement();
+                final ResultSet result = statement.executeQuery("SELECT \"time\", \"lat\", \"sst\" FROM \"sst data\" ORDER BY \"time\", \"lat\"")) { // NOI18N.
+            while (result.next()) {
+                final Instant time = result.getTimestamp(1, utc).toInstant();
+                final float latitude = result.getFloat(2);
+                final double value = result.getDouble(3);
+                rows.add(String.format("%s %s %s", time, latitude, result.wasNull() ? "NULL" : String.valueOf(value))); // NOI18N.
+            }
+        }
+        assertEquals(TIME_COUNT * LATITUDE_COUNT, rows.size());
+        for (int cell = 0; cell < rows.size(); cell++) {
+            final int time = cell / LATITUDE_COUNT;
+            final int latitude = cell % LATITUDE_COUNT;
+            final String value = (cell % 3 == 2) ? "NULL" : String.valueOf((double) (10 * time + latitude)); // NOI18N.
+            final String expected = String.format("%s %s %s", axes[0].getInstant(time), axes[1].getCoordinate(latitude), value); // NOI18N.
+            assertEquals(expected, rows.get(cell));
+        }
+    }
+
+    @Test
+    public void testSingleConnection() throws SQLException, InterruptedException {
+        try (final JdbcRowWriter writer = createWriter(1, 1000)) {
+            writer.write(slab, 0, slab.getSize());
+            writer.commit();
+        }
+        assertRows();
+    }
+
+    @Test
+    public void testBatchesAndPartitions() throws SQLException, InterruptedException {
+        // Batches do not divide partitions evenly and ranges do not divide the slab evenly.
+        try (final JdbcRowWriter writer = createWriter(3, 2)) {
+            writer.write(slab, 0, 7);
+            writer.write(slab, 7, 8);
+            writer.write(slab, 8, slab.getSize());
+            writer.commit();
+        }
+        assertRows();
+    }
+
+    @Test
+    public void testInvalidValuesAreNull() throws SQLException, InterruptedException {
+        try (final JdbcRowWriter writer = createWriter(2, 3)) {
+            writer.write(slab, 0, slab.getSize());
+            writer.commit();
+        }
+        try (final Statement statement = connection.createStatement();
+                final ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM \"sst data\" WHERE \"sst\" IS NULL")) { // NOI18N.
+            assertTrue(result.next());
+            assertEquals(TIME_COUNT * LATITUDE_COUNT / 3, result.getInt(1));
+        }
+        try (final Statement statement = connection.createStatement();
+                final ResultSet result = statement.executeQuery("SELECT \"sst\" FROM \"sst data\" WHERE \"sst\" = " + FILL_VALUE)) { // NOI18N.
+            assertFalse("fill value inserted", result.next()); // NOI18N.
+        }
+    }
+
+    @Test
+    public void testRollbackOnCloseWithoutCommit() throws SQLException, InterruptedException {
+        try (final JdbcRowWriter writer = createWriter(2, 3)) {
+            writer.write(slab, 0, slab.getSize());
+        }
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void testLoadAgainDoesNotDuplicateRows() throws SQLException, InterruptedException, InvalidRangeException {
+        final List<Section> sections = Collections.singletonList(new Section(new int[]{0, 0}, new int[]{TIME_COUNT, LATITUDE_COUNT}));
+        for (int load = 0; load < 2; load++) {
+            try (final JdbcRowWriter writer = createWriter(2, 3)) {
+                writer.deleteRows(sections);
+                writer.write(slab, 0, slab.getSize());
+                writer.commit();
+            }
+        }
+        assertRows();
+    }
+
+    @Test
+    public void testDeleteRowsKeepsRowsOutsideSections() throws SQLException, InterruptedException, InvalidRangeException {
+        try (final JdbcRowWriter writer = createWriter(1, 1000)) {
+            writer.write(slab, 0, slab.getSize());
+            writer.commit();
+        }
+        // Times 1 to 2, latitudes 1 to 2.
+        try (final JdbcRowWriter writer = createWriter(1, 1000)) {
+            writer.deleteRows(Collections.singletonList(new Section(new int[]{1, 1}, new int[]{2, 2})));
+        }
+        assertEquals(TIME_COUNT * LATITUDE_COUNT - 4, countRows());
+        final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC")); // NOI18N.
+        try (final Statement statement = connection.createStatement();
+                final ResultSet result = statement.executeQuery("SELECT \"time\", \"lat\" FROM \"sst data\"")) { // NOI18N.
+            while (result.next()) {
+                final Instant time = result.getTimestamp(1, utc).toInstant();
+                final float latitude = result.getFloat(2);
+                final boolean inTimes = !time.isBefore(axes[0].getInstant(1)) && !time.isAfter(axes[0].getInstant(2));
+                final boolean inLatitudes = latitude >= -0.5f && latitude <= 0.5f;
+                assertFalse(String.format("%s %s", time, latitude), inTimes && inLatitudes); // NOI18N.
+            }
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testUnquotedNameDoesNotMatch() throws SQLException {
+        // Fails to prepare the insert statement.
+        new JdbcRowWriter(url, null, null, "SST DATA", COLUMN_NAMES, 1, 1000, axes, decoder).close(); // NOI18N.
+    }
+}
@@ -0,0 +1,138 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Tests {@code PartitionRouter}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class PartitionRouterTest {
+
+    private static final ZonedDateTime START_DATE = ZonedDateTime.of(2016, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    /**
+     * Creates a time axis, in days since the start of 2016.
+     */
+    private static Axis createTimeAxis(final int... days) {
+        return Axis.ofTimes("time", Array.factory(DataType.INT, new int[]{days.length}, days), START_DATE, 1, ChronoUnit.DAYS); // NOI18N.
+    }
+
+    private static Axis createAxis(final String name, final float... coordinates) {
+        return Axis.ofCoordinates(name, Array.factory(DataType.FLOAT, new int[]{coordinates.length}, coordinates));
+    }
+
+    /**
+     * Gets the directory of each cell of a grid, in row order.
+     */
+    private static List<String> getDirectories(final PartitionRouter router, final int... shape) {
+        final Slab slab = new Slab(new int[shape.length], shape, new Array[0]);
+        final Odometer position = new Odometer(slab, 0);
+        final List<String> result = new ArrayList<>();
+        final long count = Odometer.count(shape);
+        for (long cell = 0; cell < count; cell++, position.next()) {
+            result.add(router.getDirectory(router.getKey(position)));
+        }
+        return result;
+    }
+
+    @Test
+    public void testPeriods() {
+        // 31 Jan, 1 Feb, 29 Feb and 1 Mar 2016.
+        final Axis[] axes = {createTimeAxis(30, 31, 59, 60), createAxis("lat", -10, 10)}; // NOI18N.
+        final PartitionRouter router = PartitionRouter.ofPeriods(PartitionLayout.MONTH, axes, 0);
+        assertFalse(router.isFlat());
+        assertEquals(Arrays.asList("year=2016/month=01", "year=2016/month=01", // NOI18N.
+                "year=2016/month=02", "year=2016/month=02", // NOI18N.
+                "year=2016/month=02", "year=2016/month=02", // NOI18N.
+                "year=2016/month=03", "year=2016/month=03"), getDirectories(router, 4, 2)); // NOI18N.
+        assertEquals(Arrays.asList("year=2016", "year=2016", "year=2016", "year=2016"), // NOI18N.
+                getDirectories(PartitionRouter.ofPeriods(PartitionLayout.YEAR, axes, 0), 4, 1));
+        assertEquals(Arrays.asList("year=2016/month=01/day=31", "year=2016/month=02/day=29"), // NOI18N.
+                getDirectories(PartitionRouter.ofPeriods(PartitionLayout.DAY, new Axis[]{createTimeAxis(30, 59)}, 0), 2));
+    }
+
+    @Test
+    public void testPeriodsWithoutTime() {
+        final Axis[] axes = {createAxis("lat", -10, 10)}; // NOI18N.
+        final PartitionRouter router = PartitionRouter.ofPeriods(PartitionLayout.MONTH, axes, -1);
+        assertTrue(router.isFlat());
+        assertEquals(Arrays.asList("", ""), getDirectories(router, 2)); // NOI18N.
+    }
+
+    @Test
+    public void testTiles() {
+        final Axis[] axes = {createTimeAxis(0), createAxis("lat", -7.5f, -2.5f, 0, 2.5f), createAxis("lon", 177.5f, Float.NaN)}; // NOI18N.
+        final PartitionRouter router = PartitionRouter.ofTiles(axes, 1, 2, 5);
+        assertEquals(Arrays.asList("lat=-10/lon=175", "lat=-10/lon=NaN", // NOI18N.
+                "lat=-5/lon=175", "lat=-5/lon=NaN", // NOI18N.
+                "lat=0/lon=175", "lat=0/lon=NaN", // NOI18N.
+                "lat=0/lon=175", "lat=0/lon=NaN"), getDirectories(router, 1, 4, 2)); // NOI18N.
+    }
+
+    @Test
+    public void testFractionalTiles() {
+        final Axis[] axes = {createAxis("lat", -0.1f, 0.3f, 0.6f)}; // NOI18N.
+        final PartitionRouter router = PartitionRouter.ofTiles(axes, 0, -1, 0.5);
+        assertEquals(Arrays.asList("lat=-0.5", "lat=0", "lat=0.5"), getDirectories(router, 3)); // NOI18N.
+    }
+
+    @Test
+    public void testKeysFollowAxisOrder() {
+        final Axis[] axes = {createAxis("lat", 0, 10), createAxis("lon", 0, 10)}; // NOI18N.
+        final PartitionRouter router = PartitionRouter.ofTiles(axes, 0, 1, 10);
+        final Odometer position = new Odometer(new Slab(new int[2], new int[]{2, 2}, new Array[0]), 0);
+        final List<Long> keys = new ArrayList<>();
+        for (int cell = 0; cell < 4; cell++, position.next()) {
+            keys.add(router.getKey(position));
+        }
+        // Sorting by key sorts rows by directory, latitude first.
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), keys);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPeriodsOfTileLayout() {
+        PartitionRouter.ofPeriods(PartitionLayout.TILE, new Axis[]{createTimeAxis(0)}, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTileSize() {
+        PartitionRouter.ofTiles(new Axis[]{createAxis("lat", 0)}, 0, -1, 0); // NOI18N.
+    }
+
+    @Test
+    public void testRuns() {
+        final PartitionRouter.Runs runs = new PartitionRouter.Runs();
+        final long[] keys = {3, 3, 1, 1, 1, 3};
+        for (int row = 0; row < keys.length; row++) {
+            runs.add(keys[row], 10 * row);
+        }
+        assertEquals(3, runs.size());
+        assertEquals(Arrays.asList(3L, 1L, 3L), Arrays.asList(runs.getKey(0), runs.getKey(1), runs.getKey(2)));
+        assertEquals(Arrays.asList(0, 20, 50), Arrays.asList(runs.getOffset(0), runs.getOffset(1), runs.getOffset(2)));
+        assertEquals(Arrays.asList(2, 3, 1), Arrays.asList(runs.getRowCount(0), runs.getRowCount(1), runs.getRowCount(2)));
+        runs.clear();
+        assertEquals(0, runs.size());
+        // Grows past its initial capacity.
+        for (int row = 0; row < 40; row++) {
+            runs.add(row, row);
+        }
+        assertEquals(40, runs.size());
+        assertEquals(39, runs.getKey(39));
+    }
+}
@@ -0,0 +1,199 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Round-trips rows through {@code PostgresBinaryRowEncoder} and a reader written from the PostgreSQL binary {@code COPY} format specification.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class PostgresBinaryRowEncoderTest {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z"); // NOI18N.
+
+    /**
+     * Reads a binary {@code COPY} file: header, tuples and trailer, all in network byte order.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    private static final class CopyReader {
+
+        private final ByteBuffer buffer;
+
+        CopyReader(final byte[] bytes) {
+            buffer = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+        }
+
+        /**
+         * Reads and checks the header.
+         */
+        void readHeader() {
+            final byte[] signature = new byte[SIGNATURE.length];
+            buffer.get(signature);
+            assertArrayEquals("signature", SIGNATURE, signature); // NOI18N.
+            assertEquals("flags", 0, buffer.getInt()); // NOI18N.
+            final int extensionLength = buffer.getInt();
+            assertEquals("header extension length", 0, extensionLength); // NOI18N.
+        }
+
+        /**
+         * Reads a tuple.
+         * @return The fields of the tuple, {@code null} for {@code NULL} fields; {@code null} once the trailer is read.
+         */
+        byte[][] readTuple() {
+            final short fieldCount = buffer.getShort();
+            if (fieldCount == -1) {
+                return null;
+            }
+            final byte[][] result = new byte[fieldCount][];
+            for (int field = 0; field < fieldCount; field++) {
+                final int length = buffer.getInt();
+                if (length == -1) {
+                    continue;
+                }
+                result[field] = new byte[length];
+                buffer.get(result[field]);
+            }
+            return result;
+        }
+
+        boolean hasRemaining() {
+            return buffer.hasRemaining();
+        }
+    }
+
+    private static ByteBuffer wrap(final byte[] field) {
+        return ByteBuffer.wrap(field).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private static Instant toTimestamptz(final byte[] field) {
+        assertEquals("timestamptz length", Long.BYTES, field.length); // NOI18N.
+        return POSTGRES_EPOCH.plus(wrap(field).getLong(), ChronoUnit.MICROS);
+    }
+
+    private static float toFloat4(final byte[] field) {
+        assertEquals("float4 length", Float.BYTES, field.length); // NOI18N.
+        return wrap(field).getFloat();
+    }
+
+    private static double toFloat8(final byte[] field) {
+        assertEquals("float8 length", Double.BYTES, field.length); // NOI18N.
+        return wrap(field).getDouble();
+    }
+
+    /**
+     * Encodes a whole file: header, all rows of a slab and trailer.
+     */
+    private static byte[] encode(final PostgresBinaryRowEncoder encoder, final Slab slab) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PostgresBinaryRowEncoder.writeFileHeader(out);
+        final RowBuffer buffer = new RowBuffer();
+        encoder.encodeRows(slab, 0, slab.getSize(), buffer);
+        buffer.writeTo(out);
+        PostgresBinaryRowEncoder.writeFileTrailer(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PostgresBinaryRowEncoder.writeFileHeader(out);
+        PostgresBinaryRowEncoder.writeFileTrailer(out);
+        final CopyReader reader = new CopyReader(out.toByteArray());
+        reader.readHeader();
+        assertNull(reader.readTuple());
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        // 2 times x 2 latitudes; a float variable and a packed short variable.
+        final ZonedDateTime startDate = ZonedDateTime.of(1950, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        final Axis[] axes = {
+            Axis.ofTimes("time", Array.factory(DataType.INT, new int[]{2}, new int[]{0, 18262}), startDate, 1, ChronoUnit.DAYS), // NOI18N.
+            Axis.ofCoordinates("lat", Array.factory(DataType.FLOAT, new int[]{2}, new float[]{-10.5f, 20.25f})) // NOI18N.
+        };
+        final int[] shape = {2, 2};
+        final Array sst = Array.factory(DataType.FLOAT, shape, new float[]{1.5f, -999f, Float.NaN, 28.75f});
+        final Array packed = Array.factory(DataType.SHORT, shape, new short[]{0, 150, -32767, -150});
+        final Slab slab = new Slab(new int[]{0, 0}, shape, new Array[]{sst, packed});
+        final PostgresBinaryRowEncoder encoder = new PostgresBinaryRowEncoder(axes,
+                new DataType[]{DataType.FLOAT, DataType.SHORT},
+                new Number[]{-999f, (short) -32767},
+                new Number[]{Float.NaN, Float.NaN},
+                new Number[]{1f, 0.01f},
+                new Number[]{0f, 20f},
+                new Number[]{-Double.MAX_VALUE, -Double.MAX_VALUE},
+                new Number[]{Double.MAX_VALUE, Double.MAX_VALUE});
+        final CopyReader reader = new CopyReader(encode(encoder, slab));
+        reader.readHeader();
+        final List<byte[][]> tuples = new ArrayList<>();
+        byte[][] tuple;
+        while ((tuple = reader.readTuple()) != null) {
+            tuples.add(tuple);
+        }
+        assertFalse("data after the trailer", reader.hasRemaining()); // NOI18N.
+        assertEquals(4, tuples.size());
+        for (final byte[][] fields : tuples) {
+            assertEquals("field count", 4, fields.length); // NOI18N.
+        }
+        // Time axis as microseconds since 2000-01-01, including dates before it.
+        assertEquals(Instant.parse("1950-01-01T00:00:00Z"), toTimestamptz(tuples.get(0)[0])); // NOI18N.
+        assertEquals(Instant.parse("2000-01-01T00:00:00Z"), toTimestamptz(tuples.get(2)[0])); // NOI18N.
+        assertArrayEquals(new byte[Long.BYTES], tuples.get(2)[0]);
+        // Other axes as float4.
+        assertEquals(-10.5f, toFloat4(tuples.get(0)[1]), 0);
+        assertEquals(20.25f, toFloat4(tuples.get(1)[1]), 0);
+        assertEquals(-10.5f, toFloat4(tuples.get(2)[1]), 0);
+        // Variables as float8, invalid values as NULL.
+        assertEquals(1.5, toFloat8(tuples.get(0)[2]), 0);
+        assertNull("fill value", tuples.get(1)[2]); // NOI18N.
+        assertNull("NaN", tuples.get(2)[2]); // NOI18N.
+        assertEquals(28.75, toFloat8(tuples.get(3)[2]), 0);
+        assertEquals(20, toFloat8(tuples.get(0)[3]), 1e-6);
+        assertEquals(21.5, toFloat8(tuples.get(1)[3]), 1e-6);
+        assertNull("packed fill value", tuples.get(2)[3]); // NOI18N.
+        assertEquals(18.5, toFloat8(tuples.get(3)[3]), 1e-6);
+    }
+
+    @Test
+    public void testRowsAreIndependentOfPartitions() throws IOException {
+        final Axis[] axes = {Axis.ofIndices("x", 5)}; // NOI18N.
+        final Slab slab = new Slab(new int[]{0}, new int[]{5}, new Array[]{Array.factory(DataType.INT, new int[]{5}, new int[]{1, 2, 3, 4, 5})});
+        final PostgresBinaryRowEncoder encoder = new PostgresBinaryRowEncoder(axes,
+                new DataType[]{DataType.INT}, new Number[]{Float.NaN}, new Number[]{Float.NaN}, new Number[]{1f}, new Number[]{0f},
+                new Number[]{-Double.MAX_VALUE}, new Number[]{Double.MAX_VALUE});
+        final RowBuffer whole = new RowBuffer();
+        encoder.encodeRows(slab, 0, 5, whole);
+        final RowBuffer split = new RowBuffer();
+        encoder.encodeRows(slab, 0, 2, split);
+        encoder.encodeRows(slab, 2, 5, split);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        whole.writeTo(expected);
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        split.writeTo(actual);
+        assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+}
@@ -0,0 +1,202 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the number layouts of {@code RowBuffer}.
+ * <br>Before Java 19, {@code Double.toString()} and {@code Float.toString()} sometimes give a longer or a farther decimal than the shortest one; the layouts are only compared when both give the same decimal.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class RowBufferTest {
+
+    private static final int RANDOM_COUNT = 20_000;
+    private static final int FIXED_RANDOM_COUNT = 2_000;
+    private static final int MAX_PRECISION = 6;
+
+    private static String format(final double value) {
+        return new String(new RowBuffer().append(value).toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String format(final float value) {
+        return new String(new RowBuffer().append(value).toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String format(final double value, final int precision) {
+        return new String(new RowBuffer().append(value, precision).toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that a {@code double} is written with the layout of {@code Double.toString()} and is read back as the same value.
+     * @return {@code True} if {@code Double.toString()} gives the same decimal.
+     */
+    private static boolean check(final double value) {
+        final String text = format(value);
+        final String expected = Double.toString(value);
+        assertEquals(expected, value, Double.parseDouble(text), 0);
+        final boolean sameDecimal = new BigDecimal(text).compareTo(new BigDecimal(expected)) == 0;
+        if (sameDecimal) {
+            assertEquals(expected, text);
+        } else {
+            assertTrue(expected + " " + text, getDigitCount(text) <= getDigitCount(expected));
+        }
+        return sameDecimal;
+    }
+
+    private static void check(final float value) {
+        final String text = format(value);
+        final String expected = Float.toString(value);
+        assertEquals(expected, value, Float.parseFloat(text), 0);
+        if (new BigDecimal(text).compareTo(new BigDecimal(expected)) == 0) {
+            assertEquals(expected, text);
+        } else {
+            assertTrue(expected + " " + text, getDigitCount(text) <= getDigitCount(expected));
+        }
+    }
+
+    /**
+     * Gets the number of significant digits of a decimal; at least 2, as in {@code 1.0E-323}.
+     */
+    private static int getDigitCount(final String text) {
+        return Math.max(2, new BigDecimal(text).stripTrailingZeros().precision());
+    }
+
+    /**
+     * Checks a {@code double} with a fixed number of decimals against its shortest decimal rounded half-up, and against {@code String.format()} when {@code Double.toString()} gives the shortest decimal.
+     */
+    private static void checkFixed(final double value) {
+        final boolean sameDecimal = check(value);
+        for (int precision = 0; precision <= MAX_PRECISION; precision++) {
+            final String text = format(value, precision);
+            final BigDecimal rounded = new BigDecimal(format(value)).setScale(precision, RoundingMode.HALF_UP);
+            // Negative values keep their sign once rounded to zero.
+            final String expected = ((Double.doubleToRawLongBits(value) < 0) ? "-" : "") + rounded.abs().toPlainString(); // NOI18N.
+            assertEquals(value + " " + precision, expected, text);
+            if (sameDecimal) {
+                assertEquals(value + " " + precision, String.format(Locale.ROOT, "%." + precision + "f", value), text); // NOI18N.
+            }
+        }
+    }
+
+    @Test
+    public void testSpecialValues() {
+        assertEquals("NaN", format(Double.NaN)); // NOI18N.
+        assertEquals("Infinity", format(Double.POSITIVE_INFINITY)); // NOI18N.
+        assertEquals("-Infinity", format(Float.NEGATIVE_INFINITY)); // NOI18N.
+        assertEquals("0.0", format(0.0)); // NOI18N.
+        assertEquals("-0.0", format(-0.0)); // NOI18N.
+        assertEquals("-0.0", format(-0.0f)); // NOI18N.
+        assertEquals("NaN", format(Double.NaN, 2)); // NOI18N.
+        assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY, 2)); // NOI18N.
+        assertEquals("0", format(0.0, 0)); // NOI18N.
+        assertEquals("-0.000", format(-0.0, 3)); // NOI18N.
+        assertEquals("-0.0", format(-0.0, -1)); // NOI18N.
+    }
+
+    @Test
+    public void testLayout() {
+        for (final double value : new double[]{1, 10, 0.1, 0.001, 0.0001, 1.0E-5, 1234567, 9999999, 1.0E7, 12345678, 1.0E23, 0.1 + 0.2, -273.15, 1.0 / 3,
+            Double.MIN_VALUE, Math.nextDown(Double.MIN_NORMAL), Double.MIN_NORMAL, Double.MAX_VALUE, Long.MAX_VALUE}) {
+            check(value);
+            check(-value);
+        }
+        assertEquals("4.9E-324", format(Double.MIN_VALUE)); // NOI18N.
+        assertEquals("1.0E-5", format(1.0E-5)); // NOI18N.
+        assertEquals("0.001", format(0.001)); // NOI18N.
+        assertEquals("1.0E7", format(1.0E7)); // NOI18N.
+        assertEquals("9999999.0", format(9999999.0)); // NOI18N.
+        for (final float value : new float[]{1, 0.1f, 0.001f, 1.0E-4f, 1234567, 1.0E7f, 0.3f, 28.35f, Float.MIN_VALUE, Float.MIN_NORMAL, Float.MAX_VALUE}) {
+            check(value);
+            check(-value);
+        }
+        assertEquals("1.4E-45", format(Float.MIN_VALUE)); // NOI18N.
+        assertEquals("0.3", format(0.3f)); // NOI18N.
+    }
+
+    @Test
+    public void testPowers() {
+        for (int exponent = -1074; exponent <= 1023; exponent++) {
+            check(Math.scalb(1.0, exponent));
+        }
+        for (int exponent = -323; exponent <= 308; exponent++) {
+            final double value = Double.parseDouble("1E" + exponent); // NOI18N.
+            check(value);
+            check(Math.nextUp(value));
+            check(Math.nextDown(value));
+        }
+        for (int exponent = -45; exponent <= 38; exponent++) {
+            check(Float.parseFloat("1E" + exponent)); // NOI18N.
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        final Random random = new Random(42);
+        for (int count = 0; count < RANDOM_COUNT; count++) {
+            final double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value)) {
+                check(value);
+            }
+            final float floatValue = Float.intBitsToFloat(random.nextInt());
+            if (!Float.isNaN(floatValue)) {
+                check(floatValue);
+            }
+        }
+    }
+
+    @Test
+    public void testFixedPrecisionRounding() {
+        assertEquals("0.13", format(0.125, 2)); // NOI18N.
+        assertEquals("-0.13", format(-0.125, 2)); // NOI18N.
+        // 0.145 is slightly below 0.145 in binary, its shortest decimal is rounded.
+        assertEquals("0.15", format(0.145, 2)); // NOI18N.
+        assertEquals("3", format(2.5, 0)); // NOI18N.
+        assertEquals("10.00", format(9.995, 2)); // NOI18N.
+        assertEquals("1000", format(999.5, 0)); // NOI18N.
+        assertEquals("0.001", format(0.0005, 3)); // NOI18N.
+        assertEquals("0.000", format(0.00049, 3)); // NOI18N.
+        assertEquals("-0.000", format(-0.0004, 3)); // NOI18N.
+        assertEquals("1", format(0.5, 0)); // NOI18N.
+        assertEquals("0", format(0.49999999999999994, 0)); // NOI18N.
+        assertEquals("0.00", format(1.0E-300, 2)); // NOI18N.
+        assertEquals("100000000000000000000.00", format(1.0E20, 2)); // NOI18N.
+        assertEquals("123456789012345680.0", format(123456789012345678.0, 1)); // NOI18N.
+        assertEquals("28.35", format(28.35f, 2)); // NOI18N.
+        assertEquals("28.350000381", format(28.35f, 9)); // NOI18N.
+        assertEquals("0.1000000000", format(0.1, 10)); // NOI18N.
+        final StringBuilder expected = new StringBuilder("1"); // NOI18N.
+        for (int count = 0; count < 300; count++) {
+            expected.append('0');
+        }
+        assertEquals(expected + ".0", format(1.0E300, 1)); // NOI18N.
+    }
+
+    @Test
+    public void testFixedPrecision() {
+        for (final double value : new double[]{0.0, -0.0, 1, 0.5, 1.5, 0.05, 0.005, 0.0005, 0.00005, 0.000005, 0.0000005, 9.5, 99.95, 0.95, 1.0 / 3, 2.0 / 3, 273.15, 1.0E-7, 1.0E15, 1.0E16, 1.0E17}) {
+            checkFixed(value);
+            checkFixed(-value);
+        }
+        final Random random = new Random(42);
+        for (int count = 0; count < FIXED_RANDOM_COUNT; count++) {
+            // Values close to a rounding boundary: a 5 just after the kept decimals.
+            final double boundary = (random.nextInt(2_000_000) * 10 + 5) / Math.pow(10, random.nextInt(MAX_PRECISION + 2) + 1);
+            checkFixed(boundary);
+            checkFixed(Math.nextUp(boundary));
+            checkFixed(Math.nextDown(boundary));
+            checkFixed((double) ((random.nextInt(2_000_000) - 1_000_000) / 1000f));
+            checkFixed((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 8));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.function.Predicate;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@code ShortestDecimal} against decimals computed with {@code BigDecimal}.
+ * <br>{@code Double.toString()} is not used as a reference since it does not always give the shortest decimal before Java 19.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class ShortestDecimalTest {
+
+    private static final int RANDOM_COUNT = 5_000;
+
+    private final ShortestDecimal decimal = new ShortestDecimal();
+
+    /**
+     * Computes the decimal that {@code Double.toString()} gives since Java 19: among the decimals of shortest length that round to the value, the closest one, the one with an even last digit on ties.
+     * <br>A length of 2 is used when a single digit is enough, so that {@code Double.MIN_VALUE} gives 4.9E-324 rather than 5E-324.
+     * @param exact The exact value.
+     * @param roundsBack Tests whether a decimal rounds to the value.
+     * @return A {@code BigDecimal} instance, never {@code null}.
+     */
+    private static BigDecimal shortest(final BigDecimal exact, final Predicate<BigDecimal> roundsBack) {
+        for (int length = 1;; length++) {
+            final BigDecimal floor = exact.round(new MathContext(length, RoundingMode.FLOOR));
+            final BigDecimal ceiling = exact.round(new MathContext(length, RoundingMode.CEILING));
+            if (!roundsBack.test(floor) && !roundsBack.test(ceiling)) {
+                continue;
+            }
+            if (length == 1) {
+                return closest(exact, exact.round(new MathContext(2, RoundingMode.FLOOR)), exact.round(new MathContext(2, RoundingMode.CEILING)), roundsBack);
+            }
+            return closest(exact, floor, ceiling, roundsBack);
+        }
+    }
+
+    private static BigDecimal closest(final BigDecimal exact, final BigDecimal floor, final BigDecimal ceiling, final Predicate<BigDecimal> roundsBack) {
+        if (!roundsBack.test(ceiling)) {
+            return floor;
+        }
+        if (!roundsBack.test(floor)) {
+            return ceiling;
+        }
+        final int comparison = exact.subtract(floor).compareTo(ceiling.subtract(exact));
+        if (comparison == 0) {
+            return floor.unscaledValue().testBit(0) ? ceiling : floor;
+        }
+        return (comparison < 0) ? floor : ceiling;
+    }
+
+    private BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(decimal.significand, -decimal.exponent).stripTrailingZeros();
+    }
+
+    private void check(final double value) {
+        final double magnitude = Math.abs(value);
+        decimal.set(value);
+        final BigDecimal expected = shortest(new BigDecimal(magnitude), candidate -> Double.parseDouble(candidate.toString()) == magnitude).stripTrailingZeros();
+        assertEquals(Double.toString(value), expected, toBigDecimal());
+    }
+
+    private void check(final float value) {
+        final float magnitude = Math.abs(value);
+        decimal.set(value);
+        final BigDecimal expected = shortest(new BigDecimal(magnitude), candidate -> Float.parseFloat(candidate.toString()) == magnitude).stripTrailingZeros();
+        assertEquals(Float.toString(value), expected, toBigDecimal());
+    }
+
+    @Test
+    public void testDoubleExtremes() {
+        check(Double.MIN_VALUE);
+        check(2 * Double.MIN_VALUE);
+        check(3 * Double.MIN_VALUE);
+        check(Math.nextDown(Double.MIN_NORMAL));
+        check(Double.MIN_NORMAL);
+        check(Math.nextUp(Double.MIN_NORMAL));
+        check(Double.MAX_VALUE);
+        check(Math.nextDown(Double.MAX_VALUE));
+        check(-Double.MIN_VALUE);
+        assertEquals(new BigDecimal("4.9E-324"), toBigDecimal()); // NOI18N.
+    }
+
+    @Test
+    public void testDoublePowers() {
+        for (int exponent = -1074; exponent <= 1023; exponent++) {
+            final double value = Math.scalb(1.0, exponent);
+            check(value);
+            check(Math.nextUp(value));
+            check(Math.nextDown(value));
+        }
+        for (int exponent = -323; exponent <= 308; exponent++) {
+            final double value = Double.parseDouble("1E" + exponent); // NOI18N.
+            check(value);
+            check(Math.nextUp(value));
+            check(Math.nextDown(value));
+        }
+    }
+
+    @Test
+    public void testDoubleIntegers() {
+        for (long value = 1; value < 10_000; value++) {
+            check((double) value);
+        }
+        check(9_007_199_254_740_992.0);
+        check(9_007_199_254_740_994.0);
+        check(1.0E23);
+        check(0x1.0p63);
+    }
+
+    @Test
+    public void testDoubleRandom() {
+        final Random random = new Random(42);
+        for (int count = 0; count < RANDOM_COUNT; count++) {
+            final double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isFinite(value) && value != 0) {
+                check(value);
+            }
+            // Values such as the ones read from data files.
+            check((random.nextInt(2_000_000) + 1) / Math.pow(10, random.nextInt(10)));
+        }
+    }
+
+    @Test
+    public void testFloatExtremes() {
+        check(Float.MIN_VALUE);
+        check(Math.nextDown(Float.MIN_NORMAL));
+        check(Float.MIN_NORMAL);
+        check(Float.MAX_VALUE);
+        check(-Float.MIN_VALUE);
+        assertEquals(new BigDecimal("1.4E-45"), toBigDecimal()); // NOI18N.
+    }
+
+    @Test
+    public void testFloatPowers() {
+        for (int exponent = -149; exponent <= 127; exponent++) {
+            final float value = Math.scalb(1.0f, exponent);
+            check(value);
+            check(Math.nextUp(value));
+            check(Math.nextDown(value));
+        }
+        for (int exponent = -45; exponent <= 38; exponent++) {
+            final float value = Float.parseFloat("1E" + exponent); // NOI18N.
+            check(value);
+            check(Math.nextUp(value));
+            check(Math.nextDown(value));
+        }
+    }
+
+    @Test
+    public void testFloatRandom() {
+        final Random random = new Random(42);
+        for (int count = 0; count < RANDOM_COUNT; count++) {
+            final float value = Float.intBitsToFloat(random.nextInt());
+            if (Float.isFinite(value) && value != 0) {
+                check(value);
+            }
+            check((random.nextInt(2_000_000) + 1) / (float) Math.pow(10, random.nextInt(6)));
+        }
+    }
+}
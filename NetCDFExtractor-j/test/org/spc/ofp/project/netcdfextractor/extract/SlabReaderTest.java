@@ -0,0 +1,150 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+
+/**
+ * Tests {@code SlabReader} on a small NetCDF file.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class SlabReaderTest {
+
+    private static final int TIME_COUNT = 3;
+    private static final int LATITUDE_COUNT = 4;
+    private static final int LONGITUDE_COUNT = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NetcdfFile netcdf;
+    private Variable[] variables;
+
+    /**
+     * Gets the value of a cell, which encodes its indices.
+     */
+    private static int getValue(final int time, final int latitude, final int longitude) {
+        return 100 * time + 10 * latitude + longitude;
+    }
+
+    @Before
+    public void setUp() throws IOException, InvalidRangeException {
+        final File file = new File(folder.getRoot(), "grid.nc"); // NOI18N.
+        final NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, file.getPath());
+        writer.addDimension(null, "time", TIME_COUNT); // NOI18N.
+        writer.addDimension(null, "lat", LATITUDE_COUNT); // NOI18N.
+        writer.addDimension(null, "lon", LONGITUDE_COUNT); // NOI18N.
+        final Variable variable = writer.addVariable(null, "v", DataType.INT, "time lat lon"); // NOI18N.
+        writer.create();
+        final int[] values = new int[TIME_COUNT * LATITUDE_COUNT * LONGITUDE_COUNT];
+        for (int cell = 0; cell < values.length; cell++) {
+            values[cell] = getValue(cell / (LATITUDE_COUNT * LONGITUDE_COUNT), cell / LONGITUDE_COUNT % LATITUDE_COUNT, cell % LONGITUDE_COUNT);
+        }
+        writer.write(variable, Array.factory(DataType.INT, new int[]{TIME_COUNT, LATITUDE_COUNT, LONGITUDE_COUNT}, values));
+        writer.close();
+        netcdf = NetcdfFile.open(file.getPath());
+        variables = new Variable[]{netcdf.findVariable("v")}; // NOI18N.
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        netcdf.close();
+    }
+
+    /**
+     * Reads sections and checks that each value matches the indices given by the odometer.
+     * @return The indices of each cell read, in order.
+     */
+    private List<String> read(final List<Section> sections) throws IOException, InvalidRangeException {
+        final List<String> result = new ArrayList<>();
+        final SlabReader reader = new SlabReader(variables, sections, 0);
+        while (reader.hasNext()) {
+            final Slab slab = reader.next();
+            final int[] values = (int[]) slab.getStorage(0);
+            final Odometer position = new Odometer(slab, 0);
+            for (int cell = 0; cell < slab.getSize(); cell++) {
+                assertEquals(getValue(position.get(0), position.get(1), position.get(2)), values[cell]);
+                result.add(String.format("%d,%d,%d", position.get(0), position.get(1), position.get(2))); // NOI18N.
+                position.next();
+            }
+        }
+        return result;
+    }
+
+    private static List<String> expected(final int[] times, final int[] latitudes, final int[] longitudes) {
+        final List<String> result = new ArrayList<>();
+        for (final int time : times) {
+            for (final int latitude : latitudes) {
+                for (final int longitude : longitudes) {
+                    result.add(String.format("%d,%d,%d", time, latitude, longitude)); // NOI18N.
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSingleSection() throws IOException, InvalidRangeException {
+        final List<Section> sections = Arrays.asList(new Section(new int[]{1, 1, 2}, new int[]{2, 2, 3}));
+        assertEquals(expected(new int[]{1, 2}, new int[]{1, 2}, new int[]{2, 3, 4}), read(sections));
+    }
+
+    @Test
+    public void testSeamIsInterleaved() throws IOException, InvalidRangeException {
+        // Both sides of the seam: rows stay in time and latitude order.
+        final List<Section> sections = Arrays.asList(
+                new Section(new int[]{0, 0, 7}, new int[]{TIME_COUNT, LATITUDE_COUNT, 3}),
+                new Section(new int[]{0, 0, 0}, new int[]{TIME_COUNT, LATITUDE_COUNT, 2}));
+        assertEquals(expected(new int[]{0, 1, 2}, new int[]{0, 1, 2, 3}, new int[]{7, 8, 9, 0, 1}), read(sections));
+    }
+
+    @Test
+    public void testJoinAlongOuterDimension() throws IOException, InvalidRangeException {
+        final List<Section> sections = Arrays.asList(
+                new Section(new int[]{0, 2, 0}, new int[]{TIME_COUNT, 2, LONGITUDE_COUNT}),
+                new Section(new int[]{0, 0, 0}, new int[]{TIME_COUNT, 1, LONGITUDE_COUNT}));
+        assertEquals(expected(new int[]{0, 1, 2}, new int[]{2, 3, 0}, new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}), read(sections));
+    }
+
+    @Test
+    public void testSectionsDifferingAlongSeveralDimensionsAreNotJoined() throws IOException, InvalidRangeException {
+        final List<Section> sections = Arrays.asList(
+                new Section(new int[]{2, 0, 0}, new int[]{1, 1, 2}),
+                new Section(new int[]{0, 3, 5}, new int[]{1, 1, 2}));
+        assertEquals(Arrays.asList("2,0,0", "2,0,1", "0,3,5", "0,3,6"), read(sections)); // NOI18N.
+    }
+
+    @Test
+    public void testSkip() throws IOException, InvalidRangeException {
+        // Resuming after any number of cells reads the rest, in the same order.
+        final List<Section> sections = Arrays.asList(
+                new Section(new int[]{0, 1, 8}, new int[]{TIME_COUNT, 3, 2}),
+                new Section(new int[]{0, 1, 0}, new int[]{TIME_COUNT, 3, 3}),
+                new Section(new int[]{1, 0, 0}, new int[]{1, 1, 1}));
+        final List<String> all = read(sections);
+        assertEquals(TIME_COUNT * 3 * 5 + 1, all.size());
+        for (int count = 0; count <= all.size() + 1; count++) {
+            assertEquals("skip " + count, all.subList(Math.min(count, all.size()), all.size()), read(SlabReader.skip(sections, count))); // NOI18N.
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import ucar.ma2.Array;
+
+/**
+ * Creates slabs for the tests of other packages, which cannot reach the constructor of {@code Slab}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public final class TestSlabs {
+
+    private TestSlabs() {
+    }
+
+    /**
+     * Creates a slab.
+     * @param origin The origin of the slab.
+     * @param shape The shape of the slab.
+     * @param data The values of each variable, with the shape of the slab.
+     * @return A {@code Slab} instance, never {@code null}.
+     */
+    public static Slab create(final int[] origin, final int[] shape, final Array... data) {
+        return new Slab(origin, shape, data);
+    }
+}
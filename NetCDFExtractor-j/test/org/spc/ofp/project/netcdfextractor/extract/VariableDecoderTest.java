@@ -0,0 +1,138 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Tests {@code VariableDecoder}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class VariableDecoderTest {
+
+    /**
+     * The default fill value of NetCDF for int64 variables.
+     */
+    private static final long DEFAULT_INT64_FILL = -9223372036854775806L;
+
+    private static DecodedColumn decode(final VariableDecoder decoder, final DataType dataType, final Object values) {
+        final int size = java.lang.reflect.Array.getLength(values);
+        final Slab slab = new Slab(new int[]{0}, new int[]{size}, new Array[]{Array.factory(dataType, new int[]{size}, values)});
+        final DecodedColumn column = new DecodedColumn();
+        decoder.decode(slab, 0, 0, size, column);
+        assertEquals(size, column.size());
+        return column;
+    }
+
+    @Test
+    public void testDefaultInt64FillValue() {
+        final VariableDecoder decoder = VariableDecoder.create(DataType.LONG, DEFAULT_INT64_FILL, Double.NaN, 1, 0, -Double.MAX_VALUE, Double.MAX_VALUE);
+        // Neighbours of the fill value are the same double.
+        final DecodedColumn column = decode(decoder, DataType.LONG, new long[]{DEFAULT_INT64_FILL, DEFAULT_INT64_FILL - 1, DEFAULT_INT64_FILL + 1, 0, Long.MAX_VALUE});
+        assertTrue(column.isIntegral());
+        assertFalse(column.isValid(0));
+        assertTrue(column.isValid(1));
+        assertTrue(column.isValid(2));
+        assertEquals(DEFAULT_INT64_FILL + 1, column.getLong(2));
+        assertTrue(column.isValid(3));
+        assertTrue(column.isValid(4));
+        assertEquals(Long.MAX_VALUE, column.getLong(4));
+    }
+
+    @Test
+    public void testLargeMissingValueAndValidRange() {
+        final long missing = (1L << 60) + 1;
+        final long min = (1L << 53) + 1;
+        final long max = (1L << 62) + 1;
+        final VariableDecoder decoder = VariableDecoder.create(DataType.LONG, Double.NaN, missing, 1, 0, min, max);
+        final DecodedColumn column = decode(decoder, DataType.LONG, new long[]{missing, missing - 1, min - 1, min, max, max + 1});
+        assertFalse(column.isValid(0));
+        assertTrue(column.isValid(1));
+        assertFalse(column.isValid(2));
+        assertTrue(column.isValid(3));
+        assertTrue(column.isValid(4));
+        assertFalse(column.isValid(5));
+    }
+
+    @Test
+    public void testFractionalValidRange() {
+        // Bounds that are not integers are rounded inwards.
+        final VariableDecoder decoder = VariableDecoder.create(DataType.INT, Double.NaN, Double.NaN, 1, 0, -1.5f, 2.5);
+        final DecodedColumn column = decode(decoder, DataType.INT, new int[]{-2, -1, 2, 3});
+        assertFalse(column.isValid(0));
+        assertTrue(column.isValid(1));
+        assertTrue(column.isValid(2));
+        assertFalse(column.isValid(3));
+    }
+
+    @Test
+    public void testNoFillValue() {
+        // Zero used to be taken as the fill value when there was none.
+        final VariableDecoder decoder = VariableDecoder.create(DataType.INT, Double.NaN, Double.NaN, 1, 0, -Double.MAX_VALUE, Double.MAX_VALUE);
+        final DecodedColumn column = decode(decoder, DataType.INT, new int[]{0, Integer.MIN_VALUE, Integer.MAX_VALUE});
+        for (int row = 0; row < column.size(); row++) {
+            assertTrue(column.isValid(row));
+        }
+    }
+
+    @Test
+    public void testFloatFillValueOnIntegerVariable() {
+        final VariableDecoder decoder = VariableDecoder.create(DataType.SHORT, -999f, 0.5f, 1, 0, -Double.MAX_VALUE, Double.MAX_VALUE);
+        final DecodedColumn column = decode(decoder, DataType.SHORT, new short[]{-999, 0, 1});
+        assertFalse(column.isValid(0));
+        // A missing value that is not an integer never matches.
+        assertTrue(column.isValid(1));
+        assertTrue(column.isValid(2));
+    }
+
+    @Test
+    public void testFractionalScaleFactor() {
+        final VariableDecoder decoder = VariableDecoder.create(DataType.SHORT, (short) -32768, Double.NaN, 0.01f, 20, -Double.MAX_VALUE, Double.MAX_VALUE);
+        final DecodedColumn column = decode(decoder, DataType.SHORT, new short[]{-32768, 0, 150, -2000});
+        // Packed values used to lose their scale.
+        assertFalse(column.isIntegral());
+        assertFalse(column.isValid(0));
+        assertEquals(20, column.getDouble(1), 0);
+        assertEquals(150 * (double) 0.01f + 20, column.getDouble(2), 0);
+        assertEquals(-2000 * (double) 0.01f + 20, column.getDouble(3), 0);
+    }
+
+    @Test
+    public void testFractionalAddOffset() {
+        final VariableDecoder decoder = VariableDecoder.create(DataType.INT, Double.NaN, Double.NaN, 2, 0.5, -Double.MAX_VALUE, Double.MAX_VALUE);
+        final DecodedColumn column = decode(decoder, DataType.INT, new int[]{3});
+        assertFalse(column.isIntegral());
+        assertEquals(6.5, column.getDouble(0), 0);
+    }
+
+    @Test
+    public void testIntegerScaleFactor() {
+        // Integer scales and offsets, even as floats, keep exact longs.
+        final VariableDecoder decoder = VariableDecoder.create(DataType.LONG, Double.NaN, Double.NaN, 10f, -3, -Double.MAX_VALUE, Double.MAX_VALUE);
+        final DecodedColumn column = decode(decoder, DataType.LONG, new long[]{(1L << 58) + 1});
+        assertTrue(column.isIntegral());
+        assertEquals(((1L << 58) + 1) * 10 - 3, column.getLong(0));
+    }
+
+    @Test
+    public void testFloatingPointVariable() {
+        final VariableDecoder decoder = VariableDecoder.create(DataType.FLOAT, -999f, 1e20f, 2, 1, 0, 100);
+        final DecodedColumn column = decode(decoder, DataType.FLOAT, new float[]{-999f, 1e20f, Float.NaN, -0.5f, 1.5f, 100.5f});
+        assertFalse(column.isIntegral());
+        assertFalse(column.isValid(0));
+        assertFalse(column.isValid(1));
+        assertFalse(column.isValid(2));
+        assertFalse(column.isValid(3));
+        assertTrue(column.isValid(4));
+        assertEquals(4, column.getDouble(4), 0);
+        assertFalse(column.isValid(5));
+    }
+}
@@ -0,0 +1,307 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.arrow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.spc.ofp.project.netcdfextractor.extract.Axis;
+import org.spc.ofp.project.netcdfextractor.extract.Slab;
+import org.spc.ofp.project.netcdfextractor.extract.TestSlabs;
+import org.spc.ofp.project.netcdfextractor.extract.ValueDecoder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Tests {@code ArrowFileWriter} with a reader written from the Arrow IPC file format specification.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class ArrowFileWriterTest {
+
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII); // NOI18N.
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final long UNIX_2000_MICROS = 946_684_800_000_000L;
+    private static final long DAY_MICROS = 86_400_000_000L;
+    private static final float FILL_VALUE = -999f;
+    private static final int TIME_COUNT = 3;
+    private static final int LATITUDE_COUNT = 10;
+
+    /**
+     * A decoded file.
+     */
+    private static final class ArrowFile {
+
+        final List<FlatBufferReader.Table> fields;
+        final List<Integer> batchLengths = new ArrayList<>();
+        final List<List<Object>> columns = new ArrayList<>();
+
+        ArrowFile(final List<FlatBufferReader.Table> fields) {
+            this.fields = fields;
+            for (int column = 0; column < fields.size(); column++) {
+                columns.add(new ArrayList<>());
+            }
+        }
+    }
+
+    private static float[] createValues() {
+        final float[] result = new float[TIME_COUNT * LATITUDE_COUNT];
+        for (int cell = 0; cell < result.length; cell++) {
+            result[cell] = (cell % 7 == 3) ? FILL_VALUE : (cell % 11 == 5) ? Float.NaN : 0.5f * cell;
+        }
+        return result;
+    }
+
+    private static ValueDecoder createDecoder() {
+        return new ValueDecoder(new DataType[]{DataType.FLOAT}, new Number[]{FILL_VALUE}, new Number[]{Float.NaN}, new Number[]{1f}, new Number[]{0f},
+                new Number[]{-Double.MAX_VALUE}, new Number[]{Double.MAX_VALUE});
+    }
+
+    private static float getLatitude(final int index) {
+        return -4.5f + index;
+    }
+
+    private static Axis[] createAxes() {
+        final ZonedDateTime startDate = ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        final float[] latitudes = new float[LATITUDE_COUNT];
+        for (int index = 0; index < latitudes.length; index++) {
+            latitudes[index] = getLatitude(index);
+        }
+        return new Axis[]{
+            Axis.ofTimes("time", Array.factory(DataType.INT, new int[]{TIME_COUNT}, new int[]{0, 1, 2}), startDate, 1, ChronoUnit.DAYS), // NOI18N.
+            Axis.ofCoordinates("lat", Array.factory(DataType.FLOAT, new int[]{LATITUDE_COUNT}, latitudes)) // NOI18N.
+        };
+    }
+
+    /**
+     * Writes the rows of {@code sourceCount} identical source files.
+     */
+    private static byte[] write(final long batchSize, final int sourceCount) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ArrowFileWriter writer = new ArrowFileWriter(out, batchSize);
+        final int[] shape = {TIME_COUNT, LATITUDE_COUNT};
+        final Slab slab = TestSlabs.create(new int[]{0, 0}, shape, Array.factory(DataType.FLOAT, shape, createValues()));
+        for (int source = 0; source < sourceCount; source++) {
+            writer.begin(createAxes(), new String[]{"sst"}, createDecoder()); // NOI18N.
+            // Ranges do not match record batches.
+            writer.write(slab, 0, 13);
+            writer.write(slab, 13, slab.getSize());
+            writer.end();
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads an encapsulated message.
+     * @return The message table.
+     */
+    private static FlatBufferReader.Table readMessage(final byte[] file, final int offset, final int metadataLength) {
+        final ByteBuffer prefix = ByteBuffer.wrap(file, offset, 8).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("continuation", CONTINUATION, prefix.getInt()); // NOI18N.
+        assertEquals("metadata length", metadataLength - 8, prefix.getInt()); // NOI18N.
+        final FlatBufferReader.Table message = new FlatBufferReader(file, offset + 8, metadataLength - 8).getRoot();
+        assertEquals("metadata version V5", 4, message.getShort(0, 0)); // NOI18N.
+        return message;
+    }
+
+    /**
+     * Reads a file and checks its framing.
+     */
+    private static ArrowFile read(final byte[] file) {
+        assertArrayEquals(Arrays.copyOf(MAGIC, 8), Arrays.copyOf(file, 8));
+        assertArrayEquals(MAGIC, Arrays.copyOfRange(file, file.length - MAGIC.length, file.length));
+        final int footerLength = ByteBuffer.wrap(file, file.length - MAGIC.length - 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        final int footerStart = file.length - MAGIC.length - 4 - footerLength;
+        final FlatBufferReader.Table footer = new FlatBufferReader(file, footerStart, footerLength).getRoot();
+        assertEquals(4, footer.getShort(0, 0));
+        final ArrowFile result = new ArrowFile(footer.getTable(1).getTables(1));
+        // Schema message, right after the magic number, same fields as the footer.
+        final int schemaLength = ByteBuffer.wrap(file, 12, 4).order(ByteOrder.LITTLE_ENDIAN).getInt() + 8;
+        final FlatBufferReader.Table schemaMessage = readMessage(file, 8, schemaLength);
+        assertEquals("schema header", 1, schemaMessage.getByte(1, 0)); // NOI18N.
+        assertEquals(0L, schemaMessage.getLong(3, 0));
+        final List<FlatBufferReader.Table> schemaFields = schemaMessage.getTable(2).getTables(1);
+        assertEquals(result.fields.size(), schemaFields.size());
+        for (int column = 0; column < schemaFields.size(); column++) {
+            assertEquals(result.fields.get(column).getString(0), schemaFields.get(column).getString(0));
+        }
+        // Record batches, one after the other.
+        final int blockCount = footer.getStructCount(3);
+        final int blocks = footer.getStructPosition(3);
+        int expectedOffset = 8 + schemaLength;
+        for (int block = 0; block < blockCount; block++) {
+            final int offset = (int) footer.getLongAt(blocks + 24 * block);
+            final int metadataLength = footer.getIntAt(blocks + 24 * block + 8);
+            final long bodyLength = footer.getLongAt(blocks + 24 * block + 16);
+            assertEquals(expectedOffset, offset);
+            assertEquals(0, offset % 8);
+            assertEquals(0, metadataLength % 8);
+            assertEquals(0, bodyLength % 8);
+            final FlatBufferReader.Table message = readMessage(file, offset, metadataLength);
+            assertEquals("record batch header", 3, message.getByte(1, 0)); // NOI18N.
+            assertEquals(bodyLength, message.getLong(3, 0));
+            readRecordBatch(file, message.getTable(2), offset + metadataLength, bodyLength, result);
+            expectedOffset = (int) (offset + metadataLength + bodyLength);
+        }
+        // End-of-stream marker then the footer.
+        final ByteBuffer end = ByteBuffer.wrap(file, expectedOffset, 8).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(CONTINUATION, end.getInt());
+        assertEquals(0, end.getInt());
+        assertEquals(expectedOffset + 8, footerStart);
+        return result;
+    }
+
+    /**
+     * Decodes the columns of a record batch.
+     */
+    private static void readRecordBatch(final byte[] file, final FlatBufferReader.Table recordBatch, final int bodyStart, final long bodyLength, final ArrowFile result) {
+        final int rowCount = (int) recordBatch.getLong(0, 0);
+        result.batchLengths.add(rowCount);
+        final int columnCount = result.fields.size();
+        assertEquals(columnCount, recordBatch.getStructCount(1));
+        assertEquals(2 * columnCount, recordBatch.getStructCount(2));
+        final int nodes = recordBatch.getStructPosition(1);
+        final int buffers = recordBatch.getStructPosition(2);
+        for (int column = 0; column < columnCount; column++) {
+            final FlatBufferReader.Table field = result.fields.get(column);
+            assertEquals(rowCount, recordBatch.getLongAt(nodes + 16 * column));
+            final long nullCount = recordBatch.getLongAt(nodes + 16 * column + 8);
+            final long validityOffset = recordBatch.getLongAt(buffers + 32 * column);
+            final long validityLength = recordBatch.getLongAt(buffers + 32 * column + 8);
+            final long valuesOffset = recordBatch.getLongAt(buffers + 32 * column + 16);
+            final long valuesLength = recordBatch.getLongAt(buffers + 32 * column + 24);
+            assertEquals(0, validityOffset % 8);
+            assertEquals(0, valuesOffset % 8);
+            assertTrue(valuesOffset + valuesLength <= bodyLength);
+            // No validity bitmap without null values.
+            assertEquals(nullCount == 0, validityLength == 0);
+            final boolean time = field.getByte(2, 0) == 10;
+            final int valueSize = time ? Long.BYTES : (field.getTable(3).getShort(0, 0) == 1) ? Float.BYTES : Double.BYTES;
+            assertEquals((long) rowCount * valueSize, valuesLength);
+            final ByteBuffer values = ByteBuffer.wrap(file, (int) (bodyStart + valuesOffset), (int) valuesLength).order(ByteOrder.LITTLE_ENDIAN);
+            int nulls = 0;
+            for (int row = 0; row < rowCount; row++) {
+                final boolean valid = (validityLength == 0) || ((file[(int) (bodyStart + validityOffset + row / 8)] >>> (row % 8)) & 1) == 1;
+                final Object value = time ? (Object) values.getLong() : (valueSize == Float.BYTES) ? (Object) values.getFloat() : (Object) values.getDouble();
+                result.columns.get(column).add(valid ? value : null);
+                nulls += valid ? 0 : 1;
+            }
+            assertEquals(nullCount, nulls);
+        }
+    }
+
+    private static void assertSchema(final ArrowFile file) {
+        assertEquals(3, file.fields.size());
+        final FlatBufferReader.Table time = file.fields.get(0);
+        assertEquals("time", time.getString(0)); // NOI18N.
+        assertEquals(0, time.getByte(1, 0));
+        assertEquals(10, time.getByte(2, 0));
+        assertEquals(2, time.getTable(3).getShort(0, 0));
+        assertEquals("UTC", time.getTable(3).getString(1)); // NOI18N.
+        final FlatBufferReader.Table latitude = file.fields.get(1);
+        assertEquals("lat", latitude.getString(0)); // NOI18N.
+        assertEquals(0, latitude.getByte(1, 0));
+        assertEquals(3, latitude.getByte(2, 0));
+        assertEquals(1, latitude.getTable(3).getShort(0, 0));
+        final FlatBufferReader.Table sst = file.fields.get(2);
+        assertEquals("sst", sst.getString(0)); // NOI18N.
+        assertEquals(1, sst.getByte(1, 0));
+        assertEquals(3, sst.getByte(2, 0));
+        assertEquals(2, sst.getTable(3).getShort(0, 0));
+        for (final FlatBufferReader.Table field : file.fields) {
+            assertEquals(0, field.getTables(5).size());
+        }
+    }
+
+    private static void assertRows(final ArrowFile file, final int sourceCount) {
+        final float[] values = createValues();
+        assertEquals(values.length * sourceCount, file.columns.get(0).size());
+        for (int row = 0; row < values.length * sourceCount; row++) {
+            final int cell = row % values.length;
+            assertEquals(UNIX_2000_MICROS + (cell / LATITUDE_COUNT) * DAY_MICROS, file.columns.get(0).get(row));
+            assertEquals(getLatitude(cell % LATITUDE_COUNT), file.columns.get(1).get(row));
+            final float value = values[cell];
+            assertEquals((Float.isNaN(value) || value == FILL_VALUE) ? null : (double) value, file.columns.get(2).get(row));
+        }
+    }
+
+    @Test
+    public void testBatchPerStep() throws IOException {
+        final ArrowFile file = read(write(0, 1));
+        assertSchema(file);
+        assertEquals(Arrays.asList(10, 10, 10), file.batchLengths);
+        assertRows(file, 1);
+    }
+
+    @Test
+    public void testStepsAreSplitWithinBudget() throws IOException {
+        // A budget of 1 byte: batches of 8 rows, the smallest capacity.
+        final ArrowFile file = read(write(1, 2));
+        assertSchema(file);
+        assertEquals(Arrays.asList(8, 2, 8, 2, 8, 2, 8, 2, 8, 2, 8, 2), file.batchLengths);
+        assertRows(file, 2);
+    }
+
+    @Test
+    public void testSingleAxis() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ArrowFileWriter writer = new ArrowFileWriter(out, 0);
+        final float[] values = createValues();
+        final Slab slab = TestSlabs.create(new int[]{0}, new int[]{values.length}, Array.factory(DataType.FLOAT, new int[]{values.length}, values));
+        writer.begin(new Axis[]{Axis.ofIndices("x", values.length)}, new String[]{"sst"}, createDecoder()); // NOI18N.
+        writer.write(slab, 0, slab.getSize());
+        writer.end();
+        writer.finish();
+        final ArrowFile file = read(out.toByteArray());
+        assertEquals(Arrays.asList(values.length), file.batchLengths);
+        assertEquals(values.length, file.columns.get(1).size());
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ArrowFileWriter(out, 0).finish();
+        final ArrowFile file = read(out.toByteArray());
+        assertTrue(file.fields.isEmpty());
+        assertTrue(file.batchLengths.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testColumnsMustMatch() throws IOException {
+        final ArrowFileWriter writer = new ArrowFileWriter(new ByteArrayOutputStream(), 0);
+        writer.begin(createAxes(), new String[]{"sst"}, createDecoder()); // NOI18N.
+        writer.end();
+        writer.begin(createAxes(), new String[]{"chl"}, createDecoder()); // NOI18N.
+    }
+
+    @Test
+    public void testNoNullValues() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ArrowFileWriter writer = new ArrowFileWriter(out, 0);
+        final int[] shape = {TIME_COUNT, LATITUDE_COUNT};
+        final float[] values = new float[TIME_COUNT * LATITUDE_COUNT];
+        final Slab slab = TestSlabs.create(new int[]{0, 0}, shape, Array.factory(DataType.FLOAT, shape, values));
+        writer.begin(createAxes(), new String[]{"sst"}, createDecoder()); // NOI18N.
+        writer.write(slab, 0, slab.getSize());
+        writer.end();
+        writer.finish();
+        final ArrowFile file = read(out.toByteArray());
+        assertFalse(file.columns.get(2).contains(null));
+    }
+}
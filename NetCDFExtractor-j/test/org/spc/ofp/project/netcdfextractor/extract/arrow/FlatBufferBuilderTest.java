@@ -0,0 +1,135 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.arrow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@code FlatBufferBuilder} against bytes worked out by hand and a reader written from the FlatBuffers binary format.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class FlatBufferBuilderTest {
+
+    private static byte[] bytes(final int... values) {
+        final byte[] result = new byte[values.length];
+        for (int index = 0; index < values.length; index++) {
+            result[index] = (byte) values[index];
+        }
+        return result;
+    }
+
+    private static FlatBufferReader.Table read(final byte[] buffer) {
+        return new FlatBufferReader(buffer, 0, buffer.length).getRoot();
+    }
+
+    @Test
+    public void testLayout() {
+        final FlatBufferBuilder.Table root = new FlatBufferBuilder.Table(2)
+                .addShort(0, 7)
+                .addOffset(1, new FlatBufferBuilder.StringNode("ab")); // NOI18N.
+        assertArrayEquals(bytes(
+                // Root offset, padding.
+                0x10, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                // Vtable: its size, the inline size of the table, the offset of each field.
+                0x08, 0x00, 0x0C, 0x00, 0x04, 0x00, 0x08, 0x00,
+                // Table: offset back to the vtable, the short, padding, the offset to the string.
+                0x08, 0x00, 0x00, 0x00, 0x07, 0x00, 0x00, 0x00,
+                0x04, 0x00, 0x00, 0x00,
+                // String: length, bytes, null terminator, then padding of the buffer.
+                0x02, 0x00, 0x00, 0x00,
+                'a', 'b', 0x00, 0x00, 0x00, 0x00, 0x00, 0x00), FlatBufferBuilder.finish(root));
+    }
+
+    @Test
+    public void testScalarsAndAbsentFields() {
+        final FlatBufferBuilder.Table root = new FlatBufferBuilder.Table(6)
+                .addByte(0, 3)
+                .addBoolean(1, true)
+                .addLong(3, 1L << 40)
+                .addShort(4, -2);
+        final byte[] buffer = FlatBufferBuilder.finish(root);
+        assertEquals(0, buffer.length % 8);
+        final FlatBufferReader.Table table = read(buffer);
+        assertEquals(0, table.position % 8);
+        assertEquals(3, table.getByte(0, 0));
+        assertEquals(1, table.getByte(1, 0));
+        assertFalse(table.has(2));
+        assertFalse(table.has(5));
+        // Beyond the schema the table was written with.
+        assertFalse(table.has(6));
+        assertEquals(1L << 40, table.getLong(3, 0));
+        assertEquals(0, table.getFieldPosition(3) % 8);
+        assertEquals(-2, table.getShort(4, 0));
+        assertEquals(0, table.getFieldPosition(4) % 2);
+    }
+
+    @Test
+    public void testNestedTablesAndVectors() {
+        final List<FlatBufferBuilder.Table> children = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            children.add(new FlatBufferBuilder.Table(3)
+                    .addOffset(0, new FlatBufferBuilder.StringNode("child-" + index)) // NOI18N.
+                    .addLong(1, index)
+                    .addOffset(2, new FlatBufferBuilder.TableVector(new ArrayList<>())));
+        }
+        final FlatBufferBuilder.Table root = new FlatBufferBuilder.Table(3)
+                .addOffset(0, new FlatBufferBuilder.TableVector(children))
+                .addOffset(1, new FlatBufferBuilder.Table(1).addShort(0, 42))
+                .addOffset(2, new FlatBufferBuilder.StringNode("é")); // NOI18N.
+        final FlatBufferReader.Table table = read(FlatBufferBuilder.finish(root));
+        final List<FlatBufferReader.Table> tables = table.getTables(0);
+        assertEquals(3, tables.size());
+        for (int index = 0; index < tables.size(); index++) {
+            final FlatBufferReader.Table child = tables.get(index);
+            assertEquals(0, child.position % 8);
+            assertEquals("child-" + index, child.getString(0)); // NOI18N.
+            assertEquals(index, child.getLong(1, -1));
+            assertEquals(Collections.emptyList(), child.getTables(2));
+        }
+        assertEquals(42, table.getTable(1).getShort(0, 0));
+        assertEquals("é", table.getString(2)); // NOI18N.
+    }
+
+    @Test
+    public void testStructVector() {
+        final byte[] content = new byte[24];
+        for (int index = 0; index < content.length; index++) {
+            content[index] = (byte) index;
+        }
+        final FlatBufferBuilder.Table root = new FlatBufferBuilder.Table(2)
+                .addByte(0, 1)
+                .addOffset(1, new FlatBufferBuilder.StructVector(3, content));
+        final FlatBufferReader.Table table = read(FlatBufferBuilder.finish(root));
+        assertEquals(3, table.getStructCount(1));
+        final int position = table.getStructPosition(1);
+        // Elements are 8-byte aligned.
+        assertEquals(0, position % 8);
+        assertEquals(0x0706050403020100L, table.getLongAt(position));
+        assertEquals(0x1716151413121110L, table.getLongAt(position + 16));
+    }
+
+    @Test
+    public void testLargeBuffer() {
+        final List<FlatBufferBuilder.Table> children = new ArrayList<>();
+        final StringBuilder name = new StringBuilder();
+        for (int index = 0; index < 100; index++) {
+            name.append((char) ('a' + index % 26));
+            children.add(new FlatBufferBuilder.Table(1).addOffset(0, new FlatBufferBuilder.StringNode(name.toString())));
+        }
+        final byte[] buffer = FlatBufferBuilder.finish(new FlatBufferBuilder.Table(1).addOffset(0, new FlatBufferBuilder.TableVector(children)));
+        assertTrue(buffer.length > 5000);
+        final List<FlatBufferReader.Table> tables = read(buffer).getTables(0);
+        assertEquals(100, tables.size());
+        assertEquals(name.toString(), tables.get(99).getString(0));
+    }
+}
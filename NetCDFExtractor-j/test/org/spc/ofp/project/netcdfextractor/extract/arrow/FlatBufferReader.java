@@ -0,0 +1,152 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.arrow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads FlatBuffers tables, vectors and strings, written from the FlatBuffers binary format.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class FlatBufferReader {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new instance.
+     * @param bytes The buffer.
+     * @param offset The start of the buffer in {@code bytes}.
+     * @param length The length of the buffer.
+     */
+    FlatBufferReader(final byte[] bytes, final int offset, final int length) {
+        buffer = ByteBuffer.wrap(bytes, offset, length).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Gets the root table.
+     * @return A {@code Table} instance, never {@code null}.
+     */
+    Table getRoot() {
+        return new Table(buffer.getInt(0));
+    }
+
+    /**
+     * Follows an offset.
+     * @param position The position of the offset.
+     * @return The position the offset points to.
+     */
+    private int follow(final int position) {
+        return position + buffer.getInt(position);
+    }
+
+    /**
+     * A table.
+     * @author Fabrice Bouyé (fabriceb@spc.int)
+     */
+    final class Table {
+
+        /**
+         * The position of the table in the buffer.
+         */
+        final int position;
+
+        Table(final int position) {
+            this.position = position;
+        }
+
+        /**
+         * Gets the position of a field.
+         * @param field The index of the field.
+         * @return The position of the field in the buffer, -1 if the field is absent.
+         */
+        int getFieldPosition(final int field) {
+            // The table starts with the signed offset from the vtable to the table.
+            final int vtable = position - buffer.getInt(position);
+            final int vtableSize = buffer.getShort(vtable);
+            final int entry = Short.BYTES * (2 + field);
+            if (entry >= vtableSize) {
+                return -1;
+            }
+            final int fieldOffset = buffer.getShort(vtable + entry);
+            return (fieldOffset == 0) ? -1 : position + fieldOffset;
+        }
+
+        boolean has(final int field) {
+            return getFieldPosition(field) >= 0;
+        }
+
+        int getByte(final int field, final int defaultValue) {
+            final int fieldPosition = getFieldPosition(field);
+            return (fieldPosition < 0) ? defaultValue : buffer.get(fieldPosition);
+        }
+
+        int getShort(final int field, final int defaultValue) {
+            final int fieldPosition = getFieldPosition(field);
+            return (fieldPosition < 0) ? defaultValue : buffer.getShort(fieldPosition);
+        }
+
+        long getLong(final int field, final long defaultValue) {
+            final int fieldPosition = getFieldPosition(field);
+            return (fieldPosition < 0) ? defaultValue : buffer.getLong(fieldPosition);
+        }
+
+        Table getTable(final int field) {
+            return new Table(follow(getFieldPosition(field)));
+        }
+
+        String getString(final int field) {
+            final int string = follow(getFieldPosition(field));
+            final byte[] bytes = new byte[buffer.getInt(string)];
+            for (int index = 0; index < bytes.length; index++) {
+                bytes[index] = buffer.get(string + Integer.BYTES + index);
+            }
+            if (buffer.get(string + Integer.BYTES + bytes.length) != 0) {
+                throw new IllegalStateException("String is not null-terminated."); // NOI18N.
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        List<Table> getTables(final int field) {
+            final int vector = follow(getFieldPosition(field));
+            final int length = buffer.getInt(vector);
+            final List<Table> result = new ArrayList<>(length);
+            for (int index = 0; index < length; index++) {
+                result.add(new Table(follow(vector + Integer.BYTES * (index + 1))));
+            }
+            return result;
+        }
+
+        /**
+         * Gets the number of elements in a vector of structures.
+         * @param field The index of the field.
+         * @return An {@code int} &ge; 0.
+         */
+        int getStructCount(final int field) {
+            return buffer.getInt(follow(getFieldPosition(field)));
+        }
+
+        /**
+         * Gets the elements of a vector of structures.
+         * @param field The index of the field.
+         * @return The position of the first element in the buffer.
+         */
+        int getStructPosition(final int field) {
+            return follow(getFieldPosition(field)) + Integer.BYTES;
+        }
+
+        long getLongAt(final int position) {
+            return buffer.getLong(position);
+        }
+
+        int getIntAt(final int position) {
+            return buffer.getInt(position);
+        }
+    }
+}
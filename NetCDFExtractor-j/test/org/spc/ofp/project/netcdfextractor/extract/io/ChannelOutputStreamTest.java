@@ -0,0 +1,78 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@code ChannelOutputStream}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class ChannelOutputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAcrossBuffers() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("out.bin"); // NOI18N.
+        final byte[] bytes = new byte[5 * ChannelOutputStream.MIN_BUFFER_SIZE + 17];
+        new Random(42).nextBytes(bytes);
+        try (final ChannelOutputStream out = ChannelOutputStream.open(file, ChannelOutputStream.MIN_BUFFER_SIZE)) {
+            out.write(bytes, 0, 10);
+            out.write(bytes[10]);
+            out.write(bytes, 11, bytes.length - 11);
+            assertEquals(bytes.length, out.sync());
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void testOpenAtDiscardsBytesPastPosition() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("out.txt"); // NOI18N.
+        // Rows written after the last checkpoint, then a partial row left by a crash.
+        Files.write(file, "row 1\nrow 2\nrow 3\nro".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        try (final ChannelOutputStream out = ChannelOutputStream.openAt(file, 12, ChannelOutputStream.MIN_BUFFER_SIZE)) {
+            out.write("row 3\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+            assertEquals(18, out.sync());
+        }
+        assertEquals("row 1\nrow 2\nrow 3\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8)); // NOI18N.
+    }
+
+    @Test
+    public void testOpenAtWithoutWriting() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("out.txt"); // NOI18N.
+        Files.write(file, "header\nrow".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        ChannelOutputStream.openAt(file, 7, ChannelOutputStream.MIN_BUFFER_SIZE).close();
+        assertEquals("header\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8)); // NOI18N.
+        ChannelOutputStream.openAt(file, 7, ChannelOutputStream.MIN_BUFFER_SIZE).close();
+        assertEquals(7, Files.size(file));
+    }
+
+    @Test
+    public void testOpenAtBeyondEndFails() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("out.txt"); // NOI18N.
+        final byte[] bytes = "header\n".getBytes(StandardCharsets.UTF_8); // NOI18N.
+        Files.write(file, bytes);
+        try {
+            ChannelOutputStream.openAt(file, bytes.length + 1, ChannelOutputStream.MIN_BUFFER_SIZE).close();
+            fail("Opened past the end of the file."); // NOI18N.
+        } catch (IOException ex) {
+            // Expected: the output lost bytes the journal says it holds.
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+}
@@ -0,0 +1,180 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@code PartitionedOutputStream} with files written to a temporary folder.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class PartitionedOutputStreamTest {
+
+    private static final String JANUARY = "year=2016/month=01"; // NOI18N.
+    private static final String FEBRUARY = "year=2016/month=02"; // NOI18N.
+    private static final byte[] HEADER = "time,sst\n".getBytes(StandardCharsets.UTF_8); // NOI18N.
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path output;
+    /**
+     * The files opened, as {@code <directory>:<create|append>}, in order.
+     */
+    private final List<String> opened = new ArrayList<>();
+
+    /**
+     * Writes each file between start and end markers.
+     */
+    private final PartitionedOutputStream.FileHandler handler = new PartitionedOutputStream.FileHandler() {
+        @Override
+        public OutputStream open(final Path file, final boolean append) throws IOException {
+            opened.add(output.getParent().relativize(file.getParent()).toString().replace('\\', '/') + (append ? ":append" : ":create")); // NOI18N.
+            return append ? Files.newOutputStream(file, StandardOpenOption.APPEND) : Files.newOutputStream(file);
+        }
+
+        @Override
+        public void start(final OutputStream out) throws IOException {
+            out.write("[\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        }
+
+        @Override
+        public void end(final OutputStream out) throws IOException {
+            out.write("]\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        }
+    };
+
+    @Before
+    public void setUp() {
+        output = folder.getRoot().toPath().resolve("sst.txt"); // NOI18N.
+    }
+
+    private static void writeRow(final PartitionedOutputStream out, final String directory, final String row) throws IOException {
+        out.select(directory);
+        out.write((row + "\n").getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        out.rowsWritten(1);
+    }
+
+    private String read(final PartitionedOutputStream out, final String directory) throws IOException {
+        return new String(Files.readAllBytes(out.getFile(directory)), StandardCharsets.UTF_8);
+    }
+
+    private List<String> readIndex() throws IOException {
+        return Files.readAllLines(PartitionedOutputStream.getIndex(output), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testAlternateDirectoriesWithOneOpenFile() throws IOException {
+        try (final PartitionedOutputStream out = PartitionedOutputStream.open(output, 1, handler)) {
+            out.setHeader(HEADER);
+            for (int row = 0; row < 6; row++) {
+                writeRow(out, (row % 2 == 0) ? JANUARY : FEBRUARY, "row-" + row); // NOI18N.
+            }
+            // Selecting the current file again does not reopen it.
+            writeRow(out, FEBRUARY, "row-6"); // NOI18N.
+            assertEquals(2, out.getFileCount());
+            out.finish();
+            // Each file is created once, then reopened in append mode after being evicted; January is reopened to be ended.
+            assertEquals(Arrays.asList(JANUARY + ":create", FEBRUARY + ":create", // NOI18N.
+                    JANUARY + ":append", FEBRUARY + ":append", // NOI18N.
+                    JANUARY + ":append", FEBRUARY + ":append", // NOI18N.
+                    JANUARY + ":append"), opened); // NOI18N.
+            assertEquals("[\ntime,sst\nrow-0\nrow-2\nrow-4\n]\n", read(out, JANUARY)); // NOI18N.
+            assertEquals("[\ntime,sst\nrow-1\nrow-3\nrow-5\nrow-6\n]\n", read(out, FEBRUARY)); // NOI18N.
+        }
+        assertEquals(Arrays.asList(JANUARY + "/sst.txt\t3", FEBRUARY + "/sst.txt\t4"), readIndex()); // NOI18N.
+    }
+
+    @Test
+    public void testEnoughOpenFiles() throws IOException {
+        try (final PartitionedOutputStream out = PartitionedOutputStream.open(output, 2, handler)) {
+            out.setHeader(HEADER);
+            // Only the first header is kept.
+            out.setHeader("other\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+            for (int row = 0; row < 4; row++) {
+                writeRow(out, (row % 2 == 0) ? JANUARY : FEBRUARY, "row-" + row); // NOI18N.
+            }
+            out.finish();
+            assertEquals(Arrays.asList(JANUARY + ":create", FEBRUARY + ":create"), opened); // NOI18N.
+            assertEquals("[\ntime,sst\nrow-0\nrow-2\n]\n", read(out, JANUARY)); // NOI18N.
+        }
+    }
+
+    @Test
+    public void testFlatDirectory() throws IOException {
+        try (final PartitionedOutputStream out = PartitionedOutputStream.open(output, 1, handler)) {
+            assertEquals(output, out.getFile("")); // NOI18N.
+            writeRow(out, "", "row-0"); // NOI18N.
+            out.finish();
+        }
+        assertEquals("[\nrow-0\n]\n", new String(Files.readAllBytes(output), StandardCharsets.UTF_8)); // NOI18N.
+        assertEquals(Arrays.asList("sst.txt\t1"), readIndex()); // NOI18N.
+    }
+
+    @Test
+    public void testOpenDeletesFilesOfPreviousIndex() throws IOException {
+        final Path other = folder.getRoot().toPath().resolve("year=2015").resolve("other.txt"); // NOI18N.
+        try (final PartitionedOutputStream out = PartitionedOutputStream.open(output, 1, handler)) {
+            writeRow(out, JANUARY, "row-0"); // NOI18N.
+            writeRow(out, FEBRUARY, "row-1"); // NOI18N.
+            out.finish();
+        }
+        Files.createDirectories(other.getParent());
+        Files.write(other, "kept".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        try (final PartitionedOutputStream out = PartitionedOutputStream.open(output, 1, handler)) {
+            // Files of the previous run are gone, directories and other files are left.
+            assertFalse(Files.exists(out.getFile(JANUARY)));
+            assertFalse(Files.exists(out.getFile(FEBRUARY)));
+            assertTrue(Files.isDirectory(out.getFile(JANUARY).getParent()));
+            assertTrue(Files.exists(other));
+            assertFalse(Files.exists(PartitionedOutputStream.getIndex(output)));
+            writeRow(out, FEBRUARY, "row-2"); // NOI18N.
+            out.finish();
+            assertEquals("[\nrow-2\n]\n", read(out, FEBRUARY)); // NOI18N.
+        }
+        assertEquals(Arrays.asList(FEBRUARY + "/sst.txt\t1"), readIndex()); // NOI18N.
+    }
+
+    @Test
+    public void testCloseWithoutFinish() throws IOException {
+        try (final PartitionedOutputStream out = PartitionedOutputStream.open(output, 1, handler)) {
+            writeRow(out, JANUARY, "row-0"); // NOI18N.
+            writeRow(out, FEBRUARY, "row-1"); // NOI18N.
+            out.close();
+            assertEquals("[\nrow-1\n", read(out, FEBRUARY)); // NOI18N.
+        }
+        assertFalse(Files.exists(PartitionedOutputStream.getIndex(output)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteWithoutSelection() throws IOException {
+        try (final PartitionedOutputStream out = PartitionedOutputStream.open(output, 1, handler)) {
+            out.write(HEADER);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testSelectAfterFinish() throws IOException {
+        final PartitionedOutputStream out = PartitionedOutputStream.open(output, 1, handler);
+        out.finish();
+        out.select(JANUARY);
+    }
+}
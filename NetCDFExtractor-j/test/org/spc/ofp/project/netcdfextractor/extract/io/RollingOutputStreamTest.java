@@ -0,0 +1,224 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@code RollingOutputStream} with parts written to temporary files.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class RollingOutputStreamTest {
+
+    private static final String EXTENSION = ".txt"; // NOI18N.
+    private static final byte[] HEADER = "time,sst\n".getBytes(StandardCharsets.UTF_8); // NOI18N.
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path output;
+    /**
+     * The completed parts, as {@code <file name>:<rows>}.
+     */
+    private final List<String> completed = new ArrayList<>();
+
+    /**
+     * Writes each part to its file, between start and end markers.
+     */
+    private final RollingOutputStream.PartHandler handler = new RollingOutputStream.PartHandler() {
+        @Override
+        public OutputStream open(final Path part) throws IOException {
+            return Files.newOutputStream(part);
+        }
+
+        @Override
+        public void start(final OutputStream out) throws IOException {
+            out.write("[\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        }
+
+        @Override
+        public void end(final OutputStream out) throws IOException {
+            out.write("]\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        }
+
+        @Override
+        public void completed(final Path part, final long rowCount) throws IOException {
+            completed.add(part.getFileName() + ":" + rowCount); // NOI18N.
+        }
+    };
+
+    @Before
+    public void setUp() {
+        output = folder.getRoot().toPath().resolve("sst" + EXTENSION); // NOI18N.
+    }
+
+    private static byte[] getRow(final int index) {
+        return String.format("row-%d\n", index).getBytes(StandardCharsets.UTF_8); // NOI18N.
+    }
+
+    /**
+     * Writes rows the way the engine does: a part is rolled before rows that would overflow it.
+     */
+    private static void writeRows(final RollingOutputStream out, final int from, final int to) throws IOException {
+        for (int index = from; index < to; index++) {
+            final byte[] row = getRow(index);
+            if (out.isFull(1, row.length)) {
+                out.roll();
+            }
+            out.write(row);
+            out.rowsWritten(1);
+        }
+    }
+
+    private String read(final int part) throws IOException {
+        return new String(Files.readAllBytes(RollingOutputStream.getPart(output, EXTENSION, part)), StandardCharsets.UTF_8);
+    }
+
+    private boolean exists(final int part) {
+        return Files.exists(RollingOutputStream.getPart(output, EXTENSION, part));
+    }
+
+    @Test
+    public void testGetPart() {
+        assertEquals("sst.part-00001.txt", RollingOutputStream.getPart(output, EXTENSION, 1).getFileName().toString()); // NOI18N.
+        assertEquals("sst.txt.part-00012.gz", RollingOutputStream.getPart(output, ".gz", 12).getFileName().toString()); // NOI18N.
+    }
+
+    @Test
+    public void testEmptyPartIsNeverFull() throws IOException {
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 1, 1, handler)) {
+            out.writeHeader(HEADER);
+            // The header alone does not fill a part, nor do rows larger than the maximum.
+            assertFalse(out.isFull(100, 1000));
+            out.write(getRow(0));
+            out.rowsWritten(1);
+            assertTrue(out.isFull(1, 1));
+            out.roll();
+            assertFalse(out.isFull(100, 1000));
+        }
+    }
+
+    @Test
+    public void testRowLimit() throws IOException {
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 3, 0, handler)) {
+            assertEquals(3, out.getRemainingRows());
+            out.writeHeader(HEADER);
+            writeRows(out, 0, 7);
+            assertEquals(2, out.getRemainingRows());
+            out.finish();
+        }
+        assertEquals(Arrays.asList("sst.part-00001.txt:3", "sst.part-00002.txt:3", "sst.part-00003.txt:1"), completed); // NOI18N.
+        assertEquals("[\ntime,sst\nrow-0\nrow-1\nrow-2\n]\n", read(1)); // NOI18N.
+        assertEquals("[\ntime,sst\nrow-3\nrow-4\nrow-5\n]\n", read(2)); // NOI18N.
+        assertEquals("[\ntime,sst\nrow-6\n]\n", read(3)); // NOI18N.
+        assertFalse(exists(4));
+    }
+
+    @Test
+    public void testByteLimit() throws IOException {
+        // Start marker, header and two rows: 2 + 9 + 6 + 6 bytes.
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 0, 23, handler)) {
+            assertEquals(Long.MAX_VALUE, out.getRemainingRows());
+            out.writeHeader(HEADER);
+            writeRows(out, 0, 5);
+            out.finish();
+        }
+        assertEquals(Arrays.asList("sst.part-00001.txt:2", "sst.part-00002.txt:2", "sst.part-00003.txt:1"), completed); // NOI18N.
+        assertEquals("[\ntime,sst\nrow-2\nrow-3\n]\n", read(2)); // NOI18N.
+    }
+
+    @Test
+    public void testHeaderIsRepeatedOnce() throws IOException {
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 2, 0, handler)) {
+            out.writeHeader(HEADER);
+            writeRows(out, 0, 1);
+            // Each source gives its header, only the first one is kept.
+            out.writeHeader("other\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+            writeRows(out, 1, 3);
+            out.writeHeader("other\n".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+            writeRows(out, 3, 4);
+            out.finish();
+        }
+        assertEquals("[\ntime,sst\nrow-0\nrow-1\n]\n", read(1)); // NOI18N.
+        assertEquals("[\ntime,sst\nrow-2\nrow-3\n]\n", read(2)); // NOI18N.
+    }
+
+    @Test
+    public void testNoHeader() throws IOException {
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 1, 0, handler)) {
+            writeRows(out, 0, 2);
+            out.finish();
+        }
+        assertEquals("[\nrow-1\n]\n", read(2)); // NOI18N.
+    }
+
+    @Test
+    public void testFinishDeletesEmptyLastPart() throws IOException {
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 2, 0, handler)) {
+            out.writeHeader(HEADER);
+            writeRows(out, 0, 2);
+            out.roll();
+            assertTrue(exists(2));
+            out.finish();
+        }
+        assertEquals(Arrays.asList("sst.part-00001.txt:2"), completed); // NOI18N.
+        assertTrue(exists(1));
+        assertFalse(exists(2));
+    }
+
+    @Test
+    public void testFinishKeepsEmptyOnlyPart() throws IOException {
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 2, 0, handler)) {
+            out.writeHeader(HEADER);
+            out.finish();
+        }
+        assertEquals(Arrays.asList("sst.part-00001.txt:0"), completed); // NOI18N.
+        assertEquals("[\ntime,sst\n]\n", read(1)); // NOI18N.
+    }
+
+    @Test
+    public void testCloseWithoutFinish() throws IOException {
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 2, 0, handler)) {
+            writeRows(out, 0, 3);
+        }
+        // The last part is left as it is, without its end.
+        assertEquals(Arrays.asList("sst.part-00001.txt:2"), completed); // NOI18N.
+        assertEquals("[\nrow-2\n", read(2)); // NOI18N.
+    }
+
+    @Test
+    public void testFirstPart() throws IOException {
+        Files.write(RollingOutputStream.getPart(output, EXTENSION, 1), "kept".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        Files.write(RollingOutputStream.getPart(output, EXTENSION, 3), "partial".getBytes(StandardCharsets.UTF_8)); // NOI18N.
+        try (final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 3, 0, 0, handler)) {
+            writeRows(out, 0, 1);
+            out.finish();
+        }
+        assertEquals("kept", read(1)); // NOI18N.
+        assertEquals("[\nrow-0\n]\n", read(3)); // NOI18N.
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterFinish() throws IOException {
+        final RollingOutputStream out = new RollingOutputStream(output, EXTENSION, 1, 0, 0, handler);
+        out.finish();
+        out.write(getRow(0));
+    }
+}
@@ -0,0 +1,130 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads Thrift structures in the compact protocol, written from the protocol specification.
+ * <br>Structures are read as maps of field identifiers to values: {@code Boolean}, {@code Integer} for {@code i32}, {@code Long} for {@code i64}, {@code byte[]} for {@code binary}, {@code List} and {@code Map} for nested structures.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class CompactProtocolReader {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new instance.
+     * @param buffer The source buffer, read from its current position.
+     */
+    CompactProtocolReader(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads a structure, up to and including its stop field.
+     * @return A {@code Map} instance, never {@code null}.
+     */
+    Map<Integer, Object> readStruct() {
+        final Map<Integer, Object> result = new TreeMap<>();
+        int lastFieldId = 0;
+        while (true) {
+            final int header = buffer.get() & 0xFF;
+            if (header == 0) {
+                return result;
+            }
+            final int type = header & 0x0F;
+            final int delta = header >>> 4;
+            final int fieldId = (delta == 0) ? readI32() : lastFieldId + delta;
+            result.put(fieldId, readValue(type, true));
+            lastFieldId = fieldId;
+        }
+    }
+
+    /**
+     * Reads a value.
+     * @param type The type of the value.
+     * @param field {@code True} if the value is a field, whose boolean value is its type.
+     * @return An {@code Object} instance, never {@code null}.
+     */
+    private Object readValue(final int type, final boolean field) {
+        switch (type) {
+            case CompactProtocolWriter.TYPE_BOOLEAN_TRUE:
+                return field ? Boolean.TRUE : buffer.get() == 1;
+            case CompactProtocolWriter.TYPE_BOOLEAN_FALSE:
+                return Boolean.FALSE;
+            case CompactProtocolWriter.TYPE_I32:
+                return readI32();
+            case CompactProtocolWriter.TYPE_I64:
+                return readI64();
+            case CompactProtocolWriter.TYPE_BINARY:
+                return readBinary();
+            case CompactProtocolWriter.TYPE_LIST:
+                return readList();
+            case CompactProtocolWriter.TYPE_STRUCT:
+                return readStruct();
+            default:
+                throw new IllegalStateException(String.format("Unexpected type %d at %d.", type, buffer.position())); // NOI18N.
+        }
+    }
+
+    private List<Object> readList() {
+        final int header = buffer.get() & 0xFF;
+        final int elementType = header & 0x0F;
+        final int size = ((header >>> 4) == 15) ? (int) readVarint() : header >>> 4;
+        final List<Object> result = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            result.add(readValue(elementType, false));
+        }
+        return result;
+    }
+
+    int readI32() {
+        final int value = (int) readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readI64() {
+        final long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    byte[] readBinary() {
+        final byte[] result = new byte[(int) readVarint()];
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     * @return A {@code long}.
+     */
+    long readVarint() {
+        long result = 0;
+        int shift = 0;
+        int value;
+        do {
+            value = buffer.get() & 0xFF;
+            result |= (long) (value & 0x7F) << shift;
+            shift += 7;
+        } while ((value & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * Converts a {@code binary} value to a string.
+     * @param value The value.
+     * @return A {@code String} instance, never {@code null}.
+     */
+    static String toString(final Object value) {
+        return new String((byte[]) value, StandardCharsets.UTF_8);
+    }
+}
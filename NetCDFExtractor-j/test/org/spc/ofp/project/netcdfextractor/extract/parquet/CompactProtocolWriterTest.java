@@ -0,0 +1,137 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.spc.ofp.project.netcdfextractor.extract.RowBuffer;
+
+/**
+ * Tests {@code CompactProtocolWriter} against bytes worked out by hand from the Thrift compact protocol specification.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class CompactProtocolWriterTest {
+
+    private static byte[] bytes(final int... values) {
+        final byte[] result = new byte[values.length];
+        for (int index = 0; index < values.length; index++) {
+            result[index] = (byte) values[index];
+        }
+        return result;
+    }
+
+    @Test
+    public void testShortFieldHeaders() {
+        final RowBuffer buffer = new RowBuffer();
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(buffer);
+        protocol.structBegin();
+        protocol.fieldI32(1, 1);
+        protocol.fieldI64(3, -1);
+        protocol.fieldString(4, "ab"); // NOI18N.
+        protocol.fieldBoolean(5, true);
+        protocol.fieldBoolean(6, false);
+        protocol.structEnd();
+        // Header: field id delta in the high nibble, type in the low nibble; integers as zigzag varints.
+        assertArrayEquals(bytes(0x15, 0x02, 0x26, 0x01, 0x18, 0x02, 'a', 'b', 0x11, 0x12, 0x00), buffer.toByteArray());
+    }
+
+    @Test
+    public void testLongFieldHeadersAndNestedStructs() {
+        final RowBuffer buffer = new RowBuffer();
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(buffer);
+        protocol.structBegin();
+        // Delta of 20: type alone, then the field id as a zigzag varint.
+        protocol.fieldI32(20, 300);
+        // Nested structure: field ids restart from 0 and resume after it.
+        protocol.fieldStructBegin(21);
+        protocol.fieldI32(1, -2);
+        protocol.structEnd();
+        // Negative delta.
+        protocol.fieldI32(2, 0);
+        protocol.structEnd();
+        assertArrayEquals(bytes(0x05, 0x28, 0xD8, 0x04, 0x1C, 0x15, 0x03, 0x00, 0x05, 0x04, 0x00, 0x00), buffer.toByteArray());
+    }
+
+    @Test
+    public void testDeltaBounds() {
+        final RowBuffer buffer = new RowBuffer();
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(buffer);
+        protocol.structBegin();
+        // 15 is the largest delta of the short form.
+        protocol.fieldI32(15, 0);
+        protocol.fieldI32(31, 0);
+        protocol.structEnd();
+        assertArrayEquals(bytes(0xF5, 0x00, 0x05, 0x3E, 0x00, 0x00), buffer.toByteArray());
+    }
+
+    @Test
+    public void testLists() {
+        final RowBuffer buffer = new RowBuffer();
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(buffer);
+        protocol.structBegin();
+        // Short form: size in the high nibble.
+        protocol.fieldListBegin(1, CompactProtocolWriter.TYPE_I32, 3);
+        protocol.i32(1);
+        protocol.i32(-1);
+        protocol.i32(64);
+        // Long form from 15 elements: size as a varint.
+        protocol.fieldListBegin(2, CompactProtocolWriter.TYPE_BINARY, 15);
+        for (int index = 0; index < 15; index++) {
+            protocol.string(""); // NOI18N.
+        }
+        protocol.structEnd();
+        final byte[] expected = new byte[9 + 15 + 1];
+        System.arraycopy(bytes(0x19, 0x35, 0x02, 0x01, 0x80, 0x01, 0x19, 0xF8, 0x0F), 0, expected, 0, 9);
+        assertArrayEquals(expected, buffer.toByteArray());
+    }
+
+    @Test
+    public void testExtremeValues() {
+        final RowBuffer buffer = new RowBuffer();
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(buffer);
+        protocol.i32(Integer.MIN_VALUE);
+        protocol.i64(Long.MIN_VALUE);
+        protocol.i64(Long.MAX_VALUE);
+        protocol.string("é"); // NOI18N.
+        assertArrayEquals(bytes(
+                0xFF, 0xFF, 0xFF, 0xFF, 0x0F,
+                0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01,
+                0xFE, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01,
+                0x02, 0xC3, 0xA9), buffer.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final RowBuffer buffer = new RowBuffer();
+        final CompactProtocolWriter protocol = new CompactProtocolWriter(buffer);
+        protocol.structBegin();
+        protocol.fieldI64(1, 1L << 40);
+        protocol.fieldListBegin(2, CompactProtocolWriter.TYPE_STRUCT, 20);
+        for (int index = 0; index < 20; index++) {
+            protocol.structBegin();
+            protocol.fieldI32(100 + index, -index);
+            protocol.structEnd();
+        }
+        protocol.fieldString(3, "schema"); // NOI18N.
+        protocol.structEnd();
+        final ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        final Map<Integer, Object> struct = new CompactProtocolReader(bytes).readStruct();
+        assertEquals(0, bytes.remaining());
+        assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(struct.keySet().toArray()));
+        assertEquals(1L << 40, struct.get(1));
+        final List<?> elements = (List<?>) struct.get(2);
+        assertEquals(20, elements.size());
+        for (int index = 0; index < 20; index++) {
+            assertEquals(-index, ((Map<?, ?>) elements.get(index)).get(100 + index));
+        }
+        assertEquals("schema", CompactProtocolReader.toString(struct.get(3))); // NOI18N.
+    }
+}
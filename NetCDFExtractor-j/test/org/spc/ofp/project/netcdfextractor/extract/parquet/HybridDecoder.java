@@ -0,0 +1,61 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the Parquet RLE / bit-packing hybrid encoding, written from the format specification.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+final class HybridDecoder {
+
+    private HybridDecoder() {
+    }
+
+    /**
+     * Decodes values.
+     * @param buffer The source buffer, read from its current position up to the end of the last run.
+     * @param bitWidth The number of bits of each value.
+     * @param count The number of values; padding values of the last bit-packed run are dropped.
+     * @return An {@code int[]} of {@code count} values.
+     */
+    static int[] decode(final ByteBuffer buffer, final int bitWidth, final int count) {
+        final int[] result = new int[count];
+        final CompactProtocolReader varints = new CompactProtocolReader(buffer);
+        int index = 0;
+        while (index < count) {
+            final long header = varints.readVarint();
+            if ((header & 1) == 0) {
+                // Run-length encoded run: the value on the smallest number of bytes that holds bitWidth bits.
+                final int runLength = (int) (header >>> 1);
+                int value = 0;
+                for (int byteIndex = 0; byteIndex < (bitWidth + 7) / 8; byteIndex++) {
+                    value |= (buffer.get() & 0xFF) << (8 * byteIndex);
+                }
+                for (int run = 0; run < runLength; run++) {
+                    result[index++] = value;
+                }
+            } else {
+                // Bit-packed run: groups of 8 values, least significant bit first.
+                final int valueCount = (int) (header >>> 1) * 8;
+                final byte[] bytes = new byte[valueCount * bitWidth / 8];
+                buffer.get(bytes);
+                for (int value = 0; value < valueCount; value++) {
+                    int decoded = 0;
+                    for (int bit = 0; bit < bitWidth; bit++) {
+                        final int position = value * bitWidth + bit;
+                        decoded |= ((bytes[position / 8] >>> (position % 8)) & 1) << bit;
+                    }
+                    if (index < count) {
+                        result[index++] = decoded;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,121 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.spc.ofp.project.netcdfextractor.extract.RowBuffer;
+
+/**
+ * Tests {@code HybridEncoder} against bytes worked out by hand from the Parquet RLE / bit-packing hybrid specification.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class HybridEncoderTest {
+
+    private static byte[] bytes(final int... values) {
+        final byte[] result = new byte[values.length];
+        for (int index = 0; index < values.length; index++) {
+            result[index] = (byte) values[index];
+        }
+        return result;
+    }
+
+    private static byte[] encode(final int bitWidth, final int... values) {
+        final RowBuffer buffer = new RowBuffer();
+        HybridEncoder.encode(values, 0, values.length, bitWidth, buffer);
+        return buffer.toByteArray();
+    }
+
+    @Test
+    public void testBitWidth() {
+        assertEquals(1, HybridEncoder.bitWidth(0));
+        assertEquals(1, HybridEncoder.bitWidth(1));
+        assertEquals(2, HybridEncoder.bitWidth(2));
+        assertEquals(3, HybridEncoder.bitWidth(7));
+        assertEquals(4, HybridEncoder.bitWidth(8));
+        assertEquals(31, HybridEncoder.bitWidth(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testRunLengthRun() {
+        // Header: run length << 1; value on a single byte.
+        final int[] values = new int[10];
+        Arrays.fill(values, 5);
+        assertArrayEquals(bytes(0x14, 0x05), encode(3, values));
+    }
+
+    @Test
+    public void testRunLengthRunOfWideValues() {
+        // Value on 2 bytes, little-endian.
+        final int[] values = new int[8];
+        Arrays.fill(values, 300);
+        assertArrayEquals(bytes(0x10, 0x2C, 0x01), encode(9, values));
+    }
+
+    @Test
+    public void testBitPackedRun() {
+        // Example of the specification: 0 to 7 on 3 bits.
+        assertArrayEquals(bytes(0x03, 0x88, 0xC6, 0xFA), encode(3, 0, 1, 2, 3, 4, 5, 6, 7));
+    }
+
+    @Test
+    public void testBitPackedRunIsPadded() {
+        assertArrayEquals(bytes(0x03, 0x05), encode(1, 1, 0, 1));
+        // A short run is bit-packed.
+        assertArrayEquals(bytes(0x03, 0xFF, 0xFF, 0x08), encode(3, 7, 7, 7, 7, 7, 1, 2));
+    }
+
+    @Test
+    public void testBitPackedRunFollowedByRunLengthRun() {
+        assertArrayEquals(bytes(0x03, 0x21, 0x43, 0x65, 0x07, 0x10, 0x09), encode(4, 1, 2, 3, 4, 5, 6, 7, 0, 9, 9, 9, 9, 9, 9, 9, 9));
+    }
+
+    @Test
+    public void testLongBitPackedRunsAreSplit() {
+        // 600 alternating values: 63 groups, then the 12 remaining groups.
+        final int[] values = new int[600];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = index % 2;
+        }
+        final byte[] expected = new byte[1 + 63 + 1 + 12];
+        Arrays.fill(expected, (byte) 0xAA);
+        expected[0] = 0x7F;
+        expected[1 + 63] = 0x19;
+        assertArrayEquals(expected, encode(1, values));
+    }
+
+    @Test
+    public void testRange() {
+        // Only values within the range are encoded, the group is padded with zeros.
+        final int[] values = {9, 9, 1, 2, 3, 9, 9};
+        final RowBuffer buffer = new RowBuffer();
+        HybridEncoder.encode(values, 2, 5, 2, buffer);
+        assertArrayEquals(bytes(0x03, 0x39, 0x00), buffer.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final Random random = new Random(42);
+        for (int bitWidth = 1; bitWidth <= 20; bitWidth++) {
+            final int[] values = new int[1000 + random.nextInt(1000)];
+            for (int index = 0; index < values.length;) {
+                // Mix runs and noise.
+                final int value = random.nextInt(1 << bitWidth);
+                final int length = random.nextBoolean() ? 1 : 1 + random.nextInt(20);
+                for (int run = 0; run < length && index < values.length; run++) {
+                    values[index++] = value;
+                }
+            }
+            final ByteBuffer bytes = ByteBuffer.wrap(encode(bitWidth, values));
+            assertArrayEquals("bit width " + bitWidth, values, HybridDecoder.decode(bytes, bitWidth, values.length)); // NOI18N.
+            assertEquals(0, bytes.remaining());
+        }
+    }
+}
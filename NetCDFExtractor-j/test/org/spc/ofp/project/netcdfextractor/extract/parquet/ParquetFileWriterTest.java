@@ -0,0 +1,316 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.extract.parquet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.spc.ofp.project.netcdfextractor.extract.Axis;
+import org.spc.ofp.project.netcdfextractor.extract.Slab;
+import org.spc.ofp.project.netcdfextractor.extract.TestSlabs;
+import org.spc.ofp.project.netcdfextractor.extract.ValueDecoder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Tests {@code ParquetFileWriter} with a reader written from the Parquet format specification.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class ParquetFileWriterTest {
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII); // NOI18N.
+    private static final long UNIX_2000_MICROS = 946_684_800_000_000L;
+    private static final long DAY_MICROS = 86_400_000_000L;
+    private static final float FILL_VALUE = -999f;
+    private static final float[] LATITUDES = {10.5f, -20.25f};
+    private static final float[] VALUES = {1.5f, FILL_VALUE, 3.25f, Float.NaN, 5f, 6f};
+    /**
+     * Row group budget of 4 rows: 2 axis indices and a value per row.
+     */
+    private static final long ROW_GROUP_SIZE = 4 * (2 * Integer.BYTES + Double.BYTES);
+
+    private static Axis[] createAxes() {
+        final ZonedDateTime startDate = ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        return new Axis[]{
+            Axis.ofTimes("time", Array.factory(DataType.INT, new int[]{3}, new int[]{0, 1, 2}), startDate, 1, ChronoUnit.DAYS), // NOI18N.
+            Axis.ofCoordinates("lat", Array.factory(DataType.FLOAT, new int[]{LATITUDES.length}, LATITUDES)) // NOI18N.
+        };
+    }
+
+    /**
+     * Writes the rows of {@code sourceCount} identical source files.
+     */
+    private static byte[] write(final boolean compressed, final int sourceCount) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ParquetFileWriter writer = new ParquetFileWriter(out, compressed, ROW_GROUP_SIZE);
+        final ValueDecoder decoder = new ValueDecoder(new DataType[]{DataType.FLOAT}, new Number[]{FILL_VALUE}, new Number[]{Float.NaN}, new Number[]{1f}, new Number[]{0f},
+                new Number[]{-Double.MAX_VALUE}, new Number[]{Double.MAX_VALUE});
+        final int[] shape = {3, LATITUDES.length};
+        final Slab slab = TestSlabs.create(new int[]{0, 0}, shape, Array.factory(DataType.FLOAT, shape, VALUES));
+        for (int source = 0; source < sourceCount; source++) {
+            writer.begin(createAxes(), new String[]{"sst"}, decoder); // NOI18N.
+            // Ranges do not match row groups.
+            writer.write(slab, 0, 3);
+            writer.write(slab, 3, slab.getSize());
+            writer.end();
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the file metadata.
+     */
+    private static Map<Integer, Object> readFooter(final byte[] file) {
+        assertArrayEquals(MAGIC, Arrays.copyOf(file, MAGIC.length));
+        assertArrayEquals(MAGIC, Arrays.copyOfRange(file, file.length - MAGIC.length, file.length));
+        final int footerLength = ByteBuffer.wrap(file, file.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        final ByteBuffer footer = ByteBuffer.wrap(file, file.length - 8 - footerLength, footerLength);
+        final Map<Integer, Object> result = new CompactProtocolReader(footer).readStruct();
+        assertFalse("footer length", footer.hasRemaining()); // NOI18N.
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(final Map<Integer, Object> struct, final int fieldId) {
+        return (T) struct.get(fieldId);
+    }
+
+    /**
+     * A page: its header and its uncompressed content.
+     */
+    private static final class Page {
+
+        final Map<Integer, Object> header;
+        final ByteBuffer content;
+
+        Page(final Map<Integer, Object> header, final ByteBuffer content) {
+            this.header = header;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Reads all pages of a column chunk and checks its sizes and offsets.
+     */
+    private static List<Page> readPages(final byte[] file, final Map<Integer, Object> metadata) throws IOException {
+        final long dictionaryOffset = metadata.containsKey(11) ? (Long) metadata.get(11) : -1;
+        final long start = (dictionaryOffset < 0) ? (Long) get(metadata, 9) : dictionaryOffset;
+        final long compressedSize = get(metadata, 7);
+        final ByteBuffer buffer = ByteBuffer.wrap(file, (int) start, (int) compressedSize);
+        final List<Page> result = new ArrayList<>();
+        long uncompressedSize = 0;
+        while (buffer.hasRemaining()) {
+            final int offset = buffer.position();
+            final Map<Integer, Object> header = new CompactProtocolReader(buffer).readStruct();
+            final int headerSize = buffer.position() - offset;
+            if ((Integer) get(header, 1) == 0 && result.stream().noneMatch(page -> (Integer) get(page.header, 1) == 0)) {
+                assertEquals("data page offset", (long) offset, (long) (Long) get(metadata, 9)); // NOI18N.
+            }
+            final byte[] payload = new byte[(Integer) get(header, 3)];
+            buffer.get(payload);
+            byte[] content = payload;
+            if ((Integer) get(metadata, 4) == 2) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (final GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+                    final byte[] chunk = new byte[1024];
+                    int read;
+                    while ((read = gzip.read(chunk)) > 0) {
+                        bytes.write(chunk, 0, read);
+                    }
+                }
+                content = bytes.toByteArray();
+            }
+            assertEquals("uncompressed page size", (int) (Integer) get(header, 2), content.length); // NOI18N.
+            uncompressedSize += headerSize + content.length;
+            result.add(new Page(header, ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN)));
+        }
+        assertEquals("total uncompressed size", uncompressedSize, (long) (Long) get(metadata, 6)); // NOI18N.
+        return result;
+    }
+
+    /**
+     * Decodes a dictionary encoded axis column chunk.
+     */
+    private static List<Object> readAxis(final List<Page> pages, final boolean time) {
+        final Page dictionaryPage = pages.get(0);
+        assertEquals("dictionary page type", 2, (int) (Integer) get(dictionaryPage.header, 1)); // NOI18N.
+        final Map<Integer, Object> dictionaryHeader = get(dictionaryPage.header, 7);
+        assertEquals("dictionary encoding", 0, (int) (Integer) get(dictionaryHeader, 2)); // NOI18N.
+        final int dictionarySize = get(dictionaryHeader, 1);
+        final List<Object> dictionary = new ArrayList<>();
+        for (int index = 0; index < dictionarySize; index++) {
+            dictionary.add(time ? (Object) dictionaryPage.content.getLong() : (Object) dictionaryPage.content.getFloat());
+        }
+        assertFalse(dictionaryPage.content.hasRemaining());
+        final List<Object> result = new ArrayList<>();
+        for (final Page page : pages.subList(1, pages.size())) {
+            assertEquals("data page type", 0, (int) (Integer) get(page.header, 1)); // NOI18N.
+            final Map<Integer, Object> dataHeader = get(page.header, 5);
+            assertEquals("RLE_DICTIONARY encoding", 8, (int) (Integer) get(dataHeader, 2)); // NOI18N.
+            final int valueCount = get(dataHeader, 1);
+            final int bitWidth = page.content.get();
+            assertEquals(HybridEncoder.bitWidth(dictionarySize - 1), bitWidth);
+            for (final int index : HybridDecoder.decode(page.content, bitWidth, valueCount)) {
+                result.add(dictionary.get(index));
+            }
+            assertFalse(page.content.hasRemaining());
+        }
+        return result;
+    }
+
+    /**
+     * Decodes an optional {@code DOUBLE} column chunk, {@code null} for null values.
+     */
+    private static List<Double> readVariable(final List<Page> pages) {
+        final List<Double> result = new ArrayList<>();
+        for (final Page page : pages) {
+            assertEquals("data page type", 0, (int) (Integer) get(page.header, 1)); // NOI18N.
+            final Map<Integer, Object> dataHeader = get(page.header, 5);
+            assertEquals("PLAIN encoding", 0, (int) (Integer) get(dataHeader, 2)); // NOI18N.
+            assertEquals("RLE definition levels", 3, (int) (Integer) get(dataHeader, 3)); // NOI18N.
+            final int valueCount = get(dataHeader, 1);
+            // Definition levels: length-prefixed, 1 bit each.
+            final int levelsLength = page.content.getInt();
+            final int levelsEnd = page.content.position() + levelsLength;
+            final int[] levels = HybridDecoder.decode(page.content, 1, valueCount);
+            assertEquals("definition levels length", levelsEnd, page.content.position()); // NOI18N.
+            for (final int level : levels) {
+                result.add((level == 0) ? null : page.content.getDouble());
+            }
+            assertFalse(page.content.hasRemaining());
+        }
+        return result;
+    }
+
+    private static void assertFile(final byte[] file, final boolean compressed, final int sourceCount) throws IOException {
+        final Map<Integer, Object> footer = readFooter(file);
+        assertEquals("version", 1, (int) (Integer) get(footer, 1)); // NOI18N.
+        assertEquals("created by", "NetCDFExtractor", CompactProtocolReader.toString(get(footer, 6))); // NOI18N.
+        // Schema.
+        final List<Map<Integer, Object>> schema = get(footer, 2);
+        assertEquals(4, schema.size());
+        assertEquals("schema", CompactProtocolReader.toString(get(schema.get(0), 4))); // NOI18N.
+        assertEquals(3, (int) (Integer) get(schema.get(0), 5));
+        final String[] names = {"time", "lat", "sst"}; // NOI18N.
+        final int[] types = {2, 4, 5};
+        final int[] repetitions = {0, 0, 1};
+        for (int column = 0; column < names.length; column++) {
+            final Map<Integer, Object> element = schema.get(column + 1);
+            assertEquals(names[column], CompactProtocolReader.toString(get(element, 4)));
+            assertEquals(types[column], (int) (Integer) get(element, 1));
+            assertEquals(repetitions[column], (int) (Integer) get(element, 3));
+        }
+        // Time: TIMESTAMP_MICROS converted type and TIMESTAMP(isAdjustedToUTC = true, unit = MICROS) logical type.
+        assertEquals(10, (int) (Integer) get(schema.get(1), 6));
+        final Map<Integer, Object> timestamp = get(get(schema.get(1), 10), 8);
+        assertEquals(Boolean.TRUE, get(timestamp, 1));
+        assertEquals(Collections.singleton(2), ((Map<?, ?>) get(timestamp, 2)).keySet());
+        // Row groups: 4 rows at most and never across source files.
+        assertEquals((long) VALUES.length * sourceCount, (long) (Long) get(footer, 3));
+        final List<Map<Integer, Object>> rowGroups = get(footer, 4);
+        assertEquals(2 * sourceCount, rowGroups.size());
+        final List<Object> times = new ArrayList<>();
+        final List<Object> latitudes = new ArrayList<>();
+        final List<Double> values = new ArrayList<>();
+        long previousOffset = MAGIC.length;
+        for (int group = 0; group < rowGroups.size(); group++) {
+            final Map<Integer, Object> rowGroup = rowGroups.get(group);
+            final long rowCount = (group % 2 == 0) ? 4 : 2;
+            assertEquals(rowCount, (long) (Long) get(rowGroup, 3));
+            final List<Map<Integer, Object>> chunks = get(rowGroup, 1);
+            assertEquals(names.length, chunks.size());
+            long totalSize = 0;
+            for (int column = 0; column < names.length; column++) {
+                final Map<Integer, Object> metadata = get(chunks.get(column), 3);
+                assertEquals(types[column], (int) (Integer) get(metadata, 1));
+                assertEquals(names[column], CompactProtocolReader.toString(((List<?>) get(metadata, 3)).get(0)));
+                assertEquals(compressed ? 2 : 0, (int) (Integer) get(metadata, 4));
+                assertEquals(rowCount, (long) (Long) get(metadata, 5));
+                // Column chunks follow each other.
+                final long offset = get(chunks.get(column), 2);
+                assertEquals(previousOffset, offset);
+                assertEquals(column < 2, metadata.containsKey(11));
+                previousOffset = offset + (Long) get(metadata, 7);
+                totalSize += (Long) get(metadata, 6);
+                final List<Page> pages = readPages(file, metadata);
+                switch (column) {
+                    case 0:
+                        times.addAll(readAxis(pages, true));
+                        break;
+                    case 1:
+                        latitudes.addAll(readAxis(pages, false));
+                        break;
+                    default:
+                        values.addAll(readVariable(pages));
+                }
+            }
+            assertEquals(totalSize, (long) (Long) get(rowGroup, 2));
+        }
+        assertEquals(file.length - 8 - ByteBuffer.wrap(file, file.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(), previousOffset);
+        // Rows.
+        for (int row = 0; row < VALUES.length * sourceCount; row++) {
+            final int cell = row % VALUES.length;
+            assertEquals(UNIX_2000_MICROS + (cell / LATITUDES.length) * DAY_MICROS, times.get(row));
+            assertEquals(LATITUDES[cell % LATITUDES.length], latitudes.get(row));
+            final float value = VALUES[cell];
+            assertEquals((Float.isNaN(value) || value == FILL_VALUE) ? null : (double) value, values.get(row));
+        }
+    }
+
+    @Test
+    public void testUncompressed() throws IOException {
+        assertFile(write(false, 1), false, 1);
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        assertFile(write(true, 1), true, 1);
+    }
+
+    @Test
+    public void testSeveralSourceFiles() throws IOException {
+        assertFile(write(false, 3), false, 3);
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParquetFileWriter(out, false, 0).finish();
+        final Map<Integer, Object> footer = readFooter(out.toByteArray());
+        final List<Map<Integer, Object>> schema = get(footer, 2);
+        assertEquals(1, schema.size());
+        assertEquals(0, (int) (Integer) get(schema.get(0), 5));
+        assertEquals(0L, (long) (Long) get(footer, 3));
+        assertEquals(0, ((List<?>) get(footer, 4)).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testColumnsMustMatch() throws IOException {
+        final ParquetFileWriter writer = new ParquetFileWriter(new ByteArrayOutputStream(), false, 0);
+        final ValueDecoder decoder = new ValueDecoder(new DataType[]{DataType.FLOAT}, new Number[]{FILL_VALUE}, new Number[]{Float.NaN}, new Number[]{1f}, new Number[]{0f},
+                new Number[]{-Double.MAX_VALUE}, new Number[]{Double.MAX_VALUE});
+        writer.begin(createAxes(), new String[]{"sst"}, decoder); // NOI18N.
+        writer.end();
+        writer.begin(createAxes(), new String[]{"chl"}, decoder); // NOI18N.
+    }
+}
@@ -0,0 +1,178 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@code CheckpointJournal}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class CheckpointJournalTest {
+
+    private static final String FINGERPRINT = "fingerprint-1"; // NOI18N.
+    private static final String OTHER_FINGERPRINT = "fingerprint-2"; // NOI18N.
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private Path output;
+    private Path source1;
+    private Path source2;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve(CheckpointJournal.FILE_NAME);
+        output = folder.getRoot().toPath().resolve("out.txt"); // NOI18N.
+        source1 = folder.getRoot().toPath().resolve("a.nc"); // NOI18N.
+        source2 = folder.getRoot().toPath().resolve("b.nc"); // NOI18N.
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            journal.start(output, FINGERPRINT);
+            journal.done(output, FINGERPRINT, source1, 100);
+            journal.checkpoint(output, FINGERPRINT, source2, 7, 150);
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            assertEquals(FINGERPRINT, journal.getFingerprint(output));
+            assertTrue(journal.isDone(output, source1));
+            assertFalse(journal.isDone(output, source2));
+            assertFalse(journal.isComplete(output));
+            final CheckpointJournal.Checkpoint checkpoint = journal.getCheckpoint(output);
+            assertTrue(checkpoint.isSource(source2));
+            assertEquals(7, checkpoint.getRows());
+            assertEquals(150, checkpoint.getPosition());
+            journal.done(output, FINGERPRINT, source2, 200);
+            journal.complete(output, FINGERPRINT);
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            assertTrue(journal.isComplete(output));
+            assertTrue(journal.isDone(output, source2));
+            assertEquals(-1, journal.getCheckpoint(output).getRows());
+            assertEquals(200, journal.getCheckpoint(output).getPosition());
+        }
+    }
+
+    @Test
+    public void testNoResumeStartsEmpty() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            journal.start(output, FINGERPRINT);
+            journal.done(output, FINGERPRINT, source1, 100);
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, false)) {
+            assertNull(journal.getFingerprint(output));
+            assertFalse(journal.isDone(output, source1));
+        }
+        assertEquals("", read()); // NOI18N.
+    }
+
+    @Test
+    public void testTruncatedLastLineIsDropped() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            journal.start(output, FINGERPRINT);
+            journal.checkpoint(output, FINGERPRINT, source1, 10, 50);
+        }
+        final String complete = read();
+        // A crash in the middle of the next entry.
+        Files.write(file, String.format("checkpoint\t%s\t%s\t%s\t2", output.toAbsolutePath(), FINGERPRINT, source1.toAbsolutePath()).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND); // NOI18N.
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            assertEquals(10, journal.getCheckpoint(output).getRows());
+            assertEquals(50, journal.getCheckpoint(output).getPosition());
+            assertEquals(complete, read());
+            // New entries start on a line of their own.
+            journal.checkpoint(output, FINGERPRINT, source1, 20, 90);
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            assertEquals(20, journal.getCheckpoint(output).getRows());
+            assertEquals(90, journal.getCheckpoint(output).getPosition());
+        }
+    }
+
+    @Test
+    public void testMalformedEntryIsIgnored() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            journal.start(output, FINGERPRINT);
+            journal.checkpoint(output, FINGERPRINT, source1, 10, 50);
+        }
+        Files.write(file, String.format("checkpoint\t%s\t%s\t%s\tten\t90\n", output.toAbsolutePath(), FINGERPRINT, source1.toAbsolutePath()).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND); // NOI18N.
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            assertEquals(10, journal.getCheckpoint(output).getRows());
+        }
+    }
+
+    @Test
+    public void testFingerprintChangeVoidsEntries() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            journal.start(output, FINGERPRINT);
+            journal.done(output, FINGERPRINT, source1, 100);
+            journal.complete(output, FINGERPRINT);
+            // Written again with other settings.
+            journal.checkpoint(output, OTHER_FINGERPRINT, source2, 5, 30);
+            assertEquals(OTHER_FINGERPRINT, journal.getFingerprint(output));
+            assertFalse(journal.isDone(output, source1));
+            assertFalse(journal.isComplete(output));
+            assertTrue(journal.getCheckpoint(output).isSource(source2));
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            assertEquals(OTHER_FINGERPRINT, journal.getFingerprint(output));
+            assertFalse(journal.isDone(output, source1));
+            assertFalse(journal.isComplete(output));
+            assertEquals(5, journal.getCheckpoint(output).getRows());
+        }
+    }
+
+    @Test
+    public void testStartResetsEntries() throws IOException {
+        final Path otherOutput = folder.getRoot().toPath().resolve("other.txt"); // NOI18N.
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            journal.start(output, FINGERPRINT);
+            journal.done(output, FINGERPRINT, source1, 100);
+            journal.checkpoint(output, FINGERPRINT, source2, 5, 130);
+            journal.start(otherOutput, FINGERPRINT);
+            journal.done(otherOutput, FINGERPRINT, source1, 100);
+            // Same settings, written again from its start.
+            journal.start(output, FINGERPRINT);
+            assertFalse(journal.isDone(output, source1));
+            assertNull(journal.getCheckpoint(output));
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            assertEquals(FINGERPRINT, journal.getFingerprint(output));
+            assertFalse(journal.isDone(output, source1));
+            assertNull(journal.getCheckpoint(output));
+            // Other outputs are not affected.
+            assertTrue(journal.isDone(otherOutput, source1));
+        }
+    }
+
+    @Test
+    public void testPathsAreNormalized() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(file, true)) {
+            journal.start(output, FINGERPRINT);
+            journal.done(output, FINGERPRINT, source1, 100);
+            final Path sameOutput = output.getParent().resolve("sub").resolve("..").resolve(output.getFileName()); // NOI18N.
+            assertTrue(journal.isDone(sameOutput, source1));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import org.spc.ofp.project.netcdfextractor.extract.OutputFormat;
+import org.spc.ofp.project.netcdfextractor.extract.PartitionLayout;
+
+/**
+ * Tests {@code ExtractionJob}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class ExtractionJobTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private Path source1;
+    private Path source2;
+    private Path source3;
+    private Path jobFile;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath().toAbsolutePath();
+        // The files are not read as long as the time units are given.
+        source1 = create("sst/2020/sst-01.nc"); // NOI18N.
+        source2 = create("sst/2021/sst-02.nc"); // NOI18N.
+        source3 = create("chl/chl-01.nc"); // NOI18N.
+        create("sst/2021/readme.txt"); // NOI18N.
+        jobFile = root.resolve("export" + ExtractionJob.FILE_EXTENSION); // NOI18N.
+    }
+
+    private Path create(final String name) throws IOException {
+        final Path result = root.resolve(name);
+        Files.createDirectories(result.getParent());
+        Files.write(result, new byte[0]);
+        return result;
+    }
+
+    /**
+     * Saves options to a job file, loads them back and creates parameters from them.
+     */
+    private BatchExtractToTxtParameters roundTrip(final Map<String, String> options) throws IOException {
+        ExtractionJob.save(options, jobFile);
+        return ExtractionJob.toParameters(ExtractionJob.load(jobFile)).build();
+    }
+
+    private static BatchExtractToTxtParametersBuilder createBuilder() {
+        return BatchExtractToTxtParametersBuilder.create()
+                .periodSize(1)
+                .periodUnit(ChronoUnit.DAYS)
+                .startDate(ZonedDateTime.of(1950, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Gets the options that only hold given files, with the time units.
+     */
+    private static Map<String, String> createOptions(final String files) {
+        final Map<String, String> result = new LinkedHashMap<>();
+        result.put(ExtractionJob.FILES, files);
+        result.put(ExtractionJob.VARIABLES, "sst"); // NOI18N.
+        result.put(ExtractionJob.PERIOD_UNIT, ChronoUnit.DAYS.name());
+        result.put(ExtractionJob.START_DATE, "1950-01-01"); // NOI18N.
+        return result;
+    }
+
+    private List<Path> listFiles(final String files) throws IOException {
+        return new ArrayList<>(ExtractionJob.toParameters(createOptions(files)).build().getFiles());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final BatchExtractToTxtParameters parameters = createBuilder()
+                .addVariable(source1, "sst") // NOI18N.
+                .addVariable(source1, "sst_anomaly") // NOI18N.
+                .addVariable(source2, "sst") // NOI18N.
+                .addVariable(source2, "sst_anomaly") // NOI18N.
+                .addVariable(source3, "chl") // NOI18N.
+                .destinationDir(root.resolve("out")) // NOI18N.
+                .outputFormat(OutputFormat.PARQUET)
+                .partitionLayout(PartitionLayout.TILE)
+                .tileSize(2.5)
+                .separator("\t") // NOI18N.
+                .missingValue("  #N/A") // NOI18N.
+                .precision(3)
+                .dateTimePattern("yyyy-MM-dd'T'HH:mm") // NOI18N.
+                .latitudeBounds(-20, 20)
+                .longitudeBounds(170, -170)
+                .dateBounds(ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), null)
+                .workerCount(3)
+                .jdbcUrl("jdbc:postgresql://localhost/ocean") // NOI18N.
+                .jdbcUser("extractor") // NOI18N.
+                .jdbcPassword("secret") // NOI18N.
+                .jdbcTable("sst") // NOI18N.
+                .build();
+        final Map<String, String> options = ExtractionJob.toOptions(parameters);
+        final BatchExtractToTxtParameters loaded = roundTrip(options);
+        assertEquals(options, ExtractionJob.toOptions(loaded));
+        assertEquals(Arrays.asList(source1, source2, source3), new ArrayList<>(loaded.getFiles()));
+        assertEquals(Arrays.asList("sst", "sst_anomaly"), loaded.getSettings(source2).getVariables()); // NOI18N.
+        assertEquals(Arrays.asList("chl"), loaded.getSettings(source3).getVariables()); // NOI18N.
+        assertEquals("\t", loaded.getSeparator()); // NOI18N.
+        assertEquals("  #N/A", loaded.getMissingValue()); // NOI18N.
+        assertEquals("yyyy-MM-dd'T'HH:mm", loaded.getDateTimePattern()); // NOI18N.
+        assertEquals(170, loaded.getMinLongitude(), 0);
+        assertEquals(-170, loaded.getMaxLongitude(), 0);
+        assertNull(loaded.getMaxDate());
+        assertEquals(2.5, loaded.getTileSize(), 0);
+        // Only the files whose variables differ from the first file have their own list.
+        assertFalse(options.containsKey("file.2.variables")); // NOI18N.
+        assertEquals("chl", options.get("file.3.variables")); // NOI18N.
+    }
+
+    @Test
+    public void testPasswordIsNotSaved() throws IOException {
+        final BatchExtractToTxtParameters parameters = createBuilder()
+                .addVariable(source1, "sst") // NOI18N.
+                .jdbcUrl("jdbc:postgresql://localhost/ocean") // NOI18N.
+                .jdbcPassword("secret") // NOI18N.
+                .build();
+        final Map<String, String> options = ExtractionJob.toOptions(parameters);
+        assertFalse(options.containsKey(ExtractionJob.JDBC_PASSWORD));
+        final BatchExtractToTxtParameters loaded = roundTrip(options);
+        assertFalse(new String(Files.readAllBytes(jobFile), StandardCharsets.UTF_8).contains("secret")); // NOI18N.
+        assertNull(loaded.getJdbcPassword());
+        assertEquals("jdbc:postgresql://localhost/ocean", loaded.getJdbcUrl()); // NOI18N.
+    }
+
+    @Test
+    public void testSeparators() throws IOException {
+        for (final String separator : Arrays.asList("\t", ";", " ", ", ")) { // NOI18N.
+            final BatchExtractToTxtParameters parameters = createBuilder()
+                    .addVariable(source1, "sst") // NOI18N.
+                    .separator(separator)
+                    .build();
+            assertEquals(separator, roundTrip(ExtractionJob.toOptions(parameters)).getSeparator());
+        }
+        // As typed by hand.
+        final Map<String, String> options = createOptions(source1.toString());
+        options.put(ExtractionJob.SEPARATOR, "\\t"); // NOI18N.
+        assertEquals("\t", ExtractionJob.toParameters(options).build().getSeparator()); // NOI18N.
+    }
+
+    @Test
+    public void testSpecialValues() throws IOException {
+        final Map<String, String> options = createOptions(source1.toString());
+        options.put(ExtractionJob.MISSING_VALUE, " #"); // NOI18N.
+        options.put(ExtractionJob.LATITUDE_VARIABLE, "#lat"); // NOI18N.
+        options.put(ExtractionJob.LONGITUDE_VARIABLE, "lon = x: y!"); // NOI18N.
+        options.put(ExtractionJob.DATE_PATTERN, "yyyy-MM-dd HH:mm"); // NOI18N.
+        options.put(ExtractionJob.MIN_LATITUDE, "NaN"); // NOI18N.
+        options.put(ExtractionJob.MAX_LATITUDE, "NaN"); // NOI18N.
+        options.put(ExtractionJob.MIN_LONGITUDE, " 120 "); // NOI18N.
+        options.put(ExtractionJob.MAX_LONGITUDE, "NaN"); // NOI18N.
+        final BatchExtractToTxtParameters loaded = roundTrip(options);
+        assertEquals(" #", loaded.getMissingValue()); // NOI18N.
+        assertEquals("#lat", loaded.getLatitudeVariable()); // NOI18N.
+        assertEquals("lon = x: y!", loaded.getLongitudeVariable()); // NOI18N.
+        assertEquals("yyyy-MM-dd HH:mm", loaded.getDateTimePattern()); // NOI18N.
+        // Bounds that are not a number stand for the defaults.
+        assertEquals(BatchExtractToTxtParameters.DEFAULT_MIN_LATITUDE, loaded.getMinLatitude(), 0);
+        assertEquals(BatchExtractToTxtParameters.DEFAULT_MAX_LATITUDE, loaded.getMaxLatitude(), 0);
+        assertEquals(120, loaded.getMinLongitude(), 0);
+        assertEquals(BatchExtractToTxtParameters.DEFAULT_MAX_LONGITUDE, loaded.getMaxLongitude(), 0);
+        // Saved again as is.
+        assertEquals(loaded.getMissingValue(), roundTrip(ExtractionJob.toOptions(loaded)).getMissingValue());
+    }
+
+    @Test
+    public void testFilesAndDirectories() throws IOException {
+        // Directories are searched for NetCDF files only, in path order; a file given twice is exported once.
+        assertEquals(Arrays.asList(source3, source1, source2), listFiles(String.join(File.pathSeparator, root.toString(), source1.toString())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingFile() throws IOException {
+        listFiles(root.resolve("missing.nc").toString()); // NOI18N.
+    }
+
+    @Test
+    public void testAbsoluteGlob() throws IOException {
+        assertEquals(Arrays.asList(source1), listFiles(root.resolve("sst/2020/*.nc").toString())); // NOI18N.
+        assertEquals(Arrays.asList(source1, source2), listFiles(root.resolve("sst/202?/sst-*.nc").toString())); // NOI18N.
+        assertEquals(Arrays.asList(source3), listFiles(root.resolve("{chl,oxygen}/*.nc").toString())); // NOI18N.
+        // Nothing matches.
+        assertEquals(Arrays.asList(source1), listFiles(String.join(File.pathSeparator, root.resolve("missing/*.nc").toString(), source1.toString()))); // NOI18N.
+    }
+
+    @Test
+    public void testRecursiveGlob() throws IOException {
+        // Files at any depth below the directory, not in the directory itself.
+        assertEquals(Arrays.asList(source1, source2), listFiles(root.resolve("sst/**/*.nc").toString())); // NOI18N.
+        assertEquals(Arrays.asList(source3, source1, source2), listFiles(root.resolve("**.nc").toString())); // NOI18N.
+        // Unlike directories, patterns are not limited to NetCDF files.
+        assertEquals(Arrays.asList(root.resolve("sst/2021/readme.txt"), source2), listFiles(root.resolve("sst/2021/**").toString())); // NOI18N.
+    }
+
+    @Test
+    public void testRelativeGlob() throws IOException {
+        final Path workingDirectory = Paths.get("").toAbsolutePath(); // NOI18N.
+        final Path relativeRoot = workingDirectory.relativize(root);
+        final List<Path> files = listFiles(relativeRoot.resolve("sst/*/*.nc").toString()); // NOI18N.
+        assertEquals(Arrays.asList(relativeRoot.resolve("sst/2020/sst-01.nc"), relativeRoot.resolve("sst/2021/sst-02.nc")), files); // NOI18N.
+        assertEquals(Arrays.asList(source1, source2), Arrays.asList(files.get(0).toAbsolutePath().normalize(), files.get(1).toAbsolutePath().normalize()));
+    }
+}
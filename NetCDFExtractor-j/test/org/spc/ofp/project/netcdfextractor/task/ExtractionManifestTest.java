@@ -0,0 +1,194 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@code ExtractionManifest}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class ExtractionManifestTest {
+
+    private static final String FINGERPRINT = "fingerprint-1"; // NOI18N.
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private Path source1;
+    private Path source2;
+    private Path output;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve(ExtractionManifest.FILE_NAME);
+        source1 = write("a.nc", "first source"); // NOI18N.
+        source2 = write("b.nc", "second source"); // NOI18N.
+        output = write("out.txt", "rows"); // NOI18N.
+    }
+
+    private Path write(final String name, final String content) throws IOException {
+        final Path result = folder.getRoot().toPath().resolve(name);
+        Files.write(result, content.getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    private static void touch(final Path path, final long lastModified) throws IOException {
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+    }
+
+    private List<String> readLines() throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates the entry of a source as it is now.
+     */
+    private static ExtractionManifest.Entry createEntry(final Path source, final String fingerprint, final Path output) throws IOException {
+        return new ExtractionManifest.Entry(source, Files.size(source), Files.getLastModifiedTime(source).toMillis(), ExtractionManifest.hash(source), fingerprint,
+                output, (output == null) ? -1 : Files.size(output), (output == null) ? -1 : Files.getLastModifiedTime(output).toMillis());
+    }
+
+    @Test
+    public void testLaterEntryReplacesEarlierEntry() throws IOException {
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            manifest.put(createEntry(source1, FINGERPRINT, output));
+            manifest.put(createEntry(source2, FINGERPRINT, output));
+            manifest.put(createEntry(source1, "fingerprint-2", null)); // NOI18N.
+            assertEquals("fingerprint-2", manifest.get(source1).getFingerprint()); // NOI18N.
+        }
+        assertEquals(3, readLines().size());
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            final ExtractionManifest.Entry entry = manifest.get(source1);
+            assertEquals("fingerprint-2", entry.getFingerprint()); // NOI18N.
+            assertNull(entry.getOutput());
+            assertEquals(-1, entry.getOutputSize());
+            assertEquals(Collections.singleton(ExtractionManifest.toKey(source2)), manifest.getSources(output));
+        }
+    }
+
+    @Test
+    public void testRemovalLine() throws IOException {
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            manifest.put(createEntry(source1, FINGERPRINT, output));
+            manifest.put(createEntry(source2, FINGERPRINT, output));
+            manifest.remove(source1);
+            // Nothing to remove, nothing appended.
+            manifest.remove(source1);
+            assertNull(manifest.get(source1));
+        }
+        final List<String> lines = readLines();
+        assertEquals(3, lines.size());
+        assertEquals(ExtractionManifest.toKey(source1).toString(), lines.get(2));
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            assertNull(manifest.get(source1));
+            assertEquals(FINGERPRINT, manifest.get(source2).getFingerprint());
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsLiveEntries() throws IOException {
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            for (int count = 0; count < 5; count++) {
+                manifest.put(createEntry(source1, FINGERPRINT + count, output));
+            }
+            manifest.put(createEntry(source2, FINGERPRINT, output));
+            manifest.remove(source2);
+        }
+        assertEquals(7, readLines().size());
+        // A malformed line and a line truncated by a crash.
+        Files.write(file, "not\tan\tentry\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND); // NOI18N.
+        Files.write(file, (createEntry(source2, FINGERPRINT, output).getSource() + "\t1").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND); // NOI18N.
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            final List<String> lines = readLines();
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0).startsWith(ExtractionManifest.toKey(source1) + "\t")); // NOI18N.
+            assertEquals(FINGERPRINT + 4, manifest.get(source1).getFingerprint());
+            assertNull(manifest.get(source2));
+            // Appends after the compacted entries.
+            manifest.put(createEntry(source2, FINGERPRINT, output));
+        }
+        assertEquals(2, readLines().size());
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            assertEquals(Arrays.asList(FINGERPRINT + 4, FINGERPRINT), Arrays.asList(manifest.get(source1).getFingerprint(), manifest.get(source2).getFingerprint()));
+        }
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp"))); // NOI18N.
+    }
+
+    @Test
+    public void testUpToDate() throws IOException {
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, output));
+            manifest.put(createEntry(source1, FINGERPRINT, output));
+            assertTrue(manifest.isUpToDate(source1, FINGERPRINT, output));
+            // Other parameters, another output or a database.
+            assertFalse(manifest.isUpToDate(source1, "fingerprint-2", output)); // NOI18N.
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, source2));
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, null));
+        }
+    }
+
+    @Test
+    public void testContentHashAfterModificationTimeChange() throws IOException {
+        touch(source1, 1_000_000_000_000L);
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            manifest.put(createEntry(source1, FINGERPRINT, null));
+            // Touched but not modified: still up to date, and the entry follows the new time.
+            touch(source1, 1_000_000_060_000L);
+            assertTrue(manifest.isUpToDate(source1, FINGERPRINT, null));
+            assertEquals(1_000_000_060_000L, manifest.get(source1).getLastModified());
+            assertTrue(manifest.get(source1).isSourceUnchanged());
+        }
+        // The refreshed entry was written to the manifest.
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            assertEquals(1_000_000_060_000L, manifest.get(source1).getLastModified());
+            // Same size, other content.
+            write("a.nc", "first SOURCE"); // NOI18N.
+            touch(source1, 1_000_000_120_000L);
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, null));
+            assertEquals(1_000_000_060_000L, manifest.get(source1).getLastModified());
+            // Other size, same time: not hashed.
+            write("a.nc", "first source, longer"); // NOI18N.
+            touch(source1, 1_000_000_060_000L);
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, null));
+            // Deleted.
+            Files.delete(source1);
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, null));
+        }
+    }
+
+    @Test
+    public void testOutputChanged() throws IOException {
+        try (final ExtractionManifest manifest = ExtractionManifest.open(file)) {
+            manifest.put(createEntry(source1, FINGERPRINT, output));
+            final long lastModified = Files.getLastModifiedTime(output).toMillis();
+            touch(output, lastModified + 1000);
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, output));
+            write("out.txt", "more rows"); // NOI18N.
+            touch(output, lastModified);
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, output));
+            Files.delete(output);
+            assertFalse(manifest.isUpToDate(source1, FINGERPRINT, output));
+        }
+    }
+}
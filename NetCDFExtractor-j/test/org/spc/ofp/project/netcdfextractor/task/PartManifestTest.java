@@ -0,0 +1,208 @@
+/*********************************************
+ *  Copyright - Pacific Community            *
+ *  Droit de copie - Communauté du Pacifique *
+ *  http://www.spc.int/                      *
+ *********************************************/
+package org.spc.ofp.project.netcdfextractor.task;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.spc.ofp.project.netcdfextractor.extract.io.RollingOutputStream;
+
+/**
+ * Tests {@code PartManifest}, along with the parts written by a {@code RollingOutputStream}.
+ * @author Fabrice Bouyé (fabriceb@spc.int)
+ */
+public class PartManifestTest {
+
+    private static final String EXTENSION = ".txt"; // NOI18N.
+    private static final int SOURCE_ROWS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path output;
+    private Path file;
+    private Path source1;
+    private Path source2;
+
+    @Before
+    public void setUp() {
+        output = folder.getRoot().toPath().resolve("sst" + EXTENSION); // NOI18N.
+        file = PartManifest.getFile(output);
+        source1 = folder.getRoot().toPath().resolve("a.nc"); // NOI18N.
+        source2 = folder.getRoot().toPath().resolve("b.nc"); // NOI18N.
+    }
+
+    /**
+     * Opens the parts of the output the way the engine does: after the last complete part, which is recorded in the manifest.
+     */
+    private RollingOutputStream openParts(final PartManifest parts, final long maxRows) throws IOException {
+        return new RollingOutputStream(output, EXTENSION, parts.getPartCount() + 1, maxRows, 0, new RollingOutputStream.PartHandler() {
+            @Override
+            public OutputStream open(final Path part) throws IOException {
+                return Files.newOutputStream(part);
+            }
+
+            @Override
+            public void completed(final Path part, final long rowCount) throws IOException {
+                parts.add(part, rowCount);
+            }
+        });
+    }
+
+    /**
+     * Writes rows of a source the way the engine does, recording the position after each row.
+     * @param stopAfter The number of rows after which to stop, as if the extraction crashed.
+     * @return The number of rows written.
+     */
+    private static int writeSource(final RollingOutputStream out, final PartManifest parts, final Path source, final long from, final int stopAfter) throws IOException {
+        parts.setPosition(source, from);
+        int count = 0;
+        for (long row = from; row < SOURCE_ROWS && count < stopAfter; row++, count++) {
+            final byte[] bytes = String.format("%s:%d\n", source.getFileName(), row).getBytes(StandardCharsets.UTF_8); // NOI18N.
+            if (out.isFull(1, bytes.length)) {
+                out.roll();
+            }
+            out.write(bytes);
+            out.rowsWritten(1);
+            parts.setPosition(source, row + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Reads all parts listed in the manifest, in order.
+     */
+    private List<String> readParts() throws IOException {
+        final List<String> result = new ArrayList<>();
+        for (final String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!PartManifest.COMPLETE.equals(line)) {
+                result.addAll(Files.readAllLines(output.resolveSibling(line.split("\t")[0]), StandardCharsets.UTF_8)); // NOI18N.
+            }
+        }
+        return result;
+    }
+
+    private static List<String> expectedRows() {
+        final List<String> result = new ArrayList<>();
+        for (final String source : Arrays.asList("a.nc", "b.nc")) { // NOI18N.
+            for (int row = 0; row < SOURCE_ROWS; row++) {
+                result.add(source + ":" + row); // NOI18N.
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testEntries() throws IOException {
+        try (final PartManifest parts = PartManifest.open(file, false);
+                final RollingOutputStream out = openParts(parts, 3)) {
+            writeSource(out, parts, source1, 0, SOURCE_ROWS);
+            writeSource(out, parts, source2, 0, SOURCE_ROWS);
+            out.finish();
+            parts.complete();
+        }
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        // Part, rows, bytes, source of the last rows, rows of that source so far.
+        assertEquals(String.join("\t", "sst.part-00001.txt", "3", "21", source1.toAbsolutePath().toString(), "3"), lines.get(0)); // NOI18N.
+        assertEquals(String.join("\t", "sst.part-00002.txt", "3", "21", source2.toAbsolutePath().toString(), "1"), lines.get(1)); // NOI18N.
+        assertEquals(String.join("\t", "sst.part-00004.txt", "1", "7", source2.toAbsolutePath().toString(), "5"), lines.get(3)); // NOI18N.
+        assertEquals(PartManifest.COMPLETE, lines.get(4));
+        assertEquals(expectedRows(), readParts());
+    }
+
+    @Test
+    public void testResumeFromLastCompletePart() throws IOException {
+        // A crash after 4 rows of the second source: the third part is not complete.
+        try (final PartManifest parts = PartManifest.open(file, false);
+                final RollingOutputStream out = openParts(parts, 3)) {
+            writeSource(out, parts, source1, 0, SOURCE_ROWS);
+            writeSource(out, parts, source2, 0, 4);
+        }
+        // A line truncated by the crash.
+        Files.write(file, "sst.part-00003.txt\t3".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND); // NOI18N.
+        try (final PartManifest parts = PartManifest.open(file, true)) {
+            assertEquals(2, parts.getPartCount());
+            assertFalse(parts.isLastSource(source1));
+            assertTrue(parts.isLastSource(source2));
+            assertEquals(1, parts.getLastSourceRows());
+            // Sources before the last one are skipped, the last one continues after its rows in the complete parts.
+            try (final RollingOutputStream out = openParts(parts, 3)) {
+                assertEquals("sst.part-00003.txt", out.getCurrentPart().getFileName().toString()); // NOI18N.
+                writeSource(out, parts, source2, parts.getLastSourceRows(), SOURCE_ROWS);
+                out.finish();
+                parts.complete();
+            }
+        }
+        assertEquals(expectedRows(), readParts());
+    }
+
+    @Test
+    public void testResumeAtSourceBoundary() throws IOException {
+        // The first part holds all rows of the first source, it is completed when the second source starts.
+        try (final PartManifest parts = PartManifest.open(file, false);
+                final RollingOutputStream out = openParts(parts, SOURCE_ROWS)) {
+            writeSource(out, parts, source1, 0, SOURCE_ROWS);
+            writeSource(out, parts, source2, 0, 1);
+        }
+        try (final PartManifest parts = PartManifest.open(file, true)) {
+            assertEquals(1, parts.getPartCount());
+            assertTrue(parts.isLastSource(source2));
+            assertEquals(0, parts.getLastSourceRows());
+            try (final RollingOutputStream out = openParts(parts, SOURCE_ROWS)) {
+                writeSource(out, parts, source2, parts.getLastSourceRows(), SOURCE_ROWS);
+                out.finish();
+            }
+        }
+        assertEquals(expectedRows(), readParts());
+    }
+
+    @Test
+    public void testResumeDropsCompleteLine() throws IOException {
+        try (final PartManifest parts = PartManifest.open(file, false);
+                final RollingOutputStream out = openParts(parts, 0)) {
+            writeSource(out, parts, source1, 0, SOURCE_ROWS);
+            out.finish();
+            parts.complete();
+        }
+        try (final PartManifest parts = PartManifest.open(file, true)) {
+            assertEquals(1, parts.getPartCount());
+        }
+        assertEquals(1, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void testNoResumeDeletesParts() throws IOException {
+        try (final PartManifest parts = PartManifest.open(file, false);
+                final RollingOutputStream out = openParts(parts, 2)) {
+            writeSource(out, parts, source1, 0, SOURCE_ROWS);
+            out.finish();
+        }
+        assertTrue(Files.exists(RollingOutputStream.getPart(output, EXTENSION, 3)));
+        try (final PartManifest parts = PartManifest.open(file, false)) {
+            assertEquals(0, parts.getPartCount());
+            assertFalse(parts.isLastSource(source1));
+            assertEquals(0, parts.getLastSourceRows());
+        }
+        for (int part = 1; part <= 3; part++) {
+            assertFalse(Files.exists(RollingOutputStream.getPart(output, EXTENSION, part)));
+        }
+        assertEquals(0, Files.size(file));
+    }
+}